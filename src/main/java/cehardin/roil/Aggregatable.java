@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Something whose elements can be grouped by some of their attributes and
+ * each group summarized by aggregate functions. The result has the grouping
+ * attributes, which are its key, and one attribute per aggregation.
+ * <p>
+ * @author Chad
+ */
+public interface Aggregatable<T> {
+
+    /**
+     * The aggregate functions.
+     */
+    public static enum Aggregator {
+        /**
+         * The number of elements in the group.
+         */
+        Count,
+        /**
+         * The number of distinct data of an attribute in the group.
+         */
+        CountDistinct,
+        /**
+         * The sum of the data of an integer attribute in the group.
+         */
+        Sum,
+        /**
+         * The least data of an attribute in the group.
+         */
+        Min,
+        /**
+         * The greatest data of an attribute in the group.
+         */
+        Max
+    }
+
+    /**
+     * One aggregate function of a group, and the attribute it is written to.
+     */
+    public static final class Aggregation {
+
+        private final Aggregator aggregator;
+        private final Optional<AttributeName> attributeName;
+        private final AttributeName resultAttributeName;
+
+        /**
+         * Create a count of the elements of each group.
+         * <p>
+         * @param resultAttributeName The attribute the count is written to.
+         */
+        public Aggregation(AttributeName resultAttributeName) {
+            this.aggregator = Aggregator.Count;
+            this.attributeName = Optional.empty();
+            this.resultAttributeName = requireNonNull(resultAttributeName, "Result Attribute Name was null");
+        }
+
+        /**
+         * Create an aggregation of an attribute.
+         * <p>
+         * @param aggregator          The aggregate function.
+         * @param attributeName       The attribute it reads.
+         * @param resultAttributeName The attribute it is written to.
+         */
+        public Aggregation(Aggregator aggregator, AttributeName attributeName, AttributeName resultAttributeName) {
+            this.aggregator = requireNonNull(aggregator, "Aggregator was null");
+            this.attributeName = Optional.of(requireNonNull(attributeName, "Attribute Name was null"));
+            this.resultAttributeName = requireNonNull(resultAttributeName, "Result Attribute Name was null");
+        }
+
+        public Aggregator getAggregator() {
+            return aggregator;
+        }
+
+        /**
+         * Get the attribute read.
+         * <p>
+         * @return The attribute, or empty for a count of elements.
+         */
+        public Optional<AttributeName> getAttributeName() {
+            return attributeName;
+        }
+
+        public AttributeName getResultAttributeName() {
+            return resultAttributeName;
+        }
+    }
+
+    /**
+     * A grouping and the aggregations of each group.
+     */
+    public static final class Aggregate {
+
+        private final Set<AttributeName> groupAttributeNames;
+        private final List<Aggregation> aggregations;
+
+        /**
+         * Create an aggregate.
+         * <p>
+         * @param groupAttributeNames The attributes to group by, which may be
+         *                            empty to summarize every element as one
+         *                            group.
+         * @param aggregations        The aggregations of each group.
+         */
+        public Aggregate(Set<AttributeName> groupAttributeNames, List<Aggregation> aggregations) {
+            this.groupAttributeNames = unmodifiableSet(new LinkedHashSet<>(requireNonNull(groupAttributeNames, "Group Attribute Names was null")));
+            this.aggregations = unmodifiableList(new ArrayList<>(requireNonNull(aggregations, "Aggregations was null")));
+        }
+
+        public Set<AttributeName> getGroupAttributeNames() {
+            return groupAttributeNames;
+        }
+
+        public List<Aggregation> getAggregations() {
+            return aggregations;
+        }
+    }
+
+    static <T extends Aggregatable<T>> BiFunction<T, Aggregate, T> getAggregateBiFunction() {
+        return (t, a) -> t.getAggregateFunction().apply(a);
+    }
+
+    static <T extends Aggregatable<T>> UnaryOperator<T> getAggregateUnaryOperator(Aggregate a) {
+        return (t) -> t.getAggregateFunction().apply(a);
+    }
+
+    Function<Aggregate, T> getAggregateFunction();
+
+    default Supplier<T> getAggregateSupplier(Aggregate a) {
+        return () -> getAggregateFunction().apply(a);
+    }
+
+    default T aggregate(Aggregate a) {
+        return getAggregateFunction().apply(a);
+    }
+
+    default T aggregate(Set<AttributeName> groupAttributeNames, List<Aggregation> aggregations) {
+        return getAggregateFunction().apply(new Aggregate(groupAttributeNames, aggregations));
+    }
+}
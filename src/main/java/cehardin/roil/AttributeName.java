@@ -17,23 +17,76 @@
 package cehardin.roil;
 
 import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
 
 import cehardin.roil.exception.InvalidNameException;
+import cehardin.roil.util.Interner;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * A name for an attribute, which identifies a value in a tuple.
+ * <p>
+ * Every name is given an integer id, the same for every name with the same
+ * value, so names compare by id rather than by string. {@link #of(String)}
+ * also returns one canonical instance per value, so names created that way
+ * are equal only if they are the same instance.
+ * <p>
+ * Values, ids and canonical names are all held weakly: once no name with a
+ * value is reachable they are dropped, and a later name with that value may
+ * be given a new id.
  * @author Chad
  */
 public final class AttributeName extends Name implements Comparable<AttributeName> {
+    
+    private static final Interner<String> Values = new Interner<>();
+    private static final Map<String, Integer> Ids = new WeakHashMap<>();
+    private static final AtomicInteger NextId = new AtomicInteger();
+    private static final Interner<AttributeName> Canonical = new Interner<>();
+    
+    /**
+     * Get the canonical attribute name with a value.
+     * @param value The value of the name.
+     * @return The name, the same instance every time for the same value while
+     *         it is reachable.
+     * @throws InvalidNameException If the value is not a valid name.
+     */
+    public static AttributeName of(String value) throws InvalidNameException {
+        return Canonical.intern(new AttributeName(value));
+    }
+    
+    /**
+     * Get the id of a value. The value must be the shared instance, which
+     * every name with the value holds, so the id lives exactly as long as
+     * they do.
+     */
+    private static int id(String value) {
+        synchronized (Ids) {
+            return Ids.computeIfAbsent(value, (v) -> NextId.getAndIncrement());
+        }
+    }
+    
+    private final int id;
 
     public AttributeName(String value) throws InvalidNameException {
-        super(value);
+        super(Values.intern(requireNonNull(value, "Value was null").trim()));
+        this.id = id(getValue());
+    }
+    
+    /**
+     * Get the id of this name, which is the same for every name with the same
+     * value while any of them is reachable.
+     * @return The id.
+     */
+    public int getId() {
+        return id;
     }
     
     @Override
     public int compareTo(AttributeName o) {
-        return o == null ? 1 : getValue().compareTo(o.getValue());
+        return o == null ? 1 : o.id == id ? 0 : getValue().compareTo(o.getValue());
     }
 
     @Override
@@ -51,7 +104,7 @@ public final class AttributeName extends Name implements Comparable<AttributeNam
             result = true;
         } else if (getClass().isInstance(o)) {
             final AttributeName other = getClass().cast(o);
-            result = getValue().equals(other.getValue());
+            result = id == other.id;
         } else {
             result = false;
         }
@@ -16,6 +16,8 @@
  */
 package cehardin.roil;
 
+import cehardin.roil.util.Interner;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,14 +35,63 @@ import static cehardin.roil.util.Maps.transformKeys;
 /**
  * An attribute is a combination of an Attribute Name and a Domain.
  * <p>
+ * Each attribute is also given an ordinal, its position when the attribute
+ * names are sorted, so tuples can hold their values in a flat array.
+ * <p>
  * @author Chad
  * @see RelationSchema
  */
 public final class Attributes implements Comparable<Attributes>, Projectable<Attributes>, Renamable<Attributes> {
 
     private static final Comparator<Map<AttributeName, Domain<?>>> mapComparator = mapComparator();
+    private static final Interner<Attributes> Layouts = new Interner<>();
+    
+    /**
+     * Get the one shared instance of some attributes, so that every tuple
+     * with the same attributes can refer to the same layout.
+     * @param attributes The attributes.
+     * @return The shared instance, never null.
+     */
+    static Attributes intern(Attributes attributes) {
+        return Layouts.intern(attributes);
+    }
+    
+    /**
+     * How data laid out by one set of attributes moves to the layout of
+     * another: the data at ordinal i of the target comes from ordinal
+     * sources[i] of the source.
+     */
+    static final class Mapping {
+        
+        private final Object function;
+        private final Attributes target;
+        private final int[] sources;
+        
+        private Mapping(Object function, Attributes target, int[] sources) {
+            this.function = function;
+            this.target = target;
+            this.sources = sources;
+        }
+        
+        Attributes getTarget() {
+            return target;
+        }
+        
+        int getSource(int ordinal) {
+            return sources[ordinal];
+        }
+    }
 
     private final Map<AttributeName, Domain<?>> map;
+    private final AttributeName[] names;
+    private final Domain<?>[] domains;
+    /**
+     * An open addressing table from the id of each attribute name to its
+     * ordinal + 1, or 0 for an empty slot, sized by the number of attributes.
+     */
+    private final int[] ordinalsById;
+    private volatile Mapping lastProject;
+    private volatile Mapping lastRename;
 
     public Attributes(Map<AttributeName, Domain<?>> map) {
         this.map = unmodifiableMap(new HashMap<AttributeName, Domain<?>>(requireNonNull(map, "The map was null")));
@@ -52,11 +103,141 @@ public final class Attributes implements Comparable<Attributes>, Projectable<Att
         if (this.map.containsValue(null)) {
             throw new NullPointerException("The map contained one or more null values");
         }
+        
+        this.names = this.map.keySet().toArray(new AttributeName[this.map.size()]);
+        this.domains = new Domain<?>[names.length];
+        Arrays.sort(names);
+        
+        int capacity = 4;
+        
+        while (capacity < names.length * 2) {
+            capacity <<= 1;
+        }
+        
+        this.ordinalsById = new int[capacity];
+        
+        for (int i = 0; i < names.length; i++) {
+            int slot = slot(names[i].getId());
+            
+            domains[i] = this.map.get(names[i]);
+            
+            while (ordinalsById[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            
+            ordinalsById[slot] = i + 1;
+        }
+    }
+    
+    private int slot(int id) {
+        final int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (ordinalsById.length - 1);
     }
 
     public Map<AttributeName, Domain<?>> getMap() {
         return map;
     }
+    
+    /**
+     * Get the number of attributes.
+     * <p>
+     * @return The number of attributes.
+     */
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * Get the ordinal of an attribute.
+     * <p>
+     * @param attributeName The name of the attribute.
+     * @return The ordinal, from 0 to {@link #size()} - 1, or -1 if there is no
+     *         such attribute.
+     */
+    public int getOrdinal(AttributeName attributeName) {
+        final int id = requireNonNull(attributeName, "Attribute Name was null").getId();
+        int slot = slot(id);
+        
+        while (ordinalsById[slot] != 0) {
+            if (names[ordinalsById[slot] - 1].getId() == id) {
+                return ordinalsById[slot] - 1;
+            }
+            
+            slot = (slot + 1) & (ordinalsById.length - 1);
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Get how data moves when these attributes are projected. The last
+     * mapping is remembered, so projecting every tuple of a relation with the
+     * same predicate only works it out once.
+     * @param p The predicate of the attribute names to keep.
+     * @return The mapping, whose target is interned.
+     */
+    Mapping getProjectMapping(Predicate<AttributeName> p) {
+        Mapping result = lastProject;
+        
+        if (result == null || result.function != p) {
+            final Attributes target = intern(project(p));
+            final int[] sources = new int[target.size()];
+            
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = getOrdinal(target.getAttributeName(i));
+            }
+            
+            result = new Mapping(p, target, sources);
+            lastProject = result;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get how data moves when these attributes are renamed. The last mapping
+     * is remembered, so renaming every tuple of a relation with the same
+     * function only works it out once.
+     * @param f The function from old to new attribute names.
+     * @return The mapping, whose target is interned.
+     */
+    Mapping getRenameMapping(UnaryOperator<AttributeName> f) {
+        Mapping result = lastRename;
+        
+        if (result == null || result.function != f) {
+            final Attributes target = intern(rename(f));
+            final int[] sources = new int[target.size()];
+            
+            for (int i = 0; i < names.length; i++) {
+                sources[target.getOrdinal(f.apply(names[i]))] = i;
+            }
+            
+            result = new Mapping(f, target, sources);
+            lastRename = result;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get the name of the attribute at an ordinal.
+     * <p>
+     * @param ordinal The ordinal.
+     * @return The name, never null.
+     */
+    public AttributeName getAttributeName(int ordinal) {
+        return names[ordinal];
+    }
+    
+    /**
+     * Get the domain of the attribute at an ordinal.
+     * <p>
+     * @param ordinal The ordinal.
+     * @return The domain, never null.
+     */
+    public Domain<?> getDomain(int ordinal) {
+        return domains[ordinal];
+    }
 
     @Override
     public Function<Predicate<AttributeName>, Attributes> getProjectFunction() {
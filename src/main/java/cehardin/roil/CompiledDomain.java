@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import static cehardin.roil.Domain.BooleanOperator.*;
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.exception.ValueNotInDomainException;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.WeakHashMap;
+import java.util.function.BiPredicate;
+
+/**
+ * A {@link Domain} resolved once into what its default methods need to
+ * compare and check data: its range, the range's comparator and its boolean
+ * operator table. Without this every comparison asks the domain for its
+ * range again, which may create a new set each time.
+ * <p>
+ * Domains are keyed by their own equals and hashCode, so stateless domains
+ * should consider all of their instances equal. They are held weakly, and a
+ * compiled domain only refers to its domain weakly, so a domain that is no
+ * longer used is dropped along with what was compiled from it, as long as
+ * its range does not refer back to it.
+ * <p>
+ * @author Chad
+ * @param <T> The type of the data of the domain.
+ * @see Domain#getBooleanOperators()
+ */
+final class CompiledDomain<T> {
+
+    private static final Map<Domain<?>, CompiledDomain<?>> Compiled = new WeakHashMap<>();
+
+    /**
+     * The domain compiled last, so a run of checks against one domain does
+     * not lock the map each time.
+     */
+    private static volatile CompiledDomain<?> Last;
+
+    static <T> CompiledDomain<T> of(final Domain<T> domain) {
+        CompiledDomain<?> compiled = Last;
+
+        if (compiled == null || compiled.domain.get() != requireNonNull(domain, "Domain was null")) {
+            synchronized (Compiled) {
+                compiled = Compiled.computeIfAbsent(domain, (d) -> new CompiledDomain<>(d));
+            }
+
+            Last = compiled;
+        }
+
+        @SuppressWarnings("unchecked") // A domain is only ever compiled into a CompiledDomain of its own type
+        final CompiledDomain<T> result = (CompiledDomain<T>)compiled;
+        return result;
+    }
+
+    private final WeakReference<Domain<T>> domain;
+    private final SortedSet<T> range;
+    private final Comparator<? super T> comparator;
+    private volatile Map<BooleanOperator, BiPredicate<T, T>> booleanOperators;
+
+    private CompiledDomain(final Domain<T> domain) {
+        this.domain = new WeakReference<>(domain);
+        this.range = requireNonNull(domain.getRange(), "Range was null");
+        this.comparator = range.comparator() == null ? CompiledDomain::compareNaturally : range.comparator();
+    }
+
+    /**
+     * Compare data of a domain whose range has no comparator, which must then
+     * be comparable.
+     */
+    @SuppressWarnings("unchecked") // A range without a comparator holds comparable data
+    private static <T> int compareNaturally(final T t1, final T t2) {
+        return ((Comparable<T>)t1).compareTo(t2);
+    }
+
+    int compare(final T t1, final T t2) {
+        return comparator.compare(t1, t2);
+    }
+
+    boolean isIn(final T t) {
+        return range.contains(t);
+    }
+
+    T check(final T t) throws ValueNotInDomainException {
+        if (range.contains(t)) {
+            return t;
+        } else {
+            throw new ValueNotInDomainException(format("Not in domain: %s", t));
+        }
+    }
+
+    /**
+     * Get the boolean operator table, built from the domain's operator
+     * methods the first time it is asked for.
+     * <p>
+     * @param domain The domain, or one equal to it.
+     * @return The operators as a read-only map, never null.
+     */
+    Map<BooleanOperator, BiPredicate<T, T>> getBooleanOperators(final Domain<T> domain) {
+        Map<BooleanOperator, BiPredicate<T, T>> result = booleanOperators;
+
+        if (result == null) {
+            final Map<BooleanOperator, BiPredicate<T, T>> operators = new EnumMap<>(BooleanOperator.class);
+
+            operators.put(Equal, domain.getEqualOperator());
+            operators.put(NotEqual, domain.getNotEqualOperator());
+            operators.put(GreaterThan, domain.getGreaterThanOperator());
+            operators.put(GreaterThanOrEqual, domain.getGreaterThanOrEqualOperator());
+            operators.put(LessThan, domain.getLessThanOperator());
+            operators.put(LessThanOrEqual, domain.getLessThanOrEqualOperator());
+
+            result = unmodifiableMap(operators);
+            booleanOperators = result;
+        }
+
+        return result;
+    }
+}
@@ -16,12 +16,7 @@
  */
 package cehardin.roil;
 
-import static cehardin.roil.Domain.BooleanOperator.*;
-import static java.lang.String.format;
-import static java.util.Collections.unmodifiableMap;
-
 import cehardin.roil.exception.ValueNotInDomainException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.function.BiPredicate;
@@ -49,21 +44,32 @@ public interface Domain<T> extends Comparable<Domain<T>> {
 
     SortedSet<T> getRange();
 
+    /**
+     * Determine if the data of this domain can never change once created, in
+     * which case values never clone it.
+     * <p>
+     * @return true if the data is immutable, false otherwise.
+     * @see Value#registerImmutableType(Class)
+     */
+    default boolean isImmutable() {
+        return false;
+    }
+
+    /**
+     * Get the boolean operators of this domain. The table is built from the
+     * operator methods the first time it is asked for and then shared. The
+     * default operators resolve {@link #getRange()} once rather than on every
+     * comparison.
+     * <p>
+     * @return The operators as a read-only map, never null.
+     */
     default Map<BooleanOperator, BiPredicate<T, T>> getBooleanOperators() {
-        final Map<BooleanOperator, BiPredicate<T,T>> booleanOperators = new HashMap<>();
-        
-        booleanOperators.put(Equal, getEqualOperator());
-        booleanOperators.put(NotEqual, getNotEqualOperator());
-        booleanOperators.put(GreaterThan, getGreaterThanOperator());
-        booleanOperators.put(GreaterThanOrEqual, getGreaterThanOrEqualOperator());
-        booleanOperators.put(LessThan, getLessThanOperator());
-        booleanOperators.put(LessThanOrEqual, getLessThanOrEqualOperator());
-        
-        return unmodifiableMap(booleanOperators);
+        return CompiledDomain.of(this).getBooleanOperators(this);
     }
 
     default BiPredicate<T, T> getEqualOperator() {
-        return (v1, v2) -> getRange().comparator().compare(check(v1), check(v2)) == 0;
+        final CompiledDomain<T> compiled = CompiledDomain.of(this);
+        return (v1, v2) -> compiled.compare(compiled.check(v1), compiled.check(v2)) == 0;
     }
 
     default BiPredicate<T, T> getNotEqualOperator() {
@@ -71,7 +77,8 @@ public interface Domain<T> extends Comparable<Domain<T>> {
     }
 
     default BiPredicate<T, T> getGreaterThanOperator() {
-        return (v1, v2) -> getRange().comparator().compare(check(v1), check(v2)) > 0;
+        final CompiledDomain<T> compiled = CompiledDomain.of(this);
+        return (v1, v2) -> compiled.compare(compiled.check(v1), compiled.check(v2)) > 0;
     }
 
     default BiPredicate<T, T> getGreaterThanOrEqualOperator() {
@@ -79,7 +86,8 @@ public interface Domain<T> extends Comparable<Domain<T>> {
     }
 
     default BiPredicate<T, T> getLessThanOperator() {
-        return (v1, v2) -> getRange().comparator().compare(check(v1), check(v2)) < 0;
+        final CompiledDomain<T> compiled = CompiledDomain.of(this);
+        return (v1, v2) -> compiled.compare(compiled.check(v1), compiled.check(v2)) < 0;
     }
 
     default BiPredicate<T, T> getLessThanOrEqualOperator() {
@@ -93,7 +101,7 @@ public interface Domain<T> extends Comparable<Domain<T>> {
      * @return true if in the domain, false otherwise.
      */
     default boolean isIn(T o) {
-        return getRange().contains(o);
+        return CompiledDomain.of(this).isIn(o);
     }
 
     /**
@@ -103,11 +111,7 @@ public interface Domain<T> extends Comparable<Domain<T>> {
      * @throws ValueNotInDomainException IF the object is not in the domain.
      */
     default T check(T o) throws ValueNotInDomainException {
-        if (isIn(o)) {
-            return o;
-        } else {
-            throw new ValueNotInDomainException(format("Not in domain: %s", o));
-        }
+        return CompiledDomain.of(this).check(o);
     }
     
     @Override
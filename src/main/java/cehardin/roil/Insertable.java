@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ *
+ * @author Chad
+ */
+public interface Insertable<T> {
+    
+    static <T extends Insertable<T>> BiFunction<T, Tuple, T> getInsertBiFunction() {
+        return (t, tuple) -> t.getInsertFunction().apply(tuple);
+    }
+    
+    static <T extends Insertable<T>> UnaryOperator<T> getInsertUnaryOperator(final Tuple tuple) {
+        return (t) -> t.getInsertFunction().apply(tuple);
+    }
+    
+    Function<Tuple, T> getInsertFunction();
+    
+    default Supplier<T> getInsertSupplier(final Tuple tuple) {
+        return () -> getInsertFunction().apply(tuple);
+    }
+    
+    default T insert(final Tuple tuple) {
+        return getInsertFunction().apply(tuple);
+    }
+}
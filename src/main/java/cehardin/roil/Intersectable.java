@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Something that can be intersected with another of its kind. The
+ * intersection has the elements that are in both.
+ * <p>
+ * @author Chad
+ */
+public interface Intersectable<T> {
+    
+    static <T extends Intersectable<T>> BiFunction<T, T, T> getIntersectBiFunction() {
+        return (t1, t2) -> t1.getIntersectFunction().apply(t2);
+    }
+    
+    static <T extends Intersectable<T>> UnaryOperator<T> getIntersectUnaryOperator(T other) {
+        return (t) -> t.getIntersectFunction().apply(other);
+    }
+    
+    Function<T, T> getIntersectFunction();
+    
+    default Supplier<T> getIntersectSupplier(T other) {
+        return () -> getIntersectFunction().apply(other);
+    }
+    
+    default T intersect(T other) {
+        return getIntersectFunction().apply(other);
+    }
+}
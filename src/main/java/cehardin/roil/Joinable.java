@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Selectable.SelectByAttribute;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Something that can be joined with another of its kind. The join is a
+ * natural join: it pairs the elements of both that agree on every attribute
+ * with the same name. A join by attribute also compares an attribute of one
+ * with a differently named attribute of the other, with any operator, so
+ * band joins such as {@code left.start < right.stop} need no rename.
+ * <p>
+ * @author Chad
+ */
+public interface Joinable<T> {
+    public static final class JoinByAttribute<T> {
+        private final T other;
+        private final SelectByAttribute condition;
+        
+        /**
+         * Create a join by attribute.
+         * <p>
+         * @param other     The right side of the join.
+         * @param condition The comparison, whose target attribute is of the
+         *                  left side and whose other attribute is of the right.
+         */
+        public JoinByAttribute(T other, SelectByAttribute condition) {
+            this.other = requireNonNull(other, "Other was null");
+            this.condition = requireNonNull(condition, "Condition was null");
+        }
+        
+        public T getOther() {
+            return other;
+        }
+        
+        public SelectByAttribute getCondition() {
+            return condition;
+        }
+    }
+    
+    static <T extends Joinable<T>> BiFunction<T, T, T> getJoinBiFunction() {
+        return (t1, t2) -> t1.getJoinFunction().apply(t2);
+    }
+    
+    static <T extends Joinable<T>> UnaryOperator<T> getJoinUnaryOperator(T other) {
+        return (t) -> t.getJoinFunction().apply(other);
+    }
+    
+    Function<T, T> getJoinFunction();
+    
+    default Supplier<T> getJoinSupplier(T other) {
+        return () -> getJoinFunction().apply(other);
+    }
+    
+    default T join(T other) {
+        return getJoinFunction().apply(other);
+    }
+    
+    Function<JoinByAttribute<T>, T> getJoinByAttributeFunction();
+    
+    default T join(T other, SelectByAttribute condition) {
+        return getJoinByAttributeFunction().apply(new JoinByAttribute<>(other, condition));
+    }
+}
@@ -17,6 +17,9 @@
 package cehardin.roil;
 
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A relation is like a "table". It contains "rows" ({@link Tuple}) and conforms
@@ -24,7 +27,7 @@ import java.util.Set;
  * <p>
  * @author Chad
  */
-public interface Relation extends Comparable<Relation>, Projectable<Relation>, Selectable<Relation>, Renamable<Relation>, Deletable<Relation>, Modifiable<Relation> {
+public interface Relation extends Comparable<Relation>, Projectable<Relation>, Selectable<Relation>, Renamable<Relation>, Insertable<Relation>, Deletable<Relation>, Modifiable<Relation>, Joinable<Relation>, Aggregatable<Relation>, Unionable<Relation>, Intersectable<Relation>, Subtractable<Relation> {
 
     /**
      * Get this relation's schema.
@@ -34,4 +37,25 @@ public interface Relation extends Comparable<Relation>, Projectable<Relation>, S
     RelationSchema getSchema();
     
     Set<Tuple> getTuples();
+
+    /**
+     * Get a spliterator over the tuples, read from the storage as they are
+     * reached rather than copied first. It is {@link Spliterator#SIZED},
+     * {@link Spliterator#DISTINCT} and {@link Spliterator#IMMUTABLE}, and
+     * {@link Spliterator#SORTED} by the primary key if the relation keeps its
+     * tuples in that order.
+     * <p>
+     * @return The spliterator, never null.
+     */
+    Spliterator<Tuple> spliterator();
+
+    /**
+     * Get a stream of the tuples, which may be made parallel.
+     * <p>
+     * @return The stream, never null.
+     * @see #spliterator()
+     */
+    default Stream<Tuple> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
 }
@@ -22,9 +22,21 @@ import static java.util.Objects.compare;
 import static java.util.Objects.deepEquals;
 import static java.lang.String.format;
 import static java.util.Comparator.naturalOrder;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
 import static cehardin.roil.util.Optionals.optionalComparator;
 
+import cehardin.roil.domain.IntegerDomain;
+import cehardin.roil.exception.AggregateFailedException;
+import cehardin.roil.exception.IntersectFailedException;
+import cehardin.roil.exception.JoinFailedException;
+import cehardin.roil.exception.SubtractFailedException;
+import cehardin.roil.exception.UnionFailedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
@@ -64,6 +76,212 @@ public final class RelationSchema implements Comparable<RelationSchema>, Project
                             secondaryKeys.rename(f));
     }
 
+
+    /**
+     * Get the schema of the natural join of relations of this schema and
+     * another. It has the attributes of both. If the attributes they share
+     * include the primary key of one schema, each tuple of the other joins at
+     * most one tuple, so the keys of the other remain keys of the join.
+     * Otherwise the join has no keys.
+     * <p>
+     * @param other The schema of the right relation.
+     * @return The joined schema, never null.
+     * @throws JoinFailedException If a shared attribute has a different
+     *                             domain in each schema.
+     */
+    public RelationSchema join(RelationSchema other) throws JoinFailedException {
+        final Map<AttributeName, Domain<?>> map = new HashMap<>(attributes.getMap());
+
+        for (final Entry<AttributeName, Domain<?>> entry : requireNonNull(other, "Other was null").attributes.getMap().entrySet()) {
+            final Domain<?> domain = map.put(entry.getKey(), entry.getValue());
+
+            if (domain != null && !domain.getName().equals(entry.getValue().getName())) {
+                throw new JoinFailedException(format("Attribute %s has domain %s on the left but %s on the right", entry.getKey().getValue(), domain.getName(), entry.getValue().getName()));
+            }
+        }
+
+        if (primaryKey.isPresent() && other.attributes.getOrdinal(primaryKey.get().getAttributeName()) >= 0) {
+            return new RelationSchema(new Attributes(map), other.primaryKey, other.secondaryKeys);
+        } else if (other.primaryKey.isPresent() && attributes.getOrdinal(other.primaryKey.get().getAttributeName()) >= 0) {
+            return new RelationSchema(new Attributes(map), primaryKey, secondaryKeys);
+        } else {
+            return new RelationSchema(new Attributes(map), Optional.empty(), new SecondaryKeys(emptySet()));
+        }
+    }
+
+    /**
+     * Get the schema of a join by attribute of relations of this schema and
+     * another. The comparison only removes tuples from the natural join, so
+     * the schema is the same as that of the natural join.
+     * <p>
+     * @param other     The schema of the right relation.
+     * @param condition The comparison, whose target attribute must be only in
+     *                  this schema and whose other attribute must be only in
+     *                  the other schema.
+     * @return The joined schema, never null.
+     * @throws JoinFailedException If the condition's attributes are not so, or
+     *                             have different domains, or a shared
+     *                             attribute has a different domain in each
+     *                             schema.
+     * @see Joinable#join(Object, Selectable.SelectByAttribute)
+     */
+    public RelationSchema join(RelationSchema other, Selectable.SelectByAttribute condition) throws JoinFailedException {
+        final AttributeName target = requireNonNull(condition, "Condition was null").getTargetAttributeName();
+        final AttributeName attributeName = condition.getAttributeName();
+        final Domain<?> targetDomain = attributes.getMap().get(target);
+        final Domain<?> domain = requireNonNull(other, "Other was null").attributes.getMap().get(attributeName);
+
+        if (targetDomain == null || other.attributes.getOrdinal(target) >= 0) {
+            throw new JoinFailedException(format("Attribute %s is not only on the left", target.getValue()));
+        } else if (domain == null || attributes.getOrdinal(attributeName) >= 0) {
+            throw new JoinFailedException(format("Attribute %s is not only on the right", attributeName.getValue()));
+        } else if (!targetDomain.getName().equals(domain.getName())) {
+            throw new JoinFailedException(format("Attribute %s has domain %s but %s has domain %s", target.getValue(), targetDomain.getName(), attributeName.getValue(), domain.getName()));
+        }
+
+        return join(other);
+    }
+
+    /**
+     * Get the schema of a union of a relation of this schema with one of
+     * another. Both must have the same attributes. The union keeps the keys
+     * of this schema, except the primary key if the other schema has a
+     * different one.
+     * <p>
+     * @param other The schema of the other relation.
+     * @return The united schema, never null.
+     * @throws UnionFailedException If the attributes are not the same.
+     */
+    public RelationSchema union(RelationSchema other) throws UnionFailedException {
+        if (!attributes.equals(requireNonNull(other, "Other was null").attributes)) {
+            throw new UnionFailedException(mismatch(other));
+        }
+
+        return deepEquals(primaryKey, other.primaryKey) ? this : new RelationSchema(attributes, Optional.empty(), secondaryKeys);
+    }
+
+    /**
+     * Get the schema of an intersection of a relation of this schema with one
+     * of another, which is this schema. Both must have the same attributes.
+     * <p>
+     * @param other The schema of the other relation.
+     * @return This schema.
+     * @throws IntersectFailedException If the attributes are not the same.
+     */
+    public RelationSchema intersect(RelationSchema other) throws IntersectFailedException {
+        if (!attributes.equals(requireNonNull(other, "Other was null").attributes)) {
+            throw new IntersectFailedException(mismatch(other));
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the schema of a difference of a relation of this schema and one of
+     * another, which is this schema. Both must have the same attributes.
+     * <p>
+     * @param other The schema of the other relation.
+     * @return This schema.
+     * @throws SubtractFailedException If the attributes are not the same.
+     */
+    public RelationSchema subtract(RelationSchema other) throws SubtractFailedException {
+        if (!attributes.equals(requireNonNull(other, "Other was null").attributes)) {
+            throw new SubtractFailedException(mismatch(other));
+        }
+
+        return this;
+    }
+
+    /**
+     * Describe why the attributes of another schema are not the same as the
+     * attributes of this one.
+     */
+    private String mismatch(RelationSchema other) {
+        final Map<AttributeName, Domain<?>> map = new HashMap<>(other.attributes.getMap());
+
+        for (final Entry<AttributeName, Domain<?>> entry : attributes.getMap().entrySet()) {
+            final Domain<?> domain = map.remove(entry.getKey());
+
+            if (domain == null) {
+                return format("Attribute %s is only on the left", entry.getKey().getValue());
+            } else if (!domain.equals(entry.getValue())) {
+                return format("Attribute %s has domain %s on the left but %s on the right", entry.getKey().getValue(), entry.getValue().getName(), domain.getName());
+            }
+        }
+
+        return format("Attribute %s is only on the right", map.keySet().iterator().next().getValue());
+    }
+
+    /**
+     * Get the schema of an aggregate of relations of this schema. It has the
+     * grouping attributes, with their domains, and one attribute per
+     * aggregation: counts are integers, sums are of the integer attribute
+     * they read, and minimums and maximums are of the domain of the
+     * attribute they read. The grouping attributes are the key, primary if
+     * there is one of them and secondary if there are more. An aggregate of
+     * everything as one group has no keys.
+     * <p>
+     * @param aggregate The aggregate.
+     * @return The aggregated schema, never null.
+     * @throws AggregateFailedException If an attribute read is not in this
+     *                                  schema, an attribute written is
+     *                                  written twice or is also a grouping
+     *                                  attribute, or a sum reads an attribute
+     *                                  that is not an integer.
+     */
+    public RelationSchema aggregate(Aggregatable.Aggregate aggregate) throws AggregateFailedException {
+        final Map<AttributeName, Domain<?>> map = new HashMap<>();
+        final Set<AttributeName> groupAttributeNames = requireNonNull(aggregate, "Aggregate was null").getGroupAttributeNames();
+
+        for (final AttributeName attributeName : groupAttributeNames) {
+            map.put(attributeName, domain(attributeName));
+        }
+
+        for (final Aggregatable.Aggregation aggregation : aggregate.getAggregations()) {
+            final Domain<?> domain = aggregation.getAttributeName().isPresent() ? domain(aggregation.getAttributeName().get()) : null;
+            final Domain<?> resultDomain;
+
+            switch (aggregation.getAggregator()) {
+                case Count:
+                case CountDistinct:
+                    resultDomain = new IntegerDomain();
+                    break;
+                case Sum:
+                    if (!(domain instanceof IntegerDomain)) {
+                        throw new AggregateFailedException(format("Cannot sum attribute %s of domain %s", aggregation.getAttributeName().get().getValue(), domain.getName()));
+                    }
+                    resultDomain = domain;
+                    break;
+                default:
+                    resultDomain = domain;
+                    break;
+            }
+
+            if (resultDomain == null) {
+                throw new AggregateFailedException(format("%s reads no attribute", aggregation.getAggregator()));
+            } else if (map.put(aggregation.getResultAttributeName(), resultDomain) != null) {
+                throw new AggregateFailedException(format("Attribute %s is written twice", aggregation.getResultAttributeName().getValue()));
+            }
+        }
+
+        if (groupAttributeNames.size() == 1) {
+            return new RelationSchema(new Attributes(map), Optional.of(new PrimaryKey(groupAttributeNames.iterator().next())), new SecondaryKeys(emptySet()));
+        } else if (groupAttributeNames.size() > 1) {
+            return new RelationSchema(new Attributes(map), Optional.empty(), new SecondaryKeys(singleton(new SecondaryKey(groupAttributeNames))));
+        } else {
+            return new RelationSchema(new Attributes(map), Optional.empty(), new SecondaryKeys(emptySet()));
+        }
+    }
+
+    private Domain<?> domain(AttributeName attributeName) throws AggregateFailedException {
+        final Domain<?> domain = attributes.getMap().get(attributeName);
+
+        if (domain == null) {
+            throw new AggregateFailedException(format("No such attribute name: %s", attributeName.getValue()));
+        }
+
+        return domain;
+    }
     
     /**
      * Get the attributes of this schema
@@ -75,6 +293,18 @@ public final class RelationSchema implements Comparable<RelationSchema>, Project
         return attributes;
     }
 
+    /**
+     * Get the ordinal of an attribute, which is its position in the flat
+     * arrays tuples of this schema hold their values in.
+     * <p>
+     * @param attributeName The name of the attribute.
+     * @return The ordinal, or -1 if there is no such attribute.
+     * @see Attributes#getOrdinal(AttributeName)
+     */
+    public int getOrdinal(AttributeName attributeName) {
+        return attributes.getOrdinal(attributeName);
+    }
+
     public Optional<PrimaryKey> getPrimaryKey() {
         return primaryKey;
     }
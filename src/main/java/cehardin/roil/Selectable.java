@@ -17,6 +17,7 @@
 package cehardin.roil;
 
 import cehardin.roil.Domain.BooleanOperator;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -97,6 +98,14 @@ public interface Selectable<T> {
     
     Function<SelectByConstant, T> getSelectByConstantFunction();
     
+    /**
+     * Get a function that selects with the conjunction of several selects, so
+     * that an implementation can answer them together from an index.
+     * <p>
+     * @return The function, never null.
+     */
+    Function<List<SelectByConstant>, T> getSelectByConstantsFunction();
+    
     default Supplier<T> getSelectByAttributeSupplier(SelectByAttribute s) {
         return () -> getSelectByAttributeFunction().apply(s);
     }
@@ -112,4 +121,8 @@ public interface Selectable<T> {
     default T select(SelectByConstant s) {
         return getSelectByConstantFunction().apply(s);
     }
+
+    default T select(List<SelectByConstant> conjunction) {
+        return getSelectByConstantsFunction().apply(conjunction);
+    }
 }
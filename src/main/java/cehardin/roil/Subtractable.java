@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Something that another of its kind can be subtracted from. The difference
+ * has the elements that are not in the other.
+ * <p>
+ * @author Chad
+ */
+public interface Subtractable<T> {
+    
+    static <T extends Subtractable<T>> BiFunction<T, T, T> getSubtractBiFunction() {
+        return (t1, t2) -> t1.getSubtractFunction().apply(t2);
+    }
+    
+    static <T extends Subtractable<T>> UnaryOperator<T> getSubtractUnaryOperator(T other) {
+        return (t) -> t.getSubtractFunction().apply(other);
+    }
+    
+    Function<T, T> getSubtractFunction();
+    
+    default Supplier<T> getSubtractSupplier(T other) {
+        return () -> getSubtractFunction().apply(other);
+    }
+    
+    default T subtract(T other) {
+        return getSubtractFunction().apply(other);
+    }
+}
@@ -16,6 +16,7 @@
  */
 package cehardin.roil;
 
+import cehardin.roil.util.Interner;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -32,6 +33,8 @@ import static java.util.Objects.requireNonNull;
  * @author Chad
  */
 public final class Tuple implements Comparable<Tuple>, Projectable<Tuple>, Renamable<Tuple> {
+    private static final Interner<Tuple> Tuples = new Interner<>();
+    
     private final Values values;
     
     public Tuple(Values values) {
@@ -46,6 +49,16 @@ public final class Tuple implements Comparable<Tuple>, Projectable<Tuple>, Renam
         return values;
     }
 
+    /**
+     * Get the one shared instance of tuples equal to this one. Interning the
+     * tuples of a relation lets equal tuples in other snapshots and derived
+     * relations share one instance, which then compares equal by identity.
+     * @return The shared instance, never null.
+     */
+    public Tuple intern() {
+        return Tuples.intern(this);
+    }
+
     @Override
     public Function<Predicate<AttributeName>, Tuple> getProjectFunction() {
         return (p) -> new Tuple(values.project(p));
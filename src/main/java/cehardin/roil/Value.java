@@ -20,25 +20,16 @@ import cehardin.roil.Domain.BooleanOperator;
 
 import static java.util.Objects.hash;
 import static java.util.Objects.requireNonNull;
-import static java.util.Collections.unmodifiableSet;
-import static java.util.Collections.unmodifiableMap;
-import static cehardin.roil.util.Predicates.curryBiPredicate;
 
 import cehardin.roil.exception.ValueNotInDomainException;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
-
-
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.function.BiPredicate;
-import java.util.function.Predicate;
 
 import static java.lang.String.format;
 
@@ -47,14 +38,40 @@ import static java.lang.String.format;
  * @author Chad
  */
 public final class Value<T> implements Comparable<Value<T>> {
-    private static final Set<Class<?>> DoesNotNeedClone;
+    private static final Set<Class<?>> DoesNotNeedClone = ConcurrentHashMap.newKeySet();
     private static final ConcurrentMap<Class<?>, Method> CloneMethods = new ConcurrentHashMap<>();
     
     static {
-        final Set<Class<?>> doesNotNeedClone = new HashSet<>();
-        doesNotNeedClone.add(Integer.class);
-        doesNotNeedClone.add(String.class);
-        DoesNotNeedClone = unmodifiableSet(doesNotNeedClone);
+        DoesNotNeedClone.add(Boolean.class);
+        DoesNotNeedClone.add(Byte.class);
+        DoesNotNeedClone.add(Character.class);
+        DoesNotNeedClone.add(Short.class);
+        DoesNotNeedClone.add(Integer.class);
+        DoesNotNeedClone.add(Long.class);
+        DoesNotNeedClone.add(Float.class);
+        DoesNotNeedClone.add(Double.class);
+        DoesNotNeedClone.add(String.class);
+        DoesNotNeedClone.add(BigInteger.class);
+        DoesNotNeedClone.add(BigDecimal.class);
+    }
+    
+    /**
+     * Register a type whose instances can never change, so values holding
+     * them never clone them.  Only the exact type is registered, not its
+     * subclasses.
+     * @param type The immutable type.
+     */
+    public static void registerImmutableType(Class<?> type) {
+        DoesNotNeedClone.add(requireNonNull(type, "Type was null"));
+    }
+    
+    /**
+     * Determine if a type is registered as immutable.
+     * @param type The type.
+     * @return true if instances of exactly this type are never cloned.
+     */
+    public static boolean isImmutableType(Class<?> type) {
+        return DoesNotNeedClone.contains(requireNonNull(type, "Type was null"));
     }
 
     private static <T> Method findCloneMethod(T o) {
@@ -81,40 +98,39 @@ public final class Value<T> implements Comparable<Value<T>> {
     }
 
     private static <T> T clone(T o) {
-        final Class<?> type = requireNonNull(o, "Object was null").getClass();
-        if (DoesNotNeedClone.contains(type)) {
-            return o;
-        } else {
-            return (T)invokeCloneMethod(o);
-        }
+        @SuppressWarnings("unchecked") // clone returns an object of the same class
+        final T clone = (T)invokeCloneMethod(o);
+        return clone;
     }
-    
-    
 
     private final Domain<T> domain;
     private final T data;
-    private final Map<BooleanOperator, Predicate<Value<T>>> booleanOperators;
-    
+    private final boolean immutable;
+    private int hash;
 
     public Value(Domain<T> domain, T data) throws ValueNotInDomainException {
-        final Map<BooleanOperator, Predicate<Value<T>>> booleanOperators = new HashMap<>();
-        this.data = clone(requireNonNull(data, "The data was null"));
         this.domain = requireNonNull(domain, "The domain was null");
+        this.immutable = domain.isImmutable() || isImmutableType(requireNonNull(data, "The data was null").getClass());
+        this.data = immutable ? data : clone(data);
         this.domain.check(this.data);
-        
-        for(final Entry<BooleanOperator, BiPredicate<T,T>> entry : this.domain.getBooleanOperators().entrySet()) {
-            booleanOperators.put(entry.getKey(), (v) -> entry.getValue().test(this.data, v.data));
-        }
-        
-        this.booleanOperators = unmodifiableMap(booleanOperators);
     }
 
     /**
-     * Get the data as a Java object.
+     * Get the data as a Java object.  Mutable data is cloned so the caller
+     * cannot change this value.
      * @return the data, never null.
      */
     public T getData() {
-        return clone(data);
+        return immutable ? data : clone(data);
+    }
+    
+    /**
+     * Get the data without cloning it, for trusted operators such as select
+     * and join loops that only read it.  The data must not be modified.
+     * @return the data, never null.
+     */
+    public T getDataReference() {
+        return data;
     }
 
     /**
@@ -125,8 +141,15 @@ public final class Value<T> implements Comparable<Value<T>> {
         return domain;
     }
     
-    Map<BooleanOperator, Predicate<Value<T>>> getBooleanOperators() {
-        return booleanOperators;
+    /**
+     * Apply one of the domain's boolean operators with this value as the left
+     * operand.
+     * @param operator The operator.
+     * @param other The right operand.
+     * @return The result of the operator.
+     */
+    boolean test(BooleanOperator operator, Value<T> other) {
+        return domain.getBooleanOperators().get(operator).test(data, other.data);
     }
 
     @Override
@@ -137,7 +160,17 @@ public final class Value<T> implements Comparable<Value<T>> {
 
     @Override
     public int hashCode() {
-        return hash(domain, data);
+        int result = hash;
+        
+        if (result == 0) {
+            result = hash(domain, data);
+            
+            if (immutable) {
+                hash = result;
+            }
+        }
+        
+        return result;
     }
 
     @Override
@@ -16,88 +16,186 @@
  */
 package cehardin.roil;
 
-import cehardin.roil.Domain.BooleanOperator;
-import cehardin.roil.exception.DomainMismatchException;
-import cehardin.roil.exception.NoSuchAttributeNameException;
-import java.util.Collections;
 import java.util.HashMap;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.Objects.compare;
 import static java.util.Collections.unmodifiableMap;
-import static java.util.Collections.emptyMap;
 import static cehardin.roil.util.Maps.mapComparator;
 
 import java.util.Map;
 import java.util.Map.Entry;
-
-import static java.util.Objects.*;
-
-import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
 import static java.lang.String.format;
-import static cehardin.roil.util.Maps.filterKeys;
-import static cehardin.roil.util.Maps.transformKeys;
 
 /**
- *
+ * The values of a tuple. The data is held in a flat array indexed by the
+ * ordinals of an {@link Attributes}, which is shared by every tuple with the
+ * same attributes; the map of {@link Value}s is only created when asked for.
  * @author Chad
  */
 public final class Values implements Comparable<Values>, Projectable<Values>, Renamable<Values> {
+    
+    private static volatile Attributes LastLayout = new Attributes(new HashMap<>());
+    
+    private static Attributes layoutOf(Map<AttributeName, Value<Object>> map) {
+        final Attributes last = LastLayout;
+        boolean matches = last.size() == map.size();
+        
+        for (int i = 0; matches && i < last.size(); i++) {
+            final Value<Object> value = map.get(last.getAttributeName(i));
+            matches = value != null && value.getDomain().equals(last.getDomain(i));
+        }
+        
+        if (matches) {
+            return last;
+        } else {
+            final Map<AttributeName, Domain<?>> domains = new HashMap<>();
+            final Attributes layout;
+
+            for (final Entry<AttributeName, Value<Object>> nameValue : map.entrySet()) {
+                domains.put(nameValue.getKey(), nameValue.getValue().getDomain());
+            }
+            
+            layout = Attributes.intern(new Attributes(domains));
+            LastLayout = layout;
+            
+            return layout;
+        }
+    }
 
-    private final Map<AttributeName, Value<Object>> map;
-    private final Map<AttributeName, Domain<Object>> domains;
+    private final Attributes attributes;
+    private final Object[] data;
+    private volatile Map<AttributeName, Value<Object>> map;
+    private int hash;
 
     public Values(Map<AttributeName, Value<Object>> map) {
-        final Map<AttributeName, Domain<Object>> domains = new HashMap<>();
-        this.map = unmodifiableMap(new HashMap<AttributeName, Value<Object>>(requireNonNull(map, "Map was null")));
-
-        if (this.map.containsKey(null)) {
+        if (requireNonNull(map, "Map was null").containsKey(null)) {
             throw new IllegalArgumentException("Values map contains a null key");
         }
-        if (this.map.containsValue(null)) {
+        if (map.containsValue(null)) {
             throw new IllegalArgumentException("Values map contains null value(s)");
         }
 
-        for (final Entry<AttributeName, Value<Object>> nameValue : map.entrySet()) {
-            final AttributeName name = nameValue.getKey();
-            final Domain<Object> domain = nameValue.getValue().getDomain();
+        this.attributes = layoutOf(map);
+        this.data = new Object[attributes.size()];
 
-            domains.put(name, domain);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = map.get(attributes.getAttributeName(i)).getDataReference();
+        }
+    }
+    
+    /**
+     * Create values from data laid out by the ordinals of the attributes.
+     * The data is not copied or cloned and must not be modified afterwards.
+     * @param attributes The attributes, usually those of a relation's schema.
+     * @param data The data of each attribute, indexed by ordinal.
+     */
+    public Values(Attributes attributes, Object[] data) {
+        this.attributes = requireNonNull(attributes, "Attributes was null");
+        this.data = requireNonNull(data, "Data was null");
+        
+        if (data.length != attributes.size()) {
+            throw new IllegalArgumentException(format("Data has %d elements but there are %d attributes", data.length, attributes.size()));
+        }
+        
+        for (int i = 0; i < data.length; i++) {
+            getDomain(i).check(requireNonNull(data[i], "Data contains a null element"));
         }
-
-        this.domains = unmodifiableMap(domains);
     }
 
     public Map<AttributeName, Value<Object>> getMap() {
-        return map;
+        Map<AttributeName, Value<Object>> result = map;
+        
+        if (result == null) {
+            final Map<AttributeName, Value<Object>> values = new HashMap<>();
+            
+            for (int i = 0; i < data.length; i++) {
+                values.put(attributes.getAttributeName(i), new Value<>(getDomain(i), data[i]));
+            }
+            
+            result = unmodifiableMap(values);
+            map = result;
+        }
+        
+        return result;
     }
 
     public Map<AttributeName, Domain<Object>> getDomainMap() {
+        @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+        final Map<AttributeName, Domain<Object>> domains = (Map<AttributeName, Domain<Object>>)(Map<AttributeName, ?>)attributes.getMap();
         return domains;
     }
+    
+    @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+    private Domain<Object> getDomain(int ordinal) {
+        return (Domain<Object>)attributes.getDomain(ordinal);
+    }
+    
+    /**
+     * Get the attributes that lay out this tuple's data.
+     * @return The attributes, never null.
+     */
+    public Attributes getAttributes() {
+        return attributes;
+    }
+    
+    /**
+     * Get the data of an attribute without cloning it. The data must not be
+     * modified.
+     * @param ordinal The ordinal of the attribute in {@link #getAttributes()}.
+     * @return The data, never null.
+     */
+    public Object getDataReference(int ordinal) {
+        return data[ordinal];
+    }
 
     @Override
     public Function<Predicate<AttributeName>, Values> getProjectFunction() {
-        return (p) -> new Values(filterKeys(map, p));
+        return (p) -> move(attributes.getProjectMapping(p));
     }
 
     @Override
     public Function<UnaryOperator<AttributeName>, Values> getRenameFunction() {
-        return (f) -> new Values(transformKeys(map, f));
+        return (f) -> move(attributes.getRenameMapping(f));
+    }
+    
+    private Values move(Attributes.Mapping mapping) {
+        final Object[] newData = new Object[mapping.getTarget().size()];
+        
+        for (int i = 0; i < newData.length; i++) {
+            newData[i] = data[mapping.getSource(i)];
+        }
+        
+        return new Values(mapping.getTarget(), newData);
     }
 
     @Override
     public int compareTo(Values o) {
-        return o == null ? 1 : compare(map, o.map, mapComparator());
+        return o == null ? 1 : compare(getMap(), o.getMap(), mapComparator());
     }
 
+    /**
+     * The same as the hash code of {@link #getMap()}, computed without
+     * creating it the first time it is asked for and then cached.
+     */
     @Override
     public int hashCode() {
-        return map.hashCode();
+        int result = hash;
+        
+        if (result == 0) {
+            for (int i = 0; i < data.length; i++) {
+                final int valueHash = 31 * (31 + attributes.getDomain(i).hashCode()) + data[i].hashCode();
+                result += attributes.getAttributeName(i).hashCode() ^ valueHash;
+            }
+            
+            hash = result;
+        }
+        
+        return result;
     }
 
     @Override
@@ -110,7 +208,20 @@ public final class Values implements Comparable<Values>, Projectable<Values>, Re
             result = true;
         } else if (getClass().isInstance(o)) {
             final Values other = getClass().cast(o);
-            result = map.equals(other.map);
+            
+            if (hash != 0 && other.hash != 0 && hash != other.hash) {
+                result = false;
+            } else if (attributes == other.attributes || attributes.equals(other.attributes)) {
+                boolean equal = true;
+                
+                for (int i = 0; equal && i < data.length; i++) {
+                    equal = data[i].equals(other.data[i]);
+                }
+                
+                result = equal;
+            } else {
+                result = false;
+            }
         } else {
             result = false;
         }
@@ -120,6 +231,6 @@ public final class Values implements Comparable<Values>, Projectable<Values>, Re
 
     @Override
     public String toString() {
-        return format("%s : map=%s", super.toString(), map);
+        return format("%s : map=%s", super.toString(), getMap());
     }
 }
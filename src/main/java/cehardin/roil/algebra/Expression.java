@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A node of a logical plan: a tree of relational operators over stored
+ * relations that is only evaluated when its tuples are needed. Plans are
+ * immutable.
+ * <p>
+ * @author Chad
+ * @see LazyRelation
+ * @see Optimizer
+ */
+public abstract class Expression {
+
+    /**
+     * Describe the attribute names of a schema, for toString.
+     */
+    static String names(RelationSchema schema) {
+        return schema.getAttributes().getMap().keySet().stream().map(AttributeName::getValue).sorted().collect(Collectors.toList()).toString();
+    }
+
+    /**
+     * Determine if a tuple has exactly the attributes of a schema, so it can
+     * be tested by ordinal.
+     */
+    static boolean conforms(Tuple tuple, RelationSchema schema) {
+        return tuple.getValues().getAttributes().equals(schema.getAttributes());
+    }
+
+    Expression() {
+    }
+
+    /**
+     * Get the schema of the relation this expression evaluates to, without
+     * evaluating it.
+     * <p>
+     * @return The schema, never null.
+     */
+    public abstract RelationSchema getSchema();
+
+    /**
+     * Evaluate this expression as it stands, without optimizing it.
+     * <p>
+     * @return The relation, never null.
+     */
+    public abstract Relation evaluate();
+
+    /**
+     * Determine if this expression is a view: its tuples can be streamed,
+     * counted and tested for membership from the relations it reads, without
+     * evaluating it. By default an expression is not.
+     * <p>
+     * @return true if this expression is a view, false otherwise.
+     */
+    public boolean isView() {
+        return false;
+    }
+
+    /**
+     * Stream the tuples of this expression as it stands, evaluating as little
+     * of it as possible. By default the expression is evaluated and the
+     * relation streamed.
+     * <p>
+     * @return The stream, never null.
+     */
+    public Stream<Tuple> stream() {
+        return evaluate().stream();
+    }
+
+    /**
+     * Count the tuples of this expression as it stands, evaluating as little
+     * of it as possible. By default the expression is evaluated and the
+     * relation counted.
+     * <p>
+     * @return The number of tuples.
+     */
+    public long count() {
+        return evaluate().getTuples().size();
+    }
+
+    /**
+     * Determine if this expression as it stands has a tuple, evaluating as
+     * little of it as possible. By default the expression is evaluated and
+     * the relation searched.
+     * <p>
+     * @param tuple The tuple.
+     * @return true if the expression has the tuple, false otherwise.
+     */
+    public boolean contains(Tuple tuple) {
+        return evaluate().getTuples().contains(requireNonNull(tuple, "Tuple was null"));
+    }
+}
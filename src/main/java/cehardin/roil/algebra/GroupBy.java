@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.exception.AggregateFailedException;
+
+/**
+ * Groups the tuples of its child by some of its attributes and aggregates
+ * each group.
+ * <p>
+ * @author Chad
+ */
+public final class GroupBy extends Expression {
+
+    private final Expression child;
+    private final Aggregate aggregate;
+    private final RelationSchema schema;
+
+    /**
+     * Create a group by.
+     * <p>
+     * @param child     The child.
+     * @param aggregate The grouping attributes and the aggregations.
+     * @throws AggregateFailedException If the aggregate does not fit the
+     *                                  schema of the child.
+     */
+    public GroupBy(Expression child, Aggregate aggregate) throws AggregateFailedException {
+        this.child = requireNonNull(child, "Child was null");
+        this.aggregate = requireNonNull(aggregate, "Aggregate was null");
+        this.schema = child.getSchema().aggregate(aggregate);
+    }
+
+    public Expression getChild() {
+        return child;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Relation evaluate() {
+        return child.evaluate().aggregate(aggregate);
+    }
+
+    @Override
+    public String toString() {
+        return format("group%s(%s)", names(schema), child);
+    }
+}
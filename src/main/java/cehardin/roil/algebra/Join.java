@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.exception.JoinFailedException;
+import java.util.Optional;
+
+/**
+ * The natural join of two children, or their join by attribute if it has a
+ * condition.
+ * <p>
+ * @author Chad
+ * @see cehardin.roil.Joinable
+ */
+public final class Join extends Expression {
+
+    private final Expression left;
+    private final Expression right;
+    private final Optional<SelectByAttribute> condition;
+    private final RelationSchema schema;
+
+    public Join(Expression left, Expression right) throws JoinFailedException {
+        this.left = requireNonNull(left, "Left was null");
+        this.right = requireNonNull(right, "Right was null");
+        this.condition = Optional.empty();
+        this.schema = left.getSchema().join(right.getSchema());
+    }
+
+    public Join(Expression left, Expression right, SelectByAttribute condition) throws JoinFailedException {
+        this.left = requireNonNull(left, "Left was null");
+        this.right = requireNonNull(right, "Right was null");
+        this.condition = Optional.of(requireNonNull(condition, "Condition was null"));
+        this.schema = left.getSchema().join(right.getSchema(), condition);
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    public Optional<SelectByAttribute> getCondition() {
+        return condition;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Relation evaluate() {
+        return condition.isPresent()
+                ? left.evaluate().join(right.evaluate(), condition.get())
+                : left.evaluate().join(right.evaluate());
+    }
+
+    @Override
+    public String toString() {
+        return condition.isPresent()
+                ? format("join[%s](%s, %s)", Select.Operator.of(condition.get()), left, right)
+                : format("join(%s, %s)", left, right);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Joinable.JoinByAttribute;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.algebra.Select.Operator;
+import cehardin.roil.impl.AbstractRelation;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * A relation whose selects, projects, renames and joins only build a plan. The
+ * plan is optimized when the tuples are needed, so a chain such as rename,
+ * select then project creates no intermediate relations and the select reaches
+ * the indexes of the stored relation. Where the optimized plan is a view, the
+ * tuples are streamed, counted and searched from the stored relation through
+ * it, without creating a relation of them; otherwise the plan is evaluated.
+ * What is kept of an evaluation depends on the {@link Caching}. Inserts,
+ * deletes and modifies are applied to the evaluated relation and return it.
+ * <p>
+ * @author Chad
+ * @see Optimizer
+ * @see Expression#isView()
+ */
+public final class LazyRelation extends AbstractRelation {
+
+    /**
+     * What a lazy relation keeps of the evaluation of its plan. The relations
+     * derived from a lazy relation have the same caching.
+     */
+    public static enum Caching {
+
+        /**
+         * Nothing is kept. Every read of a view goes through the plan to the
+         * stored relation again, and a plan that is not a view is evaluated
+         * for each read. Suits relations that are read once.
+         */
+        None,
+        /**
+         * Every read of a view goes through the plan to the stored relation
+         * again, and a plan that is not a view, such as a join, is evaluated
+         * the first time the tuples are needed and kept for every later read.
+         * This is the default.
+         */
+        NonViews,
+        /**
+         * The plan is evaluated the first time the tuples are needed and the
+         * relation is kept for every later read.
+         */
+        Evaluated
+    }
+
+    /**
+     * Start a plan over a relation, reading views through the plan and keeping
+     * the evaluation of any other plan.
+     * <p>
+     * @param relation The relation.
+     * @return The lazy relation, never null.
+     */
+    public static LazyRelation of(Relation relation) {
+        return of(relation, Caching.NonViews);
+    }
+
+    /**
+     * Start a plan over a relation.
+     * <p>
+     * @param relation The relation.
+     * @param caching  What to keep of the evaluation of the plan.
+     * @return The lazy relation, never null.
+     */
+    public static LazyRelation of(Relation relation, Caching caching) {
+        return requireNonNull(relation, "Relation was null") instanceof LazyRelation ? ((LazyRelation)relation).withCaching(caching) : new LazyRelation(new Scan(relation), caching);
+    }
+
+    private final Expression expression;
+    private final Caching caching;
+    private volatile Expression optimized;
+    private volatile Relation evaluated;
+
+    private LazyRelation(Expression expression, Caching caching) {
+        super(expression.getSchema());
+        this.expression = expression;
+        this.caching = requireNonNull(caching, "Caching was null");
+    }
+
+    /**
+     * Get the plan as it was built, before optimization.
+     * <p>
+     * @return The plan, never null.
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public Caching getCaching() {
+        return caching;
+    }
+
+    /**
+     * Create a lazy relation of the same plan with a different caching.
+     * <p>
+     * @param caching What to keep of the evaluation of the plan.
+     * @return The lazy relation, never null.
+     */
+    public LazyRelation withCaching(Caching caching) {
+        return requireNonNull(caching, "Caching was null") == this.caching ? this : new LazyRelation(expression, caching);
+    }
+
+    /**
+     * Optimize and evaluate the plan. With {@link Caching#Evaluated}, or with
+     * {@link Caching#NonViews} and a plan that is not a view, this is only
+     * done the first time.
+     * <p>
+     * @return The evaluated relation, never null.
+     */
+    public Relation evaluate() {
+        Relation result = evaluated;
+
+        if (result == null) {
+            result = getOptimized().evaluate();
+
+            if (caching == Caching.Evaluated || (caching == Caching.NonViews && !getOptimized().isView())) {
+                evaluated = result;
+            }
+        }
+
+        return result;
+    }
+
+    private Expression getOptimized() {
+        Expression result = optimized;
+
+        if (result == null) {
+            result = Optimizer.optimize(expression);
+            optimized = result;
+        }
+
+        return result;
+    }
+
+    private boolean isView() {
+        return caching != Caching.Evaluated && evaluated == null && getOptimized().isView();
+    }
+
+    private LazyRelation derive(Expression derived) {
+        return new LazyRelation(derived, caching);
+    }
+
+    private Relation selectOperators(List<Operator> operators) {
+        return derive(new Select(expression, operators));
+    }
+
+    private Relation combine(SetOperation.Operator operator, Relation r) {
+        return derive(new SetOperation(operator, expression, r instanceof LazyRelation ? ((LazyRelation)r).expression : new Scan(r)));
+    }
+
+    /**
+     * Get the tuples of the evaluated relation, or if the plan is a view and
+     * its evaluation is not kept, a set that reads them through the plan each
+     * time.
+     */
+    @Override
+    public Set<Tuple> getTuples() {
+        return isView() ? new TupleSet() : evaluate().getTuples();
+    }
+
+    /**
+     * Get a spliterator over the tuples of the evaluated relation, or if the
+     * plan is a view and its evaluation is not kept, over the tuples streamed
+     * through it.
+     */
+    @Override
+    public Spliterator<Tuple> spliterator() {
+        return isView() ? getOptimized().stream().spliterator() : evaluate().spliterator();
+    }
+
+    @Override
+    public Stream<Tuple> stream() {
+        return isView() ? getOptimized().stream() : evaluate().stream();
+    }
+
+    @Override
+    public Function<SelectByConstant, Relation> getSelectByConstantFunction() {
+        return (s) -> selectOperators(Collections.singletonList(Operator.of(s)));
+    }
+
+    @Override
+    public Function<List<SelectByConstant>, Relation> getSelectByConstantsFunction() {
+        return (l) -> {
+            final List<Operator> operators = new ArrayList<>();
+
+            for (final SelectByConstant s : requireNonNull(l, "Conjunction was null")) {
+                operators.add(Operator.of(s));
+            }
+
+            return selectOperators(operators);
+        };
+    }
+
+    @Override
+    public Function<SelectByAttribute, Relation> getSelectByAttributeFunction() {
+        return (s) -> selectOperators(Collections.singletonList(Operator.of(s)));
+    }
+
+    @Override
+    public Function<Predicate<AttributeName>, Relation> getProjectFunction() {
+        return (p) -> derive(new Project(expression, p));
+    }
+
+    @Override
+    public Function<UnaryOperator<AttributeName>, Relation> getRenameFunction() {
+        return (f) -> derive(new Rename(expression, f));
+    }
+
+    @Override
+    public Function<Relation, Relation> getJoinFunction() {
+        return (r) -> derive(new Join(expression, r instanceof LazyRelation ? ((LazyRelation)r).expression : new Scan(r)));
+    }
+
+    @Override
+    public Function<JoinByAttribute<Relation>, Relation> getJoinByAttributeFunction() {
+        return (j) -> derive(new Join(expression, j.getOther() instanceof LazyRelation ? ((LazyRelation)j.getOther()).expression : new Scan(j.getOther()), j.getCondition()));
+    }
+
+    @Override
+    public Function<Aggregate, Relation> getAggregateFunction() {
+        return (a) -> derive(new GroupBy(expression, a));
+    }
+
+    @Override
+    public Function<Relation, Relation> getUnionFunction() {
+        return (r) -> combine(SetOperation.Operator.Union, r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getIntersectFunction() {
+        return (r) -> combine(SetOperation.Operator.Intersect, r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getSubtractFunction() {
+        return (r) -> combine(SetOperation.Operator.Subtract, r);
+    }
+
+    @Override
+    public Function<Tuple, Relation> getInsertFunction() {
+        return (t) -> evaluate().insert(t);
+    }
+
+    @Override
+    public Function<Tuple, Relation> getDeleteFunction() {
+        return (t) -> evaluate().delete(t);
+    }
+
+    @Override
+    public Function<Modify, Relation> getModifyFunction() {
+        return (m) -> evaluate().modify(m);
+    }
+
+    /**
+     * The tuples of a view, read through the plan each time they are asked
+     * for. Counting and searching them creates no relation either.
+     */
+    private final class TupleSet extends AbstractSet<Tuple> {
+
+        @Override
+        public Iterator<Tuple> iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public Spliterator<Tuple> spliterator() {
+            return getOptimized().stream().spliterator();
+        }
+
+        @Override
+        public Stream<Tuple> stream() {
+            return getOptimized().stream();
+        }
+
+        @Override
+        public int size() {
+            return (int)Math.min(getOptimized().count(), Integer.MAX_VALUE);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !getOptimized().stream().findAny().isPresent();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Tuple && getOptimized().contains((Tuple)o);
+        }
+    }
+}
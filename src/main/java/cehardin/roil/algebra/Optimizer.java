@@ -0,0 +1,270 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.algebra.Select.Operator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites a plan by rules into one that evaluates to the same relation with
+ * less work:
+ * <ul>
+ * <li>Adjacent selects are fused into one conjunction, so the stored relation
+ * sees every constant at once and can answer them from its indexes.</li>
+ * <li>Selects are pushed below projects and renames, down to the stored
+ * relation, with their attribute names mapped back through the renames.</li>
+ * <li>Projects are pushed below renames and fused, so attributes are dropped
+ * before anything is renamed.</li>
+ * <li>Selects are pushed into each side of a join that has all of the
+ * attributes they read, which for a shared attribute is both sides.</li>
+ * <li>A select comparing an attribute only of the left side of a natural join
+ * with one only of the right becomes the condition of the join, so the join
+ * merges on it instead of producing every pair first.</li>
+ * <li>Selects that read only grouping attributes are pushed below a group by,
+ * so the groups are built from fewer tuples.</li>
+ * <li>Selects are pushed into both sides of a union, intersection or
+ * difference, which gives the same tuples as selecting from its result.</li>
+ * <li>Adjacent renames are composed, and projects and renames that change
+ * nothing are removed.</li>
+ * </ul>
+ * Between joins, group bys and set operations, an optimized plan is at most
+ * a rename of a project of a select.
+ * <p>
+ * @author Chad
+ */
+public final class Optimizer {
+
+    /**
+     * Optimize a plan.
+     * <p>
+     * @param expression The plan.
+     * @return The optimized plan, never null.
+     */
+    public static Expression optimize(Expression expression) {
+        if (requireNonNull(expression, "Expression was null") instanceof Select) {
+            final Select select = (Select)expression;
+            return select(optimize(select.getChild()), select.getOperators());
+        } else if (expression instanceof Project) {
+            final Project project = (Project)expression;
+            return project(optimize(project.getChild()), project.getPredicate());
+        } else if (expression instanceof Rename) {
+            final Rename rename = (Rename)expression;
+            return rename(optimize(rename.getChild()), rename.getFunction());
+        } else if (expression instanceof Join) {
+            final Join join = (Join)expression;
+            return join(join, optimize(join.getLeft()), optimize(join.getRight()));
+        } else if (expression instanceof GroupBy) {
+            final GroupBy groupBy = (GroupBy)expression;
+            return new GroupBy(optimize(groupBy.getChild()), groupBy.getAggregate());
+        } else if (expression instanceof SetOperation) {
+            final SetOperation setOperation = (SetOperation)expression;
+            return new SetOperation(setOperation.getOperator(), optimize(setOperation.getLeft()), optimize(setOperation.getRight()));
+        } else {
+            return expression;
+        }
+    }
+
+    /**
+     * Rebuild a join on new children, keeping its condition.
+     */
+    private static Join join(Join join, Expression left, Expression right) {
+        return join.getCondition().isPresent() ? new Join(left, right, join.getCondition().get()) : new Join(left, right);
+    }
+
+    /**
+     * Turn an operator into the condition of a join, with the left attribute
+     * as its target.
+     * <p>
+     * @return The condition, or empty if the operator does not compare an
+     *         attribute only of the left side with one only of the right.
+     */
+    private static Optional<SelectByAttribute> condition(Join join, Operator operator) {
+        if (operator.getSelectByAttribute().isPresent()) {
+            final SelectByAttribute s = operator.getSelectByAttribute().get();
+
+            if (isOnlyOf(join.getLeft(), join.getRight(), s.getTargetAttributeName()) && isOnlyOf(join.getRight(), join.getLeft(), s.getAttributeName())) {
+                return Optional.of(s);
+            } else if (isOnlyOf(join.getRight(), join.getLeft(), s.getTargetAttributeName()) && isOnlyOf(join.getLeft(), join.getRight(), s.getAttributeName())) {
+                return Optional.of(new SelectByAttribute(mirror(s.getOperator()), s.getAttributeName(), s.getTargetAttributeName()));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static boolean isOnlyOf(Expression expression, Expression other, AttributeName attributeName) {
+        return expression.getSchema().getOrdinal(attributeName) >= 0 && other.getSchema().getOrdinal(attributeName) < 0;
+    }
+
+    /**
+     * Get the operator that gives the same answer with its operands swapped.
+     */
+    private static BooleanOperator mirror(BooleanOperator operator) {
+        switch (operator) {
+            case GreaterThan:
+                return BooleanOperator.LessThan;
+            case GreaterThanOrEqual:
+                return BooleanOperator.LessThanOrEqual;
+            case LessThan:
+                return BooleanOperator.GreaterThan;
+            case LessThanOrEqual:
+                return BooleanOperator.GreaterThanOrEqual;
+            default:
+                return operator;
+        }
+    }
+
+    /**
+     * Select from an optimized child, keeping the result optimized.
+     */
+    private static Expression select(Expression child, List<Operator> operators) {
+        if (operators.isEmpty()) {
+            return child;
+        } else if (child instanceof Select) {
+            final Select select = (Select)child;
+            final List<Operator> fused = new ArrayList<>(select.getOperators());
+
+            fused.addAll(operators);
+
+            return select(select.getChild(), fused);
+        } else if (child instanceof Project) {
+            final Project project = (Project)child;
+            return project(select(project.getChild(), operators), project.getPredicate());
+        } else if (child instanceof Rename) {
+            final Rename rename = (Rename)child;
+            final Map<AttributeName, AttributeName> inverse = new HashMap<>();
+            final List<Operator> renamed = new ArrayList<>();
+
+            for (final AttributeName attributeName : rename.getChild().getSchema().getAttributes().getMap().keySet()) {
+                inverse.put(rename.getFunction().apply(attributeName), attributeName);
+            }
+
+            for (final Operator operator : operators) {
+                renamed.add(operator.rename(inverse::get));
+            }
+
+            return rename(select(rename.getChild(), renamed), rename.getFunction());
+        } else if (child instanceof Join) {
+            final Join join = (Join)child;
+            final List<Operator> left = new ArrayList<>();
+            final List<Operator> right = new ArrayList<>();
+            final List<Operator> rest = new ArrayList<>();
+
+            for (final Operator operator : operators) {
+                final boolean isLeft = operator.getAttributeNames().stream().allMatch((a) -> join.getLeft().getSchema().getOrdinal(a) >= 0);
+                final boolean isRight = operator.getAttributeNames().stream().allMatch((a) -> join.getRight().getSchema().getOrdinal(a) >= 0);
+
+                if (isLeft) {
+                    left.add(operator);
+                }
+                if (isRight) {
+                    right.add(operator);
+                }
+                if (!isLeft && !isRight) {
+                    rest.add(operator);
+                }
+            }
+
+            if (!join.getCondition().isPresent()) {
+                for (final Operator operator : rest) {
+                    final Optional<SelectByAttribute> condition = condition(join, operator);
+
+                    if (condition.isPresent()) {
+                        final List<Operator> others = new ArrayList<>(rest);
+
+                        others.remove(operator);
+
+                        return select(new Join(select(join.getLeft(), left), select(join.getRight(), right), condition.get()), others);
+                    }
+                }
+            }
+
+            return rest.isEmpty() && left.isEmpty() && right.isEmpty()
+                    ? child
+                    : rest.size() == operators.size()
+                    ? new Select(child, operators)
+                    : select(join(join, select(join.getLeft(), left), select(join.getRight(), right)), rest);
+        } else if (child instanceof GroupBy) {
+            final GroupBy groupBy = (GroupBy)child;
+            final List<Operator> below = new ArrayList<>();
+            final List<Operator> above = new ArrayList<>();
+
+            for (final Operator operator : operators) {
+                if (groupBy.getAggregate().getGroupAttributeNames().containsAll(operator.getAttributeNames())) {
+                    below.add(operator);
+                } else {
+                    above.add(operator);
+                }
+            }
+
+            return below.isEmpty()
+                    ? new Select(child, operators)
+                    : select(new GroupBy(select(groupBy.getChild(), below), groupBy.getAggregate()), above);
+        } else if (child instanceof SetOperation) {
+            final SetOperation setOperation = (SetOperation)child;
+            return new SetOperation(setOperation.getOperator(), select(setOperation.getLeft(), operators), select(setOperation.getRight(), operators));
+        } else {
+            return new Select(child, operators);
+        }
+    }
+
+    /**
+     * Project an optimized child, keeping the result optimized.
+     */
+    private static Expression project(Expression child, Predicate<AttributeName> predicate) {
+        if (child instanceof Project) {
+            final Project project = (Project)child;
+            return project(project.getChild(), project.getPredicate().and(predicate));
+        } else if (child instanceof Rename) {
+            final Rename rename = (Rename)child;
+            final UnaryOperator<AttributeName> f = rename.getFunction();
+
+            return rename(project(rename.getChild(), (a) -> predicate.test(f.apply(a))), f);
+        } else if (child.getSchema().getAttributes().getMap().keySet().stream().allMatch(predicate)) {
+            return child;
+        } else {
+            return new Project(child, predicate);
+        }
+    }
+
+    /**
+     * Rename an optimized child, keeping the result optimized.
+     */
+    private static Expression rename(Expression child, UnaryOperator<AttributeName> function) {
+        if (child instanceof Rename) {
+            final Rename rename = (Rename)child;
+            final UnaryOperator<AttributeName> f = rename.getFunction();
+
+            return rename(rename.getChild(), (a) -> function.apply(f.apply(a)));
+        } else if (child.getSchema().getAttributes().getMap().keySet().stream().allMatch((a) -> function.apply(a).equals(a))) {
+            return child;
+        } else {
+            return new Rename(child, function);
+        }
+    }
+}
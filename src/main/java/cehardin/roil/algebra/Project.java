@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static java.lang.String.format;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.Value;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the attributes of its child whose names satisfy a predicate.
+ * <p>
+ * @author Chad
+ */
+public final class Project extends Expression {
+
+    private final Expression child;
+    private final Predicate<AttributeName> predicate;
+    private final RelationSchema schema;
+    private final Optional<AttributeName> key;
+    private final boolean isDistinct;
+
+    public Project(Expression child, Predicate<AttributeName> predicate) {
+        this.child = requireNonNull(child, "Child was null");
+        this.predicate = requireNonNull(predicate, "Predicate was null");
+        this.schema = child.getSchema().project(predicate);
+        this.key = child.getSchema().getPrimaryKey().map((k) -> k.getAttributeName()).filter(predicate);
+        this.isDistinct = key.isPresent() || schema.getAttributes().size() == child.getSchema().getAttributes().size();
+    }
+
+    public Expression getChild() {
+        return child;
+    }
+
+    public Predicate<AttributeName> getPredicate() {
+        return predicate;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Relation evaluate() {
+        return child.evaluate().project(predicate);
+    }
+
+    /**
+     * A project is a view over a view if it keeps the primary key or every
+     * attribute of its child, as then no two tuples of the child project to
+     * the same tuple.
+     */
+    @Override
+    public boolean isView() {
+        return isDistinct && child.isView();
+    }
+
+    @Override
+    public Stream<Tuple> stream() {
+        final Stream<Tuple> result = child.stream().map((t) -> t.project(predicate));
+
+        return isDistinct ? result : result.distinct();
+    }
+
+    @Override
+    public long count() {
+        return isDistinct ? child.count() : stream().count();
+    }
+
+    /**
+     * Look for the tuple in the child if every attribute is kept, otherwise
+     * select the child by the primary key of the tuple if it is kept, and
+     * otherwise search the projected tuples.
+     */
+    @Override
+    public boolean contains(Tuple tuple) {
+        if (!conforms(requireNonNull(tuple, "Tuple was null"), schema)) {
+            return false;
+        } else if (schema.getAttributes().size() == child.getSchema().getAttributes().size()) {
+            return child.contains(tuple);
+        } else if (key.isPresent()) {
+            @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+            final Domain<Object> domain = (Domain<Object>)schema.getAttributes().getMap().get(key.get());
+            final Object data = tuple.getValues().getDataReference(schema.getOrdinal(key.get()));
+            final Select select = new Select(child, singletonList(Select.Operator.of(new SelectByConstant(Equal, key.get(), new Value<>(domain, data)))));
+
+            return Optimizer.optimize(select).stream().anyMatch((t) -> t.project(predicate).equals(tuple));
+        } else {
+            return stream().anyMatch(tuple::equals);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("project%s(%s)", names(schema), child);
+    }
+}
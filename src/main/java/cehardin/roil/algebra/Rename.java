@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Renames the attributes of its child with a function.
+ * <p>
+ * @author Chad
+ */
+public final class Rename extends Expression {
+
+    private final Expression child;
+    private final UnaryOperator<AttributeName> function;
+    private final RelationSchema schema;
+
+    public Rename(Expression child, UnaryOperator<AttributeName> function) {
+        this.child = requireNonNull(child, "Child was null");
+        this.function = requireNonNull(function, "Function was null");
+        this.schema = child.getSchema().rename(function);
+    }
+
+    public Expression getChild() {
+        return child;
+    }
+
+    public UnaryOperator<AttributeName> getFunction() {
+        return function;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Relation evaluate() {
+        return child.evaluate().rename(function);
+    }
+
+    @Override
+    public boolean isView() {
+        return child.isView();
+    }
+
+    @Override
+    public Stream<Tuple> stream() {
+        return child.stream().map((t) -> t.rename(function));
+    }
+
+    @Override
+    public long count() {
+        return child.count();
+    }
+
+    /**
+     * Rename the tuple back to the names of the child and look for it there.
+     */
+    @Override
+    public boolean contains(Tuple tuple) {
+        final Map<AttributeName, AttributeName> inverse = new HashMap<>();
+
+        if (!conforms(requireNonNull(tuple, "Tuple was null"), schema)) {
+            return false;
+        }
+
+        for (final AttributeName attributeName : child.getSchema().getAttributes().getMap().keySet()) {
+            inverse.put(function.apply(attributeName), attributeName);
+        }
+
+        return child.contains(tuple.rename(inverse::get));
+    }
+
+    @Override
+    public String toString() {
+        return format("rename%s(%s)", names(schema), child);
+    }
+}
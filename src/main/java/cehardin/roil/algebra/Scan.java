@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import java.util.stream.Stream;
+
+/**
+ * The leaf of a plan, which is a relation that has already been
+ * materialized.
+ * <p>
+ * @author Chad
+ */
+public final class Scan extends Expression {
+
+    private final Relation relation;
+
+    public Scan(Relation relation) {
+        this.relation = requireNonNull(relation, "Relation was null");
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return relation.getSchema();
+    }
+
+    @Override
+    public Relation evaluate() {
+        return relation;
+    }
+
+    @Override
+    public boolean isView() {
+        return true;
+    }
+
+    @Override
+    public Stream<Tuple> stream() {
+        return relation.stream();
+    }
+
+    @Override
+    public long count() {
+        return relation.getTuples().size();
+    }
+
+    @Override
+    public boolean contains(Tuple tuple) {
+        return relation.getTuples().contains(requireNonNull(tuple, "Tuple was null"));
+    }
+
+    @Override
+    public String toString() {
+        return format("scan(%s)", relation.getClass().getSimpleName());
+    }
+}
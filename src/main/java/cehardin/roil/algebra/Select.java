@@ -0,0 +1,274 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.NoSuchAttributeNameException;
+import cehardin.roil.exception.SelectFailedException;
+import cehardin.roil.impl.AbstractRelation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the tuples of its child that satisfy every one of a conjunction of
+ * operators. The operators that compare against a constant are handed to the
+ * child relation together, so it can answer them from its indexes.
+ * <p>
+ * @author Chad
+ */
+public final class Select extends Expression {
+
+    /**
+     * One test of a select, which is either a {@link SelectByConstant} or a
+     * {@link SelectByAttribute}.
+     */
+    public static final class Operator {
+
+        public static Operator of(SelectByConstant s) {
+            return new Operator(requireNonNull(s, "Select was null"), null);
+        }
+
+        public static Operator of(SelectByAttribute s) {
+            return new Operator(null, requireNonNull(s, "Select was null"));
+        }
+
+        private final SelectByConstant byConstant;
+        private final SelectByAttribute byAttribute;
+
+        private Operator(SelectByConstant byConstant, SelectByAttribute byAttribute) {
+            this.byConstant = byConstant;
+            this.byAttribute = byAttribute;
+        }
+
+        public Optional<SelectByConstant> getSelectByConstant() {
+            return Optional.ofNullable(byConstant);
+        }
+
+        public Optional<SelectByAttribute> getSelectByAttribute() {
+            return Optional.ofNullable(byAttribute);
+        }
+
+        /**
+         * Get the names of the attributes this operator reads.
+         * <p>
+         * @return The names, never null.
+         */
+        public List<AttributeName> getAttributeNames() {
+            return byConstant != null
+                    ? Arrays.asList(byConstant.getTargetAttributeName())
+                    : Arrays.asList(byAttribute.getTargetAttributeName(), byAttribute.getAttributeName());
+        }
+
+        /**
+         * Create the same test on renamed attributes.
+         * <p>
+         * @param f The function from the old names to the new names.
+         * @return The new operator, never null.
+         */
+        public Operator rename(UnaryOperator<AttributeName> f) {
+            return byConstant != null
+                    ? of(new SelectByConstant(byConstant.getOperator(), f.apply(byConstant.getTargetAttributeName()), byConstant.getConstant()))
+                    : of(new SelectByAttribute(byAttribute.getOperator(), f.apply(byAttribute.getTargetAttributeName()), f.apply(byAttribute.getAttributeName())));
+        }
+
+        /**
+         * Create a predicate that evaluates this operator against one tuple
+         * at a time. The tuples must conform to the schema.
+         * <p>
+         * @param schema The schema of the tuples.
+         * @return The predicate, never null.
+         * @throws SelectFailedException If the operands are of different
+         *                               domains.
+         */
+        Predicate<Tuple> getTuplePredicate(RelationSchema schema) throws SelectFailedException {
+            final AttributeName target = byConstant != null ? byConstant.getTargetAttributeName() : byAttribute.getTargetAttributeName();
+            @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+            final Domain<Object> domain = (Domain<Object>)schema.getAttributes().getMap().get(target);
+            final BiPredicate<Object, Object> operator = domain.getBooleanOperators().get(byConstant != null ? byConstant.getOperator() : byAttribute.getOperator());
+            final int targetOrdinal = schema.getOrdinal(target);
+
+            if (byConstant != null) {
+                final Object constant = byConstant.getConstant().getDataReference();
+
+                if (!domain.getName().equals(byConstant.getConstant().getDomain().getName())) {
+                    throw new SelectFailedException(format("Constant domain %s does not match the domain %s of attribute %s", byConstant.getConstant().getDomain().getName(), domain.getName(), target));
+                }
+
+                return (t) -> operator.test(t.getValues().getDataReference(targetOrdinal), constant);
+            } else {
+                final Domain<?> otherDomain = schema.getAttributes().getMap().get(byAttribute.getAttributeName());
+                final int otherOrdinal = schema.getOrdinal(byAttribute.getAttributeName());
+
+                if (!domain.getName().equals(otherDomain.getName())) {
+                    throw new SelectFailedException(format("Attribute %s has domain %s which does not match the domain %s of attribute %s", byAttribute.getAttributeName(), otherDomain.getName(), domain.getName(), target));
+                }
+
+                return (t) -> operator.test(t.getValues().getDataReference(targetOrdinal), t.getValues().getDataReference(otherOrdinal));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return byConstant != null
+                    ? format("%s %s %s", byConstant.getTargetAttributeName().getValue(), byConstant.getOperator(), byConstant.getConstant().getDataReference())
+                    : format("%s %s %s", byAttribute.getTargetAttributeName().getValue(), byAttribute.getOperator(), byAttribute.getAttributeName().getValue());
+        }
+    }
+
+    private final Expression child;
+    private final List<Operator> operators;
+
+    /**
+     * Create a select.
+     * <p>
+     * @param child     The child.
+     * @param operators The conjunction of operators.
+     * @throws NoSuchAttributeNameException If an operator reads an attribute
+     *                                      the child does not have.
+     */
+    public Select(Expression child, List<Operator> operators) throws NoSuchAttributeNameException {
+        this.child = requireNonNull(child, "Child was null");
+        this.operators = unmodifiableList(new ArrayList<>(requireNonNull(operators, "Operators was null")));
+
+        for (final Operator operator : this.operators) {
+            for (final AttributeName attributeName : requireNonNull(operator, "Operator was null").getAttributeNames()) {
+                if (child.getSchema().getOrdinal(attributeName) < 0) {
+                    throw new NoSuchAttributeNameException(format("No such attribute name: %s", attributeName.getValue()));
+                }
+            }
+        }
+    }
+
+    public Expression getChild() {
+        return child;
+    }
+
+    public List<Operator> getOperators() {
+        return operators;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return child.getSchema();
+    }
+
+    @Override
+    public Relation evaluate() {
+        final List<SelectByConstant> conjunction = getConjunction();
+        Relation result = child.evaluate();
+
+        if (!conjunction.isEmpty()) {
+            result = result.select(conjunction);
+        }
+
+        for (final Operator operator : operators) {
+            if (operator.byAttribute != null) {
+                result = result.select(operator.byAttribute);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public boolean isView() {
+        return child.isView();
+    }
+
+    /**
+     * Stream the tuples of the child that satisfy every operator. Over a
+     * stored relation the operators against constants are handed to it
+     * together, so it can answer them from its indexes as it streams, and only
+     * the operators between attributes are tested here.
+     */
+    @Override
+    public Stream<Tuple> stream() {
+        final AbstractRelation stored = getStored();
+        final List<SelectByConstant> conjunction = getConjunction();
+        final boolean isHandedDown = stored != null && !conjunction.isEmpty();
+        final Predicate<Tuple> predicate = getTuplePredicate(!isHandedDown);
+
+        return (isHandedDown ? stored.stream(conjunction) : child.stream()).filter(predicate);
+    }
+
+    /**
+     * Count the tuples of a stored relation that satisfy the operators
+     * against constants without creating them, if those are all the
+     * operators, otherwise count the stream.
+     */
+    @Override
+    public long count() {
+        final AbstractRelation stored = getStored();
+        final List<SelectByConstant> conjunction = getConjunction();
+
+        return stored != null && conjunction.size() == operators.size() ? stored.count(conjunction) : stream().count();
+    }
+
+    @Override
+    public boolean contains(Tuple tuple) {
+        return conforms(requireNonNull(tuple, "Tuple was null"), getSchema()) && getTuplePredicate(true).test(tuple) && child.contains(tuple);
+    }
+
+    private List<SelectByConstant> getConjunction() {
+        final List<SelectByConstant> result = new ArrayList<>();
+
+        for (final Operator operator : operators) {
+            if (operator.byConstant != null) {
+                result.add(operator.byConstant);
+            }
+        }
+
+        return result;
+    }
+
+    private Predicate<Tuple> getTuplePredicate(boolean withConstants) throws SelectFailedException {
+        Predicate<Tuple> result = (t) -> true;
+
+        for (final Operator operator : operators) {
+            if (withConstants || operator.byAttribute != null) {
+                result = result.and(operator.getTuplePredicate(getSchema()));
+            }
+        }
+
+        return result;
+    }
+
+    private AbstractRelation getStored() {
+        return child instanceof Scan && ((Scan)child).getRelation() instanceof AbstractRelation ? (AbstractRelation)((Scan)child).getRelation() : null;
+    }
+
+    @Override
+    public String toString() {
+        return format("select%s(%s)", operators, child);
+    }
+}
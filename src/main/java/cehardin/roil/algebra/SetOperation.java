@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+
+/**
+ * The union, intersection or difference of two children with the same
+ * attributes.
+ * <p>
+ * @author Chad
+ */
+public final class SetOperation extends Expression {
+
+    /**
+     * The set operations.
+     */
+    public static enum Operator {
+        Union,
+        Intersect,
+        Subtract
+    }
+
+    private final Operator operator;
+    private final Expression left;
+    private final Expression right;
+    private final RelationSchema schema;
+
+    /**
+     * Create a set operation.
+     * <p>
+     * @param operator The operation.
+     * @param left     The left child.
+     * @param right    The right child.
+     * @throws RuntimeException The failure exception of the operation if the
+     *                          children do not have the same attributes.
+     * @see RelationSchema#union(RelationSchema)
+     */
+    public SetOperation(Operator operator, Expression left, Expression right) {
+        this.operator = requireNonNull(operator, "Operator was null");
+        this.left = requireNonNull(left, "Left was null");
+        this.right = requireNonNull(right, "Right was null");
+
+        switch (operator) {
+            case Union:
+                this.schema = left.getSchema().union(right.getSchema());
+                break;
+            case Intersect:
+                this.schema = left.getSchema().intersect(right.getSchema());
+                break;
+            default:
+                this.schema = left.getSchema().subtract(right.getSchema());
+                break;
+        }
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Expression getLeft() {
+        return left;
+    }
+
+    public Expression getRight() {
+        return right;
+    }
+
+    @Override
+    public RelationSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Relation evaluate() {
+        switch (operator) {
+            case Union:
+                return left.evaluate().union(right.evaluate());
+            case Intersect:
+                return left.evaluate().intersect(right.evaluate());
+            default:
+                return left.evaluate().subtract(right.evaluate());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return format("%s(%s, %s)", operator.name().toLowerCase(), left, right);
+    }
+}
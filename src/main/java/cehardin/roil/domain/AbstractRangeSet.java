@@ -48,18 +48,6 @@ abstract class AbstractRangeSet<T> implements SortedSet<T> {
         return type;
     }
 
-    @Override
-    public final SortedSet<T> headSet(T toElement) {
-        requireNonNull(toElement, "toElement was null");
-        return subSet(first(), toElement);
-    }
-
-    @Override
-    public final SortedSet<T> tailSet(T fromElement) {
-        requireNonNull(fromElement, "fromElement was null");
-        return subSet(fromElement, last());
-    }
-
     @Override
     public final Object[] toArray() {
         throw new UnsupportedOperationException("Not supported");
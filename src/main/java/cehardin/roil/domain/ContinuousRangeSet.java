@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.domain;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * The elements of an ordered type from a first element inclusive to a limit
+ * exclusive, either of which may be missing to leave that end unbounded. Unlike
+ * a {@link RangeSet} the type need not be {@link Discrete}, so the elements
+ * cannot be counted or listed: the set only answers membership and bounds,
+ * a set that is not empty reports {@link Integer#MAX_VALUE} as its size, and
+ * it cannot be iterated.
+ * <p>
+ * @author Chad
+ */
+final class ContinuousRangeSet<T> extends AbstractRangeSet<T> {
+
+    private final T first;
+    private final T limit;
+
+    /**
+     * Create the set of elements from a first element to a limit.
+     * <p>
+     * @param type       The type of the elements.
+     * @param first      The least element, or null if there is no lower bound.
+     * @param limit      The least element above the set, or null if there is
+     *                   no upper bound.
+     * @param comparator The order of the elements.
+     */
+    public ContinuousRangeSet(
+            final Class<T> type,
+            final T first,
+            final T limit,
+            final Comparator<? super T> comparator) {
+        super(type, comparator);
+        this.first = first;
+        this.limit = limit;
+
+        if (first != null && limit != null && comparator.compare(first, limit) > 0) {
+            throw new IllegalArgumentException(format("First %s was greater than limit %s", first, limit));
+        }
+    }
+
+    private boolean isAboveFirst(T t) {
+        return first == null || comparator().compare(t, first) >= 0;
+    }
+
+    private boolean isBelowLimit(T t) {
+        return limit == null || comparator().compare(t, limit) < 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (getType().isInstance(o)) {
+            final T t = getType().cast(o);
+            return isAboveFirst(t) && isBelowLimit(t);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (final Object o : requireNonNull(c, "c was null")) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return first != null && limit != null && comparator().compare(first, limit) == 0;
+    }
+
+    @Override
+    public int size() {
+        return isEmpty() ? 0 : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        throw new UnsupportedOperationException("The elements cannot be listed");
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Nothing in the empty set");
+        } else if (first == null) {
+            throw new UnsupportedOperationException("There is no least element");
+        }
+        return first;
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Nothing in the empty set");
+        }
+        throw new UnsupportedOperationException("There is no greatest element");
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        requireNonNull(fromElement, "fromElement was null");
+        requireNonNull(toElement, "toElement was null");
+
+        if (comparator().compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException(format("fromElement %s is higher than toElement %s", fromElement, toElement));
+        }
+
+        return range(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return range(first, requireNonNull(toElement, "toElement was null"));
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return range(requireNonNull(fromElement, "fromElement was null"), limit);
+    }
+
+    /**
+     * Create the set of the elements of this set from an element inclusive to
+     * another exclusive, either of which may be null for no bound.
+     */
+    private SortedSet<T> range(T fromElement, T toElement) {
+        final T newFirst = fromElement == null || !isAboveFirst(fromElement) ? first : fromElement;
+        final T newLimit = toElement == null || !isBelowLimit(toElement) ? limit : toElement;
+
+        if (newFirst != null && newLimit != null && comparator().compare(newFirst, newLimit) >= 0) {
+            return new EmptyRangeSet<>(getType(), comparator());
+        } else {
+            return new ContinuousRangeSet<>(getType(), newFirst, newLimit, comparator());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.domain;
+
+/**
+ * The arithmetic of a discrete ordered type, where every element but the
+ * last has a next element and the number of elements between two of them can
+ * be computed without visiting each one. It lets a {@link RangeSet} work out
+ * its size, bounds and sub sets in constant time.
+ * <p>
+ * @author Chad
+ * @param <T> The type of the elements.
+ */
+interface Discrete<T> {
+
+    /**
+     * Get the element after another.
+     * <p>
+     * @param t The element, which is not the greatest of the type.
+     * @return The next element.
+     */
+    T next(T t);
+
+    /**
+     * Get the element before another.
+     * <p>
+     * @param t The element, which is not the least of the type.
+     * @return The previous element.
+     */
+    T previous(T t);
+
+    /**
+     * Get how many steps of {@link #next(java.lang.Object)} lead from one
+     * element to another.
+     * <p>
+     * @param from The lower element.
+     * @param to   The higher element.
+     * @return The distance, 0 if the elements are equal.
+     */
+    long distance(T from, T to);
+}
@@ -41,6 +41,18 @@ final class EmptyRangeSet<T> extends AbstractRangeSet<T> {
         throw new IllegalArgumentException("Cannot create subset from empty set");
     }
 
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        requireNonNull(toElement, "toElement was null");
+        throw new IllegalArgumentException("Cannot create subset from empty set");
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        requireNonNull(fromElement, "fromElement was null");
+        throw new IllegalArgumentException("Cannot create subset from empty set");
+    }
+
     
     
     @Override
@@ -17,9 +17,13 @@
 package cehardin.roil.domain;
 
 import cehardin.roil.Domain;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.function.BiPredicate;
 
 import static java.util.Comparator.naturalOrder;
+import static java.util.Collections.unmodifiableMap;
 
 /**
  *
@@ -27,6 +31,45 @@ import static java.util.Comparator.naturalOrder;
  */
 public final class IntegerDomain implements Domain<Integer> {
 
+    private static final class IntegerDiscrete implements Discrete<Integer> {
+
+        @Override
+        public Integer next(Integer i) {
+            return i + 1;
+        }
+
+        @Override
+        public Integer previous(Integer i) {
+            return i - 1;
+        }
+
+        @Override
+        public long distance(Integer from, Integer to) {
+            return (long)to - from;
+        }
+    }
+
+    private static final SortedSet<Integer> Range = new RangeSet<>(
+            Integer.class,
+            Integer.MIN_VALUE,
+            Integer.MAX_VALUE,
+            naturalOrder(),
+            new IntegerDiscrete());
+    private static final Map<BooleanOperator, BiPredicate<Integer, Integer>> BooleanOperators;
+    
+    static {
+        final Map<BooleanOperator, BiPredicate<Integer, Integer>> booleanOperators = new EnumMap<>(BooleanOperator.class);
+        
+        booleanOperators.put(BooleanOperator.Equal, (i1, i2) -> i1.intValue() == i2.intValue());
+        booleanOperators.put(BooleanOperator.NotEqual, (i1, i2) -> i1.intValue() != i2.intValue());
+        booleanOperators.put(BooleanOperator.GreaterThan, (i1, i2) -> i1 > i2);
+        booleanOperators.put(BooleanOperator.GreaterThanOrEqual, (i1, i2) -> i1 >= i2);
+        booleanOperators.put(BooleanOperator.LessThan, (i1, i2) -> i1 < i2);
+        booleanOperators.put(BooleanOperator.LessThanOrEqual, (i1, i2) -> i1 <= i2);
+        
+        BooleanOperators = unmodifiableMap(booleanOperators);
+    }
+
     @Override
     public String getName() {
         return "Integer";
@@ -34,12 +77,26 @@ public final class IntegerDomain implements Domain<Integer> {
 
     @Override
     public SortedSet<Integer> getRange() {
-        return new RangeSet<>(
-                Integer.class,
-                Integer.MIN_VALUE,
-                Integer.MAX_VALUE,
-                naturalOrder(),
-                (i) -> i + 1,
-                (i) -> i - 1);
+        return Range;
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public Map<BooleanOperator, BiPredicate<Integer, Integer>> getBooleanOperators() {
+        return BooleanOperators;
+    }
+
+    @Override
+    public int hashCode() {
+        return getName().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && getClass().equals(o.getClass());
     }
 }
@@ -16,41 +16,38 @@
  */
 package cehardin.roil.domain;
 
-import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.function.Function;
 
 /**
- *
+ * Iterates a fixed number of elements of a {@link Discrete} type. Counting
+ * rather than comparing against the last element means the iterator never
+ * asks for the element after the greatest of the type.
+ * <p>
  * @author Chad
  */
 final class RangeIterator<T> implements Iterator<T> {
-    private final T end;
-    private final Comparator<? super T> comparator;
-    private final Function<T, T> successorFunction;
+    private final Discrete<T> discrete;
     private T current;
+    private long remaining;
     
     public RangeIterator(
             final T start, 
-            final T end, 
-            final Comparator<? super T> comparator, 
-            final Function<T,T> successorFunction) {
-        this.end = requireNonNull(end, "End was null");
-        this.comparator = requireNonNull(comparator, "Comparator was null");
-        this.successorFunction = requireNonNull(successorFunction, "Successor Function was null");
+            final long count, 
+            final Discrete<T> discrete) {
         this.current = requireNonNull(start, "Start was null");
-        if(this.comparator.compare(start, end) > 0) {
-            throw new IllegalArgumentException(format("Start %s was greater than end %s", start, end));
+        this.discrete = requireNonNull(discrete, "Discrete was null");
+        this.remaining = count;
+        if(count < 0) {
+            throw new IllegalArgumentException("Count was negative");
         }
     }
 
     @Override
     public boolean hasNext() {
-        return comparator.compare(current, end) != 0;
+        return remaining != 0;
     }
 
     @Override
@@ -60,9 +57,8 @@ final class RangeIterator<T> implements Iterator<T> {
         }
         else {
             final T next = current;
-            current = successorFunction.apply(next);
-            if(comparator.compare(current, next) <= 0) {
-                throw new IllegalStateException(format("Successfor function %s gave a lower value %s when applied with %s", successorFunction, current, next));
+            if(--remaining != 0) {
+                current = discrete.next(next);
             }
             return next;
         }
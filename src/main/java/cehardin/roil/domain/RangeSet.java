@@ -16,51 +16,56 @@
  */
 package cehardin.roil.domain;
 
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.SortedSet;
-import java.util.function.Function;
-
-import static java.lang.String.format;
-import static java.util.Objects.requireNonNull;
 
 /**
- *
+ * The elements of a {@link Discrete} type from a first to a last element,
+ * both inclusive. Nothing is stored but the bounds, so sizes and sub sets are
+ * computed from them in constant time.
+ * <p>
  * @author Chad
  */
 final class RangeSet<T> extends AbstractRangeSet<T> {
 
     private final T first;
     private final T last;
-    private final Function<T, T> successorFunction;
-    private final Function<T, T> predecessorFunction;
+    private final Discrete<T> discrete;
 
     public RangeSet(
             final Class<T> type,
             final T first,
             final T last,
             final Comparator<? super T> comparator,
-            final Function<T, T> successorFunction,
-            Function<T, T> predecessorFunction) {
+            final Discrete<T> discrete) {
         super(type, comparator);
         this.first = requireNonNull(first, "First was null");
         this.last = requireNonNull(last, "Last was null");
-        this.successorFunction = requireNonNull(successorFunction, "Successor Function was null");
-        this.predecessorFunction = requireNonNull(successorFunction, "Predecessor Function was null");
+        this.discrete = requireNonNull(discrete, "Discrete was null");
 
         if (comparator.compare(this.first, this.last) > 0) {
             throw new IllegalArgumentException(format("First %s was greater than last %s", this.first, this.last));
         }
     }
 
+    /**
+     * Get the number of elements, which unlike {@link #size()} is not capped
+     * at {@link Integer#MAX_VALUE}.
+     * <p>
+     * @return The number of elements.
+     */
+    public long count() {
+        return discrete.distance(first, last) + 1;
+    }
+
     @Override
     public Iterator<T> iterator() {
-        return new RangeIterator<>(
-                first(), 
-                predecessorFunction.apply(last()), 
-                comparator(), 
-                successorFunction);
+        return new RangeIterator<>(first, count(), discrete);
     }
 
     @Override
@@ -70,17 +75,7 @@ final class RangeSet<T> extends AbstractRangeSet<T> {
 
     @Override
     public int size() {
-        final Iterator<T> iterator = iterator();
-        int size = 0;
-
-        while (iterator.hasNext()) {
-            iterator.next();
-            if (size != Integer.MAX_VALUE) {
-                size++;
-            }
-        }
-
-        return size;
+        return (int)Math.min(count(), Integer.MAX_VALUE);
     }
 
     @Override
@@ -122,26 +117,47 @@ final class RangeSet<T> extends AbstractRangeSet<T> {
         }
 
         if (!contains(toElement)) {
-            throw new IllegalArgumentException(format("toElement %s is not in this set", fromElement));
+            throw new IllegalArgumentException(format("toElement %s is not in this set", toElement));
         }
 
         if (comparator().compare(fromElement, toElement) > 0) {
             throw new IllegalArgumentException(format("fromElement %s is higher than toElement %s", fromElement, toElement));
         }
 
-        final T newFirst = fromElement;
-        final T newLast = predecessorFunction.apply(last);
+        return range(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        requireNonNull(toElement, "toElement was null");
+
+        if (!contains(toElement)) {
+            throw new IllegalArgumentException(format("toElement %s is not in this set", toElement));
+        }
+
+        return range(first, toElement);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        requireNonNull(fromElement, "fromElement was null");
+
+        if (!contains(fromElement)) {
+            throw new IllegalArgumentException(format("fromElement %s is not in this set", fromElement));
+        }
+
+        return new RangeSet<>(getType(), fromElement, last, comparator(), discrete);
+    }
 
-        if (comparator().compare(newFirst, newLast) == 0) {
+    /**
+     * Create the set from an element inclusive to another exclusive, both of
+     * which are in this set.
+     */
+    private SortedSet<T> range(T fromElement, T toElement) {
+        if (comparator().compare(fromElement, toElement) == 0) {
             return new EmptyRangeSet<>(getType(), comparator());
         } else {
-            return new RangeSet<>(
-                    getType(),
-                    first,
-                    newLast, comparator(),
-                    successorFunction,
-                    predecessorFunction);
+            return new RangeSet<>(getType(), fromElement, discrete.previous(toElement), comparator(), discrete);
         }
     }
-
 }
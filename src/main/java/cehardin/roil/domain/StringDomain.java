@@ -16,83 +16,24 @@
  */
 package cehardin.roil.domain;
 
-import static java.util.Objects.requireNonNull;
-import static java.lang.String.format;
+import static java.util.Comparator.naturalOrder;
 
 import cehardin.roil.Domain;
 import java.util.SortedSet;
-import java.util.function.Function;
 
 /**
- *
+ * The domain of strings, in their natural order. Every string is in the
+ * domain, from the empty string up.
+ * <p>
  * @author Chad
  */
-public final class StringDomain implements Domain<String> 
-{
-    private static final int CHAR_LENGTH = 256;
-    private static final char[] MIN_CHAR;
-    private static final char[] MAX_CHAR;
-    private static final String MIN_STRING;
-    private static final String MAX_STRING;
-    
-    static {
-        MIN_CHAR = new char[CHAR_LENGTH];
-        MAX_CHAR = new char[CHAR_LENGTH];
-        
-        for(int i=0; i < CHAR_LENGTH; i++) {
-            MIN_CHAR[i] = Character.MIN_VALUE;
-            MAX_CHAR[i] = Character.MAX_VALUE;
-        }
-        
-        MIN_STRING = new String(MIN_CHAR);
-        MAX_STRING = new String(MAX_CHAR);
-    }
-    
-    private static String toString(char[] chars) {
-        return String.valueOf(chars);
-    }
-    
-    private static char[] toChars(String string) {
-        return string.toCharArray();
-    }
-    
-    private static class SuccessorFunction implements Function<char[], char[]> {
+public final class StringDomain implements Domain<String> {
 
-        @Override
-        public char[] apply(final char[] input) {
-            final char[] output;
-            int index = 0;
-            
-            if(requireNonNull(input, "Input char[] was null").length != CHAR_LENGTH) {
-                throw new IllegalArgumentException(format("Input char[] was of length %d when it must instead be %d", input.length, CHAR_LENGTH));
-            }
-            
-            output = input.clone();
-            
-            while(index < CHAR_LENGTH) {
-                if(output[index] != Character.MAX_VALUE) {
-                    output[index]++;
-                    if(output[index] == Character.MAX_VALUE) {
-                        
-                    }
-                }
-            };
-            for(int i=0; i < CHAR_LENGTH; i++) {
-                if(output[i] != Character.MAX_VALUE) {
-                    output[i]++;
-                }
-                else {
-                    for(int y=(i + 1); y < CHAR_LENGTH; y++) {
-                        if(output[y] != Character.MAX_VALUE) {
-                            
-                        }
-                    }
-                }
-            }
-        }
-        
-    }
-    
+    private static final SortedSet<String> Range = new ContinuousRangeSet<>(
+            String.class,
+            "",
+            null,
+            naturalOrder());
 
     @Override
     public String getName() {
@@ -101,8 +42,21 @@ public final class StringDomain implements Domain<String>
 
     @Override
     public SortedSet<String> getRange() {
-        return new RangeSet<>(
-                String.class)
+        return Range;
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return getName().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && getClass().equals(o.getClass());
     }
-    
 }
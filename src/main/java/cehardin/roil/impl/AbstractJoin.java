@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Attributes;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import cehardin.roil.Values;
+
+/**
+ * What every join algorithm shares: where each attribute of the joined schema
+ * comes from, which attributes the two relations share, and how a matching
+ * pair of tuples becomes one tuple.
+ * <p>
+ * @author Chad
+ * @see HashJoin
+ * @see MergeJoin
+ */
+abstract class AbstractJoin {
+
+    private final RelationSchema schema;
+    private final int[] fromLeft;
+    private final int[] fromRight;
+    private final int[] leftOrdinals;
+    private final int[] rightOrdinals;
+
+    /**
+     * Prepare to join two relations.
+     * <p>
+     * @param left   The left relation.
+     * @param right  The right relation.
+     * @param schema The joined schema.
+     * @see RelationSchema#join(RelationSchema)
+     */
+    AbstractJoin(Relation left, Relation right, RelationSchema schema) {
+        final Attributes leftAttributes = left.getSchema().getAttributes();
+        final Attributes rightAttributes = right.getSchema().getAttributes();
+        final Attributes attributes = requireNonNull(schema, "Schema was null").getAttributes();
+        int common = 0;
+
+        this.schema = schema;
+        this.fromLeft = new int[attributes.size()];
+        this.fromRight = new int[attributes.size()];
+
+        for (int i = 0; i < attributes.size(); i++) {
+            final AttributeName attributeName = attributes.getAttributeName(i);
+
+            fromLeft[i] = leftAttributes.getOrdinal(attributeName);
+            fromRight[i] = rightAttributes.getOrdinal(attributeName);
+
+            if (fromLeft[i] >= 0 && fromRight[i] >= 0) {
+                common++;
+            }
+        }
+
+        this.leftOrdinals = new int[common];
+        this.rightOrdinals = new int[common];
+        common = 0;
+
+        for (int i = 0; i < attributes.size(); i++) {
+            if (fromLeft[i] >= 0 && fromRight[i] >= 0) {
+                leftOrdinals[common] = fromLeft[i];
+                rightOrdinals[common] = fromRight[i];
+                common++;
+            }
+        }
+    }
+
+    /**
+     * Get the ordinals in the left relation of the attributes both share.
+     */
+    final int[] getLeftOrdinals() {
+        return leftOrdinals;
+    }
+
+    /**
+     * Get the ordinals in the right relation of the attributes both share, in
+     * the same order as {@link #getLeftOrdinals()}.
+     */
+    final int[] getRightOrdinals() {
+        return rightOrdinals;
+    }
+
+    /**
+     * Determine if two tuples agree on every shared attribute.
+     */
+    final boolean isMatch(Tuple left, Tuple right) {
+        for (int i = 0; i < leftOrdinals.length; i++) {
+            if (!left.getValues().getDataReference(leftOrdinals[i]).equals(right.getValues().getDataReference(rightOrdinals[i]))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Create the joined tuple of a matching pair.
+     */
+    final Tuple combine(Tuple left, Tuple right) {
+        final Object[] data = new Object[fromLeft.length];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = fromLeft[i] >= 0 ? left.getValues().getDataReference(fromLeft[i]) : right.getValues().getDataReference(fromRight[i]);
+        }
+
+        return new Tuple(new Values(schema.getAttributes(), data));
+    }
+}
@@ -17,9 +17,37 @@
 package cehardin.roil.impl;
 
 import static java.util.Objects.requireNonNull;
+import static java.lang.String.format;
+import static cehardin.roil.Domain.BooleanOperator.Equal;
 
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain;
 import cehardin.roil.Relation;
 import cehardin.roil.RelationSchema;
+import cehardin.roil.SecondaryKey;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.DuplicateKeyException;
+import cehardin.roil.exception.NoSuchAttributeNameException;
+import cehardin.roil.exception.SelectFailedException;
+import cehardin.roil.exception.TupleDoesNotConformToSchemaException;
+import cehardin.roil.util.Range;
+import cehardin.roil.util.Ranges;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  *
@@ -41,4 +69,495 @@ public abstract class AbstractRelation implements Relation {
         return getSchema().compareTo(o.getSchema());
     }
     
+    /**
+     * Determine if two domains are the same domain. Domains are identified by
+     * their name, the same as {@link Domain#compareTo(Domain)}.
+     * <p>
+     * @param d1 The first domain.
+     * @param d2 The second domain.
+     * @return true if they are the same domain, false otherwise.
+     */
+    protected static boolean isSameDomain(Domain<?> d1, Domain<?> d2) {
+        return d1.getName().equals(d2.getName());
+    }
+    
+    /**
+     * Get the domain of an attribute of this relation's schema.
+     * <p>
+     * @param attributeName The name of the attribute.
+     * @return The domain, never null.
+     * @throws NoSuchAttributeNameException If the schema has no such attribute.
+     */
+    protected final Domain<Object> getDomain(AttributeName attributeName) throws NoSuchAttributeNameException {
+        final Domain<?> domain = schema.getAttributes().getMap().get(requireNonNull(attributeName, "Attribute Name was null"));
+        
+        if (domain == null) {
+            throw new NoSuchAttributeNameException(format("No such attribute name: %s", attributeName));
+        }
+        
+        @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+        final Domain<Object> result = (Domain<Object>)domain;
+        return result;
+    }
+    
+    /**
+     * Get the ordinal of the primary key attribute.
+     * <p>
+     * @return The ordinal, or -1 if the schema has no primary key.
+     */
+    protected final int getPrimaryKeyOrdinal() {
+        return schema.getPrimaryKey().isPresent() ? schema.getOrdinal(schema.getPrimaryKey().get().getAttributeName()) : -1;
+    }
+    
+    /**
+     * Get the ordinals of the attributes of each secondary key, in ascending
+     * order within a key.
+     * <p>
+     * @return One array of ordinals per secondary key, never null.
+     */
+    protected final int[][] getSecondaryKeyOrdinals() {
+        final int[][] result = new int[schema.getSecondaryKeys().getSet().size()][];
+        int i = 0;
+
+        for (final SecondaryKey secondaryKey : schema.getSecondaryKeys().getSet()) {
+            final int[] ordinals = new int[secondaryKey.getAttributeNames().size()];
+            int j = 0;
+
+            for (final AttributeName attributeName : secondaryKey.getAttributeNames()) {
+                ordinals[j++] = schema.getOrdinal(attributeName);
+            }
+
+            Arrays.sort(ordinals);
+            result[i++] = ordinals;
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the key with the most attributes that is fully bound by equality
+     * selects.
+     * <p>
+     * @param keyOrdinals The ordinals of the attributes of each key.
+     * @param equalities  The constant each attribute must equal, by ordinal,
+     *                    or null where there is none.
+     * @return The index of the key in keyOrdinals, or -1 if no key is bound.
+     */
+    protected static int findBoundKey(int[][] keyOrdinals, Object[] equalities) {
+        int result = -1;
+
+        for (int i = 0; i < keyOrdinals.length; i++) {
+            boolean bound = keyOrdinals[i].length > 0;
+
+            for (int j = 0; bound && j < keyOrdinals[i].length; j++) {
+                bound = equalities[keyOrdinals[i][j]] != null;
+            }
+
+            if (bound && (result < 0 || keyOrdinals[i].length > keyOrdinals[result].length)) {
+                result = i;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Collect the constants of the equality selects of a conjunction. The
+     * selects must already have been checked against the schema.
+     * <p>
+     * @param conjunction The selects.
+     * @return The constant each attribute must equal, by ordinal, or null
+     *         where there is none.
+     */
+    protected final Object[] getEqualities(List<SelectByConstant> conjunction) {
+        final Object[] result = new Object[schema.getAttributes().size()];
+
+        for (final SelectByConstant s : conjunction) {
+            if (s.getOperator() == Equal) {
+                result[schema.getOrdinal(s.getTargetAttributeName())] = s.getConstant().getDataReference();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Normalize the selects of a conjunction on each attribute into the set of
+     * ranges their data must lie in, so an ordered index can be probed once
+     * per range and contradictory selects are found before any data is read.
+     * The selects must already have been checked against the schema.
+     * <p>
+     * @param conjunction The selects.
+     * @return The normalized set of ranges of each attribute, by ordinal, or
+     *         null where there is no select on the attribute.
+     * @see Ranges
+     */
+    protected final List<List<Range<Object>>> getRanges(List<SelectByConstant> conjunction) {
+        final List<List<Range<Object>>> result = new ArrayList<>(Collections.nCopies(schema.getAttributes().size(), (List<Range<Object>>)null));
+
+        for (final SelectByConstant s : conjunction) {
+            final int ordinal = schema.getOrdinal(s.getTargetAttributeName());
+            final List<Range<Object>> ranges = Ranges.of(s.getOperator(), s.getConstant().getDataReference(), Column.comparator(getDomain(s.getTargetAttributeName())));
+
+            result.set(ordinal, result.get(ordinal) == null ? ranges : Ranges.intersection(result.get(ordinal), ranges));
+        }
+
+        return result;
+    }
+
+    /**
+     * Normalize a disjunction of selects on one attribute into the union of
+     * their ranges, so an ordered index on it can answer all of them with one
+     * probe per range. A disjunction on several attributes, or with a
+     * {@link Domain.BooleanOperator#NotEqual} that would read nearly every
+     * tuple, is not normalized.
+     * <p>
+     * @param disjunction The selects.
+     * @return The normalized set of ranges of the attribute, or null if the
+     *         disjunction is empty or not of that form.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     * @see Ranges#union(java.util.Collection)
+     */
+    protected final List<Range<Object>> getDisjunctionRanges(List<SelectByConstant> disjunction) throws SelectFailedException {
+        final List<Range<Object>> ranges = new ArrayList<>();
+        AttributeName target = null;
+
+        for (final SelectByConstant s : requireNonNull(disjunction, "Disjunction was null")) {
+            final Domain<Object> domain = getDomain(requireNonNull(s, "Select was null").getTargetAttributeName());
+
+            if (!isSameDomain(domain, s.getConstant().getDomain())) {
+                throw new SelectFailedException(format("Constant domain %s does not match the domain %s of attribute %s", s.getConstant().getDomain().getName(), domain.getName(), s.getTargetAttributeName()));
+            }
+
+            if ((target != null && !target.equals(s.getTargetAttributeName())) || !OrderedIndex.isSupported(s.getOperator())) {
+                return null;
+            }
+
+            target = s.getTargetAttributeName();
+            ranges.addAll(Ranges.of(s.getOperator(), s.getConstant().getDataReference(), Column.comparator(domain)));
+        }
+
+        return target == null ? null : Ranges.union(ranges);
+    }
+
+    /**
+     * Create a predicate that evaluates the disjunction of several selects
+     * against one tuple at a time.
+     * <p>
+     * @param disjunction The selects.
+     * @return The predicate, never null.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     */
+    protected final Predicate<Tuple> getDisjunctionPredicate(List<SelectByConstant> disjunction) throws SelectFailedException {
+        Predicate<Tuple> result = (t) -> false;
+
+        for (final SelectByConstant s : requireNonNull(disjunction, "Disjunction was null")) {
+            result = result.or(getTuplePredicate(requireNonNull(s, "Select was null")));
+        }
+
+        return result;
+    }
+
+    /**
+     * Check that a tuple has exactly the attributes of this relation's schema.
+     * <p>
+     * @param tuple The tuple to check.
+     * @throws TupleDoesNotConformToSchemaException If the tuple does not conform.
+     */
+    protected final void checkConforms(Tuple tuple) throws TupleDoesNotConformToSchemaException {
+        final Map<AttributeName, Domain<?>> attributes = schema.getAttributes().getMap();
+        final Map<AttributeName, Domain<Object>> domains = requireNonNull(tuple, "Tuple was null").getValues().getDomainMap();
+        
+        if (!attributes.keySet().equals(domains.keySet())) {
+            throw new TupleDoesNotConformToSchemaException(format("Tuple attributes %s do not match schema attributes %s", domains.keySet(), attributes.keySet()));
+        }
+        
+        for (final Entry<AttributeName, Domain<Object>> entry : domains.entrySet()) {
+            if (!isSameDomain(attributes.get(entry.getKey()), entry.getValue())) {
+                throw new TupleDoesNotConformToSchemaException(format("Tuple attribute %s has domain %s but the schema requires %s", entry.getKey(), entry.getValue().getName(), attributes.get(entry.getKey()).getName()));
+            }
+        }
+    }
+    
+    /**
+     * Create a predicate that evaluates a select against one tuple at a time.
+     * The tuples must conform to this relation's schema.
+     * <p>
+     * @param s The select.
+     * @return The predicate, never null.
+     * @throws SelectFailedException If the constant is not of the domain of the
+     *                               target attribute.
+     */
+    protected final Predicate<Tuple> getTuplePredicate(SelectByConstant s) throws SelectFailedException {
+        final AttributeName target = s.getTargetAttributeName();
+        final Domain<Object> domain = getDomain(target);
+        final BiPredicate<Object, Object> operator = domain.getBooleanOperators().get(s.getOperator());
+        final int ordinal = schema.getOrdinal(target);
+        final Object constant = s.getConstant().getDataReference();
+
+        if (!isSameDomain(domain, s.getConstant().getDomain())) {
+            throw new SelectFailedException(format("Constant domain %s does not match the domain %s of attribute %s", s.getConstant().getDomain().getName(), domain.getName(), target));
+        }
+
+        return (t) -> operator.test(t.getValues().getDataReference(ordinal), constant);
+    }
+
+    /**
+     * Create a predicate that evaluates the conjunction of several selects
+     * against one tuple at a time.
+     * <p>
+     * @param conjunction The selects.
+     * @return The predicate, never null.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     */
+    protected final Predicate<Tuple> getTuplePredicate(List<SelectByConstant> conjunction) throws SelectFailedException {
+        Predicate<Tuple> result = (t) -> true;
+
+        for (final SelectByConstant s : requireNonNull(conjunction, "Conjunction was null")) {
+            result = result.and(getTuplePredicate(requireNonNull(s, "Select was null")));
+        }
+
+        return result;
+    }
+
+    /**
+     * Create a predicate that evaluates a select against one tuple at a time.
+     * The tuples must conform to this relation's schema.
+     * <p>
+     * @param s The select.
+     * @return The predicate, never null.
+     * @throws SelectFailedException If the two attributes are of different
+     *                               domains.
+     */
+    protected final Predicate<Tuple> getTuplePredicate(SelectByAttribute s) throws SelectFailedException {
+        final AttributeName target = s.getTargetAttributeName();
+        final AttributeName other = s.getAttributeName();
+        final Domain<Object> domain = getDomain(target);
+        final BiPredicate<Object, Object> operator = domain.getBooleanOperators().get(s.getOperator());
+        final int targetOrdinal = schema.getOrdinal(target);
+        final int otherOrdinal = schema.getOrdinal(other);
+
+        if (!isSameDomain(domain, getDomain(other))) {
+            throw new SelectFailedException(format("Attribute %s has domain %s which does not match the domain %s of attribute %s", other, getDomain(other).getName(), domain.getName(), target));
+        }
+
+        return (t) -> operator.test(t.getValues().getDataReference(targetOrdinal), t.getValues().getDataReference(otherOrdinal));
+    }
+
+    /**
+     * Select the tuples that satisfy any of several selects, such as
+     * {@code x < 3 or x = 7 or x >= 10}. A disjunction on one attribute with an
+     * ordered index is answered from the index with one probe per range of
+     * the union of the selects.
+     * <p>
+     * @param disjunction The selects, where none selects no tuples.
+     * @return The relation of the selected tuples, never null.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     * @see #getDisjunctionRanges(List)
+     */
+    public abstract Relation selectAny(List<SelectByConstant> disjunction) throws SelectFailedException;
+
+    /**
+     * Stream the tuples a select of a conjunction would keep, without
+     * creating a relation of them. By default this selects and streams the
+     * result; relations that can test the tuples as they read them override
+     * it.
+     * <p>
+     * @param conjunction The selects.
+     * @return The stream, never null.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     */
+    public Stream<Tuple> stream(List<SelectByConstant> conjunction) throws SelectFailedException {
+        return select(conjunction).stream();
+    }
+
+    /**
+     * Count the tuples a select of a conjunction would keep, without creating
+     * a relation of them. By default this selects and counts the result.
+     * <p>
+     * @param conjunction The selects.
+     * @return The number of tuples.
+     * @throws SelectFailedException If a constant is not of the domain of its
+     *                               target attribute.
+     */
+    public long count(List<SelectByConstant> conjunction) throws SelectFailedException {
+        return select(conjunction).getTuples().size();
+    }
+
+    /**
+     * Get the tuples of this relation in the order of an attribute, if an
+     * index already keeps them in that order. Relations without ordered
+     * indexes need not override this.
+     * <p>
+     * @param ordinal The ordinal of the attribute.
+     * @return The tuples in order, or null if they would have to be sorted.
+     */
+    MergeJoin.Input getOrderedInput(int ordinal) {
+        return null;
+    }
+
+    /**
+     * Join this relation with another. A join by attribute is merged, sorting
+     * whichever side has no ordered index on its attribute, unless it is a
+     * band join of relations that also share attributes: then the band of
+     * each tuple may hold many tuples that differ on those, so the relations
+     * are hashed on them and the pairs filtered by the condition instead. A
+     * natural join is merged if both sides have an ordered index on a shared
+     * attribute, and hashed otherwise.
+     * <p>
+     * @param r            The right relation.
+     * @param joinedSchema The joined schema.
+     * @param condition    The comparison of a join by attribute, or empty for
+     *                     a natural join.
+     * @return The joined tuples, never null.
+     * @see RelationSchema#join(RelationSchema)
+     * @see RelationSchema#join(RelationSchema, SelectByAttribute)
+     */
+    protected final Set<Tuple> getJoinedTuples(Relation r, RelationSchema joinedSchema, Optional<SelectByAttribute> condition) {
+        if (condition.isPresent()) {
+            final SelectByAttribute s = condition.get();
+
+            if (s.getOperator() != Equal && getSchema().getAttributes().size() + r.getSchema().getAttributes().size() > joinedSchema.getAttributes().size()) {
+                final Set<Tuple> result = new HashJoin(this, r, joinedSchema).join();
+                final BiPredicate<Object, Object> operator = getDomain(s.getTargetAttributeName()).getBooleanOperators().get(s.getOperator());
+                final int targetOrdinal = joinedSchema.getOrdinal(s.getTargetAttributeName());
+                final int otherOrdinal = joinedSchema.getOrdinal(s.getAttributeName());
+
+                result.removeIf((t) -> !operator.test(t.getValues().getDataReference(targetOrdinal), t.getValues().getDataReference(otherOrdinal)));
+
+                return result;
+            }
+
+            return mergeJoin(r, joinedSchema, getSchema().getOrdinal(s.getTargetAttributeName()), r.getSchema().getOrdinal(s.getAttributeName()), s.getOperator());
+        }
+
+        if (r instanceof AbstractRelation) {
+            for (int ordinal = 0; ordinal < getSchema().getAttributes().size(); ordinal++) {
+                final int otherOrdinal = r.getSchema().getOrdinal(getSchema().getAttributes().getAttributeName(ordinal));
+
+                if (otherOrdinal >= 0 && getOrderedInput(ordinal) != null && ((AbstractRelation)r).getOrderedInput(otherOrdinal) != null) {
+                    return mergeJoin(r, joinedSchema, ordinal, otherOrdinal, Equal);
+                }
+            }
+        }
+
+        return new HashJoin(this, r, joinedSchema).join();
+    }
+
+    /**
+     * Get a spliterator over the tuples in the order of the primary key, if
+     * an index already keeps them in that order.
+     * <p>
+     * @param characteristics The characteristics to report besides
+     *                        {@link Spliterator#SORTED} and
+     *                        {@link Spliterator#ORDERED}.
+     * @return The spliterator, or null if the relation has no primary key or
+     *         no ordered index on it.
+     */
+    final Spliterator<Tuple> getSortedSpliterator(int characteristics) {
+        final int ordinal = getPrimaryKeyOrdinal();
+        final MergeJoin.Input input = ordinal >= 0 ? getOrderedInput(ordinal) : null;
+
+        if (input == null) {
+            return null;
+        } else {
+            final Comparator<Object> comparator = Column.comparator(getDomain(schema.getAttributes().getAttributeName(ordinal)));
+
+            return new PositionSpliterator(
+                    input::getTuple,
+                    0,
+                    input.size(),
+                    characteristics | Spliterator.SORTED | Spliterator.ORDERED,
+                    (t1, t2) -> comparator.compare(t1.getValues().getDataReference(ordinal), t2.getValues().getDataReference(ordinal)));
+        }
+    }
+
+    /**
+     * Get the tuples of this relation as a set that answers contains in
+     * constant time. Relations whose tuple set already does should return
+     * it instead of copying.
+     * <p>
+     * @return The tuples, never null.
+     */
+    Set<Tuple> getHashedTuples() {
+        return new HashSet<>(getTuples());
+    }
+
+    /**
+     * Unite this relation with another. The relations are merged if both
+     * have the same primary key and an ordered index on it, and hashed
+     * otherwise.
+     * <p>
+     * @param r The other relation, of the same attributes.
+     * @return The united tuples, never null.
+     * @throws DuplicateKeyException If the relations are merged and hold
+     *                               different tuples with the same key.
+     * @see RelationSchema#union(RelationSchema)
+     */
+    protected final Set<Tuple> getUnitedTuples(Relation r) throws DuplicateKeyException {
+        return combine(r, SetOperations.Operator.Union);
+    }
+
+    /**
+     * Intersect this relation with another, the same way as
+     * {@link #getUnitedTuples(Relation)}.
+     * <p>
+     * @param r The other relation, of the same attributes.
+     * @return The tuples in both, never null.
+     * @see RelationSchema#intersect(RelationSchema)
+     */
+    protected final Set<Tuple> getIntersectedTuples(Relation r) {
+        return combine(r, SetOperations.Operator.Intersect);
+    }
+
+    /**
+     * Subtract another relation from this one, the same way as
+     * {@link #getUnitedTuples(Relation)}.
+     * <p>
+     * @param r The other relation, of the same attributes.
+     * @return The tuples of this relation not in the other, never null.
+     * @see RelationSchema#subtract(RelationSchema)
+     */
+    protected final Set<Tuple> getSubtractedTuples(Relation r) {
+        return combine(r, SetOperations.Operator.Subtract);
+    }
+
+    private Set<Tuple> combine(Relation r, SetOperations.Operator operator) {
+        final int ordinal = getPrimaryKeyOrdinal();
+
+        if (ordinal >= 0 && r instanceof AbstractRelation && getSchema().getPrimaryKey().equals(r.getSchema().getPrimaryKey())) {
+            final MergeJoin.Input input = getOrderedInput(ordinal);
+            final MergeJoin.Input otherInput = ((AbstractRelation)r).getOrderedInput(ordinal);
+
+            if (input != null && otherInput != null) {
+                return SetOperations.merge(operator, input, otherInput, Column.comparator(getDomain(getSchema().getAttributes().getAttributeName(ordinal))));
+            }
+        }
+
+        if (operator == SetOperations.Operator.Intersect && r.getTuples().size() > getTuples().size()) {
+            return SetOperations.hash(operator, r.getTuples(), getHashedTuples());
+        }
+
+        return SetOperations.hash(operator, getTuples(), r instanceof AbstractRelation ? ((AbstractRelation)r).getHashedTuples() : new HashSet<>(r.getTuples()));
+    }
+
+    private Set<Tuple> mergeJoin(Relation r, RelationSchema joinedSchema, int ordinal, int otherOrdinal, Domain.BooleanOperator operator) {
+        final Domain<Object> domain = getDomain(getSchema().getAttributes().getAttributeName(ordinal));
+        final MergeJoin.Input input = getOrderedInput(ordinal);
+        final MergeJoin.Input otherInput = r instanceof AbstractRelation ? ((AbstractRelation)r).getOrderedInput(otherOrdinal) : null;
+
+        return new MergeJoin(
+                this,
+                input != null ? input : MergeJoin.Input.sort(getTuples(), ordinal, Column.comparator(domain)),
+                r,
+                otherInput != null ? otherInput : MergeJoin.Input.sort(r.getTuples(), otherOrdinal, Column.comparator(domain)),
+                joinedSchema,
+                operator,
+                domain).join();
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiPredicate;
+
+/**
+ * An index from each distinct datum of a column to a {@link RowBitmap} of
+ * the rows holding it. It suits columns with few distinct values over many
+ * rows, where the bitmaps are small and selects on several such columns can
+ * be combined without looking at the rows at all.
+ * <p>
+ * @author Chad
+ */
+final class BitmapIndex {
+
+    private final Column column;
+    private final Map<Object, RowBitmap> bitmaps;
+    private final RowBitmap all;
+
+    /**
+     * Index every row of a column.
+     * <p>
+     * @param column The column.
+     */
+    BitmapIndex(Column column) {
+        final Map<Object, RowBitmap.Builder> builders = new HashMap<>();
+
+        this.column = requireNonNull(column, "Column was null");
+        this.bitmaps = new HashMap<>();
+        this.all = RowBitmap.all(column.size());
+
+        for (int row = 0; row < column.size(); row++) {
+            builders.computeIfAbsent(column.get(row), (k) -> new RowBitmap.Builder()).add(row);
+        }
+
+        for (final Entry<Object, RowBitmap.Builder> entry : builders.entrySet()) {
+            bitmaps.put(entry.getKey(), entry.getValue().build());
+        }
+    }
+
+    /**
+     * Find the rows whose data satisfies an operator against a constant. An
+     * equality is one lookup, an inequality removes that lookup from every
+     * row, and an ordering is the union of the bitmaps of the distinct data
+     * that satisfy it.
+     * <p>
+     * @param operator The operator, where the row data is the left operand.
+     * @param constant The right operand.
+     * @return The rows, never null.
+     */
+    RowBitmap select(BooleanOperator operator, Object constant) {
+        switch (operator) {
+            case Equal:
+                return bitmaps.getOrDefault(constant, RowBitmap.EMPTY);
+            case NotEqual:
+                return all.andNot(bitmaps.getOrDefault(constant, RowBitmap.EMPTY));
+            default:
+                final BiPredicate<Object, Object> predicate = column.getDomain().getBooleanOperators().get(operator);
+                RowBitmap result = RowBitmap.EMPTY;
+
+                for (final Entry<Object, RowBitmap> entry : bitmaps.entrySet()) {
+                    if (predicate.test(entry.getKey(), constant)) {
+                        result = result.or(entry.getValue());
+                    }
+                }
+
+                return result;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.domain.IntegerDomain;
+import cehardin.roil.domain.StringDomain;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BiPredicate;
+
+/**
+ * The data of one attribute for every row of a {@link ColumnarRelation}.
+ * Columns are immutable, every operation that changes data returns a new
+ * column.
+ * <p>
+ * Row selections are passed around as a selection vector: an array of row
+ * numbers in ascending order and a count of how many of them are in use.
+ * <p>
+ * @author Chad
+ */
+abstract class Column {
+
+    /**
+     * Create a column holding the data. Attributes of the
+     * {@link IntegerDomain} are stored as primitive ints, and attributes of
+     * the {@link StringDomain} are dictionary encoded.
+     * <p>
+     * @param domain The domain of the data.
+     * @param data   The data, one element per row, which may be kept by the
+     *               column.
+     * @return The column, never null.
+     */
+    static Column of(Domain<Object> domain, Object[] data) {
+        if ((Domain<?>)domain instanceof IntegerDomain) {
+            final int[] ints = new int[data.length];
+
+            for (int i = 0; i < data.length; i++) {
+                ints[i] = (Integer)data[i];
+            }
+
+            return new IntColumn(domain, ints);
+        } else if ((Domain<?>)domain instanceof StringDomain) {
+            return DictionaryColumn.encode(domain, data);
+        } else {
+            return new ObjectColumn(domain, data);
+        }
+    }
+
+    /**
+     * Get the ordering of a domain's data, which is the comparator of its
+     * range or the natural ordering if the range has none.
+     * <p>
+     * @param domain The domain.
+     * @return The comparator, never null.
+     */
+    static Comparator<Object> comparator(Domain<Object> domain) {
+        final Comparator<? super Object> comparator = domain.getRange().comparator();
+        return comparator == null ? Column::compareNaturally : comparator::compare;
+    }
+
+    /**
+     * Compare data of a domain whose range has no comparator, which must then
+     * be comparable.
+     */
+    @SuppressWarnings("unchecked") // A range without a comparator holds comparable data
+    private static int compareNaturally(Object o1, Object o2) {
+        return ((Comparable<Object>)o1).compareTo(o2);
+    }
+
+    /**
+     * Create a selection vector of every row.
+     * <p>
+     * @param count The number of rows.
+     * @return The rows 0 to count - 1.
+     */
+    static int[] allRows(int count) {
+        final int[] rows = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+
+        return rows;
+    }
+
+    /**
+     * The number of rows a block of {@link #select(Column[], BooleanOperator[], Object[], int, int, int[])}
+     * covers, whose mask is {@link #BLOCK_WORDS} longs.
+     */
+    static final int BLOCK_SIZE = 1024;
+    static final int BLOCK_WORDS = BLOCK_SIZE / 64;
+
+    /**
+     * Select the rows of a range whose data satisfies every one of a
+     * conjunction of operators against constants. The range is evaluated a
+     * block of {@link #BLOCK_SIZE} rows at a time: each operator clears the
+     * bits of the block's mask for the rows that fail it, an operator is
+     * skipped once the mask is empty, and the rows left in the mask are
+     * written out last. The columns compare without branching per row where
+     * they can, so the cost does not depend on how selective the operators
+     * are.
+     * <p>
+     * @param columns   The column of each operator.
+     * @param operators The operators, where the row data is the left operand.
+     * @param constants The right operand of each operator.
+     * @param from      The first row of the range.
+     * @param count     The number of rows in the range.
+     * @param rows      Where the selected rows are written, in ascending
+     *                  order.
+     * @return The number of rows selected.
+     */
+    static int select(Column[] columns, BooleanOperator[] operators, Object[] constants, int from, int count, int[] rows) {
+        final long[] mask = new long[BLOCK_WORDS];
+        int selected = 0;
+
+        for (int block = from; block < from + count; block += BLOCK_SIZE) {
+            final int blockCount = Math.min(BLOCK_SIZE, from + count - block);
+            boolean isEmpty = false;
+
+            Arrays.fill(mask, -1L);
+
+            for (int i = 0; i < columns.length && !isEmpty; i++) {
+                columns[i].mask(operators[i], constants[i], block, blockCount, mask);
+                isEmpty = isEmpty(mask);
+            }
+
+            if (!isEmpty) {
+                for (int w = 0; w << 6 < blockCount; w++) {
+                    long bits = (w << 6) + 64 <= blockCount ? mask[w] : mask[w] & ((1L << (blockCount & 63)) - 1);
+
+                    while (bits != 0) {
+                        rows[selected++] = block + (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    private static boolean isEmpty(long[] mask) {
+        long bits = 0;
+
+        for (final long word : mask) {
+            bits |= word;
+        }
+
+        return bits == 0;
+    }
+
+    private final Domain<Object> domain;
+
+    protected Column(Domain<Object> domain) {
+        this.domain = requireNonNull(domain, "Domain was null");
+    }
+
+    final Domain<Object> getDomain() {
+        return domain;
+    }
+
+    /**
+     * Get the number of rows.
+     * <p>
+     * @return The number of rows.
+     */
+    abstract int size();
+
+    /**
+     * Get the data of a row.
+     * <p>
+     * @param row The row.
+     * @return The data, never null.
+     */
+    abstract Object get(int row);
+
+    /**
+     * Create a new column from some of the rows of this column.
+     * <p>
+     * @param rows  The rows to keep, in the order they will appear.
+     * @param count The number of rows in use.
+     * @return The new column.
+     */
+    abstract Column gather(int[] rows, int count);
+
+    /**
+     * Create a new column with one row appended.
+     * <p>
+     * @param data The data of the new row.
+     * @return The new column.
+     */
+    abstract Column append(Object data);
+
+    /**
+     * Create a new column with the data of one row replaced.
+     * <p>
+     * @param row  The row to replace.
+     * @param data The new data.
+     * @return The new column.
+     */
+    abstract Column set(int row, Object data);
+
+    /**
+     * Narrow a selection vector to the rows whose data satisfies the operator
+     * against a constant. The rows are compacted in place.
+     * <p>
+     * @param operator The operator, where the row data is the left operand.
+     * @param constant The right operand.
+     * @param rows     The selection vector.
+     * @param count    The number of rows in use.
+     * @return The number of rows still selected.
+     */
+    int select(BooleanOperator operator, Object constant, int[] rows, int count) {
+        final BiPredicate<Object, Object> predicate = domain.getBooleanOperators().get(operator);
+        int selected = 0;
+
+        for (int i = 0; i < count; i++) {
+            final int row = rows[i];
+
+            if (predicate.test(get(row), constant)) {
+                rows[selected++] = row;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Clear the bits of a block's mask for the rows whose data does not
+     * satisfy the operator against a constant.
+     * <p>
+     * @param operator The operator, where the row data is the left operand.
+     * @param constant The right operand.
+     * @param from     The first row of the block.
+     * @param count    The number of rows in the block, at most
+     *                 {@link #BLOCK_SIZE}.
+     * @param mask     The mask of {@link #BLOCK_WORDS} longs, where bit i is
+     *                 for row from + i.
+     */
+    void mask(BooleanOperator operator, Object constant, int from, int count, long[] mask) {
+        final BiPredicate<Object, Object> predicate = domain.getBooleanOperators().get(operator);
+
+        for (int w = 0; w << 6 < count; w++) {
+            final int base = from + (w << 6);
+            final int end = Math.min(64, count - (w << 6));
+            long bits = 0;
+
+            for (int j = 0; j < end; j++) {
+                if (predicate.test(get(base + j), constant)) {
+                    bits |= 1L << j;
+                }
+            }
+
+            mask[w] &= bits;
+        }
+    }
+
+    /**
+     * Narrow a selection vector to the rows whose data satisfies the operator
+     * against the same row of another column. The rows are compacted in place.
+     * <p>
+     * @param operator The operator, where this column is the left operand.
+     * @param other    The column of the right operand.
+     * @param rows     The selection vector.
+     * @param count    The number of rows in use.
+     * @return The number of rows still selected.
+     */
+    int select(BooleanOperator operator, Column other, int[] rows, int count) {
+        final BiPredicate<Object, Object> predicate = domain.getBooleanOperators().get(operator);
+        int selected = 0;
+
+        for (int i = 0; i < count; i++) {
+            final int row = rows[i];
+
+            if (predicate.test(get(row), other.get(row))) {
+                rows[selected++] = row;
+            }
+        }
+
+        return selected;
+    }
+}
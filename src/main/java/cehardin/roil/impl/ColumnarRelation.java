@@ -0,0 +1,974 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static cehardin.roil.util.Sets.filter;
+import static cehardin.roil.util.Sets.transform;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Attributes;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Joinable.JoinByAttribute;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.Value;
+import cehardin.roil.Values;
+import cehardin.roil.exception.AggregateFailedException;
+import cehardin.roil.exception.DeleteFailedException;
+import cehardin.roil.exception.DuplicateKeyException;
+import cehardin.roil.exception.InsertFailedException;
+import cehardin.roil.exception.JoinFailedException;
+import cehardin.roil.exception.ModifyFailedException;
+import cehardin.roil.exception.NoSuchAttributeNameException;
+import cehardin.roil.exception.SelectFailedException;
+import cehardin.roil.exception.TupleDoesNotConformToSchemaException;
+import cehardin.roil.util.Range;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A relation that stores its tuples column-wise, one {@link Column} per
+ * attribute of the schema. Tuples are only created when a caller asks for
+ * them through {@link #getTuples()}; select, project and rename work directly
+ * on the columns.
+ * <p>
+ * @author Chad
+ */
+public final class ColumnarRelation extends AbstractRelation {
+
+    private final Attributes attributes;
+    private final Column[] columns;
+    private final int rowCount;
+    private final int primaryKeyOrdinal;
+    private volatile UniqueIndex primaryKeyIndex;
+    private final int[][] secondaryKeyOrdinals;
+    private final RowIndex[] secondaryKeyIndexes;
+    private final Set<AttributeName> orderedAttributeNames;
+    private final OrderedIndex[] orderedIndexes;
+    private final Set<AttributeName> bitmapAttributeNames;
+    private final BitmapIndex[] bitmapIndexes;
+
+    /**
+     * Create a relation holding the tuples.
+     * <p>
+     * @param schema The schema of the relation.
+     * @param tuples The tuples, each of which must conform to the schema.
+     * @throws TupleDoesNotConformToSchemaException If a tuple does not conform
+     *                                              to the schema.
+     * @throws DuplicateKeyException                If two tuples have the same
+     *                                              primary key.
+     */
+    public ColumnarRelation(RelationSchema schema, Set<Tuple> tuples) throws TupleDoesNotConformToSchemaException, DuplicateKeyException {
+        super(schema);
+        this.attributes = schema.getAttributes();
+        this.columns = new Column[attributes.size()];
+        this.rowCount = requireNonNull(tuples, "Tuples was null").size();
+        this.primaryKeyOrdinal = getPrimaryKeyOrdinal();
+        this.secondaryKeyOrdinals = getSecondaryKeyOrdinals();
+        this.secondaryKeyIndexes = new RowIndex[secondaryKeyOrdinals.length];
+        this.orderedAttributeNames = emptySet();
+        this.orderedIndexes = new OrderedIndex[columns.length];
+        this.bitmapAttributeNames = emptySet();
+        this.bitmapIndexes = new BitmapIndex[columns.length];
+
+        final Object[][] data = new Object[columns.length][rowCount];
+        int row = 0;
+
+        for (final Tuple tuple : tuples) {
+            final Values values = tuple.getValues();
+
+            checkConforms(tuple);
+
+            for (int i = 0; i < columns.length; i++) {
+                data[i][row] = values.getDataReference(i);
+            }
+
+            row++;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.of(getDomain(attributes.getAttributeName(i)), data[i]);
+        }
+
+        if (primaryKeyOrdinal >= 0) {
+            primaryKeyIndex = new UniqueIndex(columns[primaryKeyOrdinal]);
+        }
+    }
+
+    private ColumnarRelation(RelationSchema schema, Column[] columns, int rowCount, Set<AttributeName> orderedAttributeNames, Set<AttributeName> bitmapAttributeNames) {
+        this(schema, columns, rowCount, null, orderedAttributeNames, bitmapAttributeNames);
+    }
+
+    private ColumnarRelation(RelationSchema schema, Column[] columns, int rowCount, UniqueIndex primaryKeyIndex, Set<AttributeName> orderedAttributeNames, Set<AttributeName> bitmapAttributeNames) {
+        super(schema);
+        this.attributes = schema.getAttributes();
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.primaryKeyOrdinal = getPrimaryKeyOrdinal();
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.secondaryKeyOrdinals = getSecondaryKeyOrdinals();
+        this.secondaryKeyIndexes = new RowIndex[secondaryKeyOrdinals.length];
+        this.orderedAttributeNames = orderedAttributeNames;
+        this.orderedIndexes = new OrderedIndex[columns.length];
+        this.bitmapAttributeNames = bitmapAttributeNames;
+        this.bitmapIndexes = new BitmapIndex[columns.length];
+    }
+
+    /**
+     * Create a relation with the same tuples that also keeps an ordered index
+     * of an attribute. Range and equality selects on the attribute then
+     * search the index instead of scanning the column. The index is carried
+     * through every relation derived from the new one, and is built the first
+     * time a select needs it.
+     * <p>
+     * @param attributeName The attribute to index.
+     * @return The new relation, or this relation if the attribute is already
+     *         indexed.
+     * @throws NoSuchAttributeNameException If the schema has no such attribute.
+     */
+    public ColumnarRelation withOrderedIndex(AttributeName attributeName) throws NoSuchAttributeNameException {
+        final Set<AttributeName> newOrderedAttributeNames = new HashSet<>(orderedAttributeNames);
+
+        getDomain(attributeName);
+
+        if (!newOrderedAttributeNames.add(attributeName)) {
+            return this;
+        }
+
+        return new ColumnarRelation(getSchema(), columns, rowCount, primaryKeyIndex, unmodifiableSet(newOrderedAttributeNames), bitmapAttributeNames);
+    }
+
+    /**
+     * Create a relation with the same tuples that also keeps a bitmap index
+     * of an attribute, which suits attributes with few distinct values over
+     * many rows. Selects on bitmap indexed attributes are answered by
+     * combining their bitmaps rather than scanning the columns. The index is
+     * carried through every relation derived from the new one, and is built
+     * the first time a select needs it.
+     * <p>
+     * @param attributeName The attribute to index.
+     * @return The new relation, or this relation if the attribute is already
+     *         indexed.
+     * @throws NoSuchAttributeNameException If the schema has no such attribute.
+     */
+    public ColumnarRelation withBitmapIndex(AttributeName attributeName) throws NoSuchAttributeNameException {
+        final Set<AttributeName> newBitmapAttributeNames = new HashSet<>(bitmapAttributeNames);
+
+        getDomain(attributeName);
+
+        if (!newBitmapAttributeNames.add(attributeName)) {
+            return this;
+        }
+
+        return new ColumnarRelation(getSchema(), columns, rowCount, primaryKeyIndex, orderedAttributeNames, unmodifiableSet(newBitmapAttributeNames));
+    }
+
+    @Override
+    public Set<Tuple> getTuples() {
+        return new TupleSet();
+    }
+
+    /**
+     * Get a spliterator over the rows, which creates each tuple only when it
+     * is reached. The rows are in the order of the primary key if it has an
+     * ordered index.
+     */
+    @Override
+    public Spliterator<Tuple> spliterator() {
+        final Spliterator<Tuple> sorted = getSortedSpliterator(Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+
+        return sorted != null ? sorted : new PositionSpliterator(this::materialize, 0, rowCount, Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL, null);
+    }
+
+    /**
+     * Stream the tuples of the selected rows, creating each one only when it
+     * is reached instead of gathering the selected rows into new columns.
+     */
+    @Override
+    public Stream<Tuple> stream(List<SelectByConstant> conjunction) throws SelectFailedException {
+        final int[] rows = selectRows(conjunction);
+
+        return StreamSupport.stream(new PositionSpliterator((i) -> materialize(rows[i]), 0, rows.length, Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL, null), false);
+    }
+
+    /**
+     * Count the selected rows, without gathering them or creating tuples.
+     */
+    @Override
+    public long count(List<SelectByConstant> conjunction) throws SelectFailedException {
+        return selectRows(conjunction).length;
+    }
+
+    /**
+     * Select the rows found by probing the ordered index once per range.
+     * Failing that, each select is answered the way a conjunction of it
+     * alone would be, from whatever index helps, and the rows are united.
+     */
+    @Override
+    public Relation selectAny(List<SelectByConstant> disjunction) throws SelectFailedException {
+        final List<Range<Object>> ranges = getDisjunctionRanges(disjunction);
+        final OrderedIndex index = ranges == null ? null : orderedIndex(attributes.getOrdinal(disjunction.get(0).getTargetAttributeName()));
+        final int[] rows;
+
+        if (index != null) {
+            rows = index.select(ranges);
+        } else {
+            RowBitmap bitmap = RowBitmap.EMPTY;
+
+            for (final SelectByConstant s : disjunction) {
+                final RowBitmap.Builder builder = new RowBitmap.Builder();
+
+                for (final int row : selectRows(Collections.singletonList(s))) {
+                    builder.add(row);
+                }
+
+                bitmap = bitmap.or(builder.build());
+            }
+
+            rows = bitmap.toArray();
+        }
+
+        return gather(rows, rows.length);
+    }
+
+    @Override
+    public Function<SelectByConstant, Relation> getSelectByConstantFunction() {
+        return (s) -> selectByConstant(s);
+    }
+
+    @Override
+    public Function<List<SelectByConstant>, Relation> getSelectByConstantsFunction() {
+        return (l) -> selectByConstants(l);
+    }
+
+    @Override
+    public Function<SelectByAttribute, Relation> getSelectByAttributeFunction() {
+        return (s) -> selectByAttribute(s);
+    }
+
+    @Override
+    public Function<Predicate<AttributeName>, Relation> getProjectFunction() {
+        return (p) -> projectColumns(p);
+    }
+
+    @Override
+    public Function<UnaryOperator<AttributeName>, Relation> getRenameFunction() {
+        return (f) -> renameColumns(f);
+    }
+
+    @Override
+    public Function<Tuple, Relation> getInsertFunction() {
+        return (t) -> insertRow(t);
+    }
+
+    @Override
+    public Function<Tuple, Relation> getDeleteFunction() {
+        return (t) -> deleteRow(t);
+    }
+
+    @Override
+    public Function<Modify, Relation> getModifyFunction() {
+        return (m) -> modifyRow(m);
+    }
+
+    @Override
+    public Function<Relation, Relation> getJoinFunction() {
+        return (r) -> joinRows(r);
+    }
+
+    @Override
+    public Function<JoinByAttribute<Relation>, Relation> getJoinByAttributeFunction() {
+        return (j) -> joinRows(j.getOther(), j.getCondition());
+    }
+
+    @Override
+    public Function<Aggregate, Relation> getAggregateFunction() {
+        return (a) -> aggregateRows(a);
+    }
+
+    @Override
+    public Function<Relation, Relation> getUnionFunction() {
+        return (r) -> unionRows(r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getIntersectFunction() {
+        return (r) -> intersectRows(r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getSubtractFunction() {
+        return (r) -> subtractRows(r);
+    }
+
+    /**
+     * Get the primary key index, building it the first time it is needed.
+     * Relations derived by select, project or delete cannot contain
+     * duplicate keys, so they build their index lazily without checking.
+     * <p>
+     * @return The index, or null if the schema has no primary key.
+     */
+    private UniqueIndex primaryKeyIndex() {
+        UniqueIndex index = primaryKeyIndex;
+
+        if (index == null && primaryKeyOrdinal >= 0) {
+            index = new UniqueIndex(columns[primaryKeyOrdinal]);
+            primaryKeyIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the index of a secondary key, building it the first time it is
+     * needed. Every change to the data creates a new relation, so indexes are
+     * rebuilt on demand rather than carried over.
+     * <p>
+     * @param key The position of the key in secondaryKeyOrdinals.
+     * @return The index, never null.
+     */
+    private RowIndex secondaryKeyIndex(int key) {
+        RowIndex index = secondaryKeyIndexes[key];
+
+        if (index == null) {
+            final Column[] keyColumns = new Column[secondaryKeyOrdinals[key].length];
+
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyColumns[i] = columns[secondaryKeyOrdinals[key][i]];
+            }
+
+            index = new RowIndex(keyColumns);
+            secondaryKeyIndexes[key] = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the ordered index of an attribute, building it the first time it is
+     * needed.
+     * <p>
+     * @param ordinal The ordinal of the attribute.
+     * @return The index, or null if the attribute has no ordered index.
+     */
+    private OrderedIndex orderedIndex(int ordinal) {
+        OrderedIndex index = orderedIndexes[ordinal];
+
+        if (index == null && orderedAttributeNames.contains(attributes.getAttributeName(ordinal))) {
+            index = OrderedIndex.of(columns[ordinal]);
+            orderedIndexes[ordinal] = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the bitmap index of an attribute, building it the first time it is
+     * needed.
+     * <p>
+     * @param ordinal The ordinal of the attribute.
+     * @return The index, or null if the attribute has no bitmap index.
+     */
+    private BitmapIndex bitmapIndex(int ordinal) {
+        BitmapIndex index = bitmapIndexes[ordinal];
+
+        if (index == null && bitmapAttributeNames.contains(attributes.getAttributeName(ordinal))) {
+            index = new BitmapIndex(columns[ordinal]);
+            bitmapIndexes[ordinal] = index;
+        }
+
+        return index;
+    }
+
+    private int ordinal(AttributeName attributeName) {
+        getDomain(attributeName);
+        return attributes.getOrdinal(attributeName);
+    }
+
+    private Relation gather(int[] rows, int count) {
+        final Column[] newColumns;
+
+        if (count == rowCount) {
+            return this;
+        }
+
+        newColumns = new Column[columns.length];
+
+        if (Parallelism.isParallel(count)) {
+            Parallelism.forEach(columns.length, (i) -> newColumns[i] = columns[i].gather(rows, count));
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                newColumns[i] = columns[i].gather(rows, count);
+            }
+        }
+
+        return new ColumnarRelation(getSchema(), newColumns, count, orderedAttributeNames, bitmapAttributeNames);
+    }
+
+    private Relation selectByConstant(SelectByConstant s) {
+        return selectByConstants(Collections.singletonList(requireNonNull(s, "Select was null")));
+    }
+
+    private Relation selectByConstants(List<SelectByConstant> conjunction) {
+        final int[] rows = selectRows(conjunction);
+
+        return gather(rows, rows.length);
+    }
+
+    /**
+     * Select the rows satisfying every select. Equality selects that bind the
+     * primary key or every attribute of a secondary key are answered from
+     * the index. Otherwise the selects on attributes with a bitmap index are
+     * answered by intersecting their bitmaps, or failing that the selects on
+     * an attribute with an ordered index are normalized into ranges and
+     * answered from it with one probe per range. The remaining selects only
+     * scan the rows found, and contradictory selects read no rows at all.
+     * When no index helped, every row is scanned with the selects evaluated
+     * together a block of rows at a time.
+     * <p>
+     * @param conjunction The selects.
+     * @return The rows selected, in ascending order.
+     */
+    private int[] selectRows(List<SelectByConstant> conjunction) {
+        final boolean[] answered = new boolean[requireNonNull(conjunction, "Conjunction was null").size()];
+        final List<List<Range<Object>>> ranges;
+        final Object[] equalities;
+        final int key;
+        final Column[] scanColumns;
+        final BooleanOperator[] scanOperators;
+        final Object[] scanConstants;
+        int remaining = 0;
+        int[] rows;
+        int count;
+
+        for (final SelectByConstant s : conjunction) {
+            final Column column = columns[ordinal(requireNonNull(s, "Select was null").getTargetAttributeName())];
+            final Value<?> constant = s.getConstant();
+
+            if (!isSameDomain(column.getDomain(), constant.getDomain())) {
+                throw new SelectFailedException(format("Constant domain %s does not match the domain %s of attribute %s", constant.getDomain().getName(), column.getDomain().getName(), s.getTargetAttributeName()));
+            }
+        }
+
+        ranges = getRanges(conjunction);
+
+        for (final List<Range<Object>> attributeRanges : ranges) {
+            if (attributeRanges != null && attributeRanges.isEmpty()) {
+                return new int[0];
+            }
+        }
+
+        equalities = getEqualities(conjunction);
+        key = findBoundKey(secondaryKeyOrdinals, equalities);
+
+        if (primaryKeyOrdinal >= 0 && equalities[primaryKeyOrdinal] != null) {
+            final int row = primaryKeyIndex().find(equalities[primaryKeyOrdinal]);
+            rows = row < 0 ? new int[0] : new int[]{row};
+        } else if (key >= 0) {
+            final Object[] keyData = new Object[secondaryKeyOrdinals[key].length];
+
+            for (int i = 0; i < keyData.length; i++) {
+                keyData[i] = equalities[secondaryKeyOrdinals[key][i]];
+            }
+
+            rows = secondaryKeyIndex(key).find(keyData);
+        } else {
+            RowBitmap bitmap = null;
+
+            rows = null;
+
+            for (int i = 0; i < answered.length; i++) {
+                final SelectByConstant s = conjunction.get(i);
+                final BitmapIndex index = bitmapIndex(attributes.getOrdinal(s.getTargetAttributeName()));
+
+                if (index != null) {
+                    final RowBitmap selected = index.select(s.getOperator(), s.getConstant().getDataReference());
+
+                    bitmap = bitmap == null ? selected : bitmap.and(selected);
+                    answered[i] = true;
+                }
+            }
+
+            if (bitmap != null) {
+                rows = bitmap.toArray();
+            }
+
+            for (final SelectByConstant s : conjunction) {
+                if (rows == null && OrderedIndex.isSupported(s.getOperator())) {
+                    final int ordinal = attributes.getOrdinal(s.getTargetAttributeName());
+                    final OrderedIndex index = orderedIndex(ordinal);
+
+                    if (index != null) {
+                        rows = index.select(ranges.get(ordinal));
+
+                        for (int i = 0; i < answered.length; i++) {
+                            answered[i] |= conjunction.get(i).getTargetAttributeName().equals(s.getTargetAttributeName());
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < answered.length; i++) {
+            if (!answered[i]) {
+                remaining++;
+            }
+        }
+
+        scanColumns = new Column[remaining];
+        scanOperators = new BooleanOperator[remaining];
+        scanConstants = new Object[remaining];
+        remaining = 0;
+
+        for (int i = 0; i < answered.length; i++) {
+            final SelectByConstant s = conjunction.get(i);
+
+            if (!answered[i]) {
+                scanColumns[remaining] = columns[attributes.getOrdinal(s.getTargetAttributeName())];
+                scanOperators[remaining] = s.getOperator();
+                scanConstants[remaining] = s.getConstant().getDataReference();
+                remaining++;
+            }
+        }
+
+        if (rows == null) {
+            rows = new int[rowCount];
+            count = Parallelism.select(rowCount, rows, (from, chunkCount, chunkRows) -> Column.select(scanColumns, scanOperators, scanConstants, from, chunkCount, chunkRows));
+        } else {
+            count = Parallelism.select(rows, rows.length, (chunk, chunkCount) -> {
+                int selected = chunkCount;
+
+                for (int i = 0; i < scanColumns.length; i++) {
+                    selected = scanColumns[i].select(scanOperators[i], scanConstants[i], chunk, selected);
+                }
+
+                return selected;
+            });
+        }
+
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    private Relation selectByAttribute(SelectByAttribute s) {
+        final Column target = columns[ordinal(s.getTargetAttributeName())];
+        final Column other = columns[ordinal(s.getAttributeName())];
+        final int[] rows = Column.allRows(rowCount);
+
+        if (!isSameDomain(target.getDomain(), other.getDomain())) {
+            throw new SelectFailedException(format("Attribute %s has domain %s which does not match the domain %s of attribute %s", s.getAttributeName(), other.getDomain().getName(), target.getDomain().getName(), s.getTargetAttributeName()));
+        }
+
+        return gather(rows, Parallelism.select(rows, rowCount, (chunk, chunkCount) -> target.select(s.getOperator(), other, chunk, chunkCount)));
+    }
+
+    private Relation projectColumns(Predicate<AttributeName> p) {
+        final RelationSchema newSchema = getSchema().project(p);
+        final List<Column> kept = new ArrayList<>();
+        final Column[] newColumns;
+
+        for (int i = 0; i < columns.length; i++) {
+            if (p.test(attributes.getAttributeName(i))) {
+                kept.add(columns[i]);
+            }
+        }
+
+        newColumns = kept.toArray(new Column[kept.size()]);
+
+        if (newColumns.length == columns.length || newSchema.getPrimaryKey().isPresent()) {
+            return new ColumnarRelation(newSchema, newColumns, rowCount, filter(orderedAttributeNames, p), filter(bitmapAttributeNames, p));
+        } else {
+            final Set<List<Object>> seen = Parallelism.isParallel(rowCount) ? ConcurrentHashMap.newKeySet(rowCount) : new HashSet<>();
+            final int[] rows = Column.allRows(rowCount);
+            final int count = Parallelism.select(rows, rowCount, (chunk, chunkCount) -> {
+                int selected = 0;
+
+                for (int j = 0; j < chunkCount; j++) {
+                    final Object[] key = new Object[newColumns.length];
+
+                    for (int i = 0; i < newColumns.length; i++) {
+                        key[i] = newColumns[i].get(chunk[j]);
+                    }
+
+                    if (seen.add(Arrays.asList(key))) {
+                        chunk[selected++] = chunk[j];
+                    }
+                }
+
+                return selected;
+            });
+
+            if (count != rowCount) {
+                for (int i = 0; i < newColumns.length; i++) {
+                    newColumns[i] = newColumns[i].gather(rows, count);
+                }
+            }
+
+            return new ColumnarRelation(newSchema, newColumns, count, filter(orderedAttributeNames, p), filter(bitmapAttributeNames, p));
+        }
+    }
+
+    private Relation renameColumns(UnaryOperator<AttributeName> f) {
+        final RelationSchema newSchema = getSchema().rename(f);
+        final Column[] newColumns = new Column[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            newColumns[newSchema.getOrdinal(f.apply(attributes.getAttributeName(i)))] = columns[i];
+        }
+
+        return new ColumnarRelation(newSchema, newColumns, rowCount, primaryKeyIndex, transform(orderedAttributeNames, f), transform(bitmapAttributeNames, f));
+    }
+
+    private Relation insertRow(Tuple tuple) {
+        final Values values = tuple.getValues();
+        final Column[] newColumns = new Column[columns.length];
+
+        try {
+            checkConforms(tuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new InsertFailedException(format("Cannot insert %s: %s", tuple, ex.getMessage()));
+        }
+
+        if (find(tuple) >= 0) {
+            return this;
+        }
+
+        if (primaryKeyOrdinal >= 0 && primaryKeyIndex().find(values.getDataReference(primaryKeyOrdinal)) >= 0) {
+            throw new DuplicateKeyException(format("Cannot insert %s, its primary key is already present", tuple));
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            newColumns[i] = columns[i].append(values.getDataReference(i));
+        }
+
+        return new ColumnarRelation(getSchema(), newColumns, rowCount + 1, primaryKeyOrdinal >= 0 ? primaryKeyIndex().append(newColumns[primaryKeyOrdinal]) : null, orderedAttributeNames, bitmapAttributeNames);
+    }
+
+    private Relation deleteRow(Tuple tuple) {
+        final int match;
+
+        try {
+            checkConforms(tuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new DeleteFailedException(format("Cannot delete %s: %s", tuple, ex.getMessage()));
+        }
+
+        match = find(tuple);
+
+        if (match < 0) {
+            return this;
+        } else {
+            final int[] rows = new int[rowCount - 1];
+            int count = 0;
+
+            for (int row = 0; row < rowCount; row++) {
+                if (row != match) {
+                    rows[count++] = row;
+                }
+            }
+
+            return gather(rows, count);
+        }
+    }
+
+    private Relation modifyRow(Modify m) {
+        final Tuple newTuple = requireNonNull(m.getNewTuple(), "New Tuple was null");
+        final int match;
+        final int existing;
+
+        try {
+            checkConforms(newTuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new ModifyFailedException(format("Cannot modify to %s", newTuple), ex);
+        }
+
+        match = find(requireNonNull(m.getMatchTuple(), "Match Tuple was null"));
+        existing = find(newTuple);
+
+        if (match < 0 || existing == match) {
+            return this;
+        } else if (existing >= 0) {
+            return deleteRow(m.getMatchTuple());
+        } else if (primaryKeyOrdinal >= 0 && !isPrimaryKeyFree(newTuple, match)) {
+            throw new DuplicateKeyException(format("Cannot modify to %s, its primary key is already present", newTuple));
+        } else {
+            final Values values = newTuple.getValues();
+            final Column[] newColumns = new Column[columns.length];
+
+            for (int i = 0; i < columns.length; i++) {
+                newColumns[i] = columns[i].set(match, values.getDataReference(i));
+            }
+
+            return new ColumnarRelation(getSchema(), newColumns, rowCount, primaryKeyOrdinal >= 0 ? primaryKeyIndex().set(newColumns[primaryKeyOrdinal], match) : null, orderedAttributeNames, bitmapAttributeNames);
+        }
+    }
+
+    /**
+     * Join with another relation, by merging if both have an ordered index on
+     * a shared attribute and by hashing otherwise. The indexes of neither
+     * relation carry over to the join.
+     */
+    private Relation joinRows(Relation r) {
+        return joinRows(r, getSchema().join(requireNonNull(r, "Relation was null").getSchema()), Optional.empty());
+    }
+
+    /**
+     * Join with another relation by merging on the attributes of the
+     * condition, sorting whichever side has no ordered index on its one.
+     */
+    private Relation joinRows(Relation r, SelectByAttribute condition) {
+        return joinRows(r, getSchema().join(requireNonNull(r, "Relation was null").getSchema(), condition), Optional.of(condition));
+    }
+
+    private Relation joinRows(Relation r, RelationSchema newSchema, Optional<SelectByAttribute> condition) {
+        try {
+            return new ColumnarRelation(newSchema, getJoinedTuples(r, newSchema, condition));
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new JoinFailedException(format("Cannot join: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Group the rows by hashing and aggregate each group, reading the data
+     * straight from the columns.
+     */
+    private Relation aggregateRows(Aggregate a) {
+        final RelationSchema newSchema = getSchema().aggregate(a);
+
+        try {
+            return new ColumnarRelation(newSchema, new HashAggregate(getSchema(), newSchema, a).aggregate(rowCount, (row, ordinal) -> columns[ordinal].get(row)));
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new AggregateFailedException(format("Cannot aggregate: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Unite with another relation, by merging if both have the same primary
+     * key and an ordered index on it and by hashing otherwise.
+     */
+    private Relation unionRows(Relation r) {
+        final RelationSchema newSchema = getSchema().union(requireNonNull(r, "Relation was null").getSchema());
+
+        return withRows(newSchema, getUnitedTuples(r), true);
+    }
+
+    private Relation intersectRows(Relation r) {
+        final RelationSchema newSchema = getSchema().intersect(requireNonNull(r, "Relation was null").getSchema());
+
+        return withRows(newSchema, getIntersectedTuples(r), false);
+    }
+
+    private Relation subtractRows(Relation r) {
+        final RelationSchema newSchema = getSchema().subtract(requireNonNull(r, "Relation was null").getSchema());
+
+        return withRows(newSchema, getSubtractedTuples(r), false);
+    }
+
+    /**
+     * Create a relation holding the result of a set operation, which is this
+     * relation if it holds as many tuples as this one under the same schema.
+     * The tuples come from relations of the same attributes, so they are laid
+     * out into columns without checking them again, and the new relation
+     * keeps the indexes of this one. Only a union can bring together two
+     * tuples with the same primary key, so only its index is built at once.
+     * <p>
+     * @param newSchema The schema of the result.
+     * @param newTuples The tuples of the result.
+     * @param united    If the tuples are a union.
+     * @return The relation, never null.
+     * @throws DuplicateKeyException If two united tuples have the same primary
+     *                               key.
+     */
+    private Relation withRows(RelationSchema newSchema, Set<Tuple> newTuples, boolean united) throws DuplicateKeyException {
+        final Column[] newColumns;
+        final Object[][] data;
+        final int newPrimaryKeyOrdinal;
+        int row = 0;
+
+        if (newTuples.size() == rowCount && newSchema.equals(getSchema())) {
+            return this;
+        }
+
+        newColumns = new Column[columns.length];
+        data = new Object[columns.length][newTuples.size()];
+        newPrimaryKeyOrdinal = newSchema.getPrimaryKey().isPresent() ? newSchema.getOrdinal(newSchema.getPrimaryKey().get().getAttributeName()) : -1;
+
+        for (final Tuple tuple : newTuples) {
+            final Values values = tuple.getValues();
+
+            for (int i = 0; i < columns.length; i++) {
+                data[i][row] = values.getDataReference(i);
+            }
+
+            row++;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            newColumns[i] = Column.of(columns[i].getDomain(), data[i]);
+        }
+
+        return new ColumnarRelation(newSchema, newColumns, row, united && newPrimaryKeyOrdinal >= 0 ? new UniqueIndex(newColumns[newPrimaryKeyOrdinal]) : null, orderedAttributeNames, bitmapAttributeNames);
+    }
+
+    /**
+     * Find the row holding a tuple.
+     * <p>
+     * @param tuple The tuple.
+     * @return The row, or -1 if no row holds the tuple.
+     */
+    private int find(Tuple tuple) {
+        final Values values = tuple.getValues();
+        final Attributes tupleAttributes = values.getAttributes();
+        final Object[] data = new Object[columns.length];
+
+        if (tupleAttributes.size() != columns.length) {
+            return -1;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            if (!tupleAttributes.getAttributeName(i).equals(attributes.getAttributeName(i))
+                    || !isSameDomain(tupleAttributes.getDomain(i), columns[i].getDomain())) {
+                return -1;
+            }
+
+            data[i] = values.getDataReference(i);
+        }
+
+        if (primaryKeyOrdinal >= 0) {
+            final int row = primaryKeyIndex().find(data[primaryKeyOrdinal]);
+            return row >= 0 && isRow(row, data) ? row : -1;
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            if (isRow(row, data)) {
+                return row;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isRow(int row, Object[] data) {
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].get(row).equals(data[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determine if a tuple's primary key is held by no row other than one.
+     * <p>
+     * @param tuple  The tuple.
+     * @param except The row that may hold the key.
+     * @return true if no other row holds the key.
+     */
+    private boolean isPrimaryKeyFree(Tuple tuple, int except) {
+        final int row = primaryKeyIndex().find(tuple.getValues().getDataReference(primaryKeyOrdinal));
+        return row < 0 || row == except;
+    }
+
+    @Override
+    MergeJoin.Input getOrderedInput(int ordinal) {
+        final OrderedIndex index = orderedIndex(ordinal);
+        final Column column = columns[ordinal];
+
+        return index == null ? null : new MergeJoin.Input(index.size(), (i) -> column.get(index.get(i)), (i) -> materialize(index.get(i)));
+    }
+
+    private Tuple materialize(int row) {
+        final Object[] data = new Object[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            data[i] = columns[i].get(row);
+        }
+
+        return new Tuple(new Values(attributes, data));
+    }
+
+    /**
+     * A read-only view of the rows as tuples.
+     */
+    private final class TupleSet extends AbstractSet<Tuple> {
+
+        @Override
+        public int size() {
+            return rowCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Tuple && find((Tuple)o) >= 0;
+        }
+
+        @Override
+        public Spliterator<Tuple> spliterator() {
+            return ColumnarRelation.this.spliterator();
+        }
+
+        @Override
+        public Iterator<Tuple> iterator() {
+            return new Iterator<Tuple>() {
+                private int row = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return row < rowCount;
+                }
+
+                @Override
+                public Tuple next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("No more tuples");
+                    }
+                    return materialize(row++);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * A column for {@link cehardin.roil.domain.StringDomain} attributes that
+ * holds each distinct datum once in a dictionary and each row as an int code
+ * into it. The dictionary is sorted by the domain's comparator, so codes
+ * compare the same way as the data and every operator against a constant
+ * runs over the codes without touching the strings.
+ * <p>
+ * Columns derived by gather share the dictionary, so it may hold data that
+ * no row uses.
+ * <p>
+ * @author Chad
+ */
+final class DictionaryColumn extends Column {
+
+    /**
+     * Encode data.
+     * <p>
+     * @param domain The domain of the data.
+     * @param data   The data, one element per row.
+     * @return The column, never null.
+     */
+    static DictionaryColumn encode(Domain<Object> domain, Object[] data) {
+        final Comparator<Object> comparator = comparator(domain);
+        final TreeSet<Object> distinct = new TreeSet<>(comparator);
+        final Object[] dictionary;
+        final int[] codes = new int[data.length];
+
+        for (final Object datum : data) {
+            distinct.add(requireNonNull(datum, "Datum was null"));
+        }
+
+        dictionary = distinct.toArray();
+
+        for (int i = 0; i < data.length; i++) {
+            codes[i] = Arrays.binarySearch(dictionary, data[i], comparator);
+        }
+
+        return new DictionaryColumn(domain, comparator, dictionary, codes);
+    }
+
+    private final Comparator<Object> comparator;
+    private final Object[] dictionary;
+    private final int[] codes;
+
+    private DictionaryColumn(Domain<Object> domain, Comparator<Object> comparator, Object[] dictionary, int[] codes) {
+        super(domain);
+        this.comparator = comparator;
+        this.dictionary = dictionary;
+        this.codes = codes;
+    }
+
+    @Override
+    int size() {
+        return codes.length;
+    }
+
+    @Override
+    Object get(int row) {
+        return dictionary[codes[row]];
+    }
+
+    @Override
+    Column gather(int[] rows, int count) {
+        final int[] newCodes = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            newCodes[i] = codes[rows[i]];
+        }
+
+        return new DictionaryColumn(getDomain(), comparator, dictionary, newCodes);
+    }
+
+    /**
+     * Create a new column with the data of one row changed, adding the datum
+     * to the dictionary and renumbering the codes if it is new.
+     */
+    private Column with(int row, Object datum, int size) {
+        final int code = Arrays.binarySearch(dictionary, requireNonNull(datum, "Datum was null"), comparator);
+        final int[] newCodes = Arrays.copyOf(codes, size);
+
+        if (code >= 0) {
+            newCodes[row] = code;
+
+            return new DictionaryColumn(getDomain(), comparator, dictionary, newCodes);
+        } else {
+            final int insert = -code - 1;
+            final Object[] newDictionary = new Object[dictionary.length + 1];
+
+            System.arraycopy(dictionary, 0, newDictionary, 0, insert);
+            newDictionary[insert] = datum;
+            System.arraycopy(dictionary, insert, newDictionary, insert + 1, dictionary.length - insert);
+
+            for (int i = 0; i < codes.length; i++) {
+                if (newCodes[i] >= insert) {
+                    newCodes[i]++;
+                }
+            }
+
+            newCodes[row] = insert;
+
+            return new DictionaryColumn(getDomain(), comparator, newDictionary, newCodes);
+        }
+    }
+
+    @Override
+    Column append(Object datum) {
+        return with(codes.length, datum, codes.length + 1);
+    }
+
+    @Override
+    Column set(int row, Object datum) {
+        return with(row, datum, codes.length);
+    }
+
+    /**
+     * Find the code to compare against in place of a constant. A constant
+     * missing from the dictionary falls between two codes, so it is compared
+     * as the higher one, or as no code at all for equality.
+     * <p>
+     * @param operator The operator.
+     * @param code     The result of searching the dictionary for the constant.
+     * @return The code.
+     * @see #operator(BooleanOperator, int)
+     */
+    private static int code(BooleanOperator operator, int code) {
+        if (code >= 0) {
+            return code;
+        } else if (operator == BooleanOperator.Equal || operator == BooleanOperator.NotEqual) {
+            return -1;
+        } else {
+            return -code - 1;
+        }
+    }
+
+    /**
+     * Find the operator to compare codes with in place of an operator on
+     * data. When the constant is missing from the dictionary, the operator
+     * is adjusted to land on the right side of the gap it falls in.
+     * <p>
+     * @param operator The operator.
+     * @param code     The result of searching the dictionary for the constant.
+     * @return The operator on codes.
+     */
+    private static BooleanOperator operator(BooleanOperator operator, int code) {
+        if (code >= 0) {
+            return operator;
+        }
+
+        switch (operator) {
+            case Equal:
+            case NotEqual:
+                return operator;
+            case GreaterThan:
+            case GreaterThanOrEqual:
+                return BooleanOperator.GreaterThanOrEqual;
+            case LessThan:
+            case LessThanOrEqual:
+                return BooleanOperator.LessThan;
+            default:
+                throw new IllegalArgumentException(format("Unknown operator: %s", operator));
+        }
+    }
+
+    /**
+     * Translate a select against a constant into the same select against a
+     * code.
+     */
+    @Override
+    int select(BooleanOperator operator, Object constant, int[] rows, int count) {
+        final int code = Arrays.binarySearch(dictionary, requireNonNull(constant, "Constant was null"), comparator);
+        return IntColumn.select(codes, operator(operator, code), code(operator, code), rows, count);
+    }
+
+    @Override
+    void mask(BooleanOperator operator, Object constant, int from, int count, long[] mask) {
+        final int code = Arrays.binarySearch(dictionary, requireNonNull(constant, "Constant was null"), comparator);
+        IntColumn.mask(codes, operator(operator, code), code(operator, code), from, count, mask);
+    }
+
+    @Override
+    int select(BooleanOperator operator, Column other, int[] rows, int count) {
+        if (other instanceof DictionaryColumn && ((DictionaryColumn)other).dictionary == dictionary) {
+            return IntColumn.select(codes, operator, ((DictionaryColumn)other).codes, rows, count);
+        } else {
+            return super.select(operator, other, rows, count);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.Aggregatable.Aggregation;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import cehardin.roil.Values;
+import cehardin.roil.exception.AggregateFailedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Groups the rows of a relation by hashing and aggregates each group. Rows
+ * are read one datum at a time, so no tuple is created per row. Large
+ * relations are split into chunks that are aggregated in parallel into
+ * tables of their own, and the partial tables are merged at the end.
+ * <p>
+ * Each table is open addressing: its slots hold group numbers, and each
+ * group has its grouping data, its hash, and one entry in the state of every
+ * aggregation.
+ * <p>
+ * @author Chad
+ * @see RelationSchema#aggregate(Aggregate)
+ */
+final class HashAggregate {
+
+    /**
+     * Reads the data of a row.
+     */
+    interface Data {
+
+        /**
+         * @param row     The row.
+         * @param ordinal The ordinal of the attribute.
+         * @return The data, never null.
+         */
+        Object get(int row, int ordinal);
+    }
+
+    /**
+     * The state of one aggregation for every group of a table.
+     */
+    private abstract static class Accumulator {
+
+        /**
+         * Make room for groups 0 to capacity - 1.
+         */
+        abstract void grow(int capacity);
+
+        /**
+         * Add a datum to a group, where the datum is null for a count.
+         */
+        abstract void add(int group, Object datum);
+
+        /**
+         * Add the state of a group of another table to a group.
+         */
+        abstract void merge(int group, Accumulator other, int otherGroup);
+
+        /**
+         * Get the aggregate of a group.
+         */
+        abstract Object get(int group);
+    }
+
+    private static final class Count extends Accumulator {
+
+        private long[] counts = new long[0];
+
+        @Override
+        void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        void add(int group, Object datum) {
+            counts[group]++;
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            counts[group] += ((Count)other).counts[otherGroup];
+        }
+
+        @Override
+        Object get(int group) {
+            return toInt(counts[group]);
+        }
+    }
+
+    private static final class Sum extends Accumulator {
+
+        private long[] sums = new long[0];
+
+        @Override
+        void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+        }
+
+        @Override
+        void add(int group, Object datum) {
+            sums[group] += (Integer)datum;
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            sums[group] += ((Sum)other).sums[otherGroup];
+        }
+
+        @Override
+        Object get(int group) {
+            return toInt(sums[group]);
+        }
+    }
+
+    private static final class Extreme extends Accumulator {
+
+        private final Comparator<Object> comparator;
+        private Object[] extremes = new Object[0];
+
+        /**
+         * @param comparator The ordering, whose least datum is kept.
+         */
+        Extreme(Comparator<Object> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        void grow(int capacity) {
+            extremes = Arrays.copyOf(extremes, capacity);
+        }
+
+        @Override
+        void add(int group, Object datum) {
+            if (extremes[group] == null || comparator.compare(datum, extremes[group]) < 0) {
+                extremes[group] = datum;
+            }
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            add(group, ((Extreme)other).extremes[otherGroup]);
+        }
+
+        @Override
+        Object get(int group) {
+            return extremes[group];
+        }
+    }
+
+    private static final class Distinct extends Accumulator {
+
+        private final List<Set<Object>> sets = new ArrayList<>();
+
+        @Override
+        void grow(int capacity) {
+            while (sets.size() < capacity) {
+                sets.add(null);
+            }
+        }
+
+        @Override
+        void add(int group, Object datum) {
+            Set<Object> set = sets.get(group);
+
+            if (set == null) {
+                set = new HashSet<>();
+                sets.set(group, set);
+            }
+
+            set.add(datum);
+        }
+
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            for (final Object datum : ((Distinct)other).sets.get(otherGroup)) {
+                add(group, datum);
+            }
+        }
+
+        @Override
+        Object get(int group) {
+            return sets.get(group).size();
+        }
+    }
+
+    private static int spread(int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static Integer toInt(long value) throws AggregateFailedException {
+        if (value != (int)value) {
+            throw new AggregateFailedException(format("Aggregate %d does not fit the integer domain", value));
+        }
+
+        return (int)value;
+    }
+
+    /**
+     * The groups of some of the rows.
+     */
+    private final class Table {
+
+        private int[] slots = new int[16];
+        private int[] hashes = new int[8];
+        private Object[][] keys = new Object[8][];
+        private final Accumulator[] accumulators = new Accumulator[aggregations.size()];
+        private int size = 0;
+
+        Table() {
+            for (int i = 0; i < accumulators.length; i++) {
+                switch (aggregations.get(i).getAggregator()) {
+                    case Count:
+                        accumulators[i] = new Count();
+                        break;
+                    case CountDistinct:
+                        accumulators[i] = new Distinct();
+                        break;
+                    case Sum:
+                        accumulators[i] = new Sum();
+                        break;
+                    case Min:
+                        accumulators[i] = new Extreme(comparators.get(i));
+                        break;
+                    default:
+                        accumulators[i] = new Extreme(comparators.get(i).reversed());
+                        break;
+                }
+
+                accumulators[i].grow(keys.length);
+            }
+        }
+
+        /**
+         * Add a row to its group.
+         */
+        void add(Data data, int row) {
+            int h = 1;
+
+            for (final int ordinal : groupOrdinals) {
+                h = 31 * h + data.get(row, ordinal).hashCode();
+            }
+
+            final int group = find(h, (g) -> {
+                for (int i = 0; i < groupOrdinals.length; i++) {
+                    if (!keys[g][i].equals(data.get(row, groupOrdinals[i]))) {
+                        return false;
+                    }
+                }
+
+                return true;
+            }, () -> {
+                final Object[] key = new Object[groupOrdinals.length];
+
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = data.get(row, groupOrdinals[i]);
+                }
+
+                return key;
+            });
+
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].add(group, inputOrdinals[i] < 0 ? null : data.get(row, inputOrdinals[i]));
+            }
+        }
+
+        /**
+         * Add every group of another table to the groups of this one.
+         */
+        void merge(Table other) {
+            for (int g = 0; g < other.size; g++) {
+                final Object[] key = other.keys[g];
+                final int group = find(other.hashes[g], (mine) -> Arrays.equals(keys[mine], key), () -> key);
+
+                for (int i = 0; i < accumulators.length; i++) {
+                    accumulators[i].merge(group, other.accumulators[i], g);
+                }
+            }
+        }
+
+        /**
+         * Find the group with a hash that matches, creating it if there is
+         * none.
+         */
+        private int find(int hash, IntPredicate matches, Supplier<Object[]> key) {
+            int slot = spread(hash) & (slots.length - 1);
+
+            while (slots[slot] != 0) {
+                final int group = slots[slot] - 1;
+
+                if (hashes[group] == hash && matches.test(group)) {
+                    return group;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+
+            if (size == keys.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+
+                for (final Accumulator accumulator : accumulators) {
+                    accumulator.grow(size * 2);
+                }
+            }
+
+            hashes[size] = hash;
+            keys[size] = key.get();
+            slots[slot] = ++size;
+
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+
+            return size - 1;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+
+            for (int group = 0; group < size; group++) {
+                int slot = spread(hashes[group]) & (slots.length - 1);
+
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+
+                slots[slot] = group + 1;
+            }
+        }
+    }
+
+    private final RelationSchema resultSchema;
+    private final List<Aggregation> aggregations;
+    private final int[] groupOrdinals;
+    private final int[] groupResultOrdinals;
+    private final int[] inputOrdinals;
+    private final int[] resultOrdinals;
+    private final List<Comparator<Object>> comparators;
+
+    /**
+     * Prepare to aggregate a relation.
+     * <p>
+     * @param schema       The schema of the relation.
+     * @param resultSchema The aggregated schema.
+     * @param aggregate    The aggregate.
+     * @see RelationSchema#aggregate(Aggregate)
+     */
+    HashAggregate(RelationSchema schema, RelationSchema resultSchema, Aggregate aggregate) {
+        final List<AttributeName> groupAttributeNames = new ArrayList<>(requireNonNull(aggregate, "Aggregate was null").getGroupAttributeNames());
+
+        this.resultSchema = requireNonNull(resultSchema, "Result Schema was null");
+        this.aggregations = aggregate.getAggregations();
+        this.groupOrdinals = new int[groupAttributeNames.size()];
+        this.groupResultOrdinals = new int[groupAttributeNames.size()];
+        this.inputOrdinals = new int[aggregations.size()];
+        this.resultOrdinals = new int[aggregations.size()];
+        this.comparators = new ArrayList<>(Collections.<Comparator<Object>>nCopies(aggregations.size(), null));
+
+        for (int i = 0; i < groupOrdinals.length; i++) {
+            groupOrdinals[i] = schema.getOrdinal(groupAttributeNames.get(i));
+            groupResultOrdinals[i] = resultSchema.getOrdinal(groupAttributeNames.get(i));
+        }
+
+        for (int i = 0; i < inputOrdinals.length; i++) {
+            final Aggregation aggregation = aggregations.get(i);
+
+            inputOrdinals[i] = aggregation.getAttributeName().isPresent() ? schema.getOrdinal(aggregation.getAttributeName().get()) : -1;
+            resultOrdinals[i] = resultSchema.getOrdinal(aggregation.getResultAttributeName());
+
+            if (inputOrdinals[i] >= 0) {
+                @SuppressWarnings("unchecked") // Every datum of the attribute is of its domain
+                final Domain<Object> domain = (Domain<Object>)schema.getAttributes().getDomain(inputOrdinals[i]);
+
+                comparators.set(i, Column.comparator(domain));
+            }
+        }
+    }
+
+    /**
+     * Aggregate the rows.
+     * <p>
+     * @param rowCount The number of rows.
+     * @param data     The data of the rows, which must be safe to read from
+     *                 several threads at once.
+     * @return The tuple of each group, never null. There are none if there
+     *         are no rows, even when everything is one group.
+     * @throws AggregateFailedException If a count or sum does not fit the
+     *                                  integer domain.
+     */
+    Set<Tuple> aggregate(int rowCount, Data data) throws AggregateFailedException {
+        final List<Table> partials = Parallelism.mapChunks(rowCount, (from, to) -> {
+            final Table table = new Table();
+
+            for (int row = from; row < to; row++) {
+                table.add(data, row);
+            }
+
+            return table;
+        });
+        final Table table = partials.get(0);
+        final Set<Tuple> result;
+
+        for (int i = 1; i < partials.size(); i++) {
+            table.merge(partials.get(i));
+        }
+
+        result = new HashSet<>(table.size * 4 / 3 + 1);
+
+        for (int group = 0; group < table.size; group++) {
+            final Object[] resultData = new Object[resultSchema.getAttributes().size()];
+
+            for (int i = 0; i < groupResultOrdinals.length; i++) {
+                resultData[groupResultOrdinals[i]] = table.keys[group][i];
+            }
+
+            for (int i = 0; i < resultOrdinals.length; i++) {
+                resultData[resultOrdinals[i]] = table.accumulators[i].get(group);
+            }
+
+            result.add(new Tuple(new Values(resultSchema.getAttributes(), resultData)));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The natural join of two relations by hashing. The smaller relation is the
+ * build side and the larger the probe side. Both are first partitioned in
+ * memory by the high bits of the hash of their join attributes, so that each
+ * partition's hash table stays small enough to be cache resident while the
+ * matching probe partition runs against it. Nothing is written to disk.
+ * <p>
+ * @author Chad
+ */
+final class HashJoin extends AbstractJoin {
+
+    /**
+     * The number of build tuples a partition is sized for.
+     */
+    private static final int PARTITION_SIZE = 1 << 13;
+
+    private static int hash(Tuple tuple, int[] ordinals) {
+        int h = 1;
+
+        for (final int ordinal : ordinals) {
+            h = 31 * h + tuple.getValues().getDataReference(ordinal).hashCode();
+        }
+
+        h *= 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * One side of the join, with the hash of each tuple's join attributes
+     * and the tuples ordered by partition.
+     */
+    private static final class Side {
+
+        private final Tuple[] tuples;
+        private final int[] hashes;
+        private final int[] ordinals;
+        private final int[] order;
+        private final int[] starts;
+
+        Side(Set<Tuple> set, int[] ordinals, int partitionBits) {
+            final int partitions = 1 << partitionBits;
+            final int[] counts = new int[partitions + 1];
+
+            this.tuples = set.toArray(new Tuple[set.size()]);
+            this.hashes = new int[tuples.length];
+            this.ordinals = ordinals;
+            this.order = new int[tuples.length];
+            this.starts = new int[partitions + 1];
+
+            for (int i = 0; i < tuples.length; i++) {
+                hashes[i] = hash(tuples[i], ordinals);
+                counts[partition(hashes[i], partitionBits) + 1]++;
+            }
+
+            for (int p = 0; p < partitions; p++) {
+                counts[p + 1] += counts[p];
+                starts[p + 1] = counts[p + 1];
+            }
+
+            for (int i = 0; i < tuples.length; i++) {
+                order[counts[partition(hashes[i], partitionBits)]++] = i;
+            }
+        }
+
+        private static int partition(int hash, int partitionBits) {
+            return partitionBits == 0 ? 0 : hash >>> (32 - partitionBits);
+        }
+    }
+
+    private final Side build;
+    private final Side probe;
+    private final boolean buildIsLeft;
+
+    /**
+     * Prepare to join two relations.
+     * <p>
+     * @param left   The left relation.
+     * @param right  The right relation.
+     * @param schema The joined schema.
+     * @see RelationSchema#join(RelationSchema)
+     */
+    HashJoin(Relation left, Relation right, RelationSchema schema) {
+        super(left, right, schema);
+
+        final Set<Tuple> leftTuples = left.getTuples();
+        final Set<Tuple> rightTuples = right.getTuples();
+        int partitionBits = 0;
+
+        this.buildIsLeft = leftTuples.size() <= rightTuples.size();
+
+        while ((PARTITION_SIZE << partitionBits) < Math.min(leftTuples.size(), rightTuples.size()) && partitionBits < 16) {
+            partitionBits++;
+        }
+
+        this.build = buildIsLeft ? new Side(leftTuples, getLeftOrdinals(), partitionBits) : new Side(rightTuples, getRightOrdinals(), partitionBits);
+        this.probe = buildIsLeft ? new Side(rightTuples, getRightOrdinals(), partitionBits) : new Side(leftTuples, getLeftOrdinals(), partitionBits);
+    }
+
+    /**
+     * Join the relations, one partition at a time.
+     * <p>
+     * @return The joined tuples, never null.
+     */
+    Set<Tuple> join() {
+        final Set<Tuple> result = new HashSet<>(probe.tuples.length * 4 / 3 + 1);
+
+        for (int p = 0; p + 1 < build.starts.length; p++) {
+            final int buildStart = build.starts[p];
+            final int buildCount = build.starts[p + 1] - buildStart;
+            int capacity = 16;
+
+            if (buildCount == 0 || probe.starts[p + 1] == probe.starts[p]) {
+                continue;
+            }
+
+            while (capacity < buildCount) {
+                capacity <<= 1;
+            }
+
+            final int[] heads = new int[capacity];
+            final int[] next = new int[buildCount];
+            final int mask = capacity - 1;
+
+            for (int i = 0; i < buildCount; i++) {
+                final int slot = build.hashes[build.order[buildStart + i]] & mask;
+
+                next[i] = heads[slot];
+                heads[slot] = i + 1;
+            }
+
+            for (int j = probe.starts[p]; j < probe.starts[p + 1]; j++) {
+                final int probeIndex = probe.order[j];
+                final int hash = probe.hashes[probeIndex];
+                final Tuple probeTuple = probe.tuples[probeIndex];
+
+                for (int entry = heads[hash & mask]; entry != 0; entry = next[entry - 1]) {
+                    final int buildIndex = build.order[buildStart + entry - 1];
+                    final Tuple buildTuple = build.tuples[buildIndex];
+
+                    if (build.hashes[buildIndex] == hash && (buildIsLeft ? isMatch(buildTuple, probeTuple) : isMatch(probeTuple, buildTuple))) {
+                        result.add(buildIsLeft ? combine(buildTuple, probeTuple) : combine(probeTuple, buildTuple));
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,877 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A persistent hash array mapped trie. Every change returns a new trie that
+ * shares all untouched nodes with the old one, so a put or remove allocates
+ * O(log n) nodes and old versions remain valid.
+ * <p>
+ * Union, intersection and difference walk two tries together and skip every
+ * subtree the two share, so combining two versions of one trie costs time
+ * in proportion to how much they differ rather than to their size.
+ * <p>
+ * Keys and values may not be null.
+ * <p>
+ * @author Chad
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+final class HashTrie<K, V> implements Iterable<Entry<K, V>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final HashTrie<?, ?> EMPTY = new HashTrie<>(BitmapNode.EMPTY, 0);
+
+    static <K, V> HashTrie<K, V> empty() {
+        @SuppressWarnings("unchecked") // The empty trie holds no keys or values of any type
+        final HashTrie<K, V> empty = (HashTrie<K, V>)EMPTY;
+        return empty;
+    }
+
+    private static int hash(Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Records whether a put added a new key rather than replacing a value.
+     */
+    private static final class Box {
+
+        private boolean added = false;
+    }
+
+    private abstract static class Node {
+
+        /**
+         * @return The number of keys in this node and its children.
+         */
+        abstract int size();
+
+        abstract Object get(Object key, int hash, int shift);
+
+        abstract Node put(Object key, int hash, Object value, int shift, Box box);
+
+        /**
+         * @return this if the key was not found, null if the node is now
+         *         empty, otherwise the new node.
+         */
+        abstract Node remove(Object key, int hash, int shift);
+
+        /**
+         * The array of key/value pairs, where a null key means the value is a
+         * child node.
+         */
+        abstract Object[] array();
+    }
+
+    private static final class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+        private final int size;
+
+        BitmapNode(int bitmap, Object[] array) {
+            int count = 0;
+
+            for (int i = 0; i < array.length; i += 2) {
+                count += array[i] == null ? ((Node)array[i + 1]).size() : 1;
+            }
+
+            this.bitmap = bitmap;
+            this.array = array;
+            this.size = count;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            final int bit = bit(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+                return null;
+            } else {
+                final int index = index(bit);
+                final Object k = array[2 * index];
+                final Object v = array[2 * index + 1];
+
+                if (k == null) {
+                    return ((Node)v).get(key, hash, shift + BITS);
+                } else if (key.equals(k)) {
+                    return v;
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift, Box box) {
+            final int bit = bit(hash, shift);
+            final int index = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                final Object[] newArray = new Object[array.length + 2];
+
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * index + 2, array.length - 2 * index);
+                box.added = true;
+
+                return new BitmapNode(bitmap | bit, newArray);
+            } else {
+                final Object k = array[2 * index];
+                final Object v = array[2 * index + 1];
+
+                if (k == null) {
+                    final Node child = ((Node)v).put(key, hash, value, shift + BITS, box);
+                    return child == v ? this : with(2 * index + 1, child);
+                } else if (key.equals(k)) {
+                    return value == v ? this : with(2 * index + 1, value);
+                } else {
+                    final Node child = createNode(k, v, key, hash, value, shift + BITS);
+                    final Object[] newArray = array.clone();
+
+                    newArray[2 * index] = null;
+                    newArray[2 * index + 1] = child;
+                    box.added = true;
+
+                    return new BitmapNode(bitmap, newArray);
+                }
+            }
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            final int bit = bit(hash, shift);
+
+            if ((bitmap & bit) == 0) {
+                return this;
+            } else {
+                final int index = index(bit);
+                final Object k = array[2 * index];
+                final Object v = array[2 * index + 1];
+
+                if (k == null) {
+                    final Node child = ((Node)v).remove(key, hash, shift + BITS);
+
+                    if (child == v) {
+                        return this;
+                    } else if (child == null) {
+                        return without(bit, index);
+                    } else if (child.array().length == 2 && child.array()[0] != null) {
+                        final Object[] newArray = array.clone();
+
+                        newArray[2 * index] = child.array()[0];
+                        newArray[2 * index + 1] = child.array()[1];
+
+                        return new BitmapNode(bitmap, newArray);
+                    } else {
+                        return with(2 * index + 1, child);
+                    }
+                } else if (key.equals(k)) {
+                    return without(bit, index);
+                } else {
+                    return this;
+                }
+            }
+        }
+
+        private Node with(int position, Object o) {
+            final Object[] newArray = array.clone();
+
+            newArray[position] = o;
+
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private Node without(int bit, int index) {
+            if (bitmap == bit) {
+                return null;
+            } else {
+                final Object[] newArray = new Object[array.length - 2];
+
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                System.arraycopy(array, 2 * index + 2, newArray, 2 * index, array.length - 2 * index - 2);
+
+                return new BitmapNode(bitmap ^ bit, newArray);
+            }
+        }
+    }
+
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int find(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        int size() {
+            return array.length / 2;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            final int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(Object key, int hash, Object value, int shift, Box box) {
+            if (hash == this.hash) {
+                final int i = find(key);
+                final Object[] newArray;
+
+                if (i >= 0) {
+                    if (array[i + 1] == value) {
+                        return this;
+                    }
+                    newArray = array.clone();
+                    newArray[i + 1] = value;
+                } else {
+                    newArray = new Object[array.length + 2];
+                    System.arraycopy(array, 0, newArray, 0, array.length);
+                    newArray[array.length] = key;
+                    newArray[array.length + 1] = value;
+                    box.added = true;
+                }
+
+                return new CollisionNode(hash, newArray);
+            } else {
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}).put(key, hash, value, shift, box);
+            }
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            final int i = find(key);
+
+            if (i < 0) {
+                return this;
+            } else if (array.length == 2) {
+                return null;
+            } else {
+                final Object[] newArray = new Object[array.length - 2];
+
+                System.arraycopy(array, 0, newArray, 0, i);
+                System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+
+                return new CollisionNode(hash, newArray);
+            }
+        }
+    }
+
+    private static Node createNode(Object k1, Object v1, Object k2, int h2, Object v2, int shift) {
+        final int h1 = hash(k1);
+
+        if (h1 == h2) {
+            return new CollisionNode(h1, new Object[]{k1, v1, k2, v2});
+        } else {
+            final Box box = new Box();
+            return BitmapNode.EMPTY.put(k1, h1, v1, shift, box).put(k2, h2, v2, shift, box);
+        }
+    }
+
+    /**
+     * Add the entries of b whose keys are not in a to a.
+     */
+    private static Node union(Node a, Node b, int shift) {
+        if (a == b) {
+            return a;
+        } else if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            final BitmapNode x = (BitmapNode)a;
+            final BitmapNode y = (BitmapNode)b;
+            final int bitmap = x.bitmap | y.bitmap;
+            final Object[] array = new Object[2 * Integer.bitCount(bitmap)];
+            boolean isSame = bitmap == x.bitmap;
+            int i = 0;
+
+            for (int bits = bitmap; bits != 0; bits &= bits - 1, i += 2) {
+                final int bit = bits & -bits;
+
+                if ((y.bitmap & bit) == 0) {
+                    array[i] = x.array[2 * x.index(bit)];
+                    array[i + 1] = x.array[2 * x.index(bit) + 1];
+                } else if ((x.bitmap & bit) == 0) {
+                    array[i] = y.array[2 * y.index(bit)];
+                    array[i + 1] = y.array[2 * y.index(bit) + 1];
+                } else {
+                    final Object xk = x.array[2 * x.index(bit)];
+                    final Object xv = x.array[2 * x.index(bit) + 1];
+                    final Object yk = y.array[2 * y.index(bit)];
+                    final Object yv = y.array[2 * y.index(bit) + 1];
+
+                    if (xk == null) {
+                        final Node child = yk == null
+                                ? union((Node)xv, (Node)yv, shift + BITS)
+                                : union((Node)xv, BitmapNode.EMPTY.put(yk, hash(yk), yv, shift + BITS, new Box()), shift + BITS);
+
+                        array[i + 1] = child;
+                        isSame &= child == xv;
+                    } else if (yk == null) {
+                        array[i + 1] = ((Node)yv).put(xk, hash(xk), xv, shift + BITS, new Box());
+                        isSame = false;
+                    } else if (xk.equals(yk)) {
+                        array[i] = xk;
+                        array[i + 1] = xv;
+                    } else {
+                        array[i + 1] = createNode(xk, xv, yk, hash(yk), yv, shift + BITS);
+                        isSame = false;
+                    }
+                }
+            }
+
+            return isSame ? a : new BitmapNode(bitmap, array);
+        } else {
+            Node result = a;
+
+            for (final Iterator<Entry<Object, Object>> i = new EntryIterator<>(b); i.hasNext();) {
+                final Entry<Object, Object> entry = i.next();
+                final int hash = hash(entry.getKey());
+
+                if (result.get(entry.getKey(), hash, shift) == null) {
+                    result = result.put(entry.getKey(), hash, entry.getValue(), shift, new Box());
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Keep the entries of a whose keys are in b.
+     * <p>
+     * @return The new node, a if it is unchanged, or null if it is empty.
+     */
+    private static Node intersect(Node a, Node b, int shift) {
+        if (a == b) {
+            return a;
+        } else if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            final BitmapNode x = (BitmapNode)a;
+            final BitmapNode y = (BitmapNode)b;
+            final Builder builder = new Builder(x, x.bitmap & y.bitmap);
+
+            for (int bits = x.bitmap & y.bitmap; bits != 0; bits &= bits - 1) {
+                final int bit = bits & -bits;
+                final Object xk = x.array[2 * x.index(bit)];
+                final Object xv = x.array[2 * x.index(bit) + 1];
+                final Object yk = y.array[2 * y.index(bit)];
+                final Object yv = y.array[2 * y.index(bit) + 1];
+
+                if (xk == null && yk == null) {
+                    builder.add(bit, null, intersect((Node)xv, (Node)yv, shift + BITS));
+                } else if (xk == null) {
+                    final Object v = ((Node)xv).get(yk, hash(yk), shift + BITS);
+                    builder.add(bit, v == null ? null : yk, v);
+                } else if (yk == null) {
+                    builder.add(bit, xk, ((Node)yv).get(xk, hash(xk), shift + BITS) == null ? null : xv);
+                } else {
+                    builder.add(bit, xk, xk.equals(yk) ? xv : null);
+                }
+            }
+
+            return builder.build();
+        } else if (a instanceof CollisionNode) {
+            Node result = a;
+
+            for (final Iterator<Entry<Object, Object>> i = new EntryIterator<>(a); i.hasNext() && result != null;) {
+                final Object key = i.next().getKey();
+
+                if (b.get(key, hash(key), shift) == null) {
+                    result = result.remove(key, hash(key), shift);
+                }
+            }
+
+            return result;
+        } else {
+            Node result = null;
+
+            for (final Iterator<Entry<Object, Object>> i = new EntryIterator<>(b); i.hasNext();) {
+                final Object key = i.next().getKey();
+                final Object value = a.get(key, hash(key), shift);
+
+                if (value != null) {
+                    result = (result == null ? BitmapNode.EMPTY : result).put(key, hash(key), value, shift, new Box());
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Remove the entries of a whose keys are in b.
+     * <p>
+     * @return The new node, a if it is unchanged, or null if it is empty.
+     */
+    private static Node difference(Node a, Node b, int shift) {
+        if (a == b) {
+            return null;
+        } else if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            final BitmapNode x = (BitmapNode)a;
+            final BitmapNode y = (BitmapNode)b;
+            final Builder builder = new Builder(x, x.bitmap);
+
+            for (int bits = x.bitmap; bits != 0; bits &= bits - 1) {
+                final int bit = bits & -bits;
+                final Object xk = x.array[2 * x.index(bit)];
+                final Object xv = x.array[2 * x.index(bit) + 1];
+
+                if ((y.bitmap & bit) == 0) {
+                    builder.add(bit, xk, xv);
+                } else {
+                    final Object yk = y.array[2 * y.index(bit)];
+                    final Object yv = y.array[2 * y.index(bit) + 1];
+
+                    if (xk == null && yk == null) {
+                        builder.add(bit, null, difference((Node)xv, (Node)yv, shift + BITS));
+                    } else if (xk == null) {
+                        builder.add(bit, null, ((Node)xv).remove(yk, hash(yk), shift + BITS));
+                    } else if (yk == null) {
+                        builder.add(bit, xk, ((Node)yv).get(xk, hash(xk), shift + BITS) == null ? xv : null);
+                    } else {
+                        builder.add(bit, xk, xk.equals(yk) ? null : xv);
+                    }
+                }
+            }
+
+            return builder.build();
+        } else {
+            final Node small = a instanceof CollisionNode ? a : b;
+            Node result = a;
+
+            for (final Iterator<Entry<Object, Object>> i = new EntryIterator<>(small); i.hasNext() && result != null;) {
+                final Object key = i.next().getKey();
+
+                if (small == b || b.get(key, hash(key), shift) != null) {
+                    result = result.remove(key, hash(key), shift);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Builds the bitmap node of an intersection or difference from the
+     * entries of an original node that survive, keeping the original if they
+     * all do.
+     */
+    private static final class Builder {
+
+        private final BitmapNode original;
+        private final Object[] array;
+        private int bitmap = 0;
+        private int length = 0;
+        private boolean isSame;
+
+        /**
+         * @param original The original node.
+         * @param bitmap   The bits that may survive.
+         */
+        Builder(BitmapNode original, int bitmap) {
+            this.original = original;
+            this.array = new Object[2 * Integer.bitCount(bitmap)];
+            this.isSame = bitmap == original.bitmap;
+        }
+
+        /**
+         * Add an entry, where a null key means the value is a child node, and
+         * a null value means the entry did not survive. A child left with one
+         * key is replaced by the key.
+         */
+        void add(int bit, Object key, Object value) {
+            final int position = 2 * original.index(bit);
+
+            if (value == null) {
+                isSame = false;
+                return;
+            } else if (key == null && ((Node)value).array().length == 2 && ((Node)value).array()[0] != null) {
+                key = ((Node)value).array()[0];
+                value = ((Node)value).array()[1];
+            }
+
+            isSame &= original.array[position] == key && original.array[position + 1] == value;
+            bitmap |= bit;
+            array[length++] = key;
+            array[length++] = value;
+        }
+
+        Node build() {
+            if (isSame) {
+                return original;
+            } else if (bitmap == 0) {
+                return null;
+            } else {
+                return new BitmapNode(bitmap, length == array.length ? array : Arrays.copyOf(array, length));
+            }
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    V get(Object key) {
+        @SuppressWarnings("unchecked") // Only values of type V are put in the trie
+        final V value = (V)root.get(requireNonNull(key, "Key was null"), hash(key), 0);
+        return value;
+    }
+
+    boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    HashTrie<K, V> put(K key, V value) {
+        final Box box = new Box();
+        final Node newRoot = root.put(requireNonNull(key, "Key was null"), hash(key), requireNonNull(value, "Value was null"), 0, box);
+
+        return newRoot == root ? this : new HashTrie<>(newRoot, box.added ? size + 1 : size);
+    }
+
+    HashTrie<K, V> remove(Object key) {
+        final Node newRoot = root.remove(requireNonNull(key, "Key was null"), hash(key), 0);
+
+        if (newRoot == root) {
+            return this;
+        } else if (newRoot == null) {
+            return empty();
+        } else {
+            return new HashTrie<>(newRoot, size - 1);
+        }
+    }
+
+    /**
+     * Add the entries of another trie whose keys are not in this one.
+     * <p>
+     * @param other The other trie.
+     * @return The union, which keeps the values of this trie for keys in
+     *         both.
+     */
+    HashTrie<K, V> union(HashTrie<K, V> other) {
+        final Node newRoot = union(root, requireNonNull(other, "Other was null").root, 0);
+
+        return newRoot == root ? this : newRoot == other.root ? other : new HashTrie<>(newRoot, newRoot.size());
+    }
+
+    /**
+     * Keep the entries whose keys are in another trie.
+     * <p>
+     * @param other The other trie.
+     * @return The intersection, with the values of this trie.
+     */
+    HashTrie<K, V> retainAll(HashTrie<K, ?> other) {
+        return with(intersect(root, requireNonNull(other, "Other was null").root, 0));
+    }
+
+    /**
+     * Remove the entries whose keys are in another trie.
+     * <p>
+     * @param other The other trie.
+     * @return The difference.
+     */
+    HashTrie<K, V> removeAll(HashTrie<K, ?> other) {
+        return with(difference(root, requireNonNull(other, "Other was null").root, 0));
+    }
+
+    private HashTrie<K, V> with(Node newRoot) {
+        if (newRoot == root) {
+            return this;
+        } else if (newRoot == null) {
+            return empty();
+        } else {
+            return new HashTrie<>(newRoot, newRoot.size());
+        }
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator<>(root);
+    }
+
+    /**
+     * Get a spliterator over the keys. It splits the entries of a node in two
+     * halves of about the same number of keys, and a node of one child into
+     * the entries of the child, so every split knows its exact size.
+     * <p>
+     * @param characteristics The characteristics to report besides
+     *                        {@link Spliterator#SIZED} and
+     *                        {@link Spliterator#SUBSIZED}.
+     * @return The spliterator, never null.
+     */
+    Spliterator<K> keySpliterator(int characteristics) {
+        return new KeySpliterator<>(root.array(), 0, root.array().length, size, characteristics | Spliterator.SIZED | Spliterator.SUBSIZED);
+    }
+
+    /**
+     * Splits a range of the entries of a node, and walks each child it
+     * reaches with an {@link EntryIterator}.
+     */
+    private static final class KeySpliterator<K> implements Spliterator<K> {
+
+        private static long size(Object[] array, int position) {
+            return array[position] == null ? ((Node)array[position + 1]).size() : 1;
+        }
+
+        private Object[] array;
+        private int position;
+        private int end;
+        private long size;
+        private final int characteristics;
+        private Iterator<Entry<K, Object>> child;
+
+        KeySpliterator(Object[] array, int position, int end, long size, int characteristics) {
+            this.array = array;
+            this.position = position;
+            this.end = end;
+            this.size = size;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super K> action) {
+            requireNonNull(action, "Action was null");
+
+            while (child == null || !child.hasNext()) {
+                if (position >= end) {
+                    return false;
+                } else if (array[position] == null) {
+                    child = new EntryIterator<>((Node)array[position + 1]);
+                    position += 2;
+                } else {
+                    @SuppressWarnings("unchecked") // Only keys of type K are put in the trie
+                    final K key = (K)array[position];
+
+                    child = null;
+                    size--;
+                    action.accept(key);
+                    position += 2;
+                    return true;
+                }
+            }
+
+            size--;
+            action.accept(child.next().getKey());
+
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super K> action) {
+            requireNonNull(action, "Action was null");
+
+            while (child != null && child.hasNext()) {
+                size--;
+                action.accept(child.next().getKey());
+            }
+
+            child = null;
+
+            for (; position < end; position += 2) {
+                forEach(array, position, action);
+            }
+
+            size = 0;
+        }
+
+        /**
+         * Pass the key of an entry, or every key of its child, to an action.
+         */
+        private static <K> void forEach(Object[] array, int position, Consumer<? super K> action) {
+            if (array[position] != null) {
+                @SuppressWarnings("unchecked") // Only keys of type K are put in the trie
+                final K key = (K)array[position];
+
+                action.accept(key);
+            } else {
+                final Object[] childArray = ((Node)array[position + 1]).array();
+
+                for (int i = 0; i < childArray.length; i += 2) {
+                    forEach(childArray, i, action);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<K> trySplit() {
+            if (child != null) {
+                return null;
+            }
+
+            while (end - position == 2 && array[position] == null) {
+                array = ((Node)array[position + 1]).array();
+                position = 0;
+                end = array.length;
+            }
+
+            if (end - position > 2) {
+                final int start = position;
+                long prefix = 0;
+
+                while (position < end - 2 && prefix + size(array, position) <= size / 2) {
+                    prefix += size(array, position);
+                    position += 2;
+                }
+
+                if (position == start) {
+                    prefix += size(array, position);
+                    position += 2;
+                }
+
+                size -= prefix;
+
+                return new KeySpliterator<>(array, start, position, prefix, characteristics);
+            }
+
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return size;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
+    /**
+     * Walks the trie depth first with an explicit stack of node arrays.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<Integer> positions = new ArrayDeque<>();
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            arrays.push(root.array());
+            positions.push(0);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+
+            while (next == null && !arrays.isEmpty()) {
+                final Object[] array = arrays.peek();
+                final int position = positions.pop();
+
+                if (position >= array.length) {
+                    arrays.pop();
+                } else {
+                    positions.push(position + 2);
+
+                    if (array[position] == null) {
+                        arrays.push(((Node)array[position + 1]).array());
+                        positions.push(0);
+                    } else {
+                        @SuppressWarnings("unchecked") // Only keys of type K are put in the trie
+                        final K key = (K)array[position];
+                        @SuppressWarnings("unchecked") // Only values of type V are put in the trie
+                        final V value = (V)array[position + 1];
+
+                        next = new SimpleImmutableEntry<>(key, value);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            final Entry<K, V> result = next;
+
+            if (result == null) {
+                throw new NoSuchElementException("No more entries");
+            }
+
+            advance();
+
+            return result;
+        }
+    }
+}
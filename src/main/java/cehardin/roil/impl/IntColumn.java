@@ -0,0 +1,305 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.Arrays;
+
+/**
+ * A column for {@link cehardin.roil.domain.IntegerDomain} attributes that
+ * holds its data as primitive ints. Selects against a constant or another int
+ * column run as tight loops over the array without boxing.
+ * <p>
+ * @author Chad
+ */
+final class IntColumn extends Column {
+
+    /**
+     * Narrow a selection vector to the rows whose data satisfies the operator
+     * against a constant.
+     * <p>
+     * @param data     The column data.
+     * @param operator The operator, where the row data is the left operand.
+     * @param constant The right operand.
+     * @param rows     The selection vector.
+     * @param count    The number of rows in use.
+     * @return The number of rows still selected.
+     */
+    static int select(int[] data, BooleanOperator operator, int constant, int[] rows, int count) {
+        int selected = 0;
+
+        switch (operator) {
+            case Equal:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] == constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case NotEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] != constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case GreaterThan:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] > constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case GreaterThanOrEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] >= constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case LessThan:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] < constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case LessThanOrEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] <= constant) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(format("Unknown operator: %s", operator));
+        }
+
+        return selected;
+    }
+
+    /**
+     * Clear the bits of a block's mask for the rows whose data does not
+     * satisfy the operator against a constant. Each comparison is computed
+     * as the sign bit of a difference widened to long, so there is no branch
+     * per row for the processor to mispredict.
+     * <p>
+     * @param data     The column data.
+     * @param operator The operator, where the row data is the left operand.
+     * @param constant The right operand.
+     * @param from     The first row of the block.
+     * @param count    The number of rows in the block.
+     * @param mask     The mask, where bit i is for row from + i.
+     * @see Column#mask(BooleanOperator, Object, int, int, long[])
+     */
+    static void mask(int[] data, BooleanOperator operator, int constant, int from, int count, long[] mask) {
+        for (int w = 0; w << 6 < count; w++) {
+            final int base = from + (w << 6);
+            long bits = 0;
+
+            if (mask[w] == 0) {
+                continue;
+            }
+
+            switch (operator) {
+                case Equal:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | ((((data[base + j] ^ constant) & 0xFFFFFFFFL) - 1) >>> 63);
+                    }
+                    break;
+                case NotEqual:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | (((((data[base + j] ^ constant) & 0xFFFFFFFFL) - 1) >>> 63) ^ 1);
+                    }
+                    break;
+                case GreaterThan:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | (((long)constant - data[base + j]) >>> 63);
+                    }
+                    break;
+                case GreaterThanOrEqual:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | ((((long)data[base + j] - constant) >>> 63) ^ 1);
+                    }
+                    break;
+                case LessThan:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | (((long)data[base + j] - constant) >>> 63);
+                    }
+                    break;
+                case LessThanOrEqual:
+                    for (int j = Math.min(64, count - (w << 6)) - 1; j >= 0; j--) {
+                        bits = (bits << 1) | ((((long)constant - data[base + j]) >>> 63) ^ 1);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(format("Unknown operator: %s", operator));
+            }
+
+            mask[w] &= bits;
+        }
+    }
+
+    /**
+     * Narrow a selection vector to the rows whose data satisfies the operator
+     * against the same row of other data.
+     * <p>
+     * @param data     The left operand data.
+     * @param operator The operator.
+     * @param other    The right operand data.
+     * @param rows     The selection vector.
+     * @param count    The number of rows in use.
+     * @return The number of rows still selected.
+     */
+    static int select(int[] data, BooleanOperator operator, int[] other, int[] rows, int count) {
+        int selected = 0;
+
+        switch (operator) {
+            case Equal:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] == other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case NotEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] != other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case GreaterThan:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] > other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case GreaterThanOrEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] >= other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case LessThan:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] < other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            case LessThanOrEqual:
+                for (int i = 0; i < count; i++) {
+                    final int row = rows[i];
+                    if (data[row] <= other[row]) {
+                        rows[selected++] = row;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(format("Unknown operator: %s", operator));
+        }
+
+        return selected;
+    }
+
+    private final int[] data;
+
+    public IntColumn(Domain<Object> domain, int[] data) {
+        super(domain);
+        this.data = requireNonNull(data, "Data was null");
+    }
+
+    int getInt(int row) {
+        return data[row];
+    }
+
+    @Override
+    int size() {
+        return data.length;
+    }
+
+    @Override
+    Object get(int row) {
+        return data[row];
+    }
+
+    @Override
+    Column gather(int[] rows, int count) {
+        final int[] newData = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            newData[i] = data[rows[i]];
+        }
+
+        return new IntColumn(getDomain(), newData);
+    }
+
+    @Override
+    Column append(Object datum) {
+        final int[] newData = Arrays.copyOf(data, data.length + 1);
+
+        newData[data.length] = (Integer)requireNonNull(datum, "Datum was null");
+
+        return new IntColumn(getDomain(), newData);
+    }
+
+    @Override
+    Column set(int row, Object datum) {
+        final int[] newData = data.clone();
+
+        newData[row] = (Integer)requireNonNull(datum, "Datum was null");
+
+        return new IntColumn(getDomain(), newData);
+    }
+
+    @Override
+    int select(BooleanOperator operator, Object constant, int[] rows, int count) {
+        return select(data, operator, (Integer)constant, rows, count);
+    }
+
+    @Override
+    void mask(BooleanOperator operator, Object constant, int from, int count, long[] mask) {
+        mask(data, operator, (Integer)constant, from, count, mask);
+    }
+
+    @Override
+    int select(BooleanOperator operator, Column other, int[] rows, int count) {
+        if (other instanceof IntColumn) {
+            return select(data, operator, ((IntColumn)other).data, rows, count);
+        } else {
+            return super.select(operator, other, rows, count);
+        }
+    }
+}
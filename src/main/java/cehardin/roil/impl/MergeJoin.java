@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Tuple;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * The join of two relations by merging them in the order of one attribute of
+ * each. For each left tuple the right tuples with equal data are a run that
+ * only moves forward as the left data grows, so two cursors find it, and the
+ * tuples satisfying any other operator lie before the run, after it, or both.
+ * That makes band joins on {@link BooleanOperator#LessThan} and the like as
+ * cheap as equi-joins, less the size of their result.
+ * <p>
+ * A side whose relation has an ordered index on its attribute is read through
+ * the index, so no memory is used beyond the cursors. A side without one is
+ * sorted first.
+ * <p>
+ * @author Chad
+ * @see HashJoin
+ */
+final class MergeJoin extends AbstractJoin {
+
+    /**
+     * One side of the join in the order of its attribute.
+     */
+    static final class Input {
+
+        /**
+         * Sort tuples by the data of one attribute.
+         * <p>
+         * @param tuples     The tuples.
+         * @param ordinal    The ordinal of the attribute.
+         * @param comparator The ordering of the attribute's domain.
+         * @return The input, never null.
+         */
+        static Input sort(Set<Tuple> tuples, int ordinal, Comparator<Object> comparator) {
+            final Tuple[] sorted = tuples.toArray(new Tuple[tuples.size()]);
+
+            Arrays.sort(sorted, (t1, t2) -> comparator.compare(t1.getValues().getDataReference(ordinal), t2.getValues().getDataReference(ordinal)));
+
+            return new Input(sorted.length, (i) -> sorted[i].getValues().getDataReference(ordinal), (i) -> sorted[i]);
+        }
+
+        private final int size;
+        private final IntFunction<Object> data;
+        private final IntFunction<Tuple> tuples;
+
+        /**
+         * Create an input.
+         * <p>
+         * @param size   The number of tuples.
+         * @param data   The data of the attribute of the i-th tuple, which
+         *               must not decrease as i grows.
+         * @param tuples The i-th tuple.
+         */
+        Input(int size, IntFunction<Object> data, IntFunction<Tuple> tuples) {
+            this.size = size;
+            this.data = requireNonNull(data, "Data was null");
+            this.tuples = requireNonNull(tuples, "Tuples was null");
+        }
+
+        int size() {
+            return size;
+        }
+
+        Object getData(int i) {
+            return data.apply(i);
+        }
+
+        Tuple getTuple(int i) {
+            return tuples.apply(i);
+        }
+    }
+
+    private final Input left;
+    private final Input right;
+    private final BooleanOperator operator;
+    private final Comparator<Object> comparator;
+
+    /**
+     * Prepare to join two relations.
+     * <p>
+     * @param left       The left relation.
+     * @param leftInput  The left relation in the order of its attribute.
+     * @param right      The right relation.
+     * @param rightInput The right relation in the order of its attribute.
+     * @param schema     The joined schema.
+     * @param operator   The operator between the attributes, where the left
+     *                   attribute is the left operand.
+     * @param domain     The domain of both attributes.
+     * @see RelationSchema#join(RelationSchema)
+     */
+    MergeJoin(Relation left, Input leftInput, Relation right, Input rightInput, RelationSchema schema, BooleanOperator operator, Domain<Object> domain) {
+        super(left, right, schema);
+        this.left = requireNonNull(leftInput, "Left Input was null");
+        this.right = requireNonNull(rightInput, "Right Input was null");
+        this.operator = requireNonNull(operator, "Operator was null");
+        this.comparator = Column.comparator(requireNonNull(domain, "Domain was null"));
+    }
+
+    /**
+     * Join the relations in one pass over each.
+     * <p>
+     * @return The joined tuples, never null.
+     */
+    Set<Tuple> join() {
+        final Set<Tuple> result = new HashSet<>();
+        int start = 0;
+        int stop = 0;
+
+        for (int i = 0; i < left.size; i++) {
+            final Object data = left.data.apply(i);
+            final Tuple tuple = left.tuples.apply(i);
+
+            while (start < right.size && comparator.compare(right.data.apply(start), data) < 0) {
+                start++;
+            }
+
+            if (stop < start) {
+                stop = start;
+            }
+
+            while (stop < right.size && comparator.compare(right.data.apply(stop), data) == 0) {
+                stop++;
+            }
+
+            switch (operator) {
+                case Equal:
+                    add(result, tuple, start, stop);
+                    break;
+                case NotEqual:
+                    add(result, tuple, 0, start);
+                    add(result, tuple, stop, right.size);
+                    break;
+                case GreaterThan:
+                    add(result, tuple, 0, start);
+                    break;
+                case GreaterThanOrEqual:
+                    add(result, tuple, 0, stop);
+                    break;
+                case LessThan:
+                    add(result, tuple, stop, right.size);
+                    break;
+                case LessThanOrEqual:
+                    add(result, tuple, start, right.size);
+                    break;
+                default:
+                    throw new IllegalArgumentException(format("Unknown operator: %s", operator));
+            }
+        }
+
+        return result;
+    }
+
+    private void add(Set<Tuple> result, Tuple tuple, int from, int to) {
+        for (int j = from; j < to; j++) {
+            final Tuple other = right.tuples.apply(j);
+
+            if (isMatch(tuple, other)) {
+                result.add(combine(tuple, other));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import java.util.Arrays;
+
+/**
+ * A column that holds its data as objects.
+ * <p>
+ * @author Chad
+ */
+final class ObjectColumn extends Column {
+
+    private final Object[] data;
+
+    public ObjectColumn(Domain<Object> domain, Object[] data) {
+        super(domain);
+        this.data = requireNonNull(data, "Data was null");
+    }
+
+    @Override
+    int size() {
+        return data.length;
+    }
+
+    @Override
+    Object get(int row) {
+        return data[row];
+    }
+
+    @Override
+    Column gather(int[] rows, int count) {
+        final Object[] newData = new Object[count];
+
+        for (int i = 0; i < count; i++) {
+            newData[i] = data[rows[i]];
+        }
+
+        return new ObjectColumn(getDomain(), newData);
+    }
+
+    @Override
+    Column append(Object datum) {
+        final Object[] newData = Arrays.copyOf(data, data.length + 1);
+
+        newData[data.length] = requireNonNull(datum, "Datum was null");
+
+        return new ObjectColumn(getDomain(), newData);
+    }
+
+    @Override
+    Column set(int row, Object datum) {
+        final Object[] newData = data.clone();
+
+        newData[row] = requireNonNull(datum, "Datum was null");
+
+        return new ObjectColumn(getDomain(), newData);
+    }
+}
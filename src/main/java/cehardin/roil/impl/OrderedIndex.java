@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.util.Range;
+import cehardin.roil.util.Range.EndPointType;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * An index that orders positions, such as the rows of a column, by their
+ * data using the comparator of the domain's range. A range select is then a
+ * binary search for each end of the range followed by a copy of the
+ * positions in between, rather than a test of every position.
+ * <p>
+ * Relations never change once created, so the index is a sorted array rather
+ * than a tree.
+ * <p>
+ * @author Chad
+ */
+final class OrderedIndex {
+
+    /**
+     * Index every row of a column.
+     * <p>
+     * @param column The column.
+     * @return The index, never null.
+     */
+    static OrderedIndex of(Column column) {
+        if (column instanceof IntColumn) {
+            final IntColumn ints = (IntColumn)column;
+            final long[] packed = new long[ints.size()];
+            final int[] positions = new int[packed.length];
+
+            // The data goes in the high bits so sorting the longs sorts the rows by data.
+            for (int row = 0; row < packed.length; row++) {
+                packed[row] = ((long)ints.getInt(row) << 32) | row;
+            }
+
+            Arrays.sort(packed);
+
+            for (int i = 0; i < packed.length; i++) {
+                positions[i] = (int)packed[i];
+            }
+
+            return new OrderedIndex(positions, column::get, Column.comparator(column.getDomain()));
+        } else {
+            return new OrderedIndex(column.size(), column::get, Column.comparator(column.getDomain()));
+        }
+    }
+
+    /**
+     * Determine if a select with an operator is worth answering from this
+     * index. NotEqual selects nearly every position, so scanning is cheaper.
+     * <p>
+     * @param operator The operator.
+     * @return true for every operator but NotEqual.
+     */
+    static boolean isSupported(BooleanOperator operator) {
+        return operator != BooleanOperator.NotEqual;
+    }
+
+    private final int[] positions;
+    private final IntFunction<Object> data;
+    private final Comparator<Object> comparator;
+
+    /**
+     * Index some positions.
+     * <p>
+     * @param size   The number of positions.
+     * @param data   The data of each position.
+     * @param domain The domain of the data.
+     */
+    OrderedIndex(int size, IntFunction<Object> data, Domain<Object> domain) {
+        this(size, data, Column.comparator(requireNonNull(domain, "Domain was null")));
+    }
+
+    private OrderedIndex(int size, IntFunction<Object> data, Comparator<Object> comparator) {
+        final Integer[] sorted = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            sorted[i] = i;
+        }
+
+        Arrays.sort(sorted, (p1, p2) -> comparator.compare(data.apply(p1), data.apply(p2)));
+
+        this.positions = new int[size];
+        this.data = data;
+        this.comparator = comparator;
+
+        for (int i = 0; i < size; i++) {
+            positions[i] = sorted[i];
+        }
+    }
+
+    private OrderedIndex(int[] positions, IntFunction<Object> data, Comparator<Object> comparator) {
+        this.positions = positions;
+        this.data = data;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Get the number of positions.
+     * <p>
+     * @return The number of positions.
+     */
+    int size() {
+        return positions.length;
+    }
+
+    /**
+     * Get a position by its place in the order.
+     * <p>
+     * @param i The place, from 0 to {@link #size()} - 1.
+     * @return The position with the i-th lowest data.
+     */
+    int get(int i) {
+        return positions[i];
+    }
+
+    /**
+     * Find the first place in the order whose data is greater than, or
+     * greater than or equal to, a key.
+     */
+    private int bound(Object key, boolean inclusive) {
+        int low = 0;
+        int high = positions.length;
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int c = comparator.compare(data.apply(positions[middle]), key);
+
+            if (c < 0 || (c == 0 && !inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Find the positions whose data lies in a set of ranges, with one pair of
+     * binary searches for each range.
+     * <p>
+     * @param ranges The normalized set of ranges.
+     * @return The positions in ascending order, never null.
+     */
+    int[] select(List<Range<Object>> ranges) {
+        final int[] from = new int[ranges.size()];
+        final int[] to = new int[ranges.size()];
+        final int[] result;
+        int count = 0;
+
+        for (int i = 0; i < from.length; i++) {
+            final Range<Object> range = ranges.get(i);
+
+            from[i] = range.getStartEndpointType() == EndPointType.Unbounded ? 0 : bound(range.getStartEnpoint(), range.getStartEndpointType() == EndPointType.Closed);
+            to[i] = range.getStopEndpointType() == EndPointType.Unbounded ? positions.length : bound(range.getStopEndpoint(), range.getStopEndpointType() == EndPointType.Open);
+            count += Math.max(0, to[i] - from[i]);
+        }
+
+        result = new int[count];
+        count = 0;
+
+        for (int i = 0; i < from.length; i++) {
+            if (to[i] > from[i]) {
+                System.arraycopy(positions, from[i], result, count, to[i] - from[i]);
+                count += to[i] - from[i];
+            }
+        }
+
+        Arrays.sort(result);
+
+        return result;
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs the scans of large relations on the common {@link ForkJoinPool}. A
+ * select, project or rename over at least {@link #getThreshold()} tuples is
+ * split into chunks that are processed in parallel. Each chunk writes only
+ * its own part of the result and the parts are concatenated in order
+ * afterwards, so nothing is locked. Smaller scans stay on the calling thread,
+ * where forking would cost more than it saves.
+ * <p>
+ * The threshold starts at the value of the system property
+ * {@value #THRESHOLD_PROPERTY}, or 65536 if it is not set.
+ * <p>
+ * @author Chad
+ */
+public final class Parallelism {
+
+    /**
+     * The name of the system property holding the initial threshold.
+     */
+    public static final String THRESHOLD_PROPERTY = "cehardin.roil.parallelism.threshold";
+
+    /**
+     * The fewest rows a chunk is given, so that a chunk does enough work to
+     * pay for its fork.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 12;
+
+    private static volatile int threshold = Integer.getInteger(THRESHOLD_PROPERTY, 1 << 16);
+
+    /**
+     * Narrows a selection vector. The rows are compacted in place.
+     */
+    interface RowFilter {
+
+        /**
+         * @param rows  The selection vector.
+         * @param count The number of rows in use.
+         * @return The number of rows still selected.
+         */
+        int filter(int[] rows, int count);
+    }
+
+    /**
+     * Selects rows out of a range of consecutive rows.
+     */
+    interface RangeFilter {
+
+        /**
+         * @param from  The first row of the range.
+         * @param count The number of rows in the range.
+         * @param rows  Where the selected rows are written, in ascending
+         *              order.
+         * @return The number of rows selected.
+         */
+        int filter(int from, int count, int[] rows);
+    }
+
+    /**
+     * A range of positions a chunk covers.
+     */
+    interface Chunk {
+
+        /**
+         * @param from The first position, inclusive.
+         * @param to   The last position, exclusive.
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Computes a result from a range of positions.
+     */
+    interface ChunkFunction<T> {
+
+        /**
+         * @param from The first position, inclusive.
+         * @param to   The last position, exclusive.
+         * @return The result of the chunk.
+         */
+        T apply(int from, int to);
+    }
+
+    /**
+     * Runs a range of tasks, splitting it in halves until each half is one
+     * task.
+     */
+    private static final class Tasks extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final IntConsumer task;
+
+        Tasks(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.accept(from);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Tasks(from, middle, task), new Tasks(middle, to, task));
+            }
+        }
+    }
+
+    private Parallelism() {
+    }
+
+    /**
+     * Get the number of tuples from which scans run in parallel.
+     * <p>
+     * @return The threshold.
+     */
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Set the number of tuples from which scans run in parallel. Use
+     * {@link Integer#MAX_VALUE} to keep every scan on the calling thread.
+     * <p>
+     * @param rows The threshold.
+     * @throws IllegalArgumentException If the threshold is not positive.
+     */
+    public static void setThreshold(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException(format("Threshold was not positive: %d", rows));
+        }
+
+        threshold = rows;
+    }
+
+    /**
+     * Determine if a scan runs in parallel.
+     * <p>
+     * @param count The number of rows or tuples it reads.
+     * @return true if it is split into chunks.
+     */
+    static boolean isParallel(int count) {
+        return count >= threshold && count >= 2 * MIN_CHUNK_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Run independent tasks on the common pool and wait for all of them.
+     * <p>
+     * @param tasks The number of tasks.
+     * @param task  The task, given its number from 0 to tasks - 1.
+     */
+    static void forEach(int tasks, IntConsumer task) {
+        requireNonNull(task, "Task was null");
+
+        if (tasks == 1) {
+            task.accept(0);
+        } else if (tasks > 1) {
+            ForkJoinPool.commonPool().invoke(new Tasks(0, tasks, task));
+        }
+    }
+
+    /**
+     * Narrow a selection vector, in parallel chunks if it is large. Each
+     * chunk is narrowed in a copy, and the copies are concatenated back into
+     * the vector in order.
+     * <p>
+     * @param rows   The selection vector.
+     * @param count  The number of rows in use.
+     * @param filter The filter, which must be safe to run on several chunks
+     *               at once.
+     * @return The number of rows still selected.
+     */
+    static int select(int[] rows, int count, RowFilter filter) {
+        if (!isParallel(count)) {
+            return filter.filter(rows, count);
+        }
+
+        final int chunks = chunks(count);
+        final int[][] parts = new int[chunks][];
+        final int[] counts = new int[chunks];
+        int selected = 0;
+
+        forEach(chunks, (c) -> {
+            parts[c] = Arrays.copyOfRange(rows, start(c, chunks, count), start(c + 1, chunks, count));
+            counts[c] = filter.filter(parts[c], parts[c].length);
+        });
+
+        for (int c = 0; c < chunks; c++) {
+            System.arraycopy(parts[c], 0, rows, selected, counts[c]);
+            selected += counts[c];
+        }
+
+        return selected;
+    }
+
+    /**
+     * Select rows out of every row, in parallel chunks if there are many.
+     * Each chunk writes its rows to its own array, and the arrays are
+     * concatenated into the result in order.
+     * <p>
+     * @param count  The number of rows.
+     * @param rows   Where the selected rows are written, in ascending order.
+     * @param filter The filter, which must be safe to run on several chunks
+     *               at once.
+     * @return The number of rows selected.
+     */
+    static int select(int count, int[] rows, RangeFilter filter) {
+        if (!isParallel(count)) {
+            return filter.filter(0, count, rows);
+        }
+
+        final int chunks = chunks(count);
+        final int[][] parts = new int[chunks][];
+        final int[] counts = new int[chunks];
+        int selected = 0;
+
+        forEach(chunks, (c) -> {
+            final int from = start(c, chunks, count);
+
+            parts[c] = new int[start(c + 1, chunks, count) - from];
+            counts[c] = filter.filter(from, parts[c].length, parts[c]);
+        });
+
+        for (int c = 0; c < chunks; c++) {
+            System.arraycopy(parts[c], 0, rows, selected, counts[c]);
+            selected += counts[c];
+        }
+
+        return selected;
+    }
+
+    /**
+     * Test every item, in parallel chunks if there are many.
+     * <p>
+     * @param items     The items.
+     * @param predicate The test, which must be safe to run on several items
+     *                  at once.
+     * @return Whether each item passed, by position.
+     */
+    static <T> boolean[] test(T[] items, Predicate<? super T> predicate) {
+        final boolean[] result = new boolean[items.length];
+
+        forEachChunk(items.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = predicate.test(items[i]);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Apply a function to every item, in parallel chunks if there are many.
+     * <p>
+     * @param items    The items.
+     * @param function The function, which must be safe to run on several
+     *                 items at once.
+     * @return The results, by position.
+     */
+    static <T> T[] map(T[] items, UnaryOperator<T> function) {
+        final T[] result = items.clone();
+
+        forEachChunk(items.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = function.apply(items[i]);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Cover the positions 0 to count - 1 in chunks, which run in parallel if
+     * there are many positions.
+     * <p>
+     * @param count The number of positions.
+     * @param chunk The work of a chunk, which must be safe to run on several
+     *              chunks at once.
+     */
+    static void forEachChunk(int count, Chunk chunk) {
+        if (!isParallel(count)) {
+            chunk.run(0, count);
+        } else {
+            final int chunks = chunks(count);
+            forEach(chunks, (c) -> chunk.run(start(c, chunks, count), start(c + 1, chunks, count)));
+        }
+    }
+
+    /**
+     * Compute a result from each chunk of the positions 0 to count - 1, in
+     * parallel if there are many positions.
+     * <p>
+     * @param count    The number of positions.
+     * @param function The work of a chunk, which must be safe to run on
+     *                 several chunks at once.
+     * @return The result of each chunk, in the order of the chunks. There is
+     *         one chunk if the positions are not split.
+     */
+    static <T> List<T> mapChunks(int count, ChunkFunction<T> function) {
+        if (!isParallel(count)) {
+            return Collections.singletonList(function.apply(0, count));
+        } else {
+            final int chunks = chunks(count);
+            final List<T> results = new ArrayList<>(Collections.<T>nCopies(chunks, null));
+
+            forEach(chunks, (c) -> results.set(c, function.apply(start(c, chunks, count), start(c + 1, chunks, count))));
+
+            return results;
+        }
+    }
+
+    /**
+     * Get the number of chunks to split a parallel scan into: a few per
+     * thread, so a slow chunk does not hold the rest up, but no chunk smaller
+     * than {@link #MIN_CHUNK_SIZE}.
+     */
+    private static int chunks(int count) {
+        return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, count / MIN_CHUNK_SIZE));
+    }
+
+    private static int start(int chunk, int chunks, int count) {
+        return (int)((long)count * chunk / chunks);
+    }
+}
@@ -0,0 +1,811 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static cehardin.roil.util.Iterators.transform;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Joinable.JoinByAttribute;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.AggregateFailedException;
+import cehardin.roil.exception.DeleteFailedException;
+import cehardin.roil.exception.DuplicateKeyException;
+import cehardin.roil.exception.InsertFailedException;
+import cehardin.roil.exception.JoinFailedException;
+import cehardin.roil.exception.ModifyFailedException;
+import cehardin.roil.exception.NoSuchAttributeNameException;
+import cehardin.roil.exception.SelectFailedException;
+import cehardin.roil.exception.TupleDoesNotConformToSchemaException;
+import cehardin.roil.util.Range;
+import cehardin.roil.util.Sets;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A relation whose tuples are held in a persistent {@link HashTrie}. Every
+ * relation derived from this one shares structure with it, so a delete or
+ * modify allocates O(log n) nodes and older relations remain valid without
+ * copying.
+ * <p>
+ * If the schema has a primary key the relation also keeps a second trie from
+ * key data to tuple, which gives O(1) equality selects on the key and
+ * enforces its uniqueness. Each secondary key gets a {@link TupleIndex} that
+ * answers equality selects binding all of its attributes. The indexes are
+ * maintained alongside the tuples and share structure the same way.
+ * <p>
+ * @author Chad
+ */
+public final class PersistentRelation extends AbstractRelation {
+
+    private final HashTrie<Tuple, Tuple> tuples;
+    private final int primaryKeyOrdinal;
+    private final HashTrie<Object, Tuple> primaryKeyIndex;
+    private final TupleIndex[] secondaryKeyIndexes;
+    private final Set<AttributeName> orderedAttributeNames;
+    private final OrderedIndex[] orderedIndexes;
+    private volatile Tuple[] array;
+
+    /**
+     * Create a relation holding the tuples.
+     * <p>
+     * @param schema The schema of the relation.
+     * @param tuples The tuples, each of which must conform to the schema.
+     * @throws TupleDoesNotConformToSchemaException If a tuple does not conform
+     *                                              to the schema.
+     * @throws DuplicateKeyException                If two tuples have the same
+     *                                              primary key.
+     */
+    public PersistentRelation(RelationSchema schema, Set<Tuple> tuples) throws TupleDoesNotConformToSchemaException, DuplicateKeyException {
+        super(schema);
+
+        HashTrie<Tuple, Tuple> trie = HashTrie.empty();
+
+        for (final Tuple tuple : requireNonNull(tuples, "Tuples was null")) {
+            checkConforms(tuple);
+            trie = trie.put(tuple, tuple);
+        }
+
+        this.tuples = trie;
+        this.primaryKeyOrdinal = getPrimaryKeyOrdinal();
+        this.primaryKeyIndex = index(trie);
+        this.secondaryKeyIndexes = secondaryKeyIndexes(trie);
+        this.orderedAttributeNames = emptySet();
+        this.orderedIndexes = new OrderedIndex[schema.getAttributes().size()];
+    }
+
+    /**
+     * Create a relation holding the tuples, building its indexes from them.
+     */
+    private PersistentRelation(RelationSchema schema, HashTrie<Tuple, Tuple> tuples, Set<AttributeName> orderedAttributeNames) throws DuplicateKeyException {
+        super(schema);
+        this.tuples = tuples;
+        this.primaryKeyOrdinal = getPrimaryKeyOrdinal();
+        this.primaryKeyIndex = index(tuples);
+        this.secondaryKeyIndexes = secondaryKeyIndexes(tuples);
+        this.orderedAttributeNames = orderedAttributeNames;
+        this.orderedIndexes = new OrderedIndex[schema.getAttributes().size()];
+    }
+
+    private PersistentRelation(RelationSchema schema, HashTrie<Tuple, Tuple> tuples, HashTrie<Object, Tuple> primaryKeyIndex, TupleIndex[] secondaryKeyIndexes, Set<AttributeName> orderedAttributeNames) {
+        super(schema);
+        this.tuples = tuples;
+        this.primaryKeyOrdinal = getPrimaryKeyOrdinal();
+        this.primaryKeyIndex = primaryKeyIndex;
+        this.secondaryKeyIndexes = secondaryKeyIndexes;
+        this.orderedAttributeNames = orderedAttributeNames;
+        this.orderedIndexes = new OrderedIndex[schema.getAttributes().size()];
+    }
+
+    /**
+     * Create a relation with the same tuples that also keeps an ordered index
+     * of an attribute. Range and equality selects on the attribute then
+     * search the index instead of testing every tuple. The index is carried
+     * through every relation derived from the new one, and is built over a
+     * snapshot of the tuples the first time a select needs it.
+     * <p>
+     * @param attributeName The attribute to index.
+     * @return The new relation, or this relation if the attribute is already
+     *         indexed.
+     * @throws NoSuchAttributeNameException If the schema has no such attribute.
+     */
+    public PersistentRelation withOrderedIndex(AttributeName attributeName) throws NoSuchAttributeNameException {
+        final Set<AttributeName> newOrderedAttributeNames = new HashSet<>(orderedAttributeNames);
+
+        getDomain(attributeName);
+
+        if (!newOrderedAttributeNames.add(attributeName)) {
+            return this;
+        }
+
+        return new PersistentRelation(getSchema(), tuples, primaryKeyIndex, secondaryKeyIndexes, unmodifiableSet(newOrderedAttributeNames));
+    }
+
+    @Override
+    public Set<Tuple> getTuples() {
+        return new TupleSet();
+    }
+
+    /**
+     * Get a spliterator that walks the trie, splitting it by its nodes. The
+     * tuples are in the order of the primary key instead if it has an ordered
+     * index.
+     */
+    @Override
+    public Spliterator<Tuple> spliterator() {
+        final Spliterator<Tuple> sorted = getSortedSpliterator(Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+
+        return sorted != null ? sorted : tuples.keySpliterator(Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    /**
+     * Stream the tuples found by an index, or the whole trie if no index
+     * answers the selects, and test them as they are reached instead of
+     * building a trie of the ones kept.
+     */
+    @Override
+    public Stream<Tuple> stream(List<SelectByConstant> conjunction) throws SelectFailedException {
+        final Predicate<Tuple> predicate = getTuplePredicate(conjunction);
+        final HashTrie<Tuple, Tuple> candidates = candidates(conjunction);
+
+        return (candidates == null ? stream() : StreamSupport.stream(candidates.keySpliterator(Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL), false)).filter(predicate);
+    }
+
+    /**
+     * Count the tuples as they are streamed, without building a trie of them.
+     */
+    @Override
+    public long count(List<SelectByConstant> conjunction) throws SelectFailedException {
+        return stream(conjunction).count();
+    }
+
+    /**
+     * Select the tuples found by probing the ordered index once per range,
+     * or test every tuple if no index answers the selects.
+     */
+    @Override
+    public Relation selectAny(List<SelectByConstant> disjunction) throws SelectFailedException {
+        final Predicate<Tuple> predicate = getDisjunctionPredicate(disjunction);
+        final List<Range<Object>> ranges = getDisjunctionRanges(disjunction);
+        final OrderedIndex index = ranges == null ? null : orderedIndex(getSchema().getOrdinal(disjunction.get(0).getTargetAttributeName()));
+
+        if (index == null) {
+            return filter(predicate);
+        } else {
+            final boolean[] keep = new boolean[tuples.size()];
+
+            for (final int i : index.select(ranges)) {
+                keep[i] = true;
+            }
+
+            return filter(keep);
+        }
+    }
+
+    @Override
+    public Function<SelectByConstant, Relation> getSelectByConstantFunction() {
+        return (s) -> selectByConstants(Collections.singletonList(requireNonNull(s, "Select was null")));
+    }
+
+    @Override
+    public Function<List<SelectByConstant>, Relation> getSelectByConstantsFunction() {
+        return (l) -> selectByConstants(l);
+    }
+
+    @Override
+    public Function<SelectByAttribute, Relation> getSelectByAttributeFunction() {
+        return (s) -> filter(getTuplePredicate(s));
+    }
+
+    @Override
+    public Function<Predicate<AttributeName>, Relation> getProjectFunction() {
+        return (p) -> transformTuples(getSchema().project(p), (t) -> t.project(p), Sets.filter(orderedAttributeNames, p));
+    }
+
+    @Override
+    public Function<UnaryOperator<AttributeName>, Relation> getRenameFunction() {
+        return (f) -> transformTuples(getSchema().rename(f), (t) -> t.rename(f), Sets.transform(orderedAttributeNames, f));
+    }
+
+    @Override
+    public Function<Tuple, Relation> getInsertFunction() {
+        return (t) -> insertTuple(t);
+    }
+
+    @Override
+    public Function<Tuple, Relation> getDeleteFunction() {
+        return (t) -> deleteTuple(t);
+    }
+
+    @Override
+    public Function<Modify, Relation> getModifyFunction() {
+        return (m) -> modifyTuple(m);
+    }
+
+    @Override
+    public Function<Relation, Relation> getJoinFunction() {
+        return (r) -> joinTuples(r);
+    }
+
+    @Override
+    public Function<JoinByAttribute<Relation>, Relation> getJoinByAttributeFunction() {
+        return (j) -> joinTuples(j.getOther(), j.getCondition());
+    }
+
+    @Override
+    public Function<Aggregate, Relation> getAggregateFunction() {
+        return (a) -> aggregateTuples(a);
+    }
+
+    @Override
+    public Function<Relation, Relation> getUnionFunction() {
+        return (r) -> unionTuples(r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getIntersectFunction() {
+        return (r) -> intersectTuples(r);
+    }
+
+    @Override
+    public Function<Relation, Relation> getSubtractFunction() {
+        return (r) -> subtractTuples(r);
+    }
+
+    /**
+     * Build the primary key index of some tuples.
+     * <p>
+     * @param tuples The tuples.
+     * @return The index, or null if the schema has no primary key.
+     * @throws DuplicateKeyException If two tuples have the same primary key.
+     */
+    private HashTrie<Object, Tuple> index(HashTrie<Tuple, Tuple> tuples) throws DuplicateKeyException {
+        HashTrie<Object, Tuple> result = null;
+
+        if (primaryKeyOrdinal >= 0) {
+            result = HashTrie.empty();
+
+            for (final Entry<Tuple, Tuple> entry : tuples) {
+                final Object key = primaryKey(entry.getKey());
+
+                if (result.containsKey(key)) {
+                    throw new DuplicateKeyException(format("Duplicate key: %s", key));
+                }
+
+                result = result.put(key, entry.getKey());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Build the index of each secondary key of some tuples.
+     * <p>
+     * @param tuples The tuples.
+     * @return The indexes, in the order of {@link #getSecondaryKeyOrdinals()}.
+     */
+    private TupleIndex[] secondaryKeyIndexes(HashTrie<Tuple, Tuple> tuples) {
+        final int[][] keyOrdinals = getSecondaryKeyOrdinals();
+        final TupleIndex[] result = new TupleIndex[keyOrdinals.length];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new TupleIndex(keyOrdinals[i]);
+
+            for (final Entry<Tuple, Tuple> entry : tuples) {
+                result[i] = result[i].put(entry.getKey());
+            }
+        }
+
+        return result;
+    }
+
+    private TupleIndex[] updateSecondaryKeyIndexes(UnaryOperator<TupleIndex> update) {
+        final TupleIndex[] result = new TupleIndex[secondaryKeyIndexes.length];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = update.apply(secondaryKeyIndexes[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the tuples as an array, copying them out of the trie the first
+     * time it is needed. Ordered indexes refer to tuples by their position in
+     * the array.
+     * <p>
+     * @return The array, never null.
+     */
+    private Tuple[] array() {
+        Tuple[] result = array;
+
+        if (result == null) {
+            int i = 0;
+
+            result = new Tuple[tuples.size()];
+
+            for (final Entry<Tuple, Tuple> entry : tuples) {
+                result[i++] = entry.getKey();
+            }
+
+            array = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the ordered index of an attribute, building it the first time it is
+     * needed.
+     * <p>
+     * @param ordinal The ordinal of the attribute.
+     * @return The index, or null if the attribute has no ordered index.
+     */
+    private OrderedIndex orderedIndex(int ordinal) {
+        OrderedIndex index = orderedIndexes[ordinal];
+
+        if (index == null && orderedAttributeNames.contains(getSchema().getAttributes().getAttributeName(ordinal))) {
+            final Tuple[] tupleArray = array();
+
+            index = new OrderedIndex(tupleArray.length, (i) -> tupleArray[i].getValues().getDataReference(ordinal), getDomain(getSchema().getAttributes().getAttributeName(ordinal)));
+            orderedIndexes[ordinal] = index;
+        }
+
+        return index;
+    }
+
+    @Override
+    Set<Tuple> getHashedTuples() {
+        return getTuples();
+    }
+
+    @Override
+    MergeJoin.Input getOrderedInput(int ordinal) {
+        final OrderedIndex index = orderedIndex(ordinal);
+        final Tuple[] tupleArray = array();
+
+        return index == null ? null : new MergeJoin.Input(index.size(), (i) -> tupleArray[index.get(i)].getValues().getDataReference(ordinal), (i) -> tupleArray[index.get(i)]);
+    }
+
+    private Object primaryKey(Tuple tuple) {
+        return tuple.getValues().getDataReference(primaryKeyOrdinal);
+    }
+
+    /**
+     * Select the tuples satisfying every select. Equality selects that bind
+     * the primary key or every attribute of a secondary key are answered from
+     * the index, otherwise the selects on an attribute with an ordered index
+     * are normalized into ranges and answered from it with one probe per
+     * range, and only the tuples found are tested against the rest.
+     * Contradictory selects read no tuples at all.
+     */
+    private Relation selectByConstants(List<SelectByConstant> conjunction) {
+        final Predicate<Tuple> predicate = getTuplePredicate(conjunction);
+        final HashTrie<Tuple, Tuple> candidates = candidates(conjunction);
+        HashTrie<Tuple, Tuple> result = HashTrie.empty();
+
+        if (candidates == null) {
+            return filter(predicate);
+        }
+
+        for (final Entry<Tuple, Tuple> entry : candidates) {
+            if (predicate.test(entry.getKey())) {
+                result = result.put(entry.getKey(), entry.getKey());
+            }
+        }
+
+        return new PersistentRelation(getSchema(), result, orderedAttributeNames);
+    }
+
+    /**
+     * Find the tuples an index narrows a conjunction of selects down to,
+     * which must still be tested against every select. The selects must
+     * already have been checked against the schema.
+     * <p>
+     * @param conjunction The selects.
+     * @return The candidates, which are none for contradictory selects, or
+     *         null if no index answers any of the selects.
+     */
+    private HashTrie<Tuple, Tuple> candidates(List<SelectByConstant> conjunction) {
+        final List<List<Range<Object>>> ranges = getRanges(conjunction);
+        final Object[] equalities = getEqualities(conjunction);
+        final int[][] keyOrdinals = new int[secondaryKeyIndexes.length][];
+        final int key;
+        HashTrie<Tuple, Tuple> candidates = null;
+
+        for (int i = 0; i < keyOrdinals.length; i++) {
+            keyOrdinals[i] = secondaryKeyIndexes[i].getOrdinals();
+        }
+
+        for (final List<Range<Object>> attributeRanges : ranges) {
+            if (attributeRanges != null && attributeRanges.isEmpty()) {
+                return HashTrie.empty();
+            }
+        }
+
+        key = findBoundKey(keyOrdinals, equalities);
+
+        if (primaryKeyIndex != null && equalities[primaryKeyOrdinal] != null) {
+            final Tuple tuple = primaryKeyIndex.get(equalities[primaryKeyOrdinal]);
+            candidates = tuple == null ? HashTrie.empty() : HashTrie.<Tuple, Tuple>empty().put(tuple, tuple);
+        } else if (key >= 0) {
+            final Object[] keyData = new Object[keyOrdinals[key].length];
+
+            for (int i = 0; i < keyData.length; i++) {
+                keyData[i] = equalities[keyOrdinals[key][i]];
+            }
+
+            candidates = secondaryKeyIndexes[key].find(keyData);
+        } else {
+            for (final SelectByConstant s : conjunction) {
+                if (candidates == null && OrderedIndex.isSupported(s.getOperator())) {
+                    final int ordinal = getSchema().getOrdinal(s.getTargetAttributeName());
+                    final OrderedIndex index = orderedIndex(ordinal);
+
+                    if (index != null) {
+                        final Tuple[] tupleArray = array();
+
+                        candidates = HashTrie.empty();
+
+                        for (final int i : index.select(ranges.get(ordinal))) {
+                            candidates = candidates.put(tupleArray[i], tupleArray[i]);
+                        }
+                    }
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private Relation filter(Predicate<Tuple> predicate) {
+        return filter(Parallelism.test(array(), predicate));
+    }
+
+    /**
+     * Create a relation of some of the tuples. If fewer than half are kept,
+     * the trie and indexes are built from them, which is cheaper than
+     * removing every other tuple one at a time. Otherwise the others are
+     * removed from this relation's trie and indexes.
+     * <p>
+     * @param keep Whether to keep each tuple of {@link #array()}, by position.
+     */
+    private Relation filter(boolean[] keep) {
+        HashTrie<Tuple, Tuple> result = tuples;
+        HashTrie<Object, Tuple> resultIndex = primaryKeyIndex;
+        TupleIndex[] resultSecondaryKeyIndexes = secondaryKeyIndexes.clone();
+        final Tuple[] tupleArray = array();
+        int kept = 0;
+
+        for (final boolean k : keep) {
+            kept += k ? 1 : 0;
+        }
+
+        if (kept == tupleArray.length) {
+            return this;
+        } else if (kept * 2 < tupleArray.length) {
+            result = HashTrie.empty();
+
+            for (int i = 0; i < tupleArray.length; i++) {
+                if (keep[i]) {
+                    result = result.put(tupleArray[i], tupleArray[i]);
+                }
+            }
+
+            return new PersistentRelation(getSchema(), result, orderedAttributeNames);
+        }
+
+        for (int i = 0; i < tupleArray.length; i++) {
+            final Tuple tuple = tupleArray[i];
+
+            if (!keep[i]) {
+                result = result.remove(tuple);
+
+                if (resultIndex != null) {
+                    resultIndex = resultIndex.remove(primaryKey(tuple));
+                }
+
+                for (int j = 0; j < resultSecondaryKeyIndexes.length; j++) {
+                    resultSecondaryKeyIndexes[j] = resultSecondaryKeyIndexes[j].remove(tuple);
+                }
+            }
+        }
+
+        return new PersistentRelation(getSchema(), result, resultIndex, resultSecondaryKeyIndexes, orderedAttributeNames);
+    }
+
+    private Relation transformTuples(RelationSchema newSchema, UnaryOperator<Tuple> transformer, Set<AttributeName> newOrderedAttributeNames) {
+        HashTrie<Tuple, Tuple> result = HashTrie.empty();
+
+        for (final Tuple tuple : Parallelism.map(array(), transformer)) {
+            result = result.put(tuple, tuple);
+        }
+
+        return new PersistentRelation(newSchema, result, newOrderedAttributeNames);
+    }
+
+    private Relation insertTuple(Tuple tuple) {
+        try {
+            checkConforms(tuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new InsertFailedException(format("Cannot insert %s: %s", tuple, ex.getMessage()));
+        }
+
+        if (tuples.containsKey(tuple)) {
+            return this;
+        } else if (primaryKeyIndex != null && primaryKeyIndex.containsKey(primaryKey(tuple))) {
+            throw new DuplicateKeyException(format("Cannot insert %s, its primary key is already present", tuple));
+        } else {
+            return new PersistentRelation(
+                    getSchema(),
+                    tuples.put(tuple, tuple),
+                    primaryKeyIndex == null ? null : primaryKeyIndex.put(primaryKey(tuple), tuple),
+                    updateSecondaryKeyIndexes((i) -> i.put(tuple)),
+                    orderedAttributeNames);
+        }
+    }
+
+    private Relation deleteTuple(Tuple tuple) {
+        final HashTrie<Tuple, Tuple> result;
+
+        try {
+            checkConforms(tuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new DeleteFailedException(format("Cannot delete %s: %s", tuple, ex.getMessage()));
+        }
+
+        result = tuples.remove(tuple);
+
+        if (result == tuples) {
+            return this;
+        } else {
+            return new PersistentRelation(
+                    getSchema(),
+                    result,
+                    primaryKeyIndex == null ? null : primaryKeyIndex.remove(primaryKey(tuple)),
+                    updateSecondaryKeyIndexes((i) -> i.remove(tuple)),
+                    orderedAttributeNames);
+        }
+    }
+
+    private Relation modifyTuple(Modify m) {
+        final Tuple matchTuple = requireNonNull(m.getMatchTuple(), "Match Tuple was null");
+        final Tuple newTuple = requireNonNull(m.getNewTuple(), "New Tuple was null");
+        HashTrie<Object, Tuple> index = null;
+
+        try {
+            checkConforms(newTuple);
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new ModifyFailedException(format("Cannot modify to %s", newTuple), ex);
+        }
+
+        if (!tuples.containsKey(matchTuple)) {
+            return this;
+        }
+
+        if (primaryKeyIndex != null) {
+            final Tuple holder;
+
+            index = primaryKeyIndex.remove(primaryKey(matchTuple));
+            holder = index.get(primaryKey(newTuple));
+
+            if (holder != null && !holder.equals(newTuple)) {
+                throw new DuplicateKeyException(format("Cannot modify to %s, its primary key is already present", newTuple));
+            }
+
+            index = index.put(primaryKey(newTuple), newTuple);
+        }
+
+        return new PersistentRelation(
+                getSchema(),
+                tuples.remove(matchTuple).put(newTuple, newTuple),
+                index,
+                updateSecondaryKeyIndexes((i) -> i.remove(matchTuple).put(newTuple)),
+                orderedAttributeNames);
+    }
+
+    /**
+     * Join with another relation, by merging if both have an ordered index on
+     * a shared attribute and by hashing otherwise. The indexes of neither
+     * relation carry over to the join.
+     */
+    private Relation joinTuples(Relation r) {
+        return joinTuples(r, getSchema().join(requireNonNull(r, "Relation was null").getSchema()), Optional.empty());
+    }
+
+    /**
+     * Join with another relation by merging on the attributes of the
+     * condition, sorting whichever side has no ordered index on its one.
+     */
+    private Relation joinTuples(Relation r, SelectByAttribute condition) {
+        return joinTuples(r, getSchema().join(requireNonNull(r, "Relation was null").getSchema(), condition), Optional.of(condition));
+    }
+
+    private Relation joinTuples(Relation r, RelationSchema newSchema, Optional<SelectByAttribute> condition) {
+        try {
+            return new PersistentRelation(newSchema, getJoinedTuples(r, newSchema, condition));
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new JoinFailedException(format("Cannot join: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Group the tuples by hashing and aggregate each group.
+     */
+    private Relation aggregateTuples(Aggregate a) {
+        final RelationSchema newSchema = getSchema().aggregate(a);
+        final Tuple[] tupleArray = array();
+
+        try {
+            return new PersistentRelation(newSchema, new HashAggregate(getSchema(), newSchema, a).aggregate(tupleArray.length, (row, ordinal) -> tupleArray[row].getValues().getDataReference(ordinal)));
+        }
+        catch (TupleDoesNotConformToSchemaException ex) {
+            throw new AggregateFailedException(format("Cannot aggregate: %s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * Unite with another relation. Another persistent relation is united trie
+     * by trie, which skips the subtrees the two share, so uniting two
+     * versions of one relation costs time in proportion to their
+     * differences.
+     */
+    private Relation unionTuples(Relation r) {
+        final RelationSchema newSchema = getSchema().union(requireNonNull(r, "Relation was null").getSchema());
+
+        return r instanceof PersistentRelation
+                ? withTuples(newSchema, tuples.union(((PersistentRelation)r).tuples))
+                : withTuples(newSchema, getUnitedTuples(r));
+    }
+
+    /**
+     * Intersect with another relation, trie by trie if it is persistent.
+     */
+    private Relation intersectTuples(Relation r) {
+        final RelationSchema newSchema = getSchema().intersect(requireNonNull(r, "Relation was null").getSchema());
+
+        return r instanceof PersistentRelation
+                ? withTuples(newSchema, tuples.retainAll(((PersistentRelation)r).tuples))
+                : withTuples(newSchema, getIntersectedTuples(r));
+    }
+
+    /**
+     * Subtract another relation, trie by trie if it is persistent.
+     */
+    private Relation subtractTuples(Relation r) {
+        final RelationSchema newSchema = getSchema().subtract(requireNonNull(r, "Relation was null").getSchema());
+
+        return r instanceof PersistentRelation
+                ? withTuples(newSchema, tuples.removeAll(((PersistentRelation)r).tuples))
+                : withTuples(newSchema, getSubtractedTuples(r));
+    }
+
+    private Relation withTuples(RelationSchema newSchema, Set<Tuple> newTuples) {
+        HashTrie<Tuple, Tuple> trie = HashTrie.empty();
+
+        for (final Tuple tuple : newTuples) {
+            trie = trie.put(tuple, tuple);
+        }
+
+        return withTuples(newSchema, trie);
+    }
+
+    /**
+     * Create a relation holding the result of a set operation. If the schema
+     * is unchanged and the tuples added and removed are fewer than the
+     * result, the indexes of this relation are updated by them, otherwise
+     * they are built again. The added and removed tuples are themselves
+     * differences of the tries, so finding them skips what is shared.
+     *
+     * @throws DuplicateKeyException If two tuples of the result have the same
+     *                               primary key.
+     */
+    private Relation withTuples(RelationSchema newSchema, HashTrie<Tuple, Tuple> newTuples) throws DuplicateKeyException {
+        if (!newSchema.equals(getSchema())) {
+            return new PersistentRelation(newSchema, newTuples, orderedAttributeNames);
+        } else if (newTuples == tuples) {
+            return this;
+        } else {
+            final HashTrie<Tuple, Tuple> removed = tuples.removeAll(newTuples);
+            final HashTrie<Tuple, Tuple> added = newTuples.removeAll(tuples);
+            HashTrie<Object, Tuple> resultIndex = primaryKeyIndex;
+            final TupleIndex[] resultSecondaryKeyIndexes = secondaryKeyIndexes.clone();
+
+            if (removed.size() + added.size() > newTuples.size()) {
+                return new PersistentRelation(getSchema(), newTuples, orderedAttributeNames);
+            }
+
+            for (final Entry<Tuple, Tuple> entry : removed) {
+                if (resultIndex != null) {
+                    resultIndex = resultIndex.remove(primaryKey(entry.getKey()));
+                }
+
+                for (int i = 0; i < resultSecondaryKeyIndexes.length; i++) {
+                    resultSecondaryKeyIndexes[i] = resultSecondaryKeyIndexes[i].remove(entry.getKey());
+                }
+            }
+
+            for (final Entry<Tuple, Tuple> entry : added) {
+                if (resultIndex != null) {
+                    if (resultIndex.containsKey(primaryKey(entry.getKey()))) {
+                        throw new DuplicateKeyException(format("Cannot add %s, its primary key is already present", entry.getKey()));
+                    }
+
+                    resultIndex = resultIndex.put(primaryKey(entry.getKey()), entry.getKey());
+                }
+
+                for (int i = 0; i < resultSecondaryKeyIndexes.length; i++) {
+                    resultSecondaryKeyIndexes[i] = resultSecondaryKeyIndexes[i].put(entry.getKey());
+                }
+            }
+
+            return new PersistentRelation(getSchema(), newTuples, resultIndex, resultSecondaryKeyIndexes, orderedAttributeNames);
+        }
+    }
+
+    /**
+     * A read-only view of the trie as a set.
+     */
+    private final class TupleSet extends AbstractSet<Tuple> {
+
+        @Override
+        public int size() {
+            return tuples.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o != null && tuples.containsKey(o);
+        }
+
+        @Override
+        public Spliterator<Tuple> spliterator() {
+            return PersistentRelation.this.spliterator();
+        }
+
+        @Override
+        public Iterator<Tuple> iterator() {
+            return transform(tuples.iterator(), Entry::getKey);
+        }
+    }
+}
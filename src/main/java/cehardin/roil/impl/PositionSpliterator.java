@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Tuple;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A spliterator over the tuples at a range of positions, such as the rows of
+ * a {@link ColumnarRelation} or the positions of an {@link OrderedIndex}. It
+ * splits the range in halves, so every split knows its exact size, and
+ * creates each tuple only when it is reached.
+ * <p>
+ * @author Chad
+ */
+final class PositionSpliterator implements Spliterator<Tuple> {
+
+    private final IntFunction<Tuple> tuples;
+    private int position;
+    private final int end;
+    private final int characteristics;
+    private final Comparator<? super Tuple> comparator;
+
+    /**
+     * Create a spliterator over the positions from to end - 1.
+     * <p>
+     * @param tuples          The tuple at each position.
+     * @param from            The first position.
+     * @param end             The last position, exclusive.
+     * @param characteristics The characteristics to report besides
+     *                        {@link Spliterator#SIZED} and
+     *                        {@link Spliterator#SUBSIZED}.
+     * @param comparator      The order of the tuples if the characteristics
+     *                        are {@link Spliterator#SORTED}, otherwise null.
+     */
+    PositionSpliterator(IntFunction<Tuple> tuples, int from, int end, int characteristics, Comparator<? super Tuple> comparator) {
+        this.tuples = requireNonNull(tuples, "Tuples was null");
+        this.position = from;
+        this.end = end;
+        this.characteristics = characteristics | SIZED | SUBSIZED;
+        this.comparator = comparator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Tuple> action) {
+        requireNonNull(action, "Action was null");
+
+        if (position < end) {
+            action.accept(tuples.apply(position++));
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Tuple> action) {
+        requireNonNull(action, "Action was null");
+
+        for (; position < end; position++) {
+            action.accept(tuples.apply(position));
+        }
+    }
+
+    @Override
+    public Spliterator<Tuple> trySplit() {
+        final int from = position;
+        final int middle = (position + end) >>> 1;
+
+        if (middle <= from) {
+            return null;
+        }
+
+        position = middle;
+
+        return new PositionSpliterator(tuples, from, middle, characteristics, comparator);
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    @Override
+    public Comparator<? super Tuple> getComparator() {
+        if (!hasCharacteristics(SORTED)) {
+            throw new IllegalStateException("Spliterator is not sorted");
+        }
+
+        return comparator;
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed set of row numbers in the style of a Roaring
+ * bitmap. Rows are split into chunks of 65536 by their high 16 bits, and
+ * each chunk is held either as a sorted array of its low 16 bits, when it has
+ * few rows, or as a plain bitmap of 1024 longs, when it has many. Sets are
+ * combined chunk by chunk with and, or and andNot.
+ * <p>
+ * @author Chad
+ */
+final class RowBitmap {
+
+    /**
+     * The most rows a chunk holds as an array; beyond this a bitmap is
+     * smaller.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    static final RowBitmap EMPTY = new RowBitmap(new char[0], new Container[0]);
+
+    /**
+     * Create the set of every row of a relation.
+     * <p>
+     * @param count The number of rows.
+     * @return The rows 0 to count - 1.
+     */
+    static RowBitmap all(int count) {
+        final Builder builder = new Builder();
+
+        for (int row = 0; row < count; row++) {
+            builder.add(row);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Collects rows, which must be added in ascending order.
+     */
+    static final class Builder {
+
+        private char[] keys = new char[4];
+        private Container[] containers = new Container[4];
+        private int size = 0;
+        private int high = -1;
+        private char[] values = new char[16];
+        private long[] words = null;
+        private int count = 0;
+
+        void add(int row) {
+            final int rowHigh = row >>> 16;
+            final char low = (char)row;
+
+            if (rowHigh != high) {
+                flush();
+                high = rowHigh;
+            }
+
+            if (words != null) {
+                words[low >>> 6] |= 1L << low;
+            } else if (count < ARRAY_LIMIT) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count] = low;
+            } else {
+                words = toWords(values, count);
+                words[low >>> 6] |= 1L << low;
+            }
+
+            count++;
+        }
+
+        private void flush() {
+            if (count > 0) {
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    containers = Arrays.copyOf(containers, size * 2);
+                }
+
+                keys[size] = (char)high;
+                containers[size] = words != null ? new BitmapContainer(words, count) : new ArrayContainer(Arrays.copyOf(values, count));
+                size++;
+            }
+
+            words = null;
+            count = 0;
+        }
+
+        RowBitmap build() {
+            flush();
+            high = -1;
+            return size == 0 ? EMPTY : new RowBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+        }
+    }
+
+    private static long[] toWords(char[] values, int count) {
+        final long[] words = new long[WORDS];
+
+        for (int i = 0; i < count; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+
+        return words;
+    }
+
+    /**
+     * Create the smallest container for the bits.
+     */
+    private static Container container(long[] words) {
+        int cardinality = 0;
+
+        for (final long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+
+        if (cardinality == 0) {
+            return null;
+        } else if (cardinality > ARRAY_LIMIT) {
+            return new BitmapContainer(words, cardinality);
+        } else {
+            final char[] values = new char[cardinality];
+            int count = 0;
+
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+
+                while (word != 0) {
+                    values[count++] = (char)((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return new ArrayContainer(values);
+        }
+    }
+
+    /**
+     * The rows of one chunk.
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract long[] words();
+
+        /**
+         * Copy the rows into an array.
+         * <p>
+         * @param high   The high 16 bits of the rows.
+         * @param rows   The array.
+         * @param offset Where to start copying.
+         * @return The number of rows copied.
+         */
+        abstract int copy(int high, int[] rows, int offset);
+
+        Container and(Container other) {
+            final long[] words = words();
+            final long[] otherWords = other.words();
+
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= otherWords[i];
+            }
+
+            return container(words);
+        }
+
+        Container or(Container other) {
+            final long[] words = words();
+            final long[] otherWords = other.words();
+
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= otherWords[i];
+            }
+
+            return container(words);
+        }
+
+        Container andNot(Container other) {
+            final long[] words = words();
+            final long[] otherWords = other.words();
+
+            for (int i = 0; i < WORDS; i++) {
+                words[i] &= ~otherWords[i];
+            }
+
+            return container(words);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        long[] words() {
+            return toWords(values, values.length);
+        }
+
+        @Override
+        int copy(int high, int[] rows, int offset) {
+            for (int i = 0; i < values.length; i++) {
+                rows[offset + i] = (high << 16) | values[i];
+            }
+
+            return values.length;
+        }
+
+        /**
+         * Keep the values that are, or are not, in another container.
+         */
+        private Container retain(Container other, boolean in) {
+            final char[] newValues = new char[values.length];
+            int count = 0;
+
+            for (final char value : values) {
+                if (other.contains(value) == in) {
+                    newValues[count++] = value;
+                }
+            }
+
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(newValues, count));
+        }
+
+        @Override
+        Container and(Container other) {
+            return retain(other, true);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer && values.length + other.cardinality() <= ARRAY_LIMIT) {
+                final char[] otherValues = ((ArrayContainer)other).values;
+                final char[] newValues = new char[values.length + otherValues.length];
+                int i = 0;
+                int j = 0;
+                int count = 0;
+
+                while (i < values.length && j < otherValues.length) {
+                    if (values[i] < otherValues[j]) {
+                        newValues[count++] = values[i++];
+                    } else if (values[i] > otherValues[j]) {
+                        newValues[count++] = otherValues[j++];
+                    } else {
+                        newValues[count++] = values[i++];
+                        j++;
+                    }
+                }
+
+                while (i < values.length) {
+                    newValues[count++] = values[i++];
+                }
+
+                while (j < otherValues.length) {
+                    newValues[count++] = otherValues[j++];
+                }
+
+                return new ArrayContainer(Arrays.copyOf(newValues, count));
+            } else {
+                return super.or(other);
+            }
+        }
+
+        @Override
+        Container andNot(Container other) {
+            return retain(other, false);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        long[] words() {
+            return words.clone();
+        }
+
+        @Override
+        int copy(int high, int[] rows, int offset) {
+            int count = 0;
+
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+
+                while (word != 0) {
+                    rows[offset + count++] = (high << 16) | ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            return count;
+        }
+
+        @Override
+        Container and(Container other) {
+            return other instanceof ArrayContainer ? other.and(this) : super.and(other);
+        }
+    }
+
+    private final char[] keys;
+    private final Container[] containers;
+
+    private RowBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    int cardinality() {
+        int result = 0;
+
+        for (final Container container : containers) {
+            result += container.cardinality();
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the rows as a selection vector.
+     * <p>
+     * @return The rows in ascending order, never null.
+     */
+    int[] toArray() {
+        final int[] rows = new int[cardinality()];
+        int count = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            count += containers[i].copy(keys[i], rows, count);
+        }
+
+        return rows;
+    }
+
+    RowBitmap and(RowBitmap other) {
+        final char[] newKeys = new char[Math.min(keys.length, other.keys.length)];
+        final Container[] newContainers = new Container[newKeys.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                final Container container = containers[i].and(other.containers[j]);
+
+                if (container != null) {
+                    newKeys[size] = keys[i];
+                    newContainers[size++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return of(newKeys, newContainers, size);
+    }
+
+    RowBitmap or(RowBitmap other) {
+        final char[] newKeys = new char[keys.length + other.keys.length];
+        final Container[] newContainers = new Container[newKeys.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                newKeys[size] = keys[i];
+                newContainers[size++] = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                newKeys[size] = other.keys[j];
+                newContainers[size++] = other.containers[j++];
+            } else {
+                newKeys[size] = keys[i];
+                newContainers[size++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+
+        return of(newKeys, newContainers, size);
+    }
+
+    RowBitmap andNot(RowBitmap other) {
+        final char[] newKeys = new char[keys.length];
+        final Container[] newContainers = new Container[newKeys.length];
+        int j = 0;
+        int size = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            final Container container;
+
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+
+            container = j < other.keys.length && other.keys[j] == keys[i] ? containers[i].andNot(other.containers[j]) : containers[i];
+
+            if (container != null) {
+                newKeys[size] = keys[i];
+                newContainers[size++] = container;
+            }
+        }
+
+        return of(newKeys, newContainers, size);
+    }
+
+    private static RowBitmap of(char[] keys, Container[] containers, int size) {
+        return size == 0 ? EMPTY : new RowBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(containers, size));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+/**
+ * A hash index over one or more columns of a {@link ColumnarRelation}, such
+ * as those of a secondary key, whose data need not be unique. Rows with the
+ * same hash are chained through an array, so the index costs two ints per
+ * row and the keys themselves stay in the columns.
+ * <p>
+ * @author Chad
+ */
+final class RowIndex {
+
+    private static int hash(Object[] key) {
+        final int h = Arrays.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private final Column[] columns;
+    private final int[] heads;
+    private final int[] next;
+    private final int mask;
+
+    /**
+     * Index every row of some columns.
+     * <p>
+     * @param columns The columns making up the key.
+     */
+    RowIndex(Column[] columns) {
+        final int rowCount = requireNonNull(columns, "Columns was null").length == 0 ? 0 : columns[0].size();
+        int capacity = 16;
+
+        this.columns = columns;
+
+        while (capacity < rowCount) {
+            capacity <<= 1;
+        }
+
+        this.heads = new int[capacity];
+        this.next = new int[rowCount];
+        this.mask = capacity - 1;
+
+        // Rows are pushed in descending order so each chain is ascending.
+        for (int row = rowCount - 1; row >= 0; row--) {
+            final int slot = hash(key(row)) & mask;
+
+            next[row] = heads[slot];
+            heads[slot] = row + 1;
+        }
+    }
+
+    private Object[] key(int row) {
+        final Object[] key = new Object[columns.length];
+
+        for (int i = 0; i < columns.length; i++) {
+            key[i] = columns[i].get(row);
+        }
+
+        return key;
+    }
+
+    private boolean isKey(int row, Object[] key) {
+        for (int i = 0; i < columns.length; i++) {
+            if (!columns[i].get(row).equals(key[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Find the rows holding a key.
+     * <p>
+     * @param key The data of each column of the key.
+     * @return The rows in ascending order, never null.
+     */
+    int[] find(Object[] key) {
+        int[] rows = new int[4];
+        int count = 0;
+
+        for (int entry = heads[hash(key) & mask]; entry != 0; entry = next[entry - 1]) {
+            if (isKey(entry - 1, key)) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = entry - 1;
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+}
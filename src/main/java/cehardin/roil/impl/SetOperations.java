@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.DuplicateKeyException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The union, intersection and difference of the tuples of two relations with
+ * the same attributes, by hashing or by merging.
+ * <p>
+ * @author Chad
+ * @see AbstractRelation#getUnitedTuples(cehardin.roil.Relation)
+ */
+final class SetOperations {
+
+    /**
+     * The set operations.
+     */
+    enum Operator {
+        Union,
+        Intersect,
+        Subtract
+    }
+
+    private SetOperations() {
+    }
+
+    /**
+     * Combine tuples by probing a hashed set of the right tuples with each of
+     * the left.
+     * <p>
+     * @param operator The operation.
+     * @param left     The left tuples.
+     * @param right    The right tuples, which must answer contains in constant
+     *                 time.
+     * @return The result, never null.
+     */
+    static Set<Tuple> hash(Operator operator, Set<Tuple> left, Set<Tuple> right) {
+        final Set<Tuple> result;
+
+        if (operator == Operator.Union) {
+            result = new HashSet<>(left);
+            result.addAll(right);
+        } else {
+            result = new HashSet<>();
+
+            for (final Tuple tuple : left) {
+                if (right.contains(tuple) == (operator == Operator.Intersect)) {
+                    result.add(tuple);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Combine tuples by merging both sides in the order of their primary key.
+     * Each key is held by at most one tuple of a side, so a key on both sides
+     * is one tuple if the tuples are equal and a conflict otherwise. Nothing
+     * is hashed.
+     * <p>
+     * @param operator   The operation.
+     * @param left       The left tuples in the order of their key.
+     * @param right      The right tuples in the order of their key.
+     * @param comparator The ordering of the key's domain.
+     * @return The result, never null.
+     * @throws DuplicateKeyException If a union would hold two tuples with the
+     *                               same key.
+     */
+    static Set<Tuple> merge(Operator operator, MergeJoin.Input left, MergeJoin.Input right, Comparator<Object> comparator) throws DuplicateKeyException {
+        final Set<Tuple> result = new HashSet<>();
+        final boolean isLeftKept = operator != Operator.Intersect;
+        final boolean isRightKept = operator == Operator.Union;
+        int i = 0;
+        int j = 0;
+
+        while (i < left.size() && j < right.size()) {
+            final int c = comparator.compare(left.getData(i), right.getData(j));
+
+            if (c < 0) {
+                if (isLeftKept) {
+                    result.add(left.getTuple(i));
+                }
+                i++;
+            } else if (c > 0) {
+                if (isRightKept) {
+                    result.add(right.getTuple(j));
+                }
+                j++;
+            } else {
+                final Tuple tuple = left.getTuple(i);
+
+                if (tuple.equals(right.getTuple(j))) {
+                    if (operator != Operator.Subtract) {
+                        result.add(tuple);
+                    }
+                } else if (operator == Operator.Union) {
+                    throw new DuplicateKeyException(format("Cannot unite %s with %s, their primary key is the same", tuple, right.getTuple(j)));
+                } else if (operator == Operator.Subtract) {
+                    result.add(tuple);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        for (; isLeftKept && i < left.size(); i++) {
+            result.add(left.getTuple(i));
+        }
+
+        for (; isRightKept && j < right.size(); j++) {
+            result.add(right.getTuple(j));
+        }
+
+        return result;
+    }
+}
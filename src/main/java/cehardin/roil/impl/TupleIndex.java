@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Tuple;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A persistent hash index from the data of some attributes, such as those of
+ * a secondary key, to the tuples holding it. Like {@link HashTrie} every
+ * change returns a new index sharing structure with the old one, so it can
+ * be maintained through each insert, delete and modify of a
+ * {@link PersistentRelation} in O(log n).
+ * <p>
+ * @author Chad
+ */
+final class TupleIndex {
+
+    private final int[] ordinals;
+    private final HashTrie<List<Object>, HashTrie<Tuple, Tuple>> trie;
+
+    /**
+     * Create an empty index.
+     * <p>
+     * @param ordinals The ordinals of the attributes making up the key.
+     */
+    TupleIndex(int[] ordinals) {
+        this(requireNonNull(ordinals, "Ordinals was null"), HashTrie.empty());
+    }
+
+    private TupleIndex(int[] ordinals, HashTrie<List<Object>, HashTrie<Tuple, Tuple>> trie) {
+        this.ordinals = ordinals;
+        this.trie = trie;
+    }
+
+    int[] getOrdinals() {
+        return ordinals;
+    }
+
+    private List<Object> key(Tuple tuple) {
+        final Object[] key = new Object[ordinals.length];
+
+        for (int i = 0; i < ordinals.length; i++) {
+            key[i] = tuple.getValues().getDataReference(ordinals[i]);
+        }
+
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Find the tuples holding a key.
+     * <p>
+     * @param key The data of each attribute of the key.
+     * @return The tuples, never null.
+     */
+    HashTrie<Tuple, Tuple> find(Object[] key) {
+        final HashTrie<Tuple, Tuple> result = trie.get(Arrays.asList(key));
+        return result == null ? HashTrie.empty() : result;
+    }
+
+    TupleIndex put(Tuple tuple) {
+        final List<Object> key = key(tuple);
+        final HashTrie<Tuple, Tuple> tuples = trie.get(key);
+
+        return new TupleIndex(ordinals, trie.put(key, (tuples == null ? HashTrie.<Tuple, Tuple>empty() : tuples).put(tuple, tuple)));
+    }
+
+    TupleIndex remove(Tuple tuple) {
+        final List<Object> key = key(tuple);
+        final HashTrie<Tuple, Tuple> tuples = trie.get(key);
+        final HashTrie<Tuple, Tuple> newTuples;
+
+        if (tuples == null) {
+            return this;
+        }
+
+        newTuples = tuples.remove(tuple);
+
+        if (newTuples == tuples) {
+            return this;
+        } else if (newTuples.isEmpty()) {
+            return new TupleIndex(ordinals, trie.remove(key));
+        } else {
+            return new TupleIndex(ordinals, trie.put(key, newTuples));
+        }
+    }
+}
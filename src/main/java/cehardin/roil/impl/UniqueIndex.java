@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.exception.DuplicateKeyException;
+
+/**
+ * A hash index over a column whose data is unique, such as the primary key of
+ * a {@link ColumnarRelation}. It is an open addressing table of row numbers,
+ * so it costs a few bytes per row and the keys themselves stay in the column.
+ * <p>
+ * An insert or modify of a columnar relation copies its columns, so the index
+ * of the new relation is derived from the old one the same way: the table is
+ * copied and only the changed row is hashed, instead of hashing every row
+ * again.
+ * <p>
+ * @author Chad
+ */
+final class UniqueIndex {
+
+    private static int hash(Object key) {
+        final int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private final Column column;
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * Index every row of a column.
+     * <p>
+     * @param column The column.
+     * @throws DuplicateKeyException If two rows have equal data.
+     */
+    UniqueIndex(Column column) throws DuplicateKeyException {
+        int capacity = 16;
+
+        this.column = requireNonNull(column, "Column was null");
+
+        while (capacity < column.size() * 2) {
+            capacity <<= 1;
+        }
+
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+
+        for (int row = 0; row < column.size(); row++) {
+            final Object key = column.get(row);
+            int slot = hash(key) & mask;
+
+            while (slots[slot] != 0) {
+                if (column.get(slots[slot] - 1).equals(key)) {
+                    throw new DuplicateKeyException(format("Duplicate key: %s", key));
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = row + 1;
+        }
+    }
+
+    private UniqueIndex(Column column, int[] slots) {
+        this.column = column;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * Index a column that is the column of this index with one row appended,
+     * whose data must not be in this index. The table is rebuilt at twice the
+     * capacity once it would be more than half full.
+     * <p>
+     * @param newColumn The column with the row appended.
+     * @return The new index, never null.
+     */
+    UniqueIndex append(Column newColumn) {
+        final int[] newSlots;
+
+        if (requireNonNull(newColumn, "New Column was null").size() * 2 > slots.length) {
+            return new UniqueIndex(newColumn);
+        }
+
+        newSlots = slots.clone();
+        place(newColumn, newSlots, newColumn.size() - 1);
+
+        return new UniqueIndex(newColumn, newSlots);
+    }
+
+    /**
+     * Index a column that is the column of this index with the data of one
+     * row replaced by data that is not in this index. The table is shared if
+     * the data of the row is unchanged.
+     * <p>
+     * @param newColumn The column with the row replaced.
+     * @param row       The row.
+     * @return The new index, never null.
+     */
+    UniqueIndex set(Column newColumn, int row) {
+        final Object oldKey = column.get(row);
+        final int[] newSlots;
+        int slot = hash(oldKey) & mask;
+        int next;
+
+        if (oldKey.equals(requireNonNull(newColumn, "New Column was null").get(row))) {
+            return new UniqueIndex(newColumn, slots);
+        }
+
+        newSlots = slots.clone();
+
+        while (newSlots[slot] != row + 1) {
+            slot = (slot + 1) & mask;
+        }
+
+        // Remove the row by shifting back every later entry of its probe run
+        // whose home slot is not between the gap and the entry.
+        next = (slot + 1) & mask;
+
+        while (newSlots[next] != 0) {
+            final int home = hash(newColumn.get(newSlots[next] - 1)) & mask;
+
+            if (slot <= next ? home <= slot || home > next : home <= slot && home > next) {
+                newSlots[slot] = newSlots[next];
+                slot = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        newSlots[slot] = 0;
+        place(newColumn, newSlots, row);
+
+        return new UniqueIndex(newColumn, newSlots);
+    }
+
+    private void place(Column newColumn, int[] newSlots, int row) {
+        int slot = hash(newColumn.get(row)) & mask;
+
+        while (newSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        newSlots[slot] = row + 1;
+    }
+
+    /**
+     * Find the row holding a key.
+     * <p>
+     * @param key The key.
+     * @return The row, or -1 if no row holds the key.
+     */
+    int find(Object key) {
+        int slot = hash(key) & mask;
+
+        while (slots[slot] != 0) {
+            final int row = slots[slot] - 1;
+
+            if (column.get(row).equals(key)) {
+                return row;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+}
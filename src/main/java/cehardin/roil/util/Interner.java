@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A hash-consing table: it hands out one shared instance for each group of
+ * equal objects, so they can be compared by identity and stored once. The
+ * table only holds its instances weakly, so it never keeps an object alive.
+ * <p>
+ * @author Chad
+ * @param <T> The type of the objects, which must be immutable.
+ */
+public final class Interner<T> {
+
+    private final Map<T, WeakReference<T>> map = new WeakHashMap<>();
+
+    /**
+     * Get the shared instance equal to an object, making the object the
+     * shared instance if there is none.
+     * <p>
+     * @param t The object.
+     * @return The shared instance, never null.
+     */
+    public synchronized T intern(T t) {
+        final WeakReference<T> reference = map.get(requireNonNull(t, "Object was null"));
+        final T existing = reference == null ? null : reference.get();
+
+        if (existing != null) {
+            return existing;
+        } else {
+            map.put(t, new WeakReference<>(t));
+            return t;
+        }
+    }
+
+    /**
+     * Get the number of shared instances still alive.
+     * <p>
+     * @return The number of instances.
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+}
@@ -48,10 +48,25 @@ public class Predicates {
         public InCollection(Collection<T> collection) {
             this.collection = requireNonNull(collection, "Collection was null");
         }
+
+        @Override
+        public boolean test(T t) {
+            return collection.contains(t);
+        }
     }
     
     public static <T,U> Predicate<U> curryBiPredicate(BiPredicate<T,U> biPredicate, T value) {
         return new CurriedBiPredicate<>(value, biPredicate);
                 
     }
+    
+    /**
+     * Create a predicate of membership in a collection.
+     * <p>
+     * @param collection The collection, which is not copied.
+     * @return The predicate, never null.
+     */
+    public static <T> Predicate<T> in(Collection<T> collection) {
+        return new InCollection<>(collection);
+    }
 }
@@ -19,17 +19,20 @@ package cehardin.roil.util;
 import static java.lang.String.format;
 
 import java.util.Comparator;
-import java.util.SortedSet;
 import java.util.function.Predicate;
 
 /**
- *
+ * An interval of the data ordered by a comparator. Each endpoint is open,
+ * closed or unbounded, and the endpoint of an unbounded end is null.
+ * <p>
  * @author Chad
+ * @see Ranges
  */
 public interface Range<T> {
     enum EndPointType {
         Open,
-        Closed;
+        Closed,
+        Unbounded;
     }
     
     EndPointType getStartEndpointType();
@@ -50,6 +53,8 @@ public interface Range<T> {
                     return getComparator().compare(o, getStartEnpoint()) > 0;
                 case Closed:
                     return getComparator().compare(o, getStartEnpoint()) >= 0;
+                case Unbounded:
+                    return true;
                 default:
                     throw new IllegalStateException(format("Unknown Endpoint type: %s", endPointType));
             }
@@ -61,9 +66,11 @@ public interface Range<T> {
             final EndPointType endPointType = getStopEndpointType();
             switch(endPointType) {
                 case Open:
-                    return getComparator().compare(o, getStartEnpoint()) < 0;
+                    return getComparator().compare(o, getStopEndpoint()) < 0;
                 case Closed:
-                    return getComparator().compare(o, getStartEnpoint()) <= 0;
+                    return getComparator().compare(o, getStopEndpoint()) <= 0;
+                case Unbounded:
+                    return true;
                 default:
                     throw new IllegalStateException(format("Unknown Endpoint type: %s", endPointType));
             }
@@ -86,4 +93,19 @@ public interface Range<T> {
         return getIsInRangePredicate().test(o);
     }
     
+    /**
+     * Determine if no data can be in this range, which is when the start is
+     * above the stop, or they are equal and either is open.
+     * <p>
+     * @return true if the range is empty.
+     */
+    default boolean isEmpty() {
+        if(getStartEndpointType() == EndPointType.Unbounded || getStopEndpointType() == EndPointType.Unbounded) {
+            return false;
+        }
+        else {
+            final int c = getComparator().compare(getStartEnpoint(), getStopEndpoint());
+            return c > 0 || (c == 0 && (getStartEndpointType() == EndPointType.Open || getStopEndpointType() == EndPointType.Open));
+        }
+    }
 }
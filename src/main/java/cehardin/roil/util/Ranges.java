@@ -16,10 +16,28 @@
  */
 package cehardin.roil.util;
 
+import static cehardin.roil.util.Range.EndPointType.Closed;
+import static cehardin.roil.util.Range.EndPointType.Open;
+import static cehardin.roil.util.Range.EndPointType.Unbounded;
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.util.Range.EndPointType;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 
 /**
- *
+ * Creates ranges and combines them. A set of ranges is a list that is
+ * normalized: none of its ranges are empty, they are sorted, and no two of
+ * them overlap or touch. Every set returned here is normalized, and every
+ * set passed in must be.
+ * <p>
  * @author Chad
  */
 public class Ranges {
@@ -31,11 +49,19 @@ public class Ranges {
         private final Comparator<T> comparator;
 
         public RangeImpl(EndPointType startEndpointType, EndPointType stopEndpointType, T startEndpoint, T stopEndpoint, Comparator<T> comparator) {
-            this.startEndpointType = startEndpointType;
-            this.stopEndpointType = stopEndpointType;
+            this.startEndpointType = requireNonNull(startEndpointType, "Start Endpoint Type was null");
+            this.stopEndpointType = requireNonNull(stopEndpointType, "Stop Endpoint Type was null");
             this.startEndpoint = startEndpoint;
             this.stopEndpoint = stopEndpoint;
-            this.comparator = comparator;
+            this.comparator = requireNonNull(comparator, "Comparator was null");
+            
+            if((startEndpointType == Unbounded) != (startEndpoint == null)) {
+                throw new IllegalArgumentException(format("Start endpoint %s does not suit endpoint type %s", startEndpoint, startEndpointType));
+            }
+            
+            if((stopEndpointType == Unbounded) != (stopEndpoint == null)) {
+                throw new IllegalArgumentException(format("Stop endpoint %s does not suit endpoint type %s", stopEndpoint, stopEndpointType));
+            }
         }
         
         
@@ -61,36 +87,234 @@ public class Ranges {
 
         @Override
         public Comparator<T> getComparator() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+            return comparator;
         }
-        
-    }
-    private static final class IntegerRange implements Range<Integer> {
 
         @Override
-        public Comparator<Integer> getComparator() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        public String toString() {
+            return format("%s%s, %s%s", 
+                    startEndpointType == Closed ? "[" : "(", 
+                    startEndpointType == Unbounded ? "-inf" : startEndpoint, 
+                    stopEndpointType == Unbounded ? "+inf" : stopEndpoint, 
+                    stopEndpointType == Closed ? "]" : ")");
         }
-
-        @Override
-        public EndPointType getStartEndpointType() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+    
+    public static <T> Range<T> of(EndPointType startEndpointType, T startEndpoint, EndPointType stopEndpointType, T stopEndpoint, Comparator<T> comparator) {
+        return new RangeImpl<>(startEndpointType, stopEndpointType, startEndpoint, stopEndpoint, comparator);
+    }
+    
+    public static <T> Range<T> all(Comparator<T> comparator) {
+        return of(Unbounded, null, Unbounded, null, comparator);
+    }
+    
+    /**
+     * Create the set of ranges holding the data that satisfies an operator
+     * against a constant, where the data is the left operand.
+     * <p>
+     * @param operator   The operator.
+     * @param constant   The right operand.
+     * @param comparator The order of the data.
+     * @return The normalized set of ranges, never null.
+     */
+    public static <T> List<Range<T>> of(BooleanOperator operator, T constant, Comparator<T> comparator) {
+        requireNonNull(constant, "Constant was null");
+        
+        switch(requireNonNull(operator, "Operator was null")) {
+            case Equal:
+                return singletonList(of(Closed, constant, Closed, constant, comparator));
+            case NotEqual:
+                return unmodifiableList(asList(
+                        of(Unbounded, null, Open, constant, comparator),
+                        of(Open, constant, Unbounded, null, comparator)));
+            case GreaterThan:
+                return singletonList(of(Open, constant, Unbounded, null, comparator));
+            case GreaterThanOrEqual:
+                return singletonList(of(Closed, constant, Unbounded, null, comparator));
+            case LessThan:
+                return singletonList(of(Unbounded, null, Open, constant, comparator));
+            case LessThanOrEqual:
+                return singletonList(of(Unbounded, null, Closed, constant, comparator));
+            default:
+                throw new IllegalArgumentException(format("Unknown operator: %s", operator));
         }
-
-        @Override
-        public Integer getStartEnpoint() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+    
+    /**
+     * Order two ranges by where they start, where an unbounded start is
+     * lowest and a closed start is below an open start at the same endpoint.
+     */
+    private static <T> int compareStarts(Range<T> r1, Range<T> r2) {
+        if(r1.getStartEndpointType() == Unbounded || r2.getStartEndpointType() == Unbounded) {
+            return Boolean.compare(r2.getStartEndpointType() == Unbounded, r1.getStartEndpointType() == Unbounded);
         }
-
-        @Override
-        public Integer getStopEndpoint() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        else {
+            final int c = r1.getComparator().compare(r1.getStartEnpoint(), r2.getStartEnpoint());
+            return c != 0 ? c : Boolean.compare(r1.getStartEndpointType() == Open, r2.getStartEndpointType() == Open);
         }
-
-        @Override
-        public EndPointType getStopEndpointType() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    }
+    
+    /**
+     * Order two ranges by where they stop, where an unbounded stop is highest
+     * and an open stop is below a closed stop at the same endpoint.
+     */
+    private static <T> int compareStops(Range<T> r1, Range<T> r2) {
+        if(r1.getStopEndpointType() == Unbounded || r2.getStopEndpointType() == Unbounded) {
+            return Boolean.compare(r1.getStopEndpointType() == Unbounded, r2.getStopEndpointType() == Unbounded);
+        }
+        else {
+            final int c = r1.getComparator().compare(r1.getStopEndpoint(), r2.getStopEndpoint());
+            return c != 0 ? c : Boolean.compare(r1.getStopEndpointType() == Closed, r2.getStopEndpointType() == Closed);
+        }
+    }
+    
+    /**
+     * Determine if a range that starts no later than another overlaps or
+     * touches it, so the two can be merged into one.
+     */
+    private static <T> boolean isConnected(Range<T> lower, Range<T> upper) {
+        if(lower.getStopEndpointType() == Unbounded || upper.getStartEndpointType() == Unbounded) {
+            return true;
+        }
+        else {
+            final int c = lower.getComparator().compare(lower.getStopEndpoint(), upper.getStartEnpoint());
+            return c > 0 || (c == 0 && (lower.getStopEndpointType() == Closed || upper.getStartEndpointType() == Closed));
         }
+    }
+    
+    private static EndPointType flip(EndPointType endPointType) {
+        return endPointType == Open ? Closed : Open;
+    }
+    
+    /**
+     * Intersect two ranges.
+     * <p>
+     * @param r1 The first range.
+     * @param r2 The second range.
+     * @return The data in both ranges, which may be an empty range.
+     */
+    public static <T> Range<T> intersection(Range<T> r1, Range<T> r2) {
+        final Range<T> start = compareStarts(r1, r2) >= 0 ? r1 : r2;
+        final Range<T> stop = compareStops(r1, r2) <= 0 ? r1 : r2;
+        
+        return of(start.getStartEndpointType(), start.getStartEnpoint(), stop.getStopEndpointType(), stop.getStopEndpoint(), r1.getComparator());
+    }
+    
+    /**
+     * Normalize any ranges into a set of ranges, dropping the empty ones and
+     * merging those that overlap or touch.
+     * <p>
+     * @param ranges The ranges.
+     * @return The normalized set of ranges holding the data of any of them.
+     */
+    public static <T> List<Range<T>> union(Collection<Range<T>> ranges) {
+        final List<Range<T>> sorted = new ArrayList<>();
+        final List<Range<T>> result = new ArrayList<>();
+        Range<T> current = null;
+        
+        for(final Range<T> range : requireNonNull(ranges, "Ranges was null")) {
+            if(!requireNonNull(range, "Range was null").isEmpty()) {
+                sorted.add(range);
+            }
+        }
+        
+        sorted.sort(Ranges::compareStarts);
+        
+        for(final Range<T> range : sorted) {
+            if(current == null) {
+                current = range;
+            }
+            else if(isConnected(current, range)) {
+                final Range<T> stop = compareStops(current, range) >= 0 ? current : range;
+                current = of(current.getStartEndpointType(), current.getStartEnpoint(), stop.getStopEndpointType(), stop.getStopEndpoint(), current.getComparator());
+            }
+            else {
+                result.add(current);
+                current = range;
+            }
+        }
+        
+        if(current != null) {
+            result.add(current);
+        }
+        
+        return unmodifiableList(result);
+    }
+    
+    /**
+     * Union two sets of ranges.
+     * <p>
+     * @param set1 The first normalized set.
+     * @param set2 The second normalized set.
+     * @return The normalized set of ranges holding the data of either set.
+     */
+    public static <T> List<Range<T>> union(List<Range<T>> set1, List<Range<T>> set2) {
+        final List<Range<T>> ranges = new ArrayList<>(set1);
+        
+        ranges.addAll(set2);
+        
+        return union(ranges);
+    }
+    
+    /**
+     * Intersect two sets of ranges by walking both in order.
+     * <p>
+     * @param set1 The first normalized set.
+     * @param set2 The second normalized set.
+     * @return The normalized set of ranges holding the data in both sets.
+     */
+    public static <T> List<Range<T>> intersection(List<Range<T>> set1, List<Range<T>> set2) {
+        final List<Range<T>> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        
+        while(i < set1.size() && j < set2.size()) {
+            final Range<T> r1 = set1.get(i);
+            final Range<T> r2 = set2.get(j);
+            final Range<T> range = intersection(r1, r2);
+            
+            if(!range.isEmpty()) {
+                result.add(range);
+            }
+            
+            if(compareStops(r1, r2) <= 0) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        
+        return unmodifiableList(result);
+    }
+    
+    /**
+     * Complement a set of ranges.
+     * <p>
+     * @param set        The normalized set.
+     * @param comparator The order of the data.
+     * @return The normalized set of ranges holding the data not in the set.
+     */
+    public static <T> List<Range<T>> complement(List<Range<T>> set, Comparator<T> comparator) {
+        final List<Range<T>> result = new ArrayList<>();
+        EndPointType startEndpointType = Unbounded;
+        T startEndpoint = null;
+        
+        for(final Range<T> range : requireNonNull(set, "Set was null")) {
+            if(range.getStartEndpointType() != Unbounded) {
+                result.add(of(startEndpointType, startEndpoint, flip(range.getStartEndpointType()), range.getStartEnpoint(), comparator));
+            }
+            
+            if(range.getStopEndpointType() == Unbounded) {
+                return unmodifiableList(result);
+            }
+            
+            startEndpointType = flip(range.getStopEndpointType());
+            startEndpoint = range.getStopEndpoint();
+        }
+        
+        result.add(of(startEndpointType, startEndpoint, Unbounded, null, comparator));
         
+        return unmodifiableList(result);
     }
 }
@@ -61,7 +61,17 @@ public class SortedSets {
 
         @Override
         public boolean contains(Object o) {
-            return comparator().compare(first(), o) >= 0 && comparator().compare(last(), o) <= 0;
+            final Iterator<T> iterator = iteratorSupplier.get();
+
+            while (iterator.hasNext()) {
+                final T t = iterator.next();
+
+                if (t == null ? o == null : t.equals(o)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         @Override
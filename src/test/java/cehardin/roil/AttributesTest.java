@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import cehardin.roil.domain.IntegerDomain;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class AttributesTest {
+
+    private static Attributes attributes(int count) throws Exception {
+        final Map<AttributeName, Domain<?>> map = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            map.put(AttributeName.of("A" + i), new IntegerDomain());
+        }
+
+        return new Attributes(map);
+    }
+
+    @Test
+    public void namesWithTheSameValueShareAnId() throws Exception {
+        final AttributeName name = AttributeName.of("Size");
+        final AttributeName other = new AttributeName(" Size ");
+
+        assertNotSame(name, other);
+        assertEquals(name, other);
+        assertEquals(name.getId(), other.getId());
+        assertSame(name, AttributeName.of("Size"));
+    }
+
+    @Test
+    public void everyAttributeHasItsOrdinal() throws Exception {
+        for (final int count : new int[]{0, 1, 2, 3, 100, 1000}) {
+            final Attributes attributes = attributes(count);
+
+            assertEquals(count, attributes.size());
+
+            for (int i = 0; i < count; i++) {
+                final AttributeName name = attributes.getAttributeName(i);
+
+                assertEquals(i, attributes.getOrdinal(name));
+                assertEquals(i, attributes.getOrdinal(new AttributeName(name.getValue())));
+            }
+
+            assertEquals(-1, attributes.getOrdinal(AttributeName.of("A" + count)));
+            assertEquals(-1, attributes.getOrdinal(AttributeName.of("Missing")));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toSet;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.domain.IntegerDomain;
+import cehardin.roil.domain.StringDomain;
+import cehardin.roil.exception.InvalidNameException;
+import cehardin.roil.impl.PersistentRelation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * What the tests share to build domains, schemas, tuples and relations, and
+ * the scans and nested loop join the indexes and join algorithms are
+ * checked against.
+ * <p>
+ * @author Chad
+ */
+public final class Fixtures {
+
+    public static final Domain<Object> Integers = domain(new IntegerDomain());
+    public static final Domain<Object> Strings = domain(new StringDomain());
+
+    private Fixtures() {
+    }
+
+    /**
+     * View a domain as a domain of objects, the way relations hold their data.
+     * <p>
+     * @param domain The domain.
+     * @return The same domain.
+     */
+    @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+    public static Domain<Object> domain(Domain<?> domain) {
+        return (Domain<Object>)domain;
+    }
+
+    /**
+     * The name of an attribute.
+     * <p>
+     * @param name The name.
+     * @return The attribute name.
+     * @throws InvalidNameException If the name is not valid.
+     */
+    public static AttributeName name(String name) throws InvalidNameException {
+        return AttributeName.of(name);
+    }
+
+    /**
+     * A value of {@link #Integers} or {@link #Strings}, chosen by the datum.
+     * <p>
+     * @param data The datum.
+     * @return The value.
+     */
+    public static Value<Object> value(Object data) {
+        if (data instanceof Integer) {
+            return new Value<>(Integers, data);
+        }
+        else if (data instanceof String) {
+            return new Value<>(Strings, data);
+        }
+        else {
+            throw new IllegalArgumentException(format("No domain for %s", data));
+        }
+    }
+
+    /**
+     * A schema of integer attributes.
+     * <p>
+     * @param primaryKey The attribute of the primary key, or null for none.
+     * @param secondaryKeys The attributes each given a secondary key.
+     * @param names The names of the attributes.
+     * @return The schema.
+     * @throws InvalidNameException If a name is not valid.
+     */
+    public static RelationSchema schema(String primaryKey, Collection<String> secondaryKeys, String... names) throws InvalidNameException {
+        final Map<AttributeName, Domain<?>> attributes = new HashMap<>();
+        final Set<SecondaryKey> keys = new HashSet<>();
+
+        for (final String name : names) {
+            attributes.put(name(name), Integers);
+        }
+
+        for (final String secondaryKey : secondaryKeys) {
+            final Set<AttributeName> attributeNames = new HashSet<>();
+
+            attributeNames.add(name(secondaryKey));
+            keys.add(new SecondaryKey(attributeNames));
+        }
+
+        return new RelationSchema(new Attributes(attributes), primaryKey == null ? Optional.empty() : Optional.of(new PrimaryKey(name(primaryKey))), new SecondaryKeys(keys));
+    }
+
+    /**
+     * A schema of integer attributes without secondary keys.
+     * <p>
+     * @param primaryKey The attribute of the primary key, or null for none.
+     * @param names The names of the attributes.
+     * @return The schema.
+     * @throws InvalidNameException If a name is not valid.
+     */
+    public static RelationSchema schema(String primaryKey, String... names) throws InvalidNameException {
+        return schema(primaryKey, new HashSet<>(), names);
+    }
+
+    /**
+     * A tuple of the given names and data, in turn.
+     * <p>
+     * @param namesAndData Each name followed by its datum.
+     * @return The tuple.
+     * @throws InvalidNameException If a name is not valid.
+     */
+    public static Tuple tuple(Object... namesAndData) throws InvalidNameException {
+        final Map<AttributeName, Value<Object>> values = new HashMap<>();
+
+        for (int i = 0; i < namesAndData.length; i += 2) {
+            values.put(name((String)namesAndData[i]), value(namesAndData[i + 1]));
+        }
+
+        return new Tuple(new Values(values));
+    }
+
+    /**
+     * A select of an attribute against a constant.
+     * <p>
+     * @param operator The operator.
+     * @param name The name of the attribute.
+     * @param data The datum of the constant.
+     * @return The select.
+     * @throws InvalidNameException If the name is not valid.
+     */
+    public static SelectByConstant select(BooleanOperator operator, String name, Object data) throws InvalidNameException {
+        return new SelectByConstant(operator, name(name), value(data));
+    }
+
+    /**
+     * The tuples of integer attributes for each i from 0 to count - 1, whose
+     * datum of each attribute is i modulo that attribute's modulus.
+     * <p>
+     * @param count The number of tuples, which may be fewer if two are the
+     *              same.
+     * @param namesAndModuli Each name followed by its modulus.
+     * @return The tuples.
+     * @throws InvalidNameException If a name is not valid.
+     */
+    public static Set<Tuple> tuples(int count, Object... namesAndModuli) throws InvalidNameException {
+        final Set<Tuple> tuples = new HashSet<>();
+
+        for (int i = 0; i < count; i++) {
+            final Object[] namesAndData = namesAndModuli.clone();
+
+            for (int j = 1; j < namesAndData.length; j += 2) {
+                namesAndData[j] = i % (Integer)namesAndModuli[j];
+            }
+
+            tuples.add(tuple(namesAndData));
+        }
+
+        return tuples;
+    }
+
+    /**
+     * A relation of integer attributes holding the {@link #tuples(int, Object...)}
+     * of count.
+     * <p>
+     * @param primaryKey The attribute of the primary key, or null for none.
+     * @param count The number of tuples.
+     * @param namesAndModuli Each name followed by its modulus.
+     * @return The relation.
+     * @throws Exception If the tuples do not fit the schema.
+     */
+    public static PersistentRelation relation(String primaryKey, int count, Object... namesAndModuli) throws Exception {
+        final String[] names = new String[namesAndModuli.length / 2];
+
+        for (int j = 0; j < names.length; j++) {
+            names[j] = (String)namesAndModuli[j * 2];
+        }
+
+        return new PersistentRelation(schema(primaryKey, names), tuples(count, namesAndModuli));
+    }
+
+    /**
+     * The tuples of a relation satisfying a select by testing every tuple,
+     * to check the indexes against.
+     * <p>
+     * @param relation The relation.
+     * @param select The select.
+     * @return The selected tuples.
+     */
+    public static Set<Tuple> scan(Relation relation, SelectByConstant select) {
+        final BiPredicate<Object, Object> predicate = domain(select.getConstant().getDomain()).getBooleanOperators().get(select.getOperator());
+
+        return relation.getTuples().stream()
+                .filter((t) -> predicate.test(t.getValues().getMap().get(select.getTargetAttributeName()).getData(), select.getConstant().getData()))
+                .collect(toSet());
+    }
+
+    /**
+     * The natural join of two relations by comparing every pair of tuples,
+     * to check the join algorithms against.
+     * <p>
+     * @param left The left relation.
+     * @param right The right relation.
+     * @return The joined tuples.
+     */
+    public static Set<Tuple> nestedLoop(Relation left, Relation right) {
+        final List<AttributeName> shared = new ArrayList<>(left.getSchema().getAttributes().getMap().keySet());
+        final List<Map<AttributeName, Value<Object>>> rightValues = new ArrayList<>();
+        final List<Object[]> rightKeys = new ArrayList<>();
+        final Set<Tuple> result = new HashSet<>();
+
+        shared.retainAll(right.getSchema().getAttributes().getMap().keySet());
+
+        for (final Tuple r : right.getTuples()) {
+            rightValues.add(r.getValues().getMap());
+            rightKeys.add(key(r.getValues().getMap(), shared));
+        }
+
+        for (final Tuple l : left.getTuples()) {
+            final Map<AttributeName, Value<Object>> leftValues = l.getValues().getMap();
+            final Object[] leftKey = key(leftValues, shared);
+
+            for (int i = 0; i < rightKeys.size(); i++) {
+                if (Arrays.equals(leftKey, rightKeys.get(i))) {
+                    final Map<AttributeName, Value<Object>> values = new HashMap<>(leftValues);
+
+                    values.putAll(rightValues.get(i));
+                    result.add(new Tuple(new Values(values)));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static Object[] key(Map<AttributeName, Value<Object>> values, List<AttributeName> names) {
+        final Object[] key = new Object[names.size()];
+
+        for (int i = 0; i < key.length; i++) {
+            key[i] = values.get(names.get(i));
+        }
+
+        return key;
+    }
+}
@@ -5,116 +5,109 @@
  */
 package cehardin.roil;
 
-import cehardin.roil.Factory;
-import cehardin.roil.RelationSchema;
-import cehardin.roil.Name;
-import cehardin.roil.Value;
-import cehardin.roil.Attributes;
-import cehardin.roil.Relation;
-import cehardin.roil.Domain;
-import cehardin.roil.Tuple;
-import cehardin.roil.impl.memory.MemoryFactory;
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static org.junit.Assert.*;
+
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.domain.IntegerDomain;
+import cehardin.roil.domain.StringDomain;
+import cehardin.roil.impl.PersistentRelation;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.Optional;
 import org.junit.Before;
 import org.junit.Test;
 
-import static org.junit.Assert.*;
-import static cehardin.roil.impl.spi.ImmutableMaps.*;
-import static cehardin.roil.impl.spi.ImmutableSets.*;
-
 /**
  *
  * @author Chad
  */
 public class Roil {
 
-    private Factory factory;
+    private AttributeName idName;
+    private AttributeName colorName;
+    private Domain<Object> integerDomain;
+    private Domain<Object> stringDomain;
+    private RelationSchema relationSchema;
 
     @Before
-    public void setUp() {
-        factory = new MemoryFactory();
+    @SuppressWarnings("unchecked") // Every datum of an attribute is of its domain
+    public void setUp() throws Exception {
+        final Map<AttributeName, Domain<?>> attributes = new HashMap<>();
+
+        idName = AttributeName.of("ID");
+        colorName = AttributeName.of("Color");
+        integerDomain = (Domain<Object>)(Domain<?>)new IntegerDomain();
+        stringDomain = (Domain<Object>)(Domain<?>)new StringDomain();
+        attributes.put(idName, integerDomain);
+        attributes.put(colorName, stringDomain);
+        relationSchema = new RelationSchema(new Attributes(attributes), Optional.of(new PrimaryKey(idName)), new SecondaryKeys(new HashSet<>()));
+    }
+
+    private Tuple tuple(int id, String color) {
+        final Map<AttributeName, Value<Object>> values = new HashMap<>();
+
+        values.put(idName, new Value<>(integerDomain, id));
+        values.put(colorName, new Value<>(stringDomain, color));
+
+        return new Tuple(new Values(values));
+    }
+
+    private int count(Relation relation, String color) {
+        return relation.select(new SelectByConstant(Equal, colorName, new Value<>(stringDomain, color))).getTuples().size();
     }
 
     @Test
-    public void createSchema() {
-        final Name idName;
-        final Name colorName;
-        final Domain integerDomain;
-        final Domain stringDomain;
-        final Attributes idAttribute;
-        final Attributes colorAttribute;
-        final Set<Attributes> attributes;
-        final RelationSchema relationSchema;
-        final Value id1Value;
-        final Value id2Value;
-        final Value id3Value;
-        final Value brownValue;
-        final Value blueValue;
-        final Value redValue;
-        final Tuple brownTuple;
-        final Tuple blueTuple;
-        final Tuple redTuple;
+    public void createSchema() throws Exception {
+        final Tuple brownTuple = tuple(1, "Brown");
+        final Tuple blueTuple = tuple(2, "Blue");
+        final Tuple redTuple = tuple(3, "Red");
         Relation relation;
         Relation snapshot;
 
-        idName = factory.createName("ID");
-        colorName = factory.createName("Color");
-        integerDomain = factory.createIntegerDomain();
-        stringDomain = factory.createStringDomain();
-        idAttribute = factory.createAttribute(idName, integerDomain);
-        colorAttribute = factory.createAttribute(colorName, stringDomain);
-        attributes = createImmutableSet(idAttribute, colorAttribute);
-        relationSchema = factory.createRelationSchema(attributes);
-        id1Value = factory.createValue(1, integerDomain);
-        id2Value = factory.createValue(2, integerDomain);
-        id3Value = factory.createValue(3, integerDomain);
-        brownValue = factory.createValue("Brown", stringDomain);
-        blueValue = factory.createValue("Blue", stringDomain);
-        redValue = factory.createValue("Red", stringDomain);
-        brownTuple = factory.createTuple(createImmutableMap(createImmutableEntry(idAttribute, id1Value), createImmutableEntry(colorAttribute, brownValue)));
-        blueTuple = factory.createTuple(createImmutableMap(createImmutableEntry(idAttribute, id2Value), createImmutableEntry(colorAttribute, blueValue)));
-        redTuple = factory.createTuple(createImmutableMap(createImmutableEntry(idAttribute, id3Value), createImmutableEntry(colorAttribute, redValue)));
-        relation = factory.createRelation(relationSchema);
-
-        assertEquals(0, relation.count());
+        relation = new PersistentRelation(relationSchema, new HashSet<>());
+
+        assertEquals(0, relation.getTuples().size());
         snapshot = relation;
 
-        relation = relation.add(brownTuple);
-        assertEquals(1, relation.count());
-        assertEquals(0, snapshot.count());
+        relation = relation.insert(brownTuple);
+        assertEquals(1, relation.getTuples().size());
+        assertEquals(0, snapshot.getTuples().size());
         snapshot = relation;
 
-        relation = relation.add(blueTuple);
-        assertEquals(2, relation.count());
-        assertEquals(1, snapshot.count());
+        relation = relation.insert(blueTuple);
+        assertEquals(2, relation.getTuples().size());
+        assertEquals(1, snapshot.getTuples().size());
         snapshot = relation;
 
-        relation = relation.add(redTuple);
-        assertEquals(3, relation.count());
-        assertEquals(2, snapshot.count());
+        relation = relation.insert(redTuple);
+        assertEquals(3, relation.getTuples().size());
+        assertEquals(2, snapshot.getTuples().size());
         snapshot = relation;
 
-        relation = relation.add(brownTuple, blueTuple, redTuple);
-        assertEquals(3, relation.count());
-        assertEquals(3, snapshot.count());
+        relation = relation.insert(brownTuple).insert(blueTuple).insert(redTuple);
+        assertEquals(3, relation.getTuples().size());
+        assertEquals(3, snapshot.getTuples().size());
 
-        assertEquals(1, relation.select((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue)).count());
-        snapshot = relation.remove((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue));
-        assertEquals(1, relation.select((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue)).count());
-        assertEquals(0, snapshot.select((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue)).count());
+        assertEquals(1, count(relation, "Brown"));
+        snapshot = relation.delete(brownTuple);
+        assertEquals(1, count(relation, "Brown"));
+        assertEquals(0, count(snapshot, "Brown"));
 
-        relation = relation.update((t) -> t.getAttributesAndValues().get(colorAttribute).equals(redValue), (t) -> t.change(addToImmutableMap(t.getAttributesAndValues(), colorAttribute, brownValue)));
-        assertEquals(2, relation.select((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue)).count());
-        assertEquals(0, snapshot.select((t) -> t.getAttributesAndValues().get(colorAttribute).equals(brownValue)).count());
+        relation = relation.modify(new Modify(redTuple, tuple(3, "Brown")));
+        assertEquals(2, count(relation, "Brown"));
+        assertEquals(0, count(snapshot, "Brown"));
 
-        snapshot = relation.project(createImmutableSet(idAttribute));
-        assertEquals(0, snapshot.select((t) -> t.getAttributesAndValues().getOrDefault(colorAttribute, factory.createValue()).equals(brownValue)).count());
-        assertEquals(1, snapshot.select((t) -> t.getAttributesAndValues().get(idAttribute).equals(id1Value)).count());
+        snapshot = relation.project((a) -> a.equals(idName));
+        assertEquals(1, snapshot.select(new SelectByConstant(Equal, idName, new Value<>(integerDomain, 1))).getTuples().size());
 
-        relation = relation.remove((t) -> true);
-        assertEquals(0, relation.count());
-        assertEquals(3, snapshot.count());
+        for (final Tuple tuple : relation.getTuples()) {
+            relation = relation.delete(tuple);
+        }
 
+        assertEquals(0, relation.getTuples().size());
+        assertEquals(3, snapshot.getTuples().size());
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Fixtures.select;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import cehardin.roil.Fixtures;
+import cehardin.roil.Relation;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.algebra.LazyRelation.Caching;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class LazyRelationTest {
+
+    /**
+     * A relation keyed by one attribute, holding a row for each key from 0 to
+     * count - 1 whose other attribute is key % 3.
+     */
+    private static Relation relation(int count, String key, String other) throws Exception {
+        return Fixtures.relation(key, count, key, Math.max(count, 1), other, 3);
+    }
+
+    private static SelectByConstant equal(String name, int data) throws Exception {
+        return select(Equal, name, data);
+    }
+
+    @Test
+    public void theDefaultReadsViewsThroughThePlan() throws Exception {
+        final Relation stored = relation(100, "ID", "Dept");
+        final LazyRelation view = (LazyRelation)LazyRelation.of(stored).select(equal("Dept", 1));
+
+        assertEquals(Caching.NonViews, view.getCaching());
+        assertEquals(stored.select(equal("Dept", 1)).getTuples(), view.getTuples());
+        assertNotSame(view.evaluate(), view.evaluate());
+    }
+
+    @Test
+    public void theDefaultKeepsTheEvaluationOfAJoin() throws Exception {
+        final Relation stored = relation(100, "ID", "Dept");
+        final Relation departments = relation(3, "Dept", "Floor");
+        final LazyRelation joined = (LazyRelation)LazyRelation.of(stored).join(departments);
+        final Relation evaluated = joined.evaluate();
+
+        assertEquals(stored.join(departments).getTuples(), joined.getTuples());
+        assertEquals(100, joined.stream().count());
+        assertSame(evaluated, joined.evaluate());
+    }
+
+    @Test
+    public void noCachingEvaluatesAJoinForEachRead() throws Exception {
+        final LazyRelation joined = (LazyRelation)LazyRelation.of(relation(10, "ID", "Dept"), Caching.None).join(relation(3, "Dept", "Floor"));
+
+        assertNotSame(joined.evaluate(), joined.evaluate());
+    }
+
+    @Test
+    public void evaluatedCachingKeepsAView() throws Exception {
+        final LazyRelation view = (LazyRelation)LazyRelation.of(relation(10, "ID", "Dept"), Caching.Evaluated).select(equal("Dept", 1));
+
+        assertSame(view.evaluate(), view.evaluate());
+    }
+}
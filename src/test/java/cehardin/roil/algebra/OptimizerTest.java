@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.algebra;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThan;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.relation;
+import static cehardin.roil.Fixtures.select;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.Aggregatable.Aggregation;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.algebra.Select.Operator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class OptimizerTest {
+
+    /**
+     * Rows of the left side of a join, whose K is shared with the right.
+     */
+    private static Expression left() throws Exception {
+        return new Scan(relation("ID", 60, "ID", 60, "K", 4, "Start", 7));
+    }
+
+    /**
+     * Rows of the right side of a join.
+     */
+    private static Expression right() throws Exception {
+        return new Scan(relation("RID", 40, "RID", 40, "K", 5, "Stop", 6));
+    }
+
+    private static Operator equal(String name, int data) throws Exception {
+        return Operator.of(select(Equal, name, data));
+    }
+
+    private static Operator compare(BooleanOperator operator, String target, String other) throws Exception {
+        return Operator.of(new SelectByAttribute(operator, name(target), name(other)));
+    }
+
+    private static UnaryOperator<AttributeName> rename(String from, String to) throws Exception {
+        final AttributeName fromName = name(from);
+        final AttributeName toName = name(to);
+
+        return (a) -> a.equals(fromName) ? toName : a;
+    }
+
+    /**
+     * Describe the node types of a plan, such as Select(Scan).
+     */
+    private static String shape(Expression expression) {
+        if (expression instanceof Select) {
+            return "Select(" + shape(((Select)expression).getChild()) + ")";
+        } else if (expression instanceof Project) {
+            return "Project(" + shape(((Project)expression).getChild()) + ")";
+        } else if (expression instanceof Rename) {
+            return "Rename(" + shape(((Rename)expression).getChild()) + ")";
+        } else if (expression instanceof GroupBy) {
+            return "GroupBy(" + shape(((GroupBy)expression).getChild()) + ")";
+        } else if (expression instanceof Join) {
+            return "Join(" + shape(((Join)expression).getLeft()) + ", " + shape(((Join)expression).getRight()) + ")";
+        } else if (expression instanceof SetOperation) {
+            return ((SetOperation)expression).getOperator() + "(" + shape(((SetOperation)expression).getLeft()) + ", " + shape(((SetOperation)expression).getRight()) + ")";
+        } else {
+            return expression.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Optimize a plan, and check the optimized plan has the expected shape
+     * and evaluates to the same tuples.
+     */
+    private static Expression assertOptimizes(String expected, Expression plan) {
+        final Expression optimized = Optimizer.optimize(plan);
+
+        assertEquals(expected, shape(optimized));
+        assertEquals(plan.evaluate().getTuples(), optimized.evaluate().getTuples());
+        assertEquals(plan.getSchema(), optimized.getSchema());
+
+        return optimized;
+    }
+
+    private static List<String> operators(Expression select) {
+        final List<String> operators = new ArrayList<>();
+
+        for (final Operator operator : ((Select)select).getOperators()) {
+            operators.add(operator.toString());
+        }
+
+        return operators;
+    }
+
+    @Test
+    public void adjacentSelectsFuse() throws Exception {
+        final Expression optimized = assertOptimizes("Select(Scan)", new Select(new Select(left(), asList(equal("K", 1))), asList(equal("Start", 5))));
+
+        assertEquals(asList("K Equal 1", "Start Equal 5"), operators(optimized));
+    }
+
+    @Test
+    public void selectsPushBelowProjects() throws Exception {
+        final AttributeName start = name("Start");
+        final Expression plan = new Select(new Project(left(), (a) -> !a.equals(start)), asList(equal("K", 1)));
+
+        assertOptimizes("Project(Select(Scan))", plan);
+    }
+
+    @Test
+    public void selectsPushBelowRenamesWithTheOldNames() throws Exception {
+        final Expression plan = new Select(new Rename(left(), rename("K", "Key")), asList(equal("Key", 2)));
+        final Expression optimized = assertOptimizes("Rename(Select(Scan))", plan);
+
+        assertEquals(asList("K Equal 2"), operators(((Rename)optimized).getChild()));
+    }
+
+    @Test
+    public void projectsPushBelowRenamesAndFuse() throws Exception {
+        final AttributeName id = name("ID");
+        final AttributeName k = name("K");
+        final AttributeName begin = name("Begin");
+
+        assertOptimizes("Rename(Project(Scan))", new Project(new Project(new Rename(left(), rename("Start", "Begin")), (a) -> !a.equals(id)), (a) -> !a.equals(k)));
+        assertOptimizes("Project(Scan)", new Project(new Project(new Rename(left(), rename("Start", "Begin")), (a) -> !a.equals(id)), (a) -> !a.equals(begin)));
+    }
+
+    @Test
+    public void renamesCompose() throws Exception {
+        assertOptimizes("Rename(Scan)", new Rename(new Rename(left(), rename("K", "A")), rename("A", "B")));
+        assertOptimizes("Scan", new Rename(new Rename(left(), rename("K", "A")), rename("A", "K")));
+    }
+
+    @Test
+    public void selectsPushIntoEachSideOfAJoinThatReadsThem() throws Exception {
+        final Expression plan = new Select(new Join(left(), right()), asList(equal("Start", 1), equal("K", 2), equal("RID", 3)));
+        final Join optimized = (Join)assertOptimizes("Join(Select(Scan), Select(Scan))", plan);
+
+        assertEquals(asList("Start Equal 1", "K Equal 2"), operators(optimized.getLeft()));
+        assertEquals(asList("K Equal 2", "RID Equal 3"), operators(optimized.getRight()));
+    }
+
+    @Test
+    public void crossSideSelectsBecomeTheJoinCondition() throws Exception {
+        final Join optimized = (Join)assertOptimizes("Join(Scan, Scan)", new Select(new Join(left(), right()), asList(compare(LessThan, "Start", "Stop"))));
+
+        assertEquals(name("Start"), optimized.getCondition().get().getTargetAttributeName());
+        assertEquals(LessThan, optimized.getCondition().get().getOperator());
+    }
+
+    @Test
+    public void crossSideSelectsFromTheRightAreMirrored() throws Exception {
+        final Expression plan = new Select(new Join(left(), right()), asList(compare(LessThan, "Stop", "Start"), equal("K", 3)));
+        final Join optimized = (Join)assertOptimizes("Join(Select(Scan), Select(Scan))", plan);
+
+        assertEquals(name("Start"), optimized.getCondition().get().getTargetAttributeName());
+        assertEquals(name("Stop"), optimized.getCondition().get().getAttributeName());
+        assertEquals(GreaterThan, optimized.getCondition().get().getOperator());
+    }
+
+    @Test
+    public void selectsOfGroupAttributesPushBelowAGroupBy() throws Exception {
+        final Aggregate aggregate = new Aggregate(singleton(name("K")), asList(new Aggregation(name("N"))));
+        final Expression plan = new Select(new GroupBy(left(), aggregate), asList(equal("K", 1), equal("N", 15)));
+        final Expression optimized = assertOptimizes("Select(GroupBy(Select(Scan)))", plan);
+
+        assertEquals(asList("N Equal 15"), operators(optimized));
+        assertEquals(asList("K Equal 1"), operators(((GroupBy)((Select)optimized).getChild()).getChild()));
+    }
+
+    @Test
+    public void selectsPushIntoBothSidesOfSetOperations() throws Exception {
+        final Expression a = new Scan(relation(null, 30, "ID", 30, "K", 4));
+        final Expression b = new Scan(relation(null, 40, "ID", 20, "K", 4));
+
+        for (final SetOperation.Operator operator : SetOperation.Operator.values()) {
+            assertOptimizes(operator + "(Select(Scan), Select(Scan))", new Select(new SetOperation(operator, a, b), asList(equal("K", 1))));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.domain;
+
+import static java.util.Comparator.naturalOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class ContinuousRangeSetTest {
+
+    /**
+     * The strings, as the {@link StringDomain} ranges over them.
+     */
+    private static final SortedSet<String> Strings = new StringDomain().getRange();
+
+    private static void assertFails(Class<? extends RuntimeException> type, Runnable runnable) {
+        try {
+            runnable.run();
+            throw new AssertionError("Expected " + type.getSimpleName());
+        } catch (RuntimeException e) {
+            assertEquals(type, e.getClass());
+        }
+    }
+
+    @Test
+    public void theElementsCannotBeCountedOrListed() throws Exception {
+        assertFalse(Strings.isEmpty());
+        assertEquals(Integer.MAX_VALUE, Strings.size());
+        assertEquals("", Strings.first());
+        assertTrue(Strings.contains("anything"));
+        assertFalse(Strings.contains(7));
+        assertFails(UnsupportedOperationException.class, Strings::last);
+        assertFails(UnsupportedOperationException.class, Strings::iterator);
+        assertFails(UnsupportedOperationException.class, () -> new ContinuousRangeSet<String>(String.class, null, "m", naturalOrder()).first());
+    }
+
+    @Test
+    public void subSetsIncludeTheirLowerBoundAndExcludeTheirUpperBound() throws Exception {
+        final SortedSet<String> subSet = Strings.subSet("b", "d");
+
+        assertEquals("b", subSet.first());
+        assertEquals(Integer.MAX_VALUE, subSet.size());
+        assertTrue(subSet.contains("b"));
+        assertTrue(subSet.contains("czzz"));
+        assertFalse(subSet.contains("azzz"));
+        assertFalse(subSet.contains("d"));
+    }
+
+    @Test
+    public void subSetsAreClippedToTheSet() throws Exception {
+        final SortedSet<String> subSet = Strings.subSet("b", "d");
+
+        assertTrue(subSet.headSet("c").contains("b"));
+        assertFalse(subSet.headSet("c").contains("c"));
+        assertFalse(subSet.headSet("z").contains("d"));
+        assertEquals("b", subSet.tailSet("a").first());
+        assertFalse(subSet.tailSet("a").contains("d"));
+        assertEquals("c", subSet.tailSet("c").first());
+        assertEquals("bb", subSet.subSet("bb", "cc").first());
+        assertFalse(subSet.subSet("a", "z").contains("a"));
+        assertFalse(subSet.subSet("a", "z").contains("d"));
+        assertFalse(Strings.headSet("m").contains("m"));
+        assertTrue(Strings.headSet("m").contains("l"));
+    }
+
+    @Test
+    public void subSetsOfNoElementsAreEmpty() throws Exception {
+        final SortedSet<String> subSet = Strings.subSet("b", "d");
+
+        for (final SortedSet<String> empty : new SortedSet[]{Strings.subSet("b", "b"), subSet.tailSet("d"), subSet.headSet("b"), subSet.subSet("e", "f"), new ContinuousRangeSet<>(String.class, "a", "a", naturalOrder())}) {
+            assertTrue(empty.isEmpty());
+            assertEquals(0, empty.size());
+            assertFalse(empty.contains("b"));
+            assertFails(NoSuchElementException.class, empty::first);
+        }
+    }
+
+    @Test
+    public void boundsMustBeInOrder() throws Exception {
+        assertFails(IllegalArgumentException.class, () -> Strings.subSet("d", "b"));
+        assertFails(IllegalArgumentException.class, () -> new ContinuousRangeSet<>(String.class, "d", "b", naturalOrder()));
+    }
+}
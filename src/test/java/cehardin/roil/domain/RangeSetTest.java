@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.domain;
+
+import static java.util.Comparator.naturalOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class RangeSetTest {
+
+    /**
+     * The integers, as the {@link IntegerDomain} ranges over them.
+     */
+    private static final SortedSet<Integer> Integers = new IntegerDomain().getRange();
+
+    /**
+     * The discrete arithmetic of longs, to build sets of more than
+     * {@link Integer#MAX_VALUE} elements.
+     */
+    private static final class LongDiscrete implements Discrete<Long> {
+
+        @Override
+        public Long next(Long l) {
+            return l + 1;
+        }
+
+        @Override
+        public Long previous(Long l) {
+            return l - 1;
+        }
+
+        @Override
+        public long distance(Long from, Long to) {
+            return to - from;
+        }
+    }
+
+    private static List<Integer> list(SortedSet<Integer> set) {
+        final List<Integer> list = new ArrayList<>();
+
+        for (final Integer i : set) {
+            list.add(i);
+        }
+
+        return list;
+    }
+
+    private static List<Integer> list(int from, int to) {
+        final List<Integer> list = new ArrayList<>();
+
+        for (int i = from; i < to; i++) {
+            list.add(i);
+        }
+
+        return list;
+    }
+
+    @Test
+    public void sizesAreComputedFromTheBounds() throws Exception {
+        final RangeSet<Long> longs = new RangeSet<>(Long.class, 0L, 5L * Integer.MAX_VALUE, naturalOrder(), new LongDiscrete());
+
+        assertEquals(1L << 32, ((RangeSet<Integer>)Integers).count());
+        assertEquals(Integer.MAX_VALUE, Integers.size());
+        assertEquals(Integer.MIN_VALUE, Integers.first().intValue());
+        assertEquals(Integer.MAX_VALUE, Integers.last().intValue());
+        assertFalse(Integers.isEmpty());
+        assertEquals(5L * Integer.MAX_VALUE + 1, longs.count());
+        assertEquals(Integer.MAX_VALUE, longs.size());
+        assertEquals(1, Integers.subSet(7, 8).size());
+        assertEquals(1, new RangeSet<>(Long.class, 3L, 3L, naturalOrder(), new LongDiscrete()).size());
+    }
+
+    @Test
+    public void subSetsIncludeTheirLowerBoundAndExcludeTheirUpperBound() throws Exception {
+        final SortedSet<Integer> subSet = Integers.subSet(-5, 5);
+
+        assertEquals(10, subSet.size());
+        assertEquals(-5, subSet.first().intValue());
+        assertEquals(4, subSet.last().intValue());
+        assertTrue(subSet.contains(-5));
+        assertTrue(subSet.contains(4));
+        assertFalse(subSet.contains(-6));
+        assertFalse(subSet.contains(5));
+        assertFalse(subSet.contains(0L));
+        assertEquals(list(-5, 5), list(subSet));
+    }
+
+    @Test
+    public void headAndTailSetsKeepTheOtherBound() throws Exception {
+        final SortedSet<Integer> headSet = Integers.headSet(5);
+        final SortedSet<Integer> tailSet = Integers.tailSet(5);
+        final SortedSet<Integer> subSet = Integers.subSet(0, 10);
+
+        assertEquals(Integer.MIN_VALUE, headSet.first().intValue());
+        assertEquals(4, headSet.last().intValue());
+        assertEquals((long)Integer.MAX_VALUE + 6, ((RangeSet<Integer>)headSet).count());
+        assertEquals(5, tailSet.first().intValue());
+        assertEquals(Integer.MAX_VALUE, tailSet.last().intValue());
+        assertEquals((long)Integer.MAX_VALUE - 4, ((RangeSet<Integer>)tailSet).count());
+        assertEquals(Integer.MAX_VALUE - 4, tailSet.size());
+        assertEquals(list(0, 3), list(subSet.headSet(3)));
+        assertEquals(list(3, 10), list(subSet.tailSet(3)));
+        assertEquals(list(3, 7), list(subSet.subSet(2, 8).subSet(3, 7)));
+        assertEquals(list(3, 10), list(subSet.tailSet(3).tailSet(3)));
+    }
+
+    @Test
+    public void subSetsOfNoElementsAreEmpty() throws Exception {
+        for (final SortedSet<Integer> empty : new SortedSet[]{Integers.subSet(3, 3), Integers.headSet(Integer.MIN_VALUE), Integers.subSet(0, 10).headSet(0)}) {
+            assertTrue(empty.isEmpty());
+            assertEquals(0, empty.size());
+            assertFalse(empty.contains(3));
+            assertFalse(empty.iterator().hasNext());
+
+            try {
+                empty.first();
+                throw new AssertionError("The empty set had a first element");
+            } catch (NoSuchElementException e) {
+            }
+        }
+    }
+
+    @Test
+    public void subSetsMustLieWithinTheSet() throws Exception {
+        final SortedSet<Integer> subSet = Integers.subSet(0, 10);
+
+        for (final Runnable outside : new Runnable[]{
+            () -> subSet.subSet(-1, 5),
+            () -> subSet.subSet(5, 10),
+            () -> subSet.subSet(5, 2),
+            () -> subSet.headSet(20),
+            () -> subSet.tailSet(-1),
+            () -> new RangeSet<>(Long.class, 3L, 2L, naturalOrder(), new LongDiscrete())}) {
+            try {
+                outside.run();
+                throw new AssertionError("A set was made outside its bounds");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThan;
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.scan;
+import static cehardin.roil.Fixtures.schema;
+import static cehardin.roil.Fixtures.select;
+import static cehardin.roil.Fixtures.tuple;
+import static cehardin.roil.Fixtures.tuples;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class BitmapIndexTest {
+
+    private static final int Codes = 10;
+
+    @Test
+    public void selectFindsTheRowsOfEveryOperator() throws Exception {
+        final int[] data = IntColumnTest.data(5000, 21);
+        final IntColumn column = IntColumnTest.column(data);
+        final BitmapIndex index = new BitmapIndex(column);
+
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            final BiPredicate<Object, Object> predicate = column.getDomain().getBooleanOperators().get(operator);
+
+            for (final int constant : IntColumnTest.Constants) {
+                final int[] expected = Arrays.stream(Column.allRows(data.length)).filter((row) -> predicate.test(data[row], constant)).toArray();
+
+                assertArrayEquals(operator + " " + constant, expected, index.select(operator, constant).toArray());
+            }
+        }
+    }
+
+    /**
+     * Select every code through the bitmap indexes with each operator, alone,
+     * together with a select on the other bitmap indexed attribute and with
+     * one no index answers, and check the result against a scan.
+     */
+    private static void assertSelectsByCode(Relation relation) throws Exception {
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            for (int code = -1; code <= Codes; code++) {
+                final SelectByConstant byCode = select(operator, "Code", code);
+                final SelectByConstant bySize = select(Equal, "Size", 1);
+                final SelectByConstant byId = select(GreaterThan, "ID", 100);
+                final Set<Tuple> expected = scan(relation, byCode);
+
+                assertEquals(expected, relation.select(byCode).getTuples());
+                expected.retainAll(scan(relation, bySize));
+                assertEquals(expected, relation.select(asList(byCode, bySize)).getTuples());
+                expected.retainAll(scan(relation, byId));
+                assertEquals(expected, relation.select(asList(byId, byCode, bySize)).getTuples());
+            }
+        }
+    }
+
+    @Test
+    public void selectsByBitmapIndexesSeeInsertsModifiesAndDeletes() throws Exception {
+        for (final String primaryKey : new String[]{"ID", null}) {
+            final Relation relation = new ColumnarRelation(schema(primaryKey, "ID", "Code", "Size"), tuples(500, "ID", 500, "Code", Codes, "Size", 3))
+                    .withBitmapIndex(name("Code"))
+                    .withBitmapIndex(name("Size"));
+            final Relation inserted;
+            final Relation modified;
+            final Relation deleted;
+
+            assertSelectsByCode(relation);
+
+            inserted = relation.insert(tuple("ID", 1000, "Code", 4, "Size", 0)).insert(tuple("ID", 1001, "Code", Codes, "Size", 1));
+            assertSelectsByCode(inserted);
+
+            modified = inserted.modify(new Modify(tuple("ID", 14, "Code", 4, "Size", 2), tuple("ID", 14, "Code", 7, "Size", 1)));
+            assertSelectsByCode(modified);
+
+            deleted = modified.delete(tuple("ID", 1000, "Code", 4, "Size", 0)).delete(tuple("ID", 14, "Code", 7, "Size", 1));
+            assertEquals(inserted.getTuples().size() - 2, deleted.getTuples().size());
+            assertSelectsByCode(deleted);
+            assertSelectsByCode(relation);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.Integers;
+import static cehardin.roil.Fixtures.Strings;
+import static cehardin.roil.impl.IntColumnTest.Constants;
+import static cehardin.roil.impl.IntColumnTest.Sizes;
+import static cehardin.roil.impl.IntColumnTest.column;
+import static cehardin.roil.impl.IntColumnTest.data;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiPredicate;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class ColumnTest {
+
+    /**
+     * The rows of a range whose data satisfies every operator, found through
+     * the domains' own predicates on each row.
+     */
+    private static int[] expected(Column[] columns, BooleanOperator[] operators, Object[] constants, int from, int count) {
+        final int[] rows = new int[count];
+        int selected = 0;
+
+        for (int row = from; row < from + count; row++) {
+            boolean isSelected = true;
+
+            for (int i = 0; i < columns.length; i++) {
+                final BiPredicate<Object, Object> predicate = columns[i].getDomain().getBooleanOperators().get(operators[i]);
+                isSelected &= predicate.test(columns[i].get(row), constants[i]);
+            }
+
+            if (isSelected) {
+                rows[selected++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, selected);
+    }
+
+    private static void assertSelects(Column[] columns, BooleanOperator[] operators, Object[] constants, int from, int count) {
+        final int[] rows = new int[count];
+
+        assertArrayEquals(from + " " + count + " " + Arrays.toString(operators) + " " + Arrays.toString(constants), expected(columns, operators, constants, from, count), Arrays.copyOf(rows, Column.select(columns, operators, constants, from, count, rows)));
+    }
+
+    /**
+     * Ranges of a size that start on and off a block boundary and end in a
+     * partial word.
+     */
+    private static int[][] ranges(int size) {
+        return new int[][]{{0, size}, {Math.min(1, size), Math.max(0, size - 1)}, {size / 3, size / 2}, {Math.min(63, size), Math.max(0, size - 63)}, {Math.min(65, size), Math.max(0, size - 130)}};
+    }
+
+    @Test
+    public void intMasksMatchThePredicate() {
+        for (final int size : Sizes) {
+            final int[] data = data(size, size);
+
+            for (final int[] range : ranges(size)) {
+                final int count = Math.min(range[1], Column.BLOCK_SIZE);
+
+                for (final BooleanOperator operator : BooleanOperator.values()) {
+                    for (final int constant : Constants) {
+                        final long[] initial = new Random(size).longs(Column.BLOCK_WORDS).toArray();
+                        final long[] mask = initial.clone();
+                        final BiPredicate<Object, Object> predicate = Integers.getBooleanOperators().get(operator);
+
+                        IntColumn.mask(data, operator, constant, range[0], count, mask);
+
+                        for (int i = 0; i < count; i++) {
+                            final boolean expected = (initial[i >> 6] & (1L << i)) != 0 && predicate.test(data[range[0] + i], constant);
+                            assertEquals(operator + " " + constant + " at " + (range[0] + i), expected, (mask[i >> 6] & (1L << i)) != 0);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void blockSelectsMatchThePredicate() {
+        for (final int size : new int[]{0, 63, 64, 1023, 1024, 1025, 2100}) {
+            final Column column = column(data(size, size));
+
+            for (final int[] range : ranges(size)) {
+                for (final BooleanOperator operator : BooleanOperator.values()) {
+                    for (final int constant : Constants) {
+                        assertSelects(new Column[]{column}, new BooleanOperator[]{operator}, new Object[]{constant}, range[0], range[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void blockSelectsOfConjunctionsMatchThePredicate() {
+        for (final int size : new int[]{0, 63, 64, 1023, 1024, 1025, 2100}) {
+            final int[] data = data(size, size);
+            final Object[] strings = new Object[size];
+            final Object[] objects = new Object[size];
+            final Column[] columns;
+
+            for (int i = 0; i < size; i++) {
+                strings[i] = Integer.toString(i % 10);
+                objects[i] = i % 5;
+            }
+
+            columns = new Column[]{column(data), Column.of(Strings, strings), new ObjectColumn(Integers, objects)};
+
+            for (final int[] range : ranges(size)) {
+                assertSelects(columns, new BooleanOperator[]{BooleanOperator.GreaterThan, BooleanOperator.LessThan, BooleanOperator.NotEqual}, new Object[]{-1, "7", 2}, range[0], range[1]);
+                assertSelects(columns, new BooleanOperator[]{BooleanOperator.LessThanOrEqual, BooleanOperator.Equal, BooleanOperator.GreaterThanOrEqual}, new Object[]{Integer.MAX_VALUE, "3", 3}, range[0], range[1]);
+                assertSelects(columns, new BooleanOperator[]{BooleanOperator.Equal, BooleanOperator.Equal, BooleanOperator.Equal}, new Object[]{Integer.MIN_VALUE, "10", 0}, range[0], range[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThan;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThanOrEqual;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Domain.BooleanOperator.LessThanOrEqual;
+import static cehardin.roil.Domain.BooleanOperator.NotEqual;
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.select;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Fixtures;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.DuplicateKeyException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class ColumnarRelationTest {
+
+    private static RelationSchema schema(boolean withPrimaryKey) throws Exception {
+        return Fixtures.schema(withPrimaryKey ? "ID" : null, "ID", "Size");
+    }
+
+    private static Tuple tuple(int id, int size) throws Exception {
+        return Fixtures.tuple("ID", id, "Size", size);
+    }
+
+    private static Set<Tuple> tuples(int count) throws Exception {
+        final Set<Tuple> result = new HashSet<>();
+
+        for (int i = 0; i < count; i++) {
+            result.add(tuple(i, i % 3));
+        }
+
+        return result;
+    }
+
+    @Test
+    public void modifyToItselfKeepsTheTuple() throws Exception {
+        for (final boolean withPrimaryKey : new boolean[]{true, false}) {
+            final Set<Tuple> tuples = tuples(10);
+            final Relation relation = new ColumnarRelation(schema(withPrimaryKey), tuples);
+            final Tuple tuple = tuple(4, 1);
+            final Relation modified = relation.modify(new Modify(tuple, tuple));
+
+            assertEquals(10, modified.getTuples().size());
+            assertTrue(modified.getTuples().contains(tuple));
+            assertEquals(tuples, modified.getTuples());
+            assertEquals(new PersistentRelation(schema(withPrimaryKey), tuples).modify(new Modify(tuple, tuple)).getTuples(), modified.getTuples());
+        }
+    }
+
+    @Test
+    public void modifyToAnotherPresentTupleMergesThem() throws Exception {
+        final Relation relation = new ColumnarRelation(schema(false), tuples(10));
+        final Relation modified = relation.modify(new Modify(tuple(4, 1), tuple(5, 2)));
+
+        assertEquals(9, modified.getTuples().size());
+        assertFalse(modified.getTuples().contains(tuple(4, 1)));
+        assertTrue(modified.getTuples().contains(tuple(5, 2)));
+    }
+
+    @Test
+    public void modifyReplacesTheMatchedRow() throws Exception {
+        final Relation relation = new ColumnarRelation(schema(true), tuples(10));
+        final Relation modified = relation.modify(new Modify(tuple(4, 1), tuple(4, 7)));
+
+        assertEquals(10, modified.getTuples().size());
+        assertFalse(modified.getTuples().contains(tuple(4, 1)));
+        assertTrue(modified.getTuples().contains(tuple(4, 7)));
+        assertTrue(relation.getTuples().contains(tuple(4, 1)));
+    }
+
+    @Test
+    public void modifyOfAnAbsentTupleChangesNothing() throws Exception {
+        final Relation relation = new ColumnarRelation(schema(true), tuples(10));
+
+        assertEquals(relation.getTuples(), relation.modify(new Modify(tuple(40, 1), tuple(41, 1))).getTuples());
+    }
+
+    @Test
+    public void insertsAndModifiesKeepThePrimaryKeyIndex() throws Exception {
+        final Random random = new Random(1);
+        final Map<Integer, Tuple> expected = new HashMap<>();
+        Relation relation = new ColumnarRelation(schema(true), new HashSet<>());
+
+        for (int i = 0; i < 2000; i++) {
+            final int id = random.nextInt(1000);
+
+            if (!expected.isEmpty() && random.nextBoolean()) {
+                final Tuple match = expected.values().iterator().next();
+                final int matchId = (Integer)match.getValues().getDataReference(relation.getSchema().getOrdinal(name("ID")));
+                final int newId = expected.containsKey(id) ? matchId : id;
+
+                relation = relation.modify(new Modify(match, tuple(newId, i)));
+                expected.remove(matchId);
+                expected.put(newId, tuple(newId, i));
+            } else if (!expected.containsKey(id)) {
+                relation = relation.insert(tuple(id, i));
+                expected.put(id, tuple(id, i));
+            }
+        }
+
+        assertEquals(new HashSet<>(expected.values()), relation.getTuples());
+
+        for (int id = 0; id < 1000; id++) {
+            final Set<Tuple> selected = relation.select(select(Equal, "ID", id)).getTuples();
+            assertEquals(expected.containsKey(id) ? Collections.singleton(expected.get(id)) : Collections.emptySet(), selected);
+        }
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insertOfAPresentPrimaryKeyAfterInsertsFails() throws Exception {
+        new ColumnarRelation(schema(true), tuples(10)).insert(tuple(10, 0)).insert(tuple(11, 0)).insert(tuple(10, 5));
+    }
+
+    private static SelectByConstant id(BooleanOperator operator, int id) throws Exception {
+        return select(operator, "ID", id);
+    }
+
+    @Test
+    public void contradictorySelectsSelectNothing() throws Exception {
+        final ColumnarRelation relation = new ColumnarRelation(schema(false), tuples(10));
+
+        assertEquals(0, relation.count(asList(id(GreaterThan, 5), id(LessThan, 3))));
+        assertEquals(0, relation.count(asList(id(GreaterThan, 5), id(LessThanOrEqual, 5))));
+        assertEquals(0, relation.count(asList(id(Equal, 5), id(NotEqual, 5))));
+        assertEquals(1, relation.count(asList(id(GreaterThanOrEqual, 5), id(LessThanOrEqual, 5))));
+        assertEquals(Collections.singleton(tuple(5, 2)), relation.select(asList(id(GreaterThan, 4), id(LessThan, 6))).getTuples());
+        assertTrue(relation.select(asList(id(GreaterThan, 4), id(LessThan, 5))).getTuples().isEmpty());
+    }
+
+    @Test
+    public void setOperationsMatchHashSetsAndKeepThePrimaryKey() throws Exception {
+        final Set<Tuple> a = tuples(30);
+        final Set<Tuple> b = new HashSet<>();
+        final Set<Tuple> union;
+        final Set<Tuple> intersection = new HashSet<>(a);
+        final Set<Tuple> difference = new HashSet<>(a);
+        final Relation ra;
+        final Relation rb;
+
+        for (int i = 20; i < 40; i++) {
+            b.add(tuple(i, i % 3));
+        }
+
+        union = new HashSet<>(a);
+        union.addAll(b);
+        intersection.retainAll(b);
+        difference.removeAll(b);
+        ra = new ColumnarRelation(schema(true), a).withOrderedIndex(name("Size"));
+        rb = new ColumnarRelation(schema(true), b);
+
+        assertSetOperation(union, ra.union(rb));
+        assertSetOperation(intersection, ra.intersect(rb));
+        assertSetOperation(difference, ra.subtract(rb));
+    }
+
+    /**
+     * Check the tuples of a set operation, and that its primary key and
+     * ordered index on Size still answer selects.
+     */
+    private static void assertSetOperation(Set<Tuple> expected, Relation result) throws Exception {
+        int small = 0;
+
+        assertEquals(expected, result.getTuples());
+
+        for (final Tuple tuple : expected) {
+            final int id = (Integer)tuple.getValues().getDataReference(result.getSchema().getOrdinal(name("ID")));
+
+            assertEquals(Collections.singleton(tuple), result.select(asList(id(Equal, id))).getTuples());
+            small += id % 3 == 0 ? 1 : 0;
+        }
+
+        assertEquals(small, ((ColumnarRelation)result).count(asList(select(LessThan, "Size", 1))));
+    }
+
+    @Test
+    public void disjunctionsSelectTheUnionOfTheirSelects() throws Exception {
+        final ColumnarRelation plain = new ColumnarRelation(schema(true), tuples(100));
+
+        for (final ColumnarRelation relation : new ColumnarRelation[]{plain, plain.withOrderedIndex(name("ID")), plain.withBitmapIndex(name("Size"))}) {
+            for (final List<SelectByConstant> disjunction : Arrays.asList(
+                    asList(id(LessThan, 3), id(Equal, 7), id(GreaterThanOrEqual, 95)),
+                    asList(id(LessThan, 10), id(LessThanOrEqual, 5), id(GreaterThan, 8)),
+                    asList(id(Equal, 50), id(Equal, 50), id(Equal, 200)),
+                    asList(id(NotEqual, 3), id(Equal, 3)),
+                    asList(id(Equal, 4), select(Equal, "Size", 2)),
+                    Collections.<SelectByConstant>emptyList())) {
+                final Set<Tuple> expected = new HashSet<>();
+
+                for (final SelectByConstant s : disjunction) {
+                    expected.addAll(relation.select(s).getTuples());
+                }
+
+                assertEquals(disjunction.toString(), expected, relation.selectAny(disjunction).getTuples());
+            }
+        }
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void unionOfClashingPrimaryKeysFails() throws Exception {
+        new ColumnarRelation(schema(true), tuples(10)).union(new ColumnarRelation(schema(true), Collections.singleton(tuple(5, 1))));
+    }
+}
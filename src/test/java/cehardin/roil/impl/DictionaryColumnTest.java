@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.Strings;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.BiPredicate;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class DictionaryColumnTest {
+
+    private static final Object[] Data = {"pear", "apple", "fig", "apple", "kiwi", "pear", "banana", "fig"};
+
+    /**
+     * Constants in the dictionary, and constants that fall before, between
+     * and after its data.
+     */
+    private static final String[] Constants = {"apple", "fig", "kiwi", "pear", "", "aardvark", "cherry", "grape", "plum", "zebra"};
+
+    /**
+     * The rows whose data satisfies the operator, found through the domain's
+     * own predicate on each row.
+     */
+    private static int[] expected(Object[] data, BooleanOperator operator, Object constant) {
+        final BiPredicate<Object, Object> predicate = Strings.getBooleanOperators().get(operator);
+        final int[] rows = new int[data.length];
+        int count = 0;
+
+        for (int row = 0; row < data.length; row++) {
+            if (predicate.test(data[row], constant)) {
+                rows[count++] = row;
+            }
+        }
+
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static void assertSelects(Object[] data, Column column) {
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            for (final String constant : Constants) {
+                final String message = operator + " " + constant;
+                final int[] expected = expected(data, operator, constant);
+                final int[] rows = Column.allRows(data.length);
+                final int[] masked = new int[data.length];
+
+                assertArrayEquals(message, expected, Arrays.copyOf(rows, column.select(operator, constant, rows, rows.length)));
+                assertArrayEquals(message, expected, Arrays.copyOf(masked, Column.select(new Column[]{column}, new BooleanOperator[]{operator}, new Object[]{constant}, 0, data.length, masked)));
+            }
+        }
+    }
+
+    @Test
+    public void stringsAreDictionaryEncoded() {
+        final Column column = Column.of(Strings, Data.clone());
+
+        assertEquals(DictionaryColumn.class, column.getClass());
+
+        for (int row = 0; row < Data.length; row++) {
+            assertEquals(Data[row], column.get(row));
+        }
+    }
+
+    @Test
+    public void selectsMatchTheDomainOnTheCodes() {
+        assertSelects(Data, Column.of(Strings, Data.clone()));
+    }
+
+    @Test
+    public void selectsMatchTheDomainAfterTheDictionaryGrows() {
+        final Object[] data = Arrays.copyOf(Data, Data.length + 2);
+        final Column column = Column.of(Strings, Data.clone()).append("cherry").set(2, "apricot").append("zebra");
+
+        data[2] = "apricot";
+        data[Data.length] = "cherry";
+        data[Data.length + 1] = "zebra";
+
+        assertSelects(data, column);
+    }
+
+    @Test
+    public void selectsMatchTheDomainWithUnusedDictionaryData() {
+        final int[] rows = {1, 3, 6};
+        final Object[] data = {Data[1], Data[3], Data[6]};
+
+        assertSelects(data, Column.of(Strings, Data.clone()).gather(rows, rows.length));
+    }
+
+    @Test
+    public void selectsAgainstAColumnSharingTheDictionary() {
+        final Column column = Column.of(Strings, Data.clone());
+        final Column reversed = column.gather(new int[]{7, 6, 5, 4, 3, 2, 1, 0}, Data.length);
+        final Object[] other = Data.clone();
+
+        Collections.reverse(Arrays.asList(other));
+
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            final BiPredicate<Object, Object> predicate = Strings.getBooleanOperators().get(operator);
+            final int[] rows = Column.allRows(Data.length);
+            final int count = column.select(operator, reversed, rows, rows.length);
+            int expected = 0;
+
+            for (int row = 0; row < Data.length; row++) {
+                if (predicate.test(Data[row], other[row])) {
+                    assertEquals(operator.toString(), row, rows[expected++]);
+                }
+            }
+
+            assertEquals(operator.toString(), expected, count);
+        }
+    }
+}
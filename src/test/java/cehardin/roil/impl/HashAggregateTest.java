@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.tuple;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.Aggregatable.Aggregate;
+import cehardin.roil.Aggregatable.Aggregation;
+import cehardin.roil.Aggregatable.Aggregator;
+import cehardin.roil.AttributeName;
+import cehardin.roil.Fixtures;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.SecondaryKeys;
+import cehardin.roil.Tuple;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class HashAggregateTest {
+
+    private final int threshold = Parallelism.getThreshold();
+
+    @After
+    public void restoreTheThreshold() {
+        Parallelism.setThreshold(threshold);
+    }
+
+    /**
+     * Rows whose group attributes G and H are i % 7 and i % 3, and whose V is
+     * i % 11.
+     */
+    private static Relation relation(int count) throws Exception {
+        return Fixtures.relation("ID", count, "ID", Math.max(count, 1), "G", 7, "H", 3, "V", 11);
+    }
+
+    /**
+     * Every aggregator, over V where it reads an attribute.
+     */
+    private static Aggregate aggregate(String... groupNames) throws Exception {
+        final Set<AttributeName> group = new LinkedHashSet<>();
+
+        for (final String groupName : groupNames) {
+            group.add(name(groupName));
+        }
+
+        return new Aggregate(group, asList(
+                new Aggregation(name("N")),
+                new Aggregation(Aggregator.CountDistinct, name("V"), name("D")),
+                new Aggregation(Aggregator.Sum, name("V"), name("S")),
+                new Aggregation(Aggregator.Min, name("V"), name("Lo")),
+                new Aggregation(Aggregator.Max, name("V"), name("Hi"))));
+    }
+
+    /**
+     * Aggregate by grouping the tuples in a map.
+     */
+    private static Set<Tuple> expected(Relation relation, String... groupNames) throws Exception {
+        final Map<List<Object>, List<Integer>> groups = new HashMap<>();
+        final Set<Tuple> result = new HashSet<>();
+
+        for (final Tuple tuple : relation.getTuples()) {
+            final List<Object> key = new ArrayList<>();
+
+            for (final String groupName : groupNames) {
+                key.add(tuple.getValues().getMap().get(name(groupName)).getData());
+            }
+
+            groups.computeIfAbsent(key, (k) -> new ArrayList<>()).add((Integer)tuple.getValues().getMap().get(name("V")).getData());
+        }
+
+        for (final Map.Entry<List<Object>, List<Integer>> group : groups.entrySet()) {
+            final List<Integer> data = group.getValue();
+            final Object[] namesAndData = new Object[groupNames.length * 2 + 10];
+            int i = 0;
+
+            for (final String groupName : groupNames) {
+                namesAndData[i * 2] = groupName;
+                namesAndData[i * 2 + 1] = group.getKey().get(i);
+                i++;
+            }
+
+            i *= 2;
+            namesAndData[i++] = "N";
+            namesAndData[i++] = data.size();
+            namesAndData[i++] = "D";
+            namesAndData[i++] = new HashSet<>(data).size();
+            namesAndData[i++] = "S";
+            namesAndData[i++] = data.stream().mapToInt(Integer::intValue).sum();
+            namesAndData[i++] = "Lo";
+            namesAndData[i++] = data.stream().mapToInt(Integer::intValue).min().getAsInt();
+            namesAndData[i++] = "Hi";
+            namesAndData[i++] = data.stream().mapToInt(Integer::intValue).max().getAsInt();
+
+            result.add(tuple(namesAndData));
+        }
+
+        return result;
+    }
+
+    private static Set<Tuple> hashAggregate(Relation relation, Aggregate aggregate) throws Exception {
+        final RelationSchema resultSchema = relation.getSchema().aggregate(aggregate);
+        final Tuple[] tuples = relation.getTuples().toArray(new Tuple[0]);
+
+        return new HashAggregate(relation.getSchema(), resultSchema, aggregate).aggregate(tuples.length, (row, ordinal) -> tuples[row].getValues().getDataReference(ordinal));
+    }
+
+    private static void assertAggregates(Relation relation, String... groupNames) throws Exception {
+        final Set<Tuple> expected = expected(relation, groupNames);
+        final Aggregate aggregate = aggregate(groupNames);
+
+        assertEquals(expected, hashAggregate(relation, aggregate));
+        assertEquals(expected, relation.aggregate(aggregate).getTuples());
+        assertEquals(expected, new ColumnarRelation(relation.getSchema(), relation.getTuples()).aggregate(aggregate).getTuples());
+    }
+
+    @Test
+    public void everythingIsOneGroupWithoutGroupAttributes() throws Exception {
+        assertAggregates(relation(100));
+        assertEquals(1, hashAggregate(relation(100), aggregate()).size());
+    }
+
+    @Test
+    public void groupsByOneAttribute() throws Exception {
+        assertAggregates(relation(100), "G");
+        assertEquals(7, hashAggregate(relation(100), aggregate("G")).size());
+    }
+
+    @Test
+    public void groupsBySeveralAttributes() throws Exception {
+        assertAggregates(relation(100), "G", "H");
+        assertEquals(21, hashAggregate(relation(100), aggregate("G", "H")).size());
+    }
+
+    @Test
+    public void groupsOfOneRow() throws Exception {
+        assertAggregates(relation(100), "ID");
+    }
+
+    @Test
+    public void noRowsHaveNoGroupsAndNoMinOrMax() throws Exception {
+        assertTrue(hashAggregate(relation(0), aggregate()).isEmpty());
+        assertTrue(hashAggregate(relation(0), aggregate("G")).isEmpty());
+        assertAggregates(relation(0));
+        assertAggregates(relation(0), "G", "H");
+    }
+
+    @Test
+    public void minAndMaxOfStrings() throws Exception {
+        final Set<Tuple> tuples = new HashSet<>(asList(tuple("ID", 1, "Name", "pear"), tuple("ID", 2, "Name", "apple"), tuple("ID", 3, "Name", "kiwi")));
+        final Aggregate aggregate = new Aggregate(new HashSet<>(), asList(
+                new Aggregation(Aggregator.Min, name("Name"), name("Lo")),
+                new Aggregation(Aggregator.Max, name("Name"), name("Hi"))));
+        final Relation relation = new PersistentRelation(new RelationSchema(tuples.iterator().next().getValues().getAttributes(), Optional.empty(), new SecondaryKeys(new HashSet<>())), tuples);
+
+        assertEquals(new HashSet<>(asList(tuple("Lo", "apple", "Hi", "pear"))), hashAggregate(relation, aggregate));
+    }
+
+    @Test
+    public void parallelPartialTablesMergeToTheSequentialResult() throws Exception {
+        final int count = 50000;
+        final Relation relation = relation(count);
+
+        for (final String[] groupNames : new String[][]{{}, {"G"}, {"G", "H"}, {"ID"}}) {
+            final Set<Tuple> sequential;
+
+            Parallelism.setThreshold(Integer.MAX_VALUE);
+            sequential = hashAggregate(relation, aggregate(groupNames));
+            Parallelism.setThreshold(1);
+
+            assertTrue(Parallelism.isParallel(count));
+            assertEquals(expected(relation, groupNames), sequential);
+            assertEquals(sequential, hashAggregate(relation, aggregate(groupNames)));
+            assertEquals(sequential, new ColumnarRelation(relation.getSchema(), relation.getTuples()).aggregate(aggregate(groupNames)).getTuples());
+        }
+    }
+}
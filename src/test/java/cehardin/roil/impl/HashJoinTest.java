@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.nestedLoop;
+import static cehardin.roil.Fixtures.relation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.Relation;
+import cehardin.roil.Tuple;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class HashJoinTest {
+
+    /**
+     * Check the hash join of two relations, each way round, against the
+     * nested loop.
+     */
+    private static Set<Tuple> assertJoins(Relation left, Relation right) throws Exception {
+        final Set<Tuple> expected = nestedLoop(left, right);
+
+        assertEquals(expected, new HashJoin(left, right, left.getSchema().join(right.getSchema())).join());
+        assertEquals(expected, new HashJoin(right, left, right.getSchema().join(left.getSchema())).join());
+
+        return expected;
+    }
+
+    @Test
+    public void noSharedAttributesIsACrossProduct() throws Exception {
+        assertEquals(20, assertJoins(relation(null, 5, "A", 5, "B", 2), relation(null, 4, "C", 4)).size());
+    }
+
+    @Test
+    public void joinsOnSeveralSharedAttributes() throws Exception {
+        final Set<Tuple> joined = assertJoins(relation(null, 60, "ID", 60, "X", 4, "Y", 5), relation(null, 30, "X", 3, "Y", 5, "Z", 30));
+
+        assertTrue(!joined.isEmpty());
+        assertEquals(4, joined.iterator().next().getValues().getAttributes().size());
+    }
+
+    @Test
+    public void joinsDuplicateKeysOnBothSides() throws Exception {
+        final Set<Tuple> joined = assertJoins(relation(null, 12, "ID", 12, "K", 3), relation(null, 12, "RID", 12, "K", 4));
+
+        assertEquals(12 * 12 / 4, joined.size());
+    }
+
+    @Test
+    public void joinWithAnEmptySideIsEmpty() throws Exception {
+        assertTrue(assertJoins(relation(null, 0, "ID", 1, "K", 3), relation(null, 10, "K", 10)).isEmpty());
+        assertTrue(assertJoins(relation(null, 10, "ID", 10, "K", 3), relation(null, 0, "K", 1)).isEmpty());
+        assertTrue(assertJoins(relation(null, 0, "ID", 1), relation(null, 10, "K", 10)).isEmpty());
+    }
+
+    @Test
+    public void joinsAbovePartitioning() throws Exception {
+        final Set<Tuple> joined = assertJoins(relation(null, 9000, "ID", 9000, "K", 7000), relation(null, 10000, "RID", 10000, "K", 9500));
+
+        assertTrue(joined.size() > 9000);
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class HashTrieTest {
+
+    /**
+     * A key whose hash code is chosen, so keys can be made to collide.
+     */
+    private static final class Key {
+
+        private final int value;
+        private final int hash;
+
+        Key(int value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key)o).value == value;
+        }
+
+        @Override
+        public String toString() {
+            return value + "#" + hash;
+        }
+    }
+
+    private static Key key(int value) {
+        return new Key(value, value % 97);
+    }
+
+    private static HashTrie<Key, Integer> trie(Map<Key, Integer> map) {
+        HashTrie<Key, Integer> result = HashTrie.empty();
+
+        for (final Entry<Key, Integer> entry : map.entrySet()) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+
+        return result;
+    }
+
+    private static Map<Key, Integer> map(HashTrie<Key, Integer> trie) {
+        final Map<Key, Integer> result = new HashMap<>();
+
+        for (final Entry<Key, Integer> entry : trie) {
+            assertNull("Key iterated twice: " + entry.getKey(), result.put(entry.getKey(), entry.getValue()));
+        }
+
+        assertEquals(result.size(), trie.size());
+
+        return result;
+    }
+
+    private static Map<Key, Integer> randomMap(Random random, int size, int range) {
+        final Map<Key, Integer> result = new HashMap<>();
+
+        while (result.size() < size) {
+            final int value = random.nextInt(range);
+            result.put(key(value), value);
+        }
+
+        return result;
+    }
+
+    @Test
+    public void putGetAndRemoveMatchAHashMap() {
+        final Random random = new Random(1);
+        final Map<Key, Integer> expected = new HashMap<>();
+        HashTrie<Key, Integer> trie = HashTrie.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            final Key key = key(random.nextInt(3000));
+
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                trie = trie.remove(key);
+            } else {
+                expected.put(key, i);
+                trie = trie.put(key, i);
+            }
+
+            assertEquals(expected.size(), trie.size());
+            assertEquals(expected.get(key), trie.get(key));
+        }
+
+        assertEquals(expected, map(trie));
+
+        for (final Key key : new ArrayList<>(expected.keySet())) {
+            trie = trie.remove(key);
+        }
+
+        assertTrue(trie.isEmpty());
+        assertFalse(trie.iterator().hasNext());
+    }
+
+    @Test
+    public void collidingKeysAreKeptApart() {
+        HashTrie<Key, Integer> trie = HashTrie.empty();
+
+        for (int i = 0; i < 10; i++) {
+            trie = trie.put(new Key(i, 42), i);
+        }
+
+        assertEquals(10, trie.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), trie.get(new Key(i, 42)));
+        }
+
+        assertNull(trie.get(new Key(10, 42)));
+
+        for (int i = 0; i < 9; i++) {
+            trie = trie.remove(new Key(i, 42));
+        }
+
+        assertEquals(1, trie.size());
+        assertEquals(Integer.valueOf(9), trie.get(new Key(9, 42)));
+        assertTrue(trie.remove(new Key(9, 42)).isEmpty());
+    }
+
+    @Test
+    public void oldVersionsAreUnchanged() {
+        final HashTrie<Key, Integer> before = trie(randomMap(new Random(2), 1000, 5000));
+        final Map<Key, Integer> expected = map(before);
+        HashTrie<Key, Integer> after = before;
+
+        for (final Key key : expected.keySet()) {
+            after = after.put(key, -1).remove(key(key.value + 5000));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            after = after.put(key(5000 + i), i);
+        }
+
+        assertEquals(expected, map(before));
+        assertEquals(1500, after.size());
+    }
+
+    @Test
+    public void putOfTheSameValueAndRemoveOfAnAbsentKeyReturnTheSameTrie() {
+        final HashTrie<Key, Integer> trie = trie(randomMap(new Random(3), 100, 1000));
+        final Entry<Key, Integer> entry = trie.iterator().next();
+
+        assertSame(trie, trie.put(entry.getKey(), entry.getValue()));
+        assertSame(trie, trie.remove(key(1000)));
+    }
+
+    @Test
+    public void setOperationsMatchHashSets() {
+        final Random random = new Random(4);
+
+        for (final int size : new int[]{0, 1, 31, 33, 1000}) {
+            final Map<Key, Integer> a = randomMap(random, size, size * 3 + 1);
+            final Map<Key, Integer> b = randomMap(random, size / 2, size * 3 + 1);
+            final HashTrie<Key, Integer> ta = trie(a);
+            final HashTrie<Key, Integer> tb = trie(b);
+            final Map<Key, Integer> union = new HashMap<>(b);
+            final Map<Key, Integer> intersection = new HashMap<>(a);
+            final Map<Key, Integer> difference = new HashMap<>(a);
+
+            union.putAll(a);
+            intersection.keySet().retainAll(b.keySet());
+            difference.keySet().removeAll(b.keySet());
+
+            assertEquals(union, map(ta.union(tb)));
+            assertEquals(intersection, map(ta.retainAll(tb)));
+            assertEquals(difference, map(ta.removeAll(tb)));
+        }
+    }
+
+    @Test
+    public void setOperationsOfVersionsOfOneTrie() {
+        final Random random = new Random(5);
+        final Map<Key, Integer> base = randomMap(random, 5000, 20000);
+        final HashTrie<Key, Integer> trie = trie(base);
+        final Map<Key, Integer> changed = new HashMap<>(base);
+        HashTrie<Key, Integer> other = trie;
+
+        for (int i = 0; i < 300; i++) {
+            final Key key = key(random.nextInt(20000));
+
+            if (changed.containsKey(key)) {
+                changed.remove(key);
+                other = other.remove(key);
+            } else {
+                changed.put(key, -i);
+                other = other.put(key, -i);
+            }
+        }
+
+        final Map<Key, Integer> union = new HashMap<>(changed);
+        final Map<Key, Integer> intersection = new HashMap<>(base);
+        final Map<Key, Integer> difference = new HashMap<>(base);
+
+        union.putAll(base);
+        intersection.keySet().retainAll(changed.keySet());
+        difference.keySet().removeAll(changed.keySet());
+
+        assertEquals(union, map(trie.union(other)));
+        assertEquals(intersection, map(trie.retainAll(other)));
+        assertEquals(difference, map(trie.removeAll(other)));
+    }
+
+    @Test
+    public void setOperationsWithItselfOrEmptyShareTheTrie() {
+        final HashTrie<Key, Integer> trie = trie(randomMap(new Random(6), 500, 2000));
+        final HashTrie<Key, Integer> empty = HashTrie.empty();
+
+        assertSame(trie, trie.union(trie));
+        assertSame(trie, trie.union(empty));
+        assertEquals(map(trie), map(empty.union(trie)));
+        assertSame(trie, trie.retainAll(trie));
+        assertSame(trie, trie.removeAll(empty));
+        assertTrue(trie.removeAll(trie).isEmpty());
+        assertTrue(trie.retainAll(empty).isEmpty());
+    }
+
+    @Test
+    public void unionKeepsTheValuesOfThisTrie() {
+        final HashTrie<Key, Integer> a = HashTrie.<Key, Integer>empty().put(key(1), 1).put(key(2), 2);
+        final HashTrie<Key, Integer> b = HashTrie.<Key, Integer>empty().put(key(2), 20).put(key(3), 30);
+        final HashTrie<Key, Integer> union = a.union(b);
+
+        assertEquals(3, union.size());
+        assertEquals(Integer.valueOf(2), union.get(key(2)));
+        assertEquals(Integer.valueOf(30), union.get(key(3)));
+    }
+
+    @Test
+    public void keySpliteratorSplitsIntoExactSizes() {
+        for (final int size : new int[]{0, 1, 2, 32, 33, 1000, 50000}) {
+            final HashTrie<Key, Integer> trie = trie(randomMap(new Random(size), size, size * 4 + 1));
+            final Set<Key> keys = new HashSet<>();
+            final Spliterator<Key> spliterator = trie.keySpliterator(Spliterator.DISTINCT);
+
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT));
+            assertEquals(size, spliterator.getExactSizeIfKnown());
+            walk(spliterator, keys, 0);
+            assertEquals(map(trie).keySet(), keys);
+        }
+    }
+
+    @Test
+    public void keySpliteratorOfCollidingKeys() {
+        HashTrie<Key, Integer> trie = HashTrie.empty();
+        final Set<Key> keys = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            trie = trie.put(new Key(i, i % 3), i);
+        }
+
+        walk(trie.keySpliterator(0), keys, 0);
+        assertEquals(100, keys.size());
+    }
+
+    /**
+     * Split as far as possible, checking that the sizes add up, then take the
+     * keys one at a time from the left halves and all at once from the right.
+     */
+    private static void walk(Spliterator<Key> spliterator, Set<Key> keys, int depth) {
+        final long size = spliterator.estimateSize();
+        final Spliterator<Key> prefix = depth < 20 ? spliterator.trySplit() : null;
+
+        if (prefix == null) {
+            final List<Key> taken = new ArrayList<>();
+
+            if (depth % 2 == 0) {
+                while (spliterator.tryAdvance(taken::add)) {
+                    assertEquals(size - taken.size(), spliterator.estimateSize());
+                }
+            } else {
+                spliterator.forEachRemaining(taken::add);
+            }
+
+            assertEquals(size, taken.size());
+            assertEquals(0, spliterator.estimateSize());
+
+            for (final Key key : taken) {
+                assertTrue("Key split twice: " + key, keys.add(key));
+            }
+        } else {
+            assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+            walk(prefix, keys, depth + 1);
+            walk(spliterator, keys, depth + 1);
+        }
+    }
+}
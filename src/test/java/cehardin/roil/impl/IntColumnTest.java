@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.Integers;
+import static org.junit.Assert.assertArrayEquals;
+
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiPredicate;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class IntColumnTest {
+
+    static final int[] Sizes = {0, 63, 64, 1023, 1024, 1025};
+
+    /**
+     * Constants at and next to the extremes of int, where a comparison by
+     * subtraction in int would overflow.
+     */
+    static final int[] Constants = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 1, 7, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+
+    /**
+     * Data drawn mostly from the constants, so every operator has rows on
+     * both sides of it.
+     */
+    static int[] data(int size, long seed) {
+        final Random random = new Random(seed);
+        final int[] data = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(4) == 0 ? random.nextInt() : Constants[random.nextInt(Constants.length)];
+        }
+
+        return data;
+    }
+
+    static IntColumn column(int[] data) {
+        return new IntColumn(Integers, data);
+    }
+
+    /**
+     * The rows of a selection vector whose data satisfies the operator, found
+     * through the domain's own predicate on each row.
+     */
+    private static int[] expected(int[] rows, BooleanOperator operator, int[] data, int[] other) {
+        final BiPredicate<Object, Object> predicate = Integers.getBooleanOperators().get(operator);
+
+        return Arrays.stream(rows).filter((row) -> predicate.test(data[row], other[row])).toArray();
+    }
+
+    /**
+     * Every row, and every third row, of a size.
+     */
+    private static int[][] selections(int size) {
+        return new int[][]{Column.allRows(size), Arrays.stream(Column.allRows(size)).filter((row) -> row % 3 == 1).toArray()};
+    }
+
+    @Test
+    public void selectsAgainstAConstantMatchThePredicate() {
+        for (final int size : Sizes) {
+            final int[] data = data(size, size);
+            final IntColumn column = column(data);
+
+            for (final int[] selection : selections(size)) {
+                for (final BooleanOperator operator : BooleanOperator.values()) {
+                    for (final int constant : Constants) {
+                        final int[] constants = new int[size];
+                        final int[] rows = selection.clone();
+
+                        Arrays.fill(constants, constant);
+
+                        assertArrayEquals(size + " " + operator + " " + constant, expected(selection, operator, data, constants), Arrays.copyOf(rows, column.select(operator, constant, rows, rows.length)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void selectsAgainstAnotherColumnMatchThePredicate() {
+        for (final int size : Sizes) {
+            final int[] data = data(size, size);
+            final int[] other = data(size, size + 1);
+
+            for (final int[] selection : selections(size)) {
+                for (final BooleanOperator operator : BooleanOperator.values()) {
+                    final int[] rows = selection.clone();
+                    final int[] objects = selection.clone();
+
+                    assertArrayEquals(size + " " + operator, expected(selection, operator, data, other), Arrays.copyOf(rows, column(data).select(operator, column(other), rows, rows.length)));
+                    assertArrayEquals(size + " " + operator, expected(selection, operator, data, other), Arrays.copyOf(objects, column(data).select(operator, new ObjectColumn(Integers, Arrays.stream(other).boxed().toArray()), objects, objects.length)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.Integers;
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.nestedLoop;
+import static cehardin.roil.Fixtures.relation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.Domain.BooleanOperator;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Tuple;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class MergeJoinTest {
+
+    /**
+     * The join by attribute of two relations, as the nested loop filtered by
+     * the condition.
+     */
+    private static Set<Tuple> expected(Relation left, Relation right, SelectByAttribute condition) {
+        final BiPredicate<Object, Object> predicate = Integers.getBooleanOperators().get(condition.getOperator());
+
+        return nestedLoop(left, right).stream()
+                .filter((t) -> predicate.test(t.getValues().getMap().get(condition.getTargetAttributeName()).getData(), t.getValues().getMap().get(condition.getAttributeName()).getData()))
+                .collect(Collectors.toSet());
+    }
+
+    private static SelectByAttribute condition(BooleanOperator operator) throws Exception {
+        return new SelectByAttribute(operator, name("Start"), name("Stop"));
+    }
+
+    @Test
+    public void mergesEveryOperatorOverRunsOfEqualKeys() throws Exception {
+        final Relation left = relation(null, 50, "ID", 50, "Start", 7);
+        final Relation right = relation(null, 40, "RID", 40, "Stop", 6);
+        final RelationSchema schema = left.getSchema().join(right.getSchema());
+
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            final Set<Tuple> expected = expected(left, right, condition(operator));
+            final MergeJoin.Input leftInput = MergeJoin.Input.sort(left.getTuples(), left.getSchema().getOrdinal(name("Start")), Column.comparator(Integers));
+            final MergeJoin.Input rightInput = MergeJoin.Input.sort(right.getTuples(), right.getSchema().getOrdinal(name("Stop")), Column.comparator(Integers));
+
+            assertTrue(operator.toString(), !expected.isEmpty());
+            assertEquals(operator.toString(), expected, new MergeJoin(left, leftInput, right, rightInput, schema, operator, Integers).join());
+        }
+    }
+
+    @Test
+    public void bandJoinsMatchTheNestedLoop() throws Exception {
+        final PersistentRelation left = relation(null, 50, "ID", 50, "Start", 7);
+        final PersistentRelation right = relation(null, 40, "RID", 40, "Stop", 6);
+        final Relation[] lefts = {left, left.withOrderedIndex(name("Start")), new ColumnarRelation(left.getSchema(), left.getTuples()).withOrderedIndex(name("Start"))};
+        final Relation[] rights = {right, right.withOrderedIndex(name("Stop")), new ColumnarRelation(right.getSchema(), right.getTuples())};
+
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            final Set<Tuple> expected = expected(left, right, condition(operator));
+
+            for (final Relation l : lefts) {
+                for (final Relation r : rights) {
+                    assertEquals(operator.toString(), expected, l.join(r, condition(operator)).getTuples());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void inclusiveAndExclusiveBoundsDifferByTheEqualRuns() throws Exception {
+        final Relation left = relation(null, 10, "ID", 10, "Start", 5);
+        final Relation right = relation(null, 10, "RID", 10, "Stop", 5);
+        final int equal = left.join(right, condition(BooleanOperator.Equal)).getTuples().size();
+
+        assertEquals(2 * 2 * 5, equal);
+        assertEquals(left.join(right, condition(BooleanOperator.LessThan)).getTuples().size() + equal, left.join(right, condition(BooleanOperator.LessThanOrEqual)).getTuples().size());
+        assertEquals(left.join(right, condition(BooleanOperator.GreaterThan)).getTuples().size() + equal, left.join(right, condition(BooleanOperator.GreaterThanOrEqual)).getTuples().size());
+        assertEquals(100 - equal, left.join(right, condition(BooleanOperator.NotEqual)).getTuples().size());
+    }
+
+    @Test
+    public void bandJoinsOfRelationsSharingAttributesHashAndFilter() throws Exception {
+        final Relation left = relation(null, 60, "ID", 60, "K", 3, "Start", 7);
+        final Relation right = relation(null, 40, "RID", 40, "K", 2, "Stop", 6);
+
+        for (final BooleanOperator operator : BooleanOperator.values()) {
+            final Set<Tuple> expected = expected(left, right, condition(operator));
+
+            assertTrue(operator.toString(), !expected.isEmpty());
+            assertEquals(operator.toString(), expected, left.join(right, condition(operator)).getTuples());
+        }
+    }
+
+    @Test
+    public void naturalJoinsMergeThroughOrderedIndexes() throws Exception {
+        final PersistentRelation left = relation(null, 30, "ID", 30, "K", 4);
+        final PersistentRelation right = relation(null, 20, "RID", 20, "K", 5);
+
+        assertEquals(nestedLoop(left, right), left.withOrderedIndex(name("K")).join(right.withOrderedIndex(name("K"))).getTuples());
+    }
+}
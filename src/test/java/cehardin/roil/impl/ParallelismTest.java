@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Fixtures.name;
+import static cehardin.roil.Fixtures.relation;
+import static cehardin.roil.Fixtures.select;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Relation;
+import cehardin.roil.Selectable.SelectByAttribute;
+import cehardin.roil.Selectable.SelectByConstant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class ParallelismTest {
+
+    private static final int Count = 50000;
+
+    private final int threshold = Parallelism.getThreshold();
+
+    @After
+    public void restoreTheThreshold() {
+        Parallelism.setThreshold(threshold);
+    }
+
+    private static Integer[] items(int count) {
+        final Integer[] items = new Integer[count];
+
+        for (int i = 0; i < count; i++) {
+            items[i] = i;
+        }
+
+        return items;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void theThresholdMustBePositive() {
+        Parallelism.setThreshold(0);
+    }
+
+    @Test
+    public void scansBelowTheThresholdStaySequential() {
+        Parallelism.setThreshold(Count + 1);
+
+        assertFalse(Parallelism.isParallel(Count));
+        assertEquals(1, Parallelism.mapChunks(Count, (from, to) -> Thread.currentThread()).size());
+        assertEquals(asList(Thread.currentThread()), Parallelism.mapChunks(Count, (from, to) -> Thread.currentThread()));
+
+        Parallelism.setThreshold(1);
+
+        assertFalse("Too few rows for two chunks", Parallelism.isParallel(100));
+        assertTrue(Parallelism.isParallel(Count));
+    }
+
+    @Test
+    public void chunksCoverEveryPositionInOrder() {
+        for (final int threshold : new int[]{1, Integer.MAX_VALUE}) {
+            final List<int[]> chunks;
+            int next = 0;
+
+            Parallelism.setThreshold(threshold);
+            chunks = Parallelism.mapChunks(Count, (from, to) -> new int[]{from, to});
+
+            assertEquals(threshold == 1, chunks.size() > 1);
+
+            for (final int[] chunk : chunks) {
+                assertEquals(next, chunk[0]);
+                assertTrue(chunk[1] > chunk[0]);
+                next = chunk[1];
+            }
+
+            assertEquals(Count, next);
+        }
+    }
+
+    @Test
+    public void testAndMapKeepPositions() {
+        final Integer[] items = items(Count);
+
+        for (final int threshold : new int[]{1, Integer.MAX_VALUE}) {
+            final boolean[] tested;
+            final Integer[] mapped;
+
+            Parallelism.setThreshold(threshold);
+            tested = Parallelism.test(items, (i) -> i % 7 == 3);
+            mapped = Parallelism.map(items, (i) -> i * 2);
+
+            for (int i = 0; i < Count; i++) {
+                assertEquals(i % 7 == 3, tested[i]);
+                assertEquals(i * 2, mapped[i].intValue());
+            }
+        }
+    }
+
+    @Test
+    public void selectsConcatenateTheChunksInOrder() {
+        for (final int threshold : new int[]{1, Integer.MAX_VALUE}) {
+            final int[] expected = Arrays.stream(Column.allRows(Count)).filter((row) -> row % 7 == 3).toArray();
+            final int[] narrowed = Column.allRows(Count);
+            final int[] selected = new int[Count];
+
+            Parallelism.setThreshold(threshold);
+
+            assertArrayEquals(expected, Arrays.copyOf(narrowed, Parallelism.select(narrowed, Count, (rows, count) -> {
+                int kept = 0;
+
+                for (int i = 0; i < count; i++) {
+                    if (rows[i] % 7 == 3) {
+                        rows[kept++] = rows[i];
+                    }
+                }
+
+                return kept;
+            })));
+            assertArrayEquals(expected, Arrays.copyOf(selected, Parallelism.select(Count, selected, (from, count, rows) -> {
+                int kept = 0;
+
+                for (int row = from; row < from + count; row++) {
+                    if (row % 7 == 3) {
+                        rows[kept++] = row;
+                    }
+                }
+
+                return kept;
+            })));
+        }
+    }
+
+    /**
+     * Check that an operation gives the same tuples, and for a columnar
+     * relation the same order, whether its scans run in parallel or not.
+     */
+    private static void assertSameInParallel(Relation relation, Function<Relation, Relation> operation) {
+        final Relation sequential;
+        final Relation parallel;
+
+        Parallelism.setThreshold(Integer.MAX_VALUE);
+        sequential = operation.apply(relation);
+        Parallelism.setThreshold(1);
+        assertTrue(Parallelism.isParallel(relation.getTuples().size()));
+        parallel = operation.apply(relation);
+
+        assertEquals(sequential.getTuples(), parallel.getTuples());
+
+        if (relation instanceof ColumnarRelation) {
+            assertEquals(sequential.stream().collect(toList()), parallel.stream().collect(toList()));
+        }
+    }
+
+    @Test
+    public void relationsSelectProjectAndRenameTheSameInParallel() throws Exception {
+        final Relation persistent = relation("ID", Count, "ID", Count, "Size", 7, "Code", 1000);
+        final AttributeName size = name("Size");
+        final AttributeName code = name("Code");
+        final AttributeName renamed = name("Renamed");
+        final SelectByConstant small = select(Equal, "Size", 3);
+        final List<SelectByConstant> conjunction = asList(select(LessThan, "Code", 500), select(Equal, "Size", 1));
+
+        for (final Relation relation : new Relation[]{persistent, new ColumnarRelation(persistent.getSchema(), persistent.getTuples())}) {
+            assertSameInParallel(relation, (r) -> r.select(small));
+            assertSameInParallel(relation, (r) -> r.select(conjunction));
+            assertSameInParallel(relation, (r) -> r.select(new SelectByAttribute(LessThan, size, code)));
+            assertSameInParallel(relation, (r) -> r.project((a) -> !a.equals(code)));
+            assertSameInParallel(relation, (r) -> r.project((a) -> a.equals(size)));
+            assertSameInParallel(relation, (r) -> r.rename((a) -> a.equals(size) ? renamed : a));
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThan;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Domain.BooleanOperator.LessThanOrEqual;
+import static cehardin.roil.Domain.BooleanOperator.NotEqual;
+import static cehardin.roil.Fixtures.name;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.AttributeName;
+import cehardin.roil.Fixtures;
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.RelationSchema;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import cehardin.roil.exception.DuplicateKeyException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class PersistentRelationTest {
+
+    private static RelationSchema schema() throws Exception {
+        return Fixtures.schema("ID", singleton("Code"), "ID", "Size", "Code");
+    }
+
+    private static Tuple tuple(int id, int size, int code) throws Exception {
+        return Fixtures.tuple("ID", id, "Size", size, "Code", code);
+    }
+
+    private static Tuple tuple(int id) throws Exception {
+        return tuple(id, id % 5, id + 1000);
+    }
+
+    private static Set<Tuple> tuples(int from, int to) throws Exception {
+        final Set<Tuple> result = new HashSet<>();
+
+        for (int i = from; i < to; i++) {
+            result.add(tuple(i));
+        }
+
+        return result;
+    }
+
+    private static Set<Tuple> select(Relation relation, String attributeName, int value) throws Exception {
+        return relation.select(Fixtures.select(Equal, attributeName, value)).getTuples();
+    }
+
+    @Test
+    public void insertLeavesTheOldRelationUnchanged() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100));
+        final Relation inserted = relation.insert(tuple(100));
+
+        assertEquals(tuples(0, 100), relation.getTuples());
+        assertEquals(tuples(0, 101), inserted.getTuples());
+        assertEquals(singleton(tuple(100)), select(inserted, "ID", 100));
+        assertEquals(singleton(tuple(100)), select(inserted, "Code", 1100));
+        assertTrue(select(relation, "ID", 100).isEmpty());
+    }
+
+    @Test
+    public void insertOfAPresentTupleChangesNothing() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100));
+
+        assertEquals(tuples(0, 100), relation.insert(tuple(7)).getTuples());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void insertOfAPresentPrimaryKeyFails() throws Exception {
+        new PersistentRelation(schema(), tuples(0, 100)).insert(tuple(7, 0, 5000));
+    }
+
+    @Test
+    public void secondaryKeyIndexFindsEveryTupleWithTheData() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100)).insert(tuple(500, 0, 1007));
+
+        assertEquals(new HashSet<>(Arrays.asList(tuple(7), tuple(500, 0, 1007))), select(relation, "Code", 1007));
+        assertEquals(singleton(tuple(500, 0, 1007)), select(relation.delete(tuple(7)), "Code", 1007));
+    }
+
+    @Test
+    public void deleteLeavesTheOldRelationUnchanged() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100));
+        final Relation deleted = relation.delete(tuple(7));
+        final Set<Tuple> expected = tuples(0, 100);
+
+        expected.remove(tuple(7));
+
+        assertEquals(tuples(0, 100), relation.getTuples());
+        assertEquals(expected, deleted.getTuples());
+        assertTrue(select(deleted, "ID", 7).isEmpty());
+        assertTrue(select(deleted, "Code", 1007).isEmpty());
+        assertEquals(expected, deleted.delete(tuple(7)).getTuples());
+        assertEquals(singleton(tuple(7)), deleted.insert(tuple(7)).select(Fixtures.select(Equal, "ID", 7)).getTuples());
+    }
+
+    @Test
+    public void modifyReplacesTheTupleAndItsKeys() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100));
+        final Relation modified = relation.modify(new Modify(tuple(7), tuple(7, 3, 2000)));
+
+        assertEquals(100, modified.getTuples().size());
+        assertTrue(modified.getTuples().contains(tuple(7, 3, 2000)));
+        assertFalse(modified.getTuples().contains(tuple(7)));
+        assertTrue(select(modified, "Code", 1007).isEmpty());
+        assertEquals(singleton(tuple(7, 3, 2000)), select(modified, "Code", 2000));
+        assertTrue(relation.getTuples().contains(tuple(7)));
+    }
+
+    @Test
+    public void modifyToItselfOrOfAnAbsentTupleChangesNothing() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 100));
+
+        assertEquals(tuples(0, 100), relation.modify(new Modify(tuple(7), tuple(7))).getTuples());
+        assertEquals(tuples(0, 100), relation.modify(new Modify(tuple(700), tuple(701))).getTuples());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void modifyToAnotherPrimaryKeyFails() throws Exception {
+        new PersistentRelation(schema(), tuples(0, 100)).modify(new Modify(tuple(7), tuple(8, 0, 5000)));
+    }
+
+    @Test
+    public void manyChangesMatchAHashSet() throws Exception {
+        final Random random = new Random(1);
+        final Set<Tuple> expected = new HashSet<>();
+        final List<Relation> versions = new ArrayList<>();
+        final List<Set<Tuple>> expectedVersions = new ArrayList<>();
+        Relation relation = new PersistentRelation(schema(), expected);
+
+        for (int i = 0; i < 3000; i++) {
+            final Tuple tuple = tuple(random.nextInt(500));
+
+            if (expected.contains(tuple)) {
+                expected.remove(tuple);
+                relation = relation.delete(tuple);
+            } else {
+                expected.add(tuple);
+                relation = relation.insert(tuple);
+            }
+
+            if (i % 300 == 0) {
+                versions.add(relation);
+                expectedVersions.add(new HashSet<>(expected));
+            }
+        }
+
+        assertEquals(expected, relation.getTuples());
+        assertEquals(expected.size(), relation.getTuples().size());
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(expectedVersions.get(i), versions.get(i).getTuples());
+        }
+
+        for (final Tuple tuple : expected) {
+            assertEquals(singleton(tuple), select(relation, "ID", (Integer)tuple.getValues().getDataReference(schema().getOrdinal(name("ID")))));
+        }
+    }
+
+    @Test
+    public void setOperationsMatchHashSets() throws Exception {
+        final Relation base = new PersistentRelation(schema(), tuples(0, 1000));
+        final Relation other = base.delete(tuple(3)).delete(tuple(500)).insert(tuple(1000)).insert(tuple(1001));
+        final Relation unrelated = new PersistentRelation(schema(), tuples(900, 1100));
+
+        for (final Relation relation : new Relation[]{other, unrelated}) {
+            final Set<Tuple> union = new HashSet<>(base.getTuples());
+            final Set<Tuple> intersection = new HashSet<>(base.getTuples());
+            final Set<Tuple> difference = new HashSet<>(base.getTuples());
+
+            union.addAll(relation.getTuples());
+            intersection.retainAll(relation.getTuples());
+            difference.removeAll(relation.getTuples());
+
+            assertEquals(union, base.union(relation).getTuples());
+            assertEquals(intersection, base.intersect(relation).getTuples());
+            assertEquals(difference, base.subtract(relation).getTuples());
+            assertEquals(singleton(tuple(1000)), select(base.union(relation), "Code", 2000));
+            assertTrue(select(base.subtract(relation), "ID", 950).isEmpty());
+        }
+    }
+
+    @Test
+    public void selectsKeepingFewOrManyTuplesKeepTheIndexes() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 500));
+
+        for (final boolean few : new boolean[]{true, false}) {
+            final Relation selected = relation.select(Fixtures.select(few ? Equal : NotEqual, "Size", 0));
+            final Relation changed = selected.insert(tuple(600)).delete(tuple(1)).delete(tuple(5));
+            final Set<Tuple> expected = new HashSet<>();
+
+            for (int id = 0; id < 500; id++) {
+                if (id % 5 == 0 == few) {
+                    expected.add(tuple(id));
+                }
+            }
+
+            assertEquals(expected, selected.getTuples());
+
+            for (int id = 0; id < 500; id++) {
+                final Set<Tuple> found = expected.contains(tuple(id)) ? singleton(tuple(id)) : emptySet();
+
+                assertEquals(found, select(selected, "ID", id));
+                assertEquals(found, select(selected, "Code", id + 1000));
+            }
+
+            assertEquals(singleton(tuple(600)), select(changed, "Code", 1600));
+            assertTrue(select(changed, "ID", 1).isEmpty());
+            assertTrue(select(changed, "Code", 1005).isEmpty());
+            assertEquals("600 was inserted and one of 1 and 5 deleted", expected.size(), changed.getTuples().size());
+        }
+    }
+
+    @Test
+    public void disjunctionsSelectTheUnionOfTheirSelects() throws Exception {
+        final PersistentRelation plain = new PersistentRelation(schema(), tuples(0, 100));
+
+        for (final PersistentRelation relation : new PersistentRelation[]{plain, plain.withOrderedIndex(name("Size"))}) {
+            for (final List<SelectByConstant> disjunction : Arrays.asList(
+                    Arrays.asList(Fixtures.select(LessThan, "Size", 1), Fixtures.select(Equal, "Size", 3)),
+                    Arrays.asList(Fixtures.select(LessThan, "Size", 2), Fixtures.select(LessThanOrEqual, "Size", 1), Fixtures.select(GreaterThan, "Size", 1)),
+                    Arrays.asList(Fixtures.select(NotEqual, "Size", 1), Fixtures.select(Equal, "Size", 4)),
+                    Arrays.asList(Fixtures.select(Equal, "Size", 4), Fixtures.select(Equal, "ID", 3), Fixtures.select(Equal, "Code", 1010)),
+                    Collections.<SelectByConstant>emptyList())) {
+                final Set<Tuple> expected = new HashSet<>();
+
+                for (final SelectByConstant s : disjunction) {
+                    expected.addAll(relation.select(s).getTuples());
+                }
+
+                assertEquals(disjunction.toString(), expected, relation.selectAny(disjunction).getTuples());
+            }
+        }
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void unionOfClashingPrimaryKeysFails() throws Exception {
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 10));
+
+        relation.union(new PersistentRelation(schema(), singleton(tuple(3, 4, 9000))));
+    }
+
+    @Test
+    public void spliteratorSplitsIntoExactSizes() throws Exception {
+        for (final int size : new int[]{0, 1, 33, 5000}) {
+            final Relation relation = new PersistentRelation(schema(), tuples(0, size));
+            final Spliterator<Tuple> spliterator = relation.spliterator();
+            final Set<Tuple> seen = new HashSet<>();
+
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT));
+            assertEquals(size, spliterator.estimateSize());
+            walk(spliterator, seen);
+            assertEquals(tuples(0, size), seen);
+            assertEquals(tuples(0, size), relation.stream().parallel().collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void orderedIndexStreamsInOrderAndSurvivesChanges() throws Exception {
+        final AttributeName id = name("ID");
+        final Relation relation = new PersistentRelation(schema(), tuples(0, 500)).withOrderedIndex(id).delete(tuple(250)).insert(tuple(600));
+        final int ordinal = relation.getSchema().getOrdinal(id);
+        final List<Integer> ids = relation.stream().map((t) -> (Integer)t.getValues().getDataReference(ordinal)).collect(Collectors.toList());
+        final List<Integer> sorted = new ArrayList<>(ids);
+
+        sorted.sort(null);
+
+        assertTrue(relation.spliterator().hasCharacteristics(Spliterator.SORTED));
+        assertEquals(sorted, ids);
+        assertEquals(500, ids.size());
+        assertEquals(250, relation.select(Fixtures.select(LessThan, "ID", 250)).getTuples().size());
+    }
+
+    private static void walk(Spliterator<Tuple> spliterator, Set<Tuple> seen) {
+        final long size = spliterator.estimateSize();
+        final Spliterator<Tuple> prefix = spliterator.trySplit();
+
+        if (prefix == null) {
+            final Set<Tuple> taken = new HashSet<>();
+
+            spliterator.forEachRemaining(taken::add);
+            assertEquals(size, taken.size());
+
+            for (final Tuple tuple : taken) {
+                assertTrue(seen.add(tuple));
+            }
+        } else {
+            assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+            walk(prefix, seen);
+            walk(spliterator, seen);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class RowBitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    private static RowBitmap bitmap(BitSet rows) {
+        final RowBitmap.Builder builder = new RowBitmap.Builder();
+
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            builder.add(row);
+        }
+
+        return builder.build();
+    }
+
+    private static BitSet range(int from, int to) {
+        final BitSet result = new BitSet();
+        result.set(from, to);
+        return result;
+    }
+
+    /**
+     * Rows in the given chunks, each chunk holding about the given number of
+     * rows.
+     */
+    private static BitSet random(Random random, int[] chunks, int perChunk) {
+        final BitSet result = new BitSet();
+
+        for (final int chunk : chunks) {
+            for (int i = 0; i < perChunk; i++) {
+                result.set(chunk * CHUNK + random.nextInt(CHUNK));
+            }
+        }
+
+        return result;
+    }
+
+    private static void assertRows(BitSet expected, RowBitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+    }
+
+    /**
+     * The kind of container of each chunk, in chunk order.
+     */
+    private static List<String> containers(RowBitmap bitmap) throws Exception {
+        final Field field = RowBitmap.class.getDeclaredField("containers");
+        final List<String> result = new ArrayList<>();
+
+        field.setAccessible(true);
+
+        for (final Object container : (Object[])field.get(bitmap)) {
+            result.add(container.getClass().getSimpleName());
+        }
+
+        return result;
+    }
+
+    private static BitSet and(BitSet a, BitSet b) {
+        final BitSet result = (BitSet)a.clone();
+        result.and(b);
+        return result;
+    }
+
+    private static BitSet or(BitSet a, BitSet b) {
+        final BitSet result = (BitSet)a.clone();
+        result.or(b);
+        return result;
+    }
+
+    private static BitSet andNot(BitSet a, BitSet b) {
+        final BitSet result = (BitSet)a.clone();
+        result.andNot(b);
+        return result;
+    }
+
+    @Test
+    public void aChunkBecomesABitmapBeyond4096Rows() throws Exception {
+        for (final int count : new int[]{1, 4095, 4096, 4097, CHUNK}) {
+            final BitSet rows = range(0, count);
+            final RowBitmap bitmap = bitmap(rows);
+
+            assertRows(rows, bitmap);
+            assertEquals(count > 4096 ? "BitmapContainer" : "ArrayContainer", containers(bitmap).get(0));
+        }
+    }
+
+    @Test
+    public void allCoversChunkBoundaries() throws Exception {
+        for (final int count : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 2 * CHUNK + 4096, 2 * CHUNK + 4097}) {
+            assertRows(range(0, count), RowBitmap.all(count));
+        }
+
+        assertSame(RowBitmap.EMPTY, RowBitmap.all(0));
+        assertEquals(3, containers(RowBitmap.all(2 * CHUNK + 1)).size());
+    }
+
+    @Test
+    public void rowsAtTheEdgesOfChunks() {
+        final BitSet rows = new BitSet();
+
+        for (final int row : new int[]{0, CHUNK - 1, CHUNK, 2 * CHUNK - 1, 5 * CHUNK, Integer.MAX_VALUE - 1}) {
+            rows.set(row);
+        }
+
+        assertRows(rows, bitmap(rows));
+        assertRows(new BitSet(), RowBitmap.EMPTY);
+    }
+
+    @Test
+    public void orOfArraysBecomesABitmapBeyond4096Rows() throws Exception {
+        final BitSet low = range(0, 2048);
+        final BitSet high = range(2048, 4096);
+        final BitSet higher = range(2048, 4097);
+
+        assertEquals("ArrayContainer", containers(bitmap(low).or(bitmap(high))).get(0));
+        assertEquals("BitmapContainer", containers(bitmap(low).or(bitmap(higher))).get(0));
+        assertRows(or(low, higher), bitmap(low).or(bitmap(higher)));
+    }
+
+    @Test
+    public void andAndAndNotOfBitmapsBecomeArraysAt4096Rows() throws Exception {
+        final BitSet a = range(0, 10000);
+        final BitSet b = range(5904, 20000);
+        final BitSet c = range(4096, 10000);
+
+        assertEquals("ArrayContainer", containers(bitmap(a).and(bitmap(b))).get(0));
+        assertRows(and(a, b), bitmap(a).and(bitmap(b)));
+        assertEquals("ArrayContainer", containers(bitmap(a).andNot(bitmap(c))).get(0));
+        assertRows(andNot(a, c), bitmap(a).andNot(bitmap(c)));
+        assertEquals("BitmapContainer", containers(bitmap(a).andNot(bitmap(range(4097, 10000)))).get(0));
+    }
+
+    @Test
+    public void emptyResultsDropTheirChunks() throws Exception {
+        final RowBitmap a = bitmap(range(0, 100));
+        final RowBitmap b = bitmap(range(100, 200));
+        final RowBitmap both = a.or(bitmap(range(CHUNK, CHUNK + 10)));
+
+        assertSame(RowBitmap.EMPTY, a.and(b));
+        assertSame(RowBitmap.EMPTY, a.andNot(a));
+        assertSame(RowBitmap.EMPTY, RowBitmap.all(CHUNK * 2).andNot(RowBitmap.all(CHUNK * 2)));
+        assertEquals(1, containers(both.andNot(a)).size());
+        assertEquals(1, containers(both.and(bitmap(range(CHUNK, 2 * CHUNK)))).size());
+    }
+
+    @Test
+    public void operationsOfMixedContainersMatchBitSets() {
+        final Random random = new Random(1);
+        final List<BitSet> sets = new ArrayList<>();
+
+        // Sparse chunks hold arrays and dense chunks hold bitmaps; some
+        // chunks are in only one set, some in several.
+        sets.add(new BitSet());
+        sets.add(random(random, new int[]{0, 2}, 100));
+        sets.add(random(random, new int[]{0, 1}, 4000));
+        sets.add(random(random, new int[]{0, 2, 3}, 20000));
+        sets.add(random(random, new int[]{1, 2}, 60000));
+        sets.add(range(0, 4 * CHUNK));
+        sets.add(range(CHUNK - 2048, CHUNK + 2048));
+
+        for (final BitSet a : sets) {
+            for (final BitSet b : sets) {
+                assertRows(and(a, b), bitmap(a).and(bitmap(b)));
+                assertRows(or(a, b), bitmap(a).or(bitmap(b)));
+                assertRows(andNot(a, b), bitmap(a).andNot(bitmap(b)));
+            }
+        }
+    }
+
+    @Test
+    public void operationsLeaveTheirOperandsUnchanged() {
+        final Random random = new Random(2);
+        final BitSet a = random(random, new int[]{0, 1}, 20000);
+        final BitSet b = random(random, new int[]{0, 1}, 3000);
+        final RowBitmap ba = bitmap(a);
+        final RowBitmap bb = bitmap(b);
+
+        ba.and(bb);
+        ba.or(bb);
+        ba.andNot(bb);
+        bb.and(ba);
+        bb.or(ba);
+        bb.andNot(ba);
+
+        assertRows(a, ba);
+        assertRows(b, bb);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Fixtures.scan;
+import static cehardin.roil.Fixtures.schema;
+import static cehardin.roil.Fixtures.select;
+import static cehardin.roil.Fixtures.tuple;
+import static cehardin.roil.Fixtures.tuples;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import cehardin.roil.Modifiable.Modify;
+import cehardin.roil.Relation;
+import cehardin.roil.Selectable.SelectByConstant;
+import cehardin.roil.Tuple;
+import java.util.Arrays;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class RowIndexTest {
+
+    private static final int Codes = 10;
+
+    @Test
+    public void findReturnsTheRowsOfAKeyInAscendingOrder() throws Exception {
+        final int[] data = IntColumnTest.data(5000, 11);
+        final int[] other = IntColumnTest.data(5000, 12);
+        final RowIndex index = new RowIndex(new Column[]{IntColumnTest.column(data)});
+        final RowIndex pairs = new RowIndex(new Column[]{IntColumnTest.column(data), IntColumnTest.column(other)});
+
+        for (int row = 0; row < data.length; row += 97) {
+            final int datum = row % 2 == 0 ? data[row] : row;
+            final int otherDatum = other[row];
+
+            assertArrayEquals(Arrays.stream(Column.allRows(data.length)).filter((r) -> data[r] == datum).toArray(), index.find(new Object[]{datum}));
+            assertArrayEquals(Arrays.stream(Column.allRows(data.length)).filter((r) -> data[r] == datum && other[r] == otherDatum).toArray(), pairs.find(new Object[]{datum, otherDatum}));
+        }
+
+        assertEquals(0, new RowIndex(new Column[]{IntColumnTest.column(new int[0])}).find(new Object[]{0}).length);
+    }
+
+    /**
+     * Select every code through the secondary key index, alone and with a
+     * select the index does not answer, and check the result against a scan.
+     */
+    private static void assertSelectsByCode(Relation relation) throws Exception {
+        for (int code = -1; code <= Codes; code++) {
+            final SelectByConstant byCode = select(Equal, "Code", code);
+            final SelectByConstant bySize = select(LessThan, "Size", 2);
+            final Set<Tuple> expected = scan(relation, byCode);
+
+            assertEquals(expected, relation.select(byCode).getTuples());
+            expected.retainAll(scan(relation, bySize));
+            assertEquals(expected, relation.select(asList(byCode, bySize)).getTuples());
+        }
+    }
+
+    @Test
+    public void selectsBySecondaryKeySeeInsertsModifiesAndDeletes() throws Exception {
+        for (final String primaryKey : new String[]{"ID", null}) {
+            final Relation relation = new ColumnarRelation(schema(primaryKey, singleton("Code"), "ID", "Code", "Size"), tuples(500, "ID", 500, "Code", Codes, "Size", 3));
+            final Tuple moved = tuple("ID", 14, "Code", 4, "Size", 2);
+            final Relation inserted;
+            final Relation modified;
+            final Relation deleted;
+
+            assertSelectsByCode(relation);
+
+            inserted = relation.insert(tuple("ID", 1000, "Code", 4, "Size", 0)).insert(tuple("ID", 1001, "Code", Codes, "Size", 1));
+            assertEquals(relation.select(select(Equal, "Code", 4)).getTuples().size() + 1, inserted.select(select(Equal, "Code", 4)).getTuples().size());
+            assertSelectsByCode(inserted);
+
+            modified = inserted.modify(new Modify(moved, tuple("ID", 14, "Code", 7, "Size", 2)));
+            assertFalse(modified.select(select(Equal, "Code", 4)).getTuples().contains(moved));
+            assertSelectsByCode(modified);
+
+            deleted = modified.delete(tuple("ID", 1000, "Code", 4, "Size", 0)).delete(tuple("ID", 14, "Code", 7, "Size", 2));
+            assertEquals(inserted.select(select(Equal, "Code", 4)).getTuples().size() - 2, deleted.select(select(Equal, "Code", 4)).getTuples().size());
+            assertSelectsByCode(deleted);
+            assertSelectsByCode(relation);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.impl;
+
+import static cehardin.roil.Fixtures.Integers;
+import static org.junit.Assert.assertEquals;
+
+import cehardin.roil.exception.DuplicateKeyException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class UniqueIndexTest {
+
+    private static Column column(int... keys) {
+        final Object[] data = new Object[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            data[i] = keys[i];
+        }
+
+        return Column.of(Integers, data);
+    }
+
+    private static void assertIndexes(Map<Integer, Integer> rows, UniqueIndex index, int range) {
+        for (int key = -1; key <= range; key++) {
+            final Integer row = rows.get(key);
+            assertEquals("Key " + key, row == null ? -1 : row.intValue(), index.find(key));
+        }
+    }
+
+    @Test
+    public void findsEveryRow() {
+        final UniqueIndex index = new UniqueIndex(column(5, 3, 9, 1));
+
+        assertEquals(0, index.find(5));
+        assertEquals(3, index.find(1));
+        assertEquals(-1, index.find(4));
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void rejectsDuplicateData() {
+        new UniqueIndex(column(5, 3, 5));
+    }
+
+    @Test
+    public void appendAndSetMatchARebuiltIndex() {
+        final Random random = new Random(1);
+        final Map<Integer, Integer> rows = new HashMap<>();
+        final Map<Integer, Integer> keys = new HashMap<>();
+        Column column = column();
+        UniqueIndex index = new UniqueIndex(column);
+
+        for (int i = 0; i < 5000; i++) {
+            final int key = random.nextInt(20000);
+
+            if (rows.containsKey(key)) {
+                continue;
+            } else if (column.size() > 0 && random.nextBoolean()) {
+                final int row = random.nextInt(column.size());
+
+                rows.remove(keys.get(row));
+                column = column.set(row, key);
+                index = index.set(column, row);
+                rows.put(key, row);
+                keys.put(row, key);
+            } else {
+                column = column.append(key);
+                index = index.append(column);
+                rows.put(key, column.size() - 1);
+                keys.put(column.size() - 1, key);
+            }
+        }
+
+        assertIndexes(rows, index, 20000);
+    }
+
+    @Test
+    public void setKeepsEveryRowOfAFullTableFindable() {
+        final int[] keys = new int[31];
+        Column column;
+        UniqueIndex index;
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+
+        column = column(keys);
+        index = new UniqueIndex(column);
+
+        for (int step = 0; step < 1000; step++) {
+            final int row = (step * 7) % keys.length;
+
+            keys[row] += keys.length;
+            column = column.set(row, keys[row]);
+            index = index.set(column, row);
+
+            for (int i = 0; i < keys.length; i++) {
+                assertEquals(i, index.find(keys[i]));
+            }
+
+            assertEquals(-1, index.find(keys[row] - keys.length));
+        }
+    }
+
+    @Test
+    public void setOfTheSameDataKeepsTheIndex() {
+        Column column = column(1, 2, 3);
+        UniqueIndex index = new UniqueIndex(column);
+
+        column = column.set(1, 2);
+        index = index.set(column, 1);
+
+        assertEquals(1, index.find(2));
+    }
+}
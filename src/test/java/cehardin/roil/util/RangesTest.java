@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Chad Hardin
+ * This file is part of Roil.
+ *
+ * Roil is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Affero General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * Roil is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with
+ * Roil. If not, see <http://www.gnu.org/licenses/>
+ */
+package cehardin.roil.util;
+
+import static cehardin.roil.Domain.BooleanOperator.Equal;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThan;
+import static cehardin.roil.Domain.BooleanOperator.GreaterThanOrEqual;
+import static cehardin.roil.Domain.BooleanOperator.LessThan;
+import static cehardin.roil.Domain.BooleanOperator.LessThanOrEqual;
+import static cehardin.roil.Domain.BooleanOperator.NotEqual;
+import static cehardin.roil.util.Range.EndPointType.Closed;
+import static cehardin.roil.util.Range.EndPointType.Open;
+import static cehardin.roil.util.Range.EndPointType.Unbounded;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import cehardin.roil.Domain.BooleanOperator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Chad
+ */
+public class RangesTest {
+
+    private static final Comparator<Integer> Order = Comparator.naturalOrder();
+
+    private static Range<Integer> closed(int start, int stop) {
+        return Ranges.of(Closed, start, Closed, stop, Order);
+    }
+
+    private static Range<Integer> open(int start, int stop) {
+        return Ranges.of(Open, start, Open, stop, Order);
+    }
+
+    private static Range<Integer> atLeast(int start) {
+        return Ranges.of(Closed, start, Unbounded, null, Order);
+    }
+
+    private static Range<Integer> below(int stop) {
+        return Ranges.of(Unbounded, null, Open, stop, Order);
+    }
+
+    /**
+     * Compare sets of ranges by how they print, as ranges have no equals.
+     */
+    private static void assertRanges(List<Range<Integer>> expected, List<Range<Integer>> actual) {
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    /**
+     * Check that a set of ranges holds exactly the given data from -1 to 21.
+     */
+    private static void assertHolds(List<Range<Integer>> set, boolean... in) {
+        for (int i = -1; i <= 21; i++) {
+            boolean found = false;
+
+            for (final Range<Integer> range : set) {
+                found |= range.isInRange(i);
+            }
+
+            assertEquals("Datum " + i + " in " + set, in[i + 1], found);
+        }
+    }
+
+    private static boolean[] holds(List<Range<Integer>> set) {
+        final boolean[] result = new boolean[23];
+
+        for (int i = -1; i <= 21; i++) {
+            for (final Range<Integer> range : set) {
+                result[i + 1] |= range.isInRange(i);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Check that a set of ranges is normalized: no range is empty, and each
+     * starts after the previous one stops without touching it.
+     */
+    private static void assertNormalized(List<Range<Integer>> set) {
+        for (int i = 0; i < set.size(); i++) {
+            final Range<Integer> range = set.get(i);
+
+            assertFalse(set.toString(), range.isEmpty());
+
+            if (i > 0) {
+                final Range<Integer> previous = set.get(i - 1);
+                final int c;
+
+                assertTrue(set.toString(), previous.getStopEndpointType() != Unbounded && range.getStartEndpointType() != Unbounded);
+                c = Order.compare(previous.getStopEndpoint(), range.getStartEnpoint());
+                assertTrue(set.toString(), c < 0 || (c == 0 && previous.getStopEndpointType() == Open && range.getStartEndpointType() == Open));
+            }
+        }
+    }
+
+    @Test
+    public void emptyRanges() {
+        assertFalse(closed(5, 5).isEmpty());
+        assertTrue(Ranges.of(Open, 5, Closed, 5, Order).isEmpty());
+        assertTrue(Ranges.of(Closed, 5, Open, 5, Order).isEmpty());
+        assertTrue(closed(6, 5).isEmpty());
+        assertFalse(open(5, 6).isEmpty());
+        assertFalse(Ranges.all(Order).isEmpty());
+        assertFalse(below(Integer.MIN_VALUE).isEmpty());
+    }
+
+    private static boolean satisfies(BooleanOperator operator, int c) {
+        switch (operator) {
+            case Equal:
+                return c == 0;
+            case NotEqual:
+                return c != 0;
+            case GreaterThan:
+                return c > 0;
+            case GreaterThanOrEqual:
+                return c >= 0;
+            case LessThan:
+                return c < 0;
+            default:
+                return c <= 0;
+        }
+    }
+
+    @Test
+    public void operatorsHoldTheirData() {
+        for (final BooleanOperator operator : new BooleanOperator[]{Equal, NotEqual, GreaterThan, GreaterThanOrEqual, LessThan, LessThanOrEqual}) {
+            final List<Range<Integer>> set = Ranges.of(operator, 10, Order);
+            final boolean[] expected = new boolean[23];
+
+            for (int i = -1; i <= 21; i++) {
+                expected[i + 1] = satisfies(operator, Integer.compare(i, 10));
+            }
+
+            assertNormalized(set);
+            assertHolds(set, expected);
+        }
+    }
+
+    @Test
+    public void unionMergesTouchingRangesOnlyWhenAnEndpointIsClosed() {
+        assertRanges(asList(closed(1, 5)), Ranges.union(asList(closed(1, 3), closed(3, 5))));
+        assertRanges(asList(Ranges.of(Closed, 1, Closed, 5, Order)), Ranges.union(asList(Ranges.of(Closed, 1, Open, 3, Order), closed(3, 5))));
+        assertRanges(asList(Ranges.of(Closed, 1, Closed, 5, Order)), Ranges.union(asList(closed(1, 3), Ranges.of(Open, 3, Closed, 5, Order))));
+        assertRanges(asList(Ranges.of(Closed, 1, Open, 3, Order), Ranges.of(Open, 3, Closed, 5, Order)),
+                Ranges.union(asList(Ranges.of(Open, 3, Closed, 5, Order), Ranges.of(Closed, 1, Open, 3, Order))));
+        assertRanges(asList(closed(1, 9)), Ranges.union(asList(closed(1, 9), closed(2, 3), closed(4, 5))));
+    }
+
+    @Test
+    public void unionDropsEmptyRangesAndSorts() {
+        assertRanges(emptyList(), Ranges.union(asList(open(5, 5), closed(6, 5))));
+        assertRanges(asList(closed(1, 2), closed(4, 5)), Ranges.union(asList(closed(4, 5), open(3, 3), closed(1, 2))));
+    }
+
+    @Test
+    public void unionOfUnboundedRanges() {
+        assertRanges(asList(Ranges.all(Order)), Ranges.union(asList(below(5), atLeast(5))));
+        assertRanges(asList(below(5), Ranges.of(Open, 5, Unbounded, null, Order)), Ranges.union(asList(Ranges.of(Open, 5, Unbounded, null, Order), below(5))));
+        assertRanges(asList(Ranges.all(Order)), Ranges.union(asList(closed(1, 2), Ranges.all(Order))));
+        assertRanges(asList(below(7)), Ranges.union(asList(below(3), closed(2, 4), Ranges.of(Open, 4, Open, 7, Order))));
+    }
+
+    @Test
+    public void intersectionOfTouchingEndpoints() {
+        assertRanges(asList(closed(3, 3)), Ranges.intersection(asList(closed(1, 3)), asList(closed(3, 5))));
+        assertRanges(emptyList(), Ranges.intersection(asList(Ranges.of(Closed, 1, Open, 3, Order)), asList(closed(3, 5))));
+        assertRanges(emptyList(), Ranges.intersection(asList(closed(1, 3)), asList(Ranges.of(Open, 3, Closed, 5, Order))));
+        assertRanges(asList(Ranges.of(Open, 3, Closed, 4, Order)), Ranges.intersection(asList(Ranges.of(Open, 3, Closed, 5, Order)), asList(closed(3, 4))));
+    }
+
+    @Test
+    public void intersectionOfUnboundedRanges() {
+        assertRanges(asList(closed(3, 3)), Ranges.intersection(Ranges.of(GreaterThanOrEqual, 3, Order), Ranges.of(LessThanOrEqual, 3, Order)));
+        assertRanges(asList(closed(1, 2)), Ranges.intersection(asList(Ranges.all(Order)), asList(closed(1, 2))));
+        assertRanges(asList(below(1), open(1, 2)), Ranges.intersection(Ranges.of(NotEqual, 1, Order), asList(below(2))));
+    }
+
+    @Test
+    public void contradictorySelectsIntersectToNoRanges() {
+        assertRanges(emptyList(), Ranges.intersection(Ranges.of(GreaterThan, 5, Order), Ranges.of(LessThan, 3, Order)));
+        assertRanges(emptyList(), Ranges.intersection(Ranges.of(GreaterThan, 5, Order), Ranges.of(LessThanOrEqual, 5, Order)));
+        assertRanges(emptyList(), Ranges.intersection(Ranges.of(Equal, 5, Order), Ranges.of(NotEqual, 5, Order)));
+        assertRanges(emptyList(), Ranges.intersection(Ranges.of(Equal, 5, Order), Ranges.of(Equal, 6, Order)));
+        assertRanges(emptyList(), Ranges.intersection(emptyList(), asList(Ranges.all(Order))));
+    }
+
+    @Test
+    public void complementFlipsEndpoints() {
+        assertRanges(asList(below(3), Ranges.of(Open, 3, Unbounded, null, Order)), Ranges.complement(Ranges.of(Equal, 3, Order), Order));
+        assertRanges(asList(Ranges.of(Unbounded, null, Closed, 1, Order), Ranges.of(Closed, 4, Unbounded, null, Order)), Ranges.complement(asList(open(1, 4)), Order));
+        assertRanges(asList(below(2)), Ranges.complement(asList(atLeast(2)), Order));
+        assertRanges(asList(Ranges.of(Open, 2, Unbounded, null, Order)), Ranges.complement(asList(Ranges.of(Unbounded, null, Closed, 2, Order)), Order));
+    }
+
+    @Test
+    public void complementOfNothingAndEverything() {
+        assertRanges(asList(Ranges.all(Order)), Ranges.complement(emptyList(), Order));
+        assertRanges(emptyList(), Ranges.complement(asList(Ranges.all(Order)), Order));
+        assertRanges(Ranges.of(Equal, 3, Order), Ranges.complement(Ranges.complement(Ranges.of(Equal, 3, Order), Order), Order));
+    }
+
+    @Test
+    public void randomSetsMatchTheirData() {
+        final Random random = new Random(1);
+
+        for (int trial = 0; trial < 500; trial++) {
+            final List<Range<Integer>> a = randomSet(random);
+            final List<Range<Integer>> b = randomSet(random);
+            final boolean[] inA = holds(a);
+            final boolean[] inB = holds(b);
+            final boolean[] union = new boolean[inA.length];
+            final boolean[] intersection = new boolean[inA.length];
+            final boolean[] complement = new boolean[inA.length];
+            final List<Range<Integer>> unionOfA = Ranges.union(a, b);
+            final List<Range<Integer>> intersectionOfA = Ranges.intersection(a, b);
+            final List<Range<Integer>> complementOfA = Ranges.complement(a, Order);
+
+            for (int i = 0; i < inA.length; i++) {
+                union[i] = inA[i] || inB[i];
+                intersection[i] = inA[i] && inB[i];
+                complement[i] = !inA[i];
+            }
+
+            assertNormalized(unionOfA);
+            assertNormalized(intersectionOfA);
+            assertNormalized(complementOfA);
+            assertHolds(unionOfA, union);
+            assertHolds(intersectionOfA, intersection);
+            assertHolds(complementOfA, complement);
+        }
+    }
+
+    /**
+     * A normalized set of a few random ranges over the data 0 to 20, with
+     * random endpoint types and unbounded ends.
+     */
+    private static List<Range<Integer>> randomSet(Random random) {
+        final List<Range<Integer>> ranges = new ArrayList<>();
+        final int count = random.nextInt(4);
+
+        for (int i = 0; i < count; i++) {
+            final int start = random.nextInt(21);
+            final int stop = start + random.nextInt(6);
+            final boolean unboundedStart = random.nextInt(8) == 0;
+            final boolean unboundedStop = random.nextInt(8) == 0;
+
+            ranges.add(Ranges.of(
+                    unboundedStart ? Unbounded : random.nextBoolean() ? Open : Closed,
+                    unboundedStart ? null : start,
+                    unboundedStop ? Unbounded : random.nextBoolean() ? Open : Closed,
+                    unboundedStop ? null : stop,
+                    Order));
+        }
+
+        return Ranges.union(ranges);
+    }
+}